@@ -0,0 +1,59 @@
+package ru.oiteb.xmlparser.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+
+/**
+ * Настройки допуска конвертаций по памяти (префикс {@code converter.admission}).
+ */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "converter.admission")
+public class AdmissionProperties {
+
+    /**
+     * Включает ограничение одновременных конвертаций по оценке занимаемой памяти.
+     */
+    private boolean enabled = true;
+
+    /**
+     * Объём памяти, который могут одновременно занимать конвертации. Если не задан, вычисляется как
+     * {@link #heapFraction} от максимального размера кучи.
+     */
+    private DataSize heapBudget;
+
+    /**
+     * Доля максимального размера кучи, отводимая конвертациям, если {@link #heapBudget} не задан.
+     */
+    private double heapFraction = 0.6;
+
+    /**
+     * Во сколько раз память, нужная конвертации, превышает размер загруженного файла.
+     */
+    private double costFactor = 8.0;
+
+    /**
+     * Минимальная оценка памяти для одной конвертации: накладные расходы парсера и книги не зависят от размера файла.
+     */
+    private DataSize minCost = DataSize.ofMegabytes(8);
+
+    /**
+     * Сколько запросов может ожидать освобождения памяти; при заполнении очереди новые запросы отклоняются с 503.
+     */
+    private int queueCapacity = 16;
+
+    /**
+     * Максимальное время ожидания в очереди, после которого запрос отклоняется с 503.
+     */
+    private Duration maxWait = Duration.ofSeconds(10);
+
+    /**
+     * Значение заголовка {@code Retry-After} в ответе 503.
+     */
+    private Duration retryAfter = Duration.ofSeconds(5);
+
+}
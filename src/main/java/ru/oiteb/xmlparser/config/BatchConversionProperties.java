@@ -0,0 +1,45 @@
+package ru.oiteb.xmlparser.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.charset.Charset;
+
+/**
+ * Настройки пакетной конвертации ZIP-архивов (префикс {@code converter.batch}).
+ */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "converter.batch")
+public class BatchConversionProperties {
+
+    /**
+     * Количество потоков, одновременно конвертирующих файлы архивов.
+     */
+    private int workerThreads = 4;
+
+    /**
+     * Сколько файлов может ожидать свободного потока; при заполнении очереди файл конвертируется
+     * в потоке запроса.
+     */
+    private int queueCapacity = 64;
+
+    /**
+     * Максимальное число XML-файлов в одном архиве.
+     */
+    private int maxEntries = 200;
+
+    /**
+     * Максимальный размер одного файла архива после распаковки.
+     */
+    private DataSize maxEntrySize = DataSize.ofMegabytes(100);
+
+    /**
+     * Кодировка имён файлов архива, у которых не установлен признак UTF-8. По умолчанию — кодировка,
+     * в которой имена с кириллицей сохраняет проводник Windows.
+     */
+    private Charset entryNameCharset = Charset.forName("IBM866");
+
+}
@@ -0,0 +1,66 @@
+package ru.oiteb.xmlparser.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.file.Path;
+
+/**
+ * Настройки кэша результатов конвертации (префикс {@code converter.cache}).
+ */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "converter.cache")
+public class ConversionCacheProperties {
+
+    /**
+     * Сохранять ли готовые XLSX в кэше. ETag вычисляется и при выключенном кэше.
+     */
+    private boolean enabled = true;
+
+    /**
+     * Версия конвертера; входит в ключ кэша и ETag, поэтому после обновления старые результаты не используются.
+     * Если не задана, используются версия и время сборки из {@code META-INF/build-info.properties}.
+     */
+    private String version;
+
+    /**
+     * Максимальный суммарный размер результатов в памяти; при превышении вытесняются давно не запрошенные.
+     */
+    private DataSize maxMemorySize = DataSize.ofMegabytes(256);
+
+    /**
+     * Результаты крупнее этого размера не кэшируются.
+     */
+    private DataSize maxEntrySize = DataSize.ofMegabytes(32);
+
+    private Disk disk = new Disk();
+
+    /**
+     * Дисковый уровень кэша: все сохраняемые результаты дополнительно пишутся в локальный каталог
+     * и переживают вытеснение из памяти и перезапуск приложения.
+     */
+    @Getter
+    @Setter
+    public static class Disk {
+
+        /**
+         * Включён ли дисковый уровень.
+         */
+        private boolean enabled = false;
+
+        /**
+         * Каталог кэша; по умолчанию {@code java.io.tmpdir/xmlparser-cache}.
+         */
+        private Path dir;
+
+        /**
+         * Максимальный суммарный размер файлов кэша.
+         */
+        private DataSize maxSize = DataSize.ofGigabytes(2);
+
+    }
+
+}
@@ -0,0 +1,49 @@
+package ru.oiteb.xmlparser.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+/**
+ * Настройки асинхронных задач конвертации (префикс {@code converter.jobs}).
+ */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "converter.jobs")
+public class ConversionJobProperties {
+
+    /**
+     * Количество потоков, одновременно выполняющих конвертации.
+     */
+    private int workerThreads = 2;
+
+    /**
+     * Сколько задач может ожидать свободного потока; при заполнении очереди новые задачи отклоняются с 429.
+     */
+    private int queueCapacity = 16;
+
+    /**
+     * Каталог для загруженных файлов и готовых результатов; по умолчанию {@code java.io.tmpdir/xmlparser-jobs}.
+     */
+    private Path storageDir;
+
+    /**
+     * Сколько хранится результат после завершения задачи.
+     */
+    private Duration resultTtl = Duration.ofMinutes(30);
+
+    /**
+     * Максимальный суммарный объём результатов; при превышении удаляются самые старые.
+     */
+    private DataSize maxStorageSize = DataSize.ofGigabytes(1);
+
+    /**
+     * Период фоновой очистки устаревших результатов.
+     */
+    private Duration cleanupInterval = Duration.ofMinutes(1);
+
+}
@@ -0,0 +1,72 @@
+package ru.oiteb.xmlparser.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Настройки генерации XLSX-документов (префикс {@code converter.excel}).
+ */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "converter.excel")
+public class ExcelExportProperties {
+
+    /**
+     * Чем записывается книга.
+     */
+    private Engine engine = Engine.POI;
+
+    private final Streaming streaming = new Streaming();
+
+    /**
+     * Способ записи XLSX.
+     */
+    public enum Engine {
+        /**
+         * Объектная модель Apache POI: {@link org.apache.poi.xssf.usermodel.XSSFWorkbook}, а для больших книг —
+         * {@link org.apache.poi.xssf.streaming.SXSSFWorkbook}.
+         */
+        POI,
+        /**
+         * Собственная запись частей OOXML прямо в ZIP без объектов строк, ячеек и стилей POI.
+         * Из настроек {@code streaming} используются порог {@code row-threshold} (с него строки листов
+         * накапливаются во временном файле, а не в памяти), {@code compress-temp-files} и {@code shared-strings}.
+         */
+        DIRECT
+    }
+
+    /**
+     * Настройки потокового режима на базе {@link org.apache.poi.xssf.streaming.SXSSFWorkbook}
+     * (частично используются и движком {@link Engine#DIRECT}).
+     */
+    @Getter
+    @Setter
+    public static class Streaming {
+
+        /**
+         * Количество строк с данными, начиная с которого книга строится в потоковом режиме.
+         */
+        private int rowThreshold = 10_000;
+
+        /**
+         * Сколько последних строк держится в памяти; более ранние сбрасываются во временный файл.
+         */
+        private int rowAccessWindow = 100;
+
+        /**
+         * Сжимать ли временные файлы со сброшенными строками.
+         */
+        private boolean compressTempFiles = true;
+
+        /**
+         * Записывать ли строки через таблицу общих строк (shared strings): каждое различное значение попадает
+         * в файл один раз. Таблица держится в памяти до конца записи. Движок {@link Engine#DIRECT} кладёт в неё
+         * только справочные колонки (единица измерения, ОКПД2, страна, товарный знак), и XLSX уменьшается без
+         * роста памяти; у {@link Engine#POI} в таблицу попадают все строки книги, включая уникальные
+         * наименования, и память растёт с числом строк. По умолчанию выключено — строки пишутся прямо в ячейки.
+         */
+        private boolean sharedStrings;
+    }
+
+}
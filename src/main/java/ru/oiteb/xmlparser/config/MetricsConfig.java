@@ -0,0 +1,16 @@
+package ru.oiteb.xmlparser.config;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import ru.oiteb.xmlparser.metrics.ConversionMetrics;
+import ru.oiteb.xmlparser.metrics.UploadMetricsFilter;
+
+@Configuration
+public class MetricsConfig {
+
+    @Bean
+    public UploadMetricsFilter uploadMetricsFilter(ConversionMetrics metrics) {
+        return new UploadMetricsFilter(metrics);
+    }
+
+}
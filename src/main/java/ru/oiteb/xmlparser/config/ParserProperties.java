@@ -0,0 +1,134 @@
+package ru.oiteb.xmlparser.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+import ru.oiteb.xmlparser.entity.ProductField;
+
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Настройки разбора XML (префикс {@code converter.parser}).
+ */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "converter.parser")
+public class ParserProperties {
+
+    private Parallel parallel = new Parallel();
+
+    private Dedup dedup = new Dedup();
+
+    private Limits limits = new Limits();
+
+    private Validation validation = new Validation();
+
+    /**
+     * Параллельный разбор: документ делится на участки по границам {@code <productInfo>},
+     * которые разбираются одновременно в общем пуле fork-join.
+     */
+    @Getter
+    @Setter
+    public static class Parallel {
+
+        /**
+         * Включён ли параллельный разбор.
+         */
+        private boolean enabled = true;
+
+        /**
+         * Минимальный размер документа, начиная с которого он разбирается параллельно.
+         */
+        private DataSize threshold = DataSize.ofMegabytes(8);
+
+        /**
+         * Целевой размер одного участка.
+         */
+        private DataSize chunkSize = DataSize.ofMegabytes(1);
+
+    }
+
+    /**
+     * Дедупликация повторяющихся значений полей в пределах одной конвертации.
+     */
+    @Getter
+    @Setter
+    public static class Dedup {
+
+        /**
+         * Включена ли дедупликация.
+         */
+        private boolean enabled = true;
+
+        /**
+         * Поля, значения которых приводятся к одному экземпляру строки.
+         */
+        private Set<ProductField> fields = EnumSet.of(
+                ProductField.UNIT, ProductField.OKPD2, ProductField.COUNTRY, ProductField.TRADE_MARK);
+
+        /**
+         * Максимальное число различных значений в словаре одной конвертации.
+         */
+        private int maxEntries = 65_536;
+
+        /**
+         * Значения длиннее этого числа символов в словарь не попадают.
+         */
+        private int maxValueLength = 256;
+
+    }
+
+    /**
+     * Ограничения на структуру входного документа. Проверяются парсером Woodstox по ходу чтения:
+     * при превышении любого из них разбор прекращается сразу, не дочитывая документ.
+     * Параллельный разбор применяется, только если документ целиком укладывается в ограничения на размер,
+     * число элементов и глубину вложенности; иначе он разбирается последовательно и отклоняется так же.
+     */
+    @Getter
+    @Setter
+    public static class Limits {
+
+        /**
+         * Максимальная глубина вложенности элементов.
+         */
+        private int maxElementDepth = 64;
+
+        /**
+         * Максимальное число элементов в документе.
+         */
+        private long maxElementCount = 50_000_000L;
+
+        /**
+         * Максимальное число атрибутов у одного элемента.
+         */
+        private int maxAttributesPerElement = 64;
+
+        /**
+         * Максимальная длина одного текстового узла в символах.
+         */
+        private int maxTextLength = 1_048_576;
+
+        /**
+         * Максимальный размер документа в символах.
+         */
+        private DataSize maxDocumentSize = DataSize.ofGigabytes(2);
+
+    }
+
+    /**
+     * Проверка документа без конвертации.
+     */
+    @Getter
+    @Setter
+    public static class Validation {
+
+        /**
+         * Максимальное число нарушений в отчёте; документ проверяется до конца, но остальные нарушения не перечисляются.
+         */
+        private int maxViolations = 1_000;
+
+    }
+
+}
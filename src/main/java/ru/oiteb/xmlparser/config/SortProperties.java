@@ -0,0 +1,36 @@
+package ru.oiteb.xmlparser.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.file.Path;
+
+/**
+ * Настройки сортировки продуктов по {@code indexNum} (префикс {@code converter.sort}).
+ */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "converter.sort")
+public class SortProperties {
+
+    /**
+     * Оценочный объём памяти под продукты одной конвертации в колоночном хранилище
+     * ({@link ru.oiteb.xmlparser.service.table.ProductTable#estimatedBytes()}); при превышении
+     * отсортированные серии сбрасываются во временные файлы и затем сливаются.
+     */
+    private DataSize memoryBudget = DataSize.ofMegabytes(128);
+
+    /**
+     * Сортировка подсчётом применяется, если диапазон значений {@code indexNum} не больше
+     * количества продуктов, умноженного на этот коэффициент; иначе используется поразрядная сортировка.
+     */
+    private int countingSortRangeFactor = 4;
+
+    /**
+     * Каталог для временных файлов сортировки; по умолчанию {@code java.io.tmpdir}.
+     */
+    private Path tempDir;
+
+}
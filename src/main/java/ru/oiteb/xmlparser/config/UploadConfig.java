@@ -0,0 +1,24 @@
+package ru.oiteb.xmlparser.config;
+
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.servlet.HandlerExceptionResolver;
+import ru.oiteb.xmlparser.service.upload.MultipartUploadLimitFilter;
+import ru.oiteb.xmlparser.service.upload.UploadSpooler;
+
+@Configuration
+public class UploadConfig {
+
+    @Bean
+    public MultipartUploadLimitFilter multipartUploadLimitFilter(
+            UploadSpooler spooler,
+            @Value("${spring.servlet.multipart.file-size-threshold:0B}") DataSize fileSizeThreshold,
+            @Value("${spring.servlet.multipart.max-request-size:10MB}") DataSize maxRequestSize,
+            @Qualifier("handlerExceptionResolver") HandlerExceptionResolver exceptionResolver) {
+        return new MultipartUploadLimitFilter(spooler, fileSizeThreshold, maxRequestSize, exceptionResolver);
+    }
+
+}
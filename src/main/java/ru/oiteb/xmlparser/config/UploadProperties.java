@@ -0,0 +1,59 @@
+package ru.oiteb.xmlparser.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.file.Path;
+
+/**
+ * Настройки приёма загрузок (префикс {@code converter.upload}): распаковка сжатых файлов и временные файлы
+ * для крупных загрузок.
+ */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "converter.upload")
+public class UploadProperties {
+
+    /**
+     * Максимальный размер XML после распаковки; загрузка, превышающая его, отклоняется с 413.
+     */
+    private DataSize maxDecompressedSize = DataSize.ofGigabytes(1);
+
+    /**
+     * Ожидаемая степень сжатия XML: во сколько раз распакованный документ больше сжатой загрузки.
+     * Используется для оценки памяти конвертации, пока настоящий размер неизвестен.
+     */
+    private int expectedCompressionRatio = 10;
+
+    private final Spool spool = new Spool();
+
+    /**
+     * Сохранение крупных загрузок во временные файлы, которые парсер читает через отображение в память.
+     */
+    @Getter
+    @Setter
+    public static class Spool {
+
+        /**
+         * Размер несжатой загрузки, начиная с которого она сохраняется во временный файл и разбирается
+         * из отображения в память, а не из потока загрузки.
+         */
+        private DataSize threshold = DataSize.ofMegabytes(16);
+
+        /**
+         * Максимальный суммарный объём временных файлов загрузок, включая части multipart-запросов, которые
+         * контейнер пишет на диск; загрузка, которая в него не помещается, отклоняется с 503 и {@code Retry-After},
+         * а загрузка больше всего объёма — с 413.
+         */
+        private DataSize maxTotalSize = DataSize.ofGigabytes(8);
+
+        /**
+         * Каталог временных файлов; по умолчанию {@code java.io.tmpdir/xmlparser-uploads}. Файлы, оставшиеся
+         * от предыдущего запуска, удаляются при старте.
+         */
+        private Path directory;
+    }
+
+}
@@ -0,0 +1,51 @@
+package ru.oiteb.xmlparser.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import ru.oiteb.xmlparser.service.exporter.ExportFormat;
+
+import java.util.List;
+
+/**
+ * Настройки прогрева при старте (префикс {@code converter.warmup}).
+ */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "converter.warmup")
+public class WarmupProperties {
+
+    /**
+     * Выполнять ли синтетические конвертации до того, как экземпляр сообщит о готовности.
+     */
+    private boolean enabled = false;
+
+    /**
+     * Размеры синтетических документов в продуктах. Размер больше {@code converter.excel.streaming.row-threshold}
+     * прогревает и потоковую запись XLSX.
+     */
+    private List<Integer> products = List.of(1_000, 20_000);
+
+    /**
+     * Конвертировать ли ещё и документ не меньше {@code converter.parser.parallel.threshold}, чтобы прогреть
+     * сохранение загрузки во временный файл и параллельный разбор. Не действует, если параллельный разбор выключен.
+     */
+    private boolean parallel = true;
+
+    /**
+     * Форматы, в которые конвертируется каждый документ.
+     */
+    private List<ExportFormat> formats = List.of(ExportFormat.XLSX);
+
+    /**
+     * Сколько раз повторяется набор конвертаций.
+     */
+    private int iterations = 3;
+
+    /**
+     * Завершить приложение после прогрева. Используется для обучающего запуска при сборке образа, который
+     * записывает архив классов CDS.
+     */
+    private boolean exit = false;
+
+}
@@ -1,5 +1,8 @@
 package ru.oiteb.xmlparser.config;
 
+import com.ctc.wstx.api.WstxInputProperties;
+import com.ctc.wstx.stax.WstxInputFactory;
+import org.codehaus.stax2.XMLInputFactory2;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
@@ -8,11 +11,43 @@ import javax.xml.stream.XMLInputFactory;
 @Configuration
 public class XmlFactoryConfig {
 
+    private static final int INPUT_BUFFER_LENGTH = 16_384;
+    private static final int MIN_TEXT_SEGMENT = 1_024;
+
+    /**
+     * Фабрика StAX-парсеров Woodstox, настроенная на скорость и защищённая от враждебных документов.
+     * <p>
+     * Внешние сущности и DTD запрещены. Текст не склеивается парсером ({@code IS_COALESCING = false}) —
+     * фрагменты объединяет сам {@code XmlProductParser}; содержимое токенов разбирается лениво, только если
+     * к нему обращаются, поэтому пропускаемые элементы не материализуются. Имена элементов интернируются
+     * через таблицу символов фабрики, которая переиспользуется всеми создаваемыми ею парсерами.
+     * </p>
+     * <p>
+     * Ограничения из {@code converter.parser.limits} проверяются по ходу чтения, и документ, нарушающий их,
+     * отклоняется сразу.
+     * </p>
+     *
+     * @param properties настройки разбора
+     * @return фабрика парсеров
+     */
     @Bean
-    public XMLInputFactory secureXmlInputFactory() {
-        XMLInputFactory factory = XMLInputFactory.newFactory();
+    public XMLInputFactory secureXmlInputFactory(ParserProperties properties) {
+        WstxInputFactory factory = new WstxInputFactory();
         factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
         factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+
+        factory.setProperty(XMLInputFactory.IS_COALESCING, false);
+        factory.setProperty(XMLInputFactory2.P_LAZY_PARSING, true);
+        factory.setProperty(XMLInputFactory2.P_INTERN_NAMES, true);
+        factory.setProperty(WstxInputProperties.P_INPUT_BUFFER_LENGTH, INPUT_BUFFER_LENGTH);
+        factory.setProperty(WstxInputProperties.P_MIN_TEXT_SEGMENT, MIN_TEXT_SEGMENT);
+
+        ParserProperties.Limits limits = properties.getLimits();
+        factory.setProperty(WstxInputProperties.P_MAX_ELEMENT_DEPTH, limits.getMaxElementDepth());
+        factory.setProperty(WstxInputProperties.P_MAX_ELEMENT_COUNT, limits.getMaxElementCount());
+        factory.setProperty(WstxInputProperties.P_MAX_ATTRIBUTES_PER_ELEMENT, limits.getMaxAttributesPerElement());
+        factory.setProperty(WstxInputProperties.P_MAX_TEXT_LENGTH, limits.getMaxTextLength());
+        factory.setProperty(WstxInputProperties.P_MAX_CHARACTERS, limits.getMaxDocumentSize().toBytes());
         return factory;
     }
 
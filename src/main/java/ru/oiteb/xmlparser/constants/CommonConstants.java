@@ -10,5 +10,11 @@ public final class CommonConstants {
 
     public static final String EXCEL_XLSX = "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet";
     public static final String EXCEL_CONTENT_DISPOSITION = "attachment; filename=\"converted.xlsx\"";
+    public static final String APPLICATION_ZIP = "application/zip";
+    public static final String ZIP_CONTENT_DISPOSITION = "attachment; filename=\"converted.zip\"";
+    public static final String TEXT_CSV = "text/csv; charset=UTF-8";
+    public static final String CSV_CONTENT_DISPOSITION = "attachment; filename=\"converted.csv\"";
+    public static final String APPLICATION_NDJSON = "application/x-ndjson";
+    public static final String NDJSON_CONTENT_DISPOSITION = "attachment; filename=\"converted.ndjson\"";
 
 }
@@ -1,5 +1,6 @@
 package ru.oiteb.xmlparser.constants;
 
+import static ru.oiteb.xmlparser.constants.XmlTagConstants.INDEX_NUM;
 import static ru.oiteb.xmlparser.constants.XmlTagConstants.NATIONAL_CODE;
 import static ru.oiteb.xmlparser.constants.XmlTagConstants.OKEI_INFO;
 
@@ -11,9 +12,25 @@ public final class ExceptionsDescriptions {
     public static final String EMPTY_NATIONAL_CODE = "Код страны не должен быть  пустым";
     public static final String INPUT_STREAM_EXCEPTION = "Исключение при попытке чтения";
     public static final String EMPTY_OKEI_INFO = "Блок OKEI несодержит информации";
+    public static final String XML_LIMITS_EXCEEDED = "Xml файл превышает допустимые размеры или вложенность";
     public static final String INVALID_OKEI_INFO = "Блок <" + OKEI_INFO + "> не содержит обязательный элемент <" + NATIONAL_CODE + ">";
     public static final String UNEXPECTED_ERROR_TYPE = "Unexpected error";
     public static final String UNEXPECTED_ERROR_MESSAGE = "Произошла непредвиденная ошибка";
     public static final String XML_CREATION_EXCEPTION = "Invalid XLSX generated";
+    public static final String UNSUPPORTED_EXPORT_FORMAT = "Неподдерживаемый формат выгрузки: ";
+    public static final String INVALID_ZIP_ARCHIVE = "Архив повреждён или не является ZIP-файлом";
+    public static final String NO_XML_IN_ARCHIVE = "Архив не содержит XML-файлов";
+    public static final String TOO_MANY_ARCHIVE_ENTRIES = "Количество XML-файлов в архиве превышает допустимое: ";
+    public static final String ARCHIVE_ENTRY_TOO_LARGE = "Файл превышает допустимый размер после распаковки";
+    public static final String NOT_XML_ARCHIVE_ENTRY = "Файл не является XML";
+    public static final String CONVERSION_QUEUE_FULL = "Очередь конвертаций заполнена, повторите попытку позже";
+    public static final String CONVERSION_JOB_STORAGE_ERROR = "Не удалось сохранить файл задачи конвертации";
+    public static final String CONVERSION_CAPACITY_EXCEEDED = "Недостаточно памяти для конвертации, повторите попытку позже";
+    public static final String DECOMPRESSED_SIZE_EXCEEDED = "Распакованный xml файл превышает допустимый размер";
+    public static final String UNSUPPORTED_CONTENT_ENCODING = "Неподдерживаемое сжатие загрузки: ";
+    public static final String INVALID_INDEX_NUM = "Элемент <" + INDEX_NUM + "> должен содержать целое число: ";
+    public static final String MALFORMED_XML = "Xml файл повреждён: ";
+    public static final String UPLOAD_SPOOL_FULL = "Недостаточно места для временных файлов загрузок, повторите попытку позже";
+    public static final String UPLOAD_SPOOL_SIZE_EXCEEDED = "Файл превышает допустимый объём временных файлов загрузок";
 
 }
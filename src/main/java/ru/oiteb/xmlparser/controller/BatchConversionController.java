@@ -0,0 +1,69 @@
+package ru.oiteb.xmlparser.controller;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import ru.oiteb.xmlparser.entity.BatchOutput;
+import ru.oiteb.xmlparser.exception.UnsupportedExportFormatException;
+import ru.oiteb.xmlparser.service.BatchConversionService;
+import ru.oiteb.xmlparser.service.ConversionResult;
+
+import java.util.Locale;
+
+import static ru.oiteb.xmlparser.constants.CommonConstants.*;
+import static ru.oiteb.xmlparser.constants.ExceptionsDescriptions.UNSUPPORTED_EXPORT_FORMAT;
+
+@RestController
+@RequiredArgsConstructor
+@RequestMapping("/v1/api/xml-converter/batch")
+@Tag(name = "Пакетный конвертер api", description = "API для конвертации ZIP-архивов с XML-файлами")
+public class BatchConversionController {
+
+    private final BatchConversionService batchService;
+
+    @PostMapping(consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    @Operation(summary = "Конвертация ZIP-архива с .xml-файлами",
+            description = "Принимает ZIP-архив и конвертирует XML-файлы из него параллельно. "
+                    + "При output=zip (по умолчанию) возвращает ZIP-архив с .xlsx на каждый файл и manifest.csv; "
+                    + "при output=workbook — одну книгу с листом сводки и листом на каждый файл. "
+                    + "Ошибки отдельных файлов не прерывают конвертацию и указываются в манифесте.",
+            operationId = "convertXmlArchive"
+    )
+    public ResponseEntity<StreamingResponseBody> convertArchive(
+            @Parameter(description = "ZIP-архив с XML-файлами", required = true)
+            @RequestParam("file") MultipartFile archive,
+            @Parameter(description = "Вид результата: zip или workbook")
+            @RequestParam(value = "output", defaultValue = "zip") String output,
+            HttpServletRequest request) {
+        BatchOutput batchOutput = resolveOutput(output);
+        ConversionResult result = batchService.convert(archive, batchOutput);
+        StreamingResponseBody body = ConversionResultCleanup.body(request, result);
+        boolean workbook = batchOutput == BatchOutput.WORKBOOK;
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(workbook ? EXCEL_XLSX : APPLICATION_ZIP))
+                .header(HttpHeaders.CONTENT_DISPOSITION, workbook ? EXCEL_CONTENT_DISPOSITION : ZIP_CONTENT_DISPOSITION)
+                .body(body);
+    }
+
+    private BatchOutput resolveOutput(String output) {
+        String normalized = output.trim().toUpperCase(Locale.ROOT);
+        for (BatchOutput candidate : BatchOutput.values()) {
+            if (candidate.name().equals(normalized)) {
+                return candidate;
+            }
+        }
+        throw new UnsupportedExportFormatException(": " + UNSUPPORTED_EXPORT_FORMAT + output);
+    }
+
+}
@@ -2,21 +2,41 @@ package ru.oiteb.xmlparser.controller;
 
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.parameters.RequestBody;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.Part;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.InvalidMediaTypeException;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import ru.oiteb.xmlparser.exception.ConversationInternalError;
+import ru.oiteb.xmlparser.exception.ConversionOverloadedException;
+import ru.oiteb.xmlparser.exception.UnsupportedExportFormatException;
+import ru.oiteb.xmlparser.exception.UploadTooLargeException;
+import ru.oiteb.xmlparser.service.ConversionRequest;
+import ru.oiteb.xmlparser.service.ConversionResult;
 import ru.oiteb.xmlparser.service.ConversionService;
+import ru.oiteb.xmlparser.service.exporter.ExportFormat;
+import ru.oiteb.xmlparser.service.upload.ContentCoding;
 
-import static ru.oiteb.xmlparser.constants.CommonConstants.EXCEL_CONTENT_DISPOSITION;
-import static ru.oiteb.xmlparser.constants.CommonConstants.EXCEL_XLSX;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import static ru.oiteb.xmlparser.constants.ExceptionsDescriptions.UNSUPPORTED_EXPORT_FORMAT;
 
 @RestController
 @RequiredArgsConstructor
@@ -27,22 +47,155 @@ public class ConversionController {
     private final ConversionService parserService;
 
     @PostMapping(value = "/xml-converter", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
-    @Operation(summary = "Парсинг и конвертация из .xml в .xlsx",
-            description = "Принимает XML-файл, парсит его и возвращает Excel-документ (.xlsx).",
+    @Operation(summary = "Парсинг и конвертация из .xml в .xlsx, .csv или .ndjson",
+            description = "Принимает XML-файл, парсит его и возвращает Excel-документ (.xlsx), CSV или NDJSON. "
+                    + "Формат задаётся параметром format (xlsx, csv, ndjson), а без него выбирается по заголовку Accept; "
+                    + "по умолчанию — .xlsx. "
+                    + "Ответ содержит ETag, зависящий от содержимого файла, формата, сборки конвертера и настроек XLSX; "
+                    + "при совпадении с If-None-Match возвращается 304 без тела. "
+                    + "Если памяти для конвертации не хватает, возвращается 503 с заголовком Retry-After. "
+                    + "Файл может быть сжат gzip или deflate: сжатие указывается заголовком Content-Encoding части "
+                    + "с файлом или расширением .xml.gz; распакованный документ больше допустимого отклоняется с 413.",
             operationId = "convertXmlToExcel"
     )
-    public ResponseEntity<byte[]> convertXmlToExcel(
+    public ResponseEntity<StreamingResponseBody> convertXmlToExcel(
             @Parameter(description = "XML-файл для конвертации", required = true)
-            @RequestParam("file") MultipartFile xml) {
+            @RequestParam("file") MultipartFile xml,
+            @Parameter(description = "Формат результата: xlsx, csv или ndjson")
+            @RequestParam(value = "format", required = false) String format,
+            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+            HttpServletRequest request) {
+        ExportFormat exportFormat = resolveFormat(format, accept);
+        ContentCoding coding = ContentCoding.ofUpload(partEncoding(request), xml);
+        try {
+            String fingerprint = parserService.fingerprint(xml, exportFormat);
+            if (matchesETag(ifNoneMatch, fingerprint)) {
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(fingerprint).varyBy(HttpHeaders.ACCEPT).build();
+            }
+            ConversionResult result = parserService.prepare(ConversionRequest.upload(xml)
+                    .format(exportFormat)
+                    .coding(coding)
+                    .fingerprint(fingerprint)
+                    .build());
+            StreamingResponseBody body = ConversionResultCleanup.body(request, result);
+            return ResponseEntity.ok()
+                    .eTag(fingerprint)
+                    .varyBy(HttpHeaders.ACCEPT)
+                    .contentType(MediaType.parseMediaType(exportFormat.getMediaType()))
+                    .header(HttpHeaders.CONTENT_DISPOSITION, exportFormat.getContentDisposition())
+                    .body(body);
+        } catch (ConversionOverloadedException | UploadTooLargeException e) {
+            throw e;
+        } catch (Exception e) {
+            ConversionResultCleanup.release(request);
+            throw new ConversationInternalError(e.getMessage());
+        }
+    }
+
+    @PostMapping(value = "/xml-converter", consumes = {MediaType.APPLICATION_XML_VALUE, MediaType.TEXT_XML_VALUE})
+    @Operation(summary = "Конвертация XML, переданного телом запроса",
+            description = "Для API-клиентов: XML передаётся телом запроса с Content-Type application/xml, без multipart. "
+                    + "Документ разбирается по мере приёма, без сохранения во временный файл, поэтому приём и разбор "
+                    + "идут одновременно. Тело может быть сжато gzip или deflate (заголовок Content-Encoding). "
+                    + "Формат результата выбирается так же, как для multipart-загрузки; ETag и кэш результатов "
+                    + "не используются, так как содержимое становится известно только по ходу разбора.",
+            operationId = "convertRawXml",
+            requestBody = @RequestBody(description = "XML-документ", required = true,
+                    content = @Content(mediaType = MediaType.APPLICATION_XML_VALUE))
+    )
+    public ResponseEntity<StreamingResponseBody> convertRawXml(
+            @Parameter(description = "Формат результата: xlsx, csv или ndjson")
+            @RequestParam(value = "format", required = false) String format,
+            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept,
+            @RequestHeader(value = HttpHeaders.CONTENT_ENCODING, required = false) String contentEncoding,
+            HttpServletRequest request) {
+        ExportFormat exportFormat = resolveFormat(format, accept);
+        ContentCoding coding = ContentCoding.fromHeader(contentEncoding);
         try {
-            byte[] excelBytes = parserService.convert(xml);
+            ConversionResult result = parserService.prepare(
+                    ConversionRequest.stream(request.getInputStream(), request.getContentLengthLong())
+                            .format(exportFormat)
+                            .coding(coding)
+                            .build());
+            StreamingResponseBody body = ConversionResultCleanup.body(request, result);
             return ResponseEntity.ok()
-                    .contentType(MediaType.parseMediaType(EXCEL_XLSX))
-                    .header(HttpHeaders.CONTENT_DISPOSITION, EXCEL_CONTENT_DISPOSITION)
-                    .body(excelBytes);
+                    .varyBy(HttpHeaders.ACCEPT)
+                    .contentType(MediaType.parseMediaType(exportFormat.getMediaType()))
+                    .header(HttpHeaders.CONTENT_DISPOSITION, exportFormat.getContentDisposition())
+                    .body(body);
+        } catch (ConversionOverloadedException | UploadTooLargeException e) {
+            throw e;
         } catch (Exception e) {
+            ConversionResultCleanup.release(request);
             throw new ConversationInternalError(e.getMessage());
         }
     }
 
+    /**
+     * Выбирает формат ответа: параметр {@code format} имеет приоритет, иначе берётся первый по качеству тип
+     * из {@code Accept}, которому соответствует один из форматов. Если заголовка нет, он не разбирается
+     * или не подходит ни к одному формату, возвращается XLSX.
+     *
+     * @throws UnsupportedExportFormatException если параметр {@code format} задан, но не известен
+     */
+    private ExportFormat resolveFormat(String format, String accept) {
+        if (format != null && !format.isBlank()) {
+            return ExportFormat.fromName(format)
+                    .orElseThrow(() -> new UnsupportedExportFormatException(": " + UNSUPPORTED_EXPORT_FORMAT + format));
+        }
+        if (accept == null || accept.isBlank()) {
+            return ExportFormat.XLSX;
+        }
+        List<MediaType> accepted;
+        try {
+            accepted = new ArrayList<>(MediaType.parseMediaTypes(accept));
+        } catch (InvalidMediaTypeException e) {
+            return ExportFormat.XLSX;
+        }
+        accepted.sort(Comparator.comparingDouble(MediaType::getQualityValue).reversed());
+        for (MediaType type : accepted) {
+            if (type.getQualityValue() == 0) {
+                continue;
+            }
+            for (ExportFormat candidate : ExportFormat.values()) {
+                if (type.includes(MediaType.parseMediaType(candidate.getMediaType()))) {
+                    return candidate;
+                }
+            }
+        }
+        return ExportFormat.XLSX;
+    }
+
+    /**
+     * Значение {@code Content-Encoding} из заголовков части multipart-запроса с файлом.
+     */
+    private String partEncoding(HttpServletRequest request) {
+        try {
+            Part part = request.getPart("file");
+            return part != null ? part.getHeader(HttpHeaders.CONTENT_ENCODING) : null;
+        } catch (IOException | ServletException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Проверяет, содержит ли заголовок {@code If-None-Match} указанный ETag (сравнение без учёта признака {@code W/}).
+     */
+    private boolean matchesETag(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null || etag == null) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            String value = candidate.trim();
+            if (value.startsWith("W/")) {
+                value = value.substring(2);
+            }
+            if (value.equals("*") || value.equals('"' + etag + '"')) {
+                return true;
+            }
+        }
+        return false;
+    }
+
 }
@@ -0,0 +1,76 @@
+package ru.oiteb.xmlparser.controller;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+import ru.oiteb.xmlparser.controller.dto.ConversionJobResponse;
+import ru.oiteb.xmlparser.entity.ConversionJob;
+import ru.oiteb.xmlparser.mapper.ConversionJobMapper;
+import ru.oiteb.xmlparser.service.ConversionJobService;
+
+import java.net.URI;
+
+import static ru.oiteb.xmlparser.constants.CommonConstants.EXCEL_CONTENT_DISPOSITION;
+import static ru.oiteb.xmlparser.constants.CommonConstants.EXCEL_XLSX;
+
+@RestController
+@RequiredArgsConstructor
+@RequestMapping("/v1/api/xml-converter/jobs")
+@Tag(name = "Асинхронный конвертер api", description = "API для фоновой конвертации больших файлов")
+public class ConversionJobController {
+
+    private final ConversionJobService jobService;
+
+    @PostMapping(consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    @Operation(summary = "Постановка конвертации .xml в .xlsx в очередь",
+            description = "Принимает XML-файл и сразу возвращает идентификатор задачи. "
+                    + "Если очередь заполнена, возвращает 429.",
+            operationId = "submitConversionJob"
+    )
+    public ResponseEntity<ConversionJobResponse> submit(
+            @Parameter(description = "XML-файл для конвертации", required = true)
+            @RequestParam("file") MultipartFile xml) {
+        ConversionJob job = jobService.submit(xml);
+        URI location = ServletUriComponentsBuilder.fromCurrentRequest()
+                .path("/{id}")
+                .buildAndExpand(job.getId())
+                .toUri();
+        return ResponseEntity.accepted()
+                .location(location)
+                .body(ConversionJobMapper.toResponse(job));
+    }
+
+    @GetMapping("/{id}")
+    @Operation(summary = "Статус задачи конвертации", operationId = "getConversionJob")
+    public ConversionJobResponse getStatus(@PathVariable("id") String id) {
+        return ConversionJobMapper.toResponse(jobService.getJob(id));
+    }
+
+    @GetMapping("/{id}/result")
+    @Operation(summary = "Скачивание результата задачи конвертации",
+            description = "Возвращает Excel-документ (.xlsx), если задача завершена успешно; 409, если она ещё выполняется.",
+            operationId = "downloadConversionJobResult"
+    )
+    public ResponseEntity<Resource> download(@PathVariable("id") String id) {
+        Resource result = new FileSystemResource(jobService.getResult(id));
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(EXCEL_XLSX))
+                .header(HttpHeaders.CONTENT_DISPOSITION, EXCEL_CONTENT_DISPOSITION)
+                .body(result);
+    }
+
+}
@@ -0,0 +1,63 @@
+package ru.oiteb.xmlparser.controller;
+
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.async.CallableProcessingInterceptor;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import ru.oiteb.xmlparser.service.ConversionResult;
+
+import java.util.concurrent.Callable;
+
+/**
+ * Закрывает результат конвертации, который так и не был записан в ответ.
+ * <p>
+ * Результат удерживает резерв памяти и временные файлы до вызова {@link ConversionResult#writeTo}, а тот
+ * выполняется асинхронно, уже после возврата из контроллера. Если запись не началась — асинхронная обработка
+ * завершилась по тайм-ауту, клиент отключился или задача не была принята исполнителем, — результат закрывается
+ * в {@link #afterCompletion}. Ошибки в самом контроллере закрывают результат через {@link #release}.
+ * </p>
+ */
+public class ConversionResultCleanup implements CallableProcessingInterceptor {
+
+    private static final String RESULT_ATTRIBUTE = ConversionResultCleanup.class.getName() + ".RESULT";
+
+    /**
+     * Тело ответа, которое записывает и закрывает результат; до записи результат хранится в атрибуте запроса.
+     *
+     * @param request текущий запрос
+     * @param result  подготовленный результат конвертации
+     * @return тело ответа
+     */
+    static StreamingResponseBody body(HttpServletRequest request, ConversionResult result) {
+        request.setAttribute(RESULT_ATTRIBUTE, result);
+        return out -> {
+            try (result) {
+                result.writeTo(out);
+            }
+        };
+    }
+
+    /**
+     * Закрывает результат, сохранённый в запросе, если он есть.
+     *
+     * @param request текущий запрос
+     */
+    static void release(HttpServletRequest request) {
+        Object result = request.getAttribute(RESULT_ATTRIBUTE);
+        if (result != null) {
+            request.removeAttribute(RESULT_ATTRIBUTE);
+            ((ConversionResult) result).close();
+        }
+    }
+
+    @Override
+    public <T> void afterCompletion(NativeWebRequest request, Callable<T> task) {
+        Object result = request.getAttribute(RESULT_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+        if (result != null) {
+            request.removeAttribute(RESULT_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+            ((ConversionResult) result).close();
+        }
+    }
+
+}
@@ -1,11 +1,13 @@
 package ru.oiteb.xmlparser.controller;
 
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.HttpStatusCode;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
+import ru.oiteb.xmlparser.exception.ConversionOverloadedException;
 import ru.oiteb.xmlparser.exception.ParserParentException;
 import ru.oiteb.xmlparser.exception.dto.ErrorResponse;
 import ru.oiteb.xmlparser.exception.dto.ErrorResponseMapper;
@@ -24,6 +26,14 @@ public class GlobalExceptionHandler {
         return ResponseEntity.status(status).body(error);
     }
 
+    @ExceptionHandler(ConversionOverloadedException.class)
+    public ResponseEntity<ErrorResponse> handleOverload(ConversionOverloadedException e) {
+        ErrorResponse error = ErrorResponseMapper.toErrorResponse(e, HttpStatus.SERVICE_UNAVAILABLE);
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                .body(error);
+    }
+
     @ExceptionHandler(Exception.class)
     public ResponseEntity<ErrorResponse> handleApiException(Exception e) {
         ErrorResponse error = new ErrorResponse(
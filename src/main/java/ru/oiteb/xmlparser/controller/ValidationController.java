@@ -0,0 +1,84 @@
+package ru.oiteb.xmlparser.controller;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.parameters.RequestBody;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.Part;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.multipart.MultipartFile;
+import ru.oiteb.xmlparser.entity.ValidationReport;
+import ru.oiteb.xmlparser.exception.InvalidXmlFileException;
+import ru.oiteb.xmlparser.service.ValidationService;
+import ru.oiteb.xmlparser.service.upload.ContentCoding;
+
+import java.io.IOException;
+
+import static ru.oiteb.xmlparser.constants.ExceptionsDescriptions.UNREADABLE_XML_FILE;
+
+@RestController
+@RequiredArgsConstructor
+@RequestMapping("/v1/api/xml-converter/validate")
+@Tag(name = "Проверка XML api", description = "API для проверки XML-файлов без конвертации")
+public class ValidationController {
+
+    private final ValidationService validationService;
+
+    @PostMapping(consumes = MediaType.MULTIPART_FORM_DATA_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
+    @Operation(summary = "Проверка .xml-файла без конвертации",
+            description = "Проверяет XML-файл по тем же правилам, что и конвертация, но не строит продукты и книгу. "
+                    + "Возвращает число продуктов и все найденные нарушения с номером строки и столбца; "
+                    + "некорректный документ не приводит к ошибке запроса — он описывается в отчёте. "
+                    + "Сжатие файла задаётся так же, как при конвертации.",
+            operationId = "validateXml"
+    )
+    public ValidationReport validateXml(
+            @Parameter(description = "XML-файл для проверки", required = true)
+            @RequestParam("file") MultipartFile xml,
+            HttpServletRequest request) {
+        return validationService.validate(xml, ContentCoding.ofUpload(partEncoding(request), xml));
+    }
+
+    @PostMapping(consumes = {MediaType.APPLICATION_XML_VALUE, MediaType.TEXT_XML_VALUE},
+            produces = MediaType.APPLICATION_JSON_VALUE)
+    @Operation(summary = "Проверка XML, переданного телом запроса",
+            description = "Для API-клиентов: XML передаётся телом запроса с Content-Type application/xml и "
+                    + "проверяется по мере приёма. Тело может быть сжато gzip или deflate (заголовок Content-Encoding).",
+            operationId = "validateRawXml",
+            requestBody = @RequestBody(description = "XML-документ", required = true,
+                    content = @Content(mediaType = MediaType.APPLICATION_XML_VALUE))
+    )
+    public ValidationReport validateRawXml(
+            @RequestHeader(value = HttpHeaders.CONTENT_ENCODING, required = false) String contentEncoding,
+            HttpServletRequest request) {
+        ContentCoding coding = ContentCoding.fromHeader(contentEncoding);
+        try {
+            return validationService.validate(request.getInputStream(), request.getContentLengthLong(), coding);
+        } catch (IOException e) {
+            throw new InvalidXmlFileException(UNREADABLE_XML_FILE);
+        }
+    }
+
+    /**
+     * Значение {@code Content-Encoding} из заголовков части multipart-запроса с файлом.
+     */
+    private String partEncoding(HttpServletRequest request) {
+        try {
+            Part part = request.getPart("file");
+            return part != null ? part.getHeader(HttpHeaders.CONTENT_ENCODING) : null;
+        } catch (IOException | ServletException e) {
+            return null;
+        }
+    }
+
+}
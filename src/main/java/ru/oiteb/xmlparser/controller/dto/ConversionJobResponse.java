@@ -0,0 +1,20 @@
+package ru.oiteb.xmlparser.controller.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import ru.oiteb.xmlparser.entity.ConversionJobStatus;
+
+import java.time.Instant;
+
+@Getter
+@AllArgsConstructor
+@Builder
+public class ConversionJobResponse {
+    private String id;
+    private ConversionJobStatus status;
+    private Instant createdAt;
+    private Instant finishedAt;
+    private Long resultSize;
+    private String error;
+}
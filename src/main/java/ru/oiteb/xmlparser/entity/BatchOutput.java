@@ -0,0 +1,11 @@
+package ru.oiteb.xmlparser.entity;
+
+/**
+ * Вид результата пакетной конвертации.
+ */
+public enum BatchOutput {
+    /** ZIP-архив с XLSX-файлом на каждый XML-файл и манифестом {@code manifest.csv}. */
+    ZIP,
+    /** Одна книга: лист сводки и по листу на каждый XML-файл. */
+    WORKBOOK
+}
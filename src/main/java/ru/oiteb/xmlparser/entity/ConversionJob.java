@@ -0,0 +1,55 @@
+package ru.oiteb.xmlparser.entity;
+
+import lombok.Getter;
+
+import java.nio.file.Path;
+import java.time.Instant;
+
+/**
+ * Асинхронная задача конвертации.
+ * <p>
+ * Состояние меняется потоком-исполнителем и читается из потоков HTTP-запросов, поэтому изменяемые поля
+ * объявлены {@code volatile}, а переходы выполняются только методами этого класса.
+ * </p>
+ */
+@Getter
+public class ConversionJob {
+
+    private final String id;
+    private final Path inputFile;
+    private final Instant createdAt;
+
+    private volatile ConversionJobStatus status = ConversionJobStatus.QUEUED;
+    private volatile Instant finishedAt;
+    private volatile Path resultFile;
+    private volatile long resultSize;
+    private volatile String error;
+
+    public ConversionJob(String id, Path inputFile) {
+        this.id = id;
+        this.inputFile = inputFile;
+        this.createdAt = Instant.now();
+    }
+
+    public void markRunning() {
+        status = ConversionJobStatus.RUNNING;
+    }
+
+    public void markDone(Path resultFile, long resultSize) {
+        this.resultFile = resultFile;
+        this.resultSize = resultSize;
+        this.finishedAt = Instant.now();
+        this.status = ConversionJobStatus.DONE;
+    }
+
+    public void markFailed(String error) {
+        this.error = error;
+        this.finishedAt = Instant.now();
+        this.status = ConversionJobStatus.FAILED;
+    }
+
+    public boolean isFinished() {
+        return status == ConversionJobStatus.DONE || status == ConversionJobStatus.FAILED;
+    }
+
+}
@@ -0,0 +1,8 @@
+package ru.oiteb.xmlparser.entity;
+
+public enum ConversionJobStatus {
+    QUEUED,
+    RUNNING,
+    DONE,
+    FAILED
+}
@@ -9,7 +9,7 @@ import lombok.*;
 @Setter
 @EqualsAndHashCode
 @ToString
-public class ProductData {
+public class ProductData implements ProductRow {
     private Integer indexNum;
     private String unit;
     private String okpd2;
@@ -19,7 +19,46 @@ public class ProductData {
     private String certNumber;
     private String fullName;
     private String tradeMark;
-}
 
+    @Override
+    public boolean hasIndexNum() {
+        return indexNum != null;
+    }
+
+    @Override
+    public int indexNum() {
+        return indexNum == null ? 0 : indexNum;
+    }
 
+    @Override
+    public String get(ProductField field) {
+        switch (field) {
+            case UNIT:
+                return unit;
+            case OKPD2:
+                return okpd2;
+            case NKMI:
+                return nkmi;
+            case MANUFACTURER:
+                return manufacturer;
+            case COUNTRY:
+                return country;
+            case CERT_NUMBER:
+                return certNumber;
+            case FULL_NAME:
+                return fullName;
+            case TRADE_MARK:
+                return tradeMark;
+            default:
+                throw new IllegalArgumentException(field.name());
+        }
+    }
 
+    /**
+     * Объект уже самостоятелен, поэтому возвращается он сам.
+     */
+    @Override
+    public ProductData toProductData() {
+        return this;
+    }
+}
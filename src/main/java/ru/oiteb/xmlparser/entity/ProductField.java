@@ -0,0 +1,17 @@
+package ru.oiteb.xmlparser.entity;
+
+/**
+ * Поля {@link ProductData} в порядке колонок выгрузки
+ * (см. {@link ru.oiteb.xmlparser.constants.ExcelConstants#HEADERS}).
+ */
+public enum ProductField {
+    INDEX_NUM,
+    UNIT,
+    OKPD2,
+    NKMI,
+    MANUFACTURER,
+    COUNTRY,
+    CERT_NUMBER,
+    FULL_NAME,
+    TRADE_MARK
+}
@@ -0,0 +1,53 @@
+package ru.oiteb.xmlparser.entity;
+
+/**
+ * Продукт как строка таблицы: {@code indexNum} без упаковки в {@link Integer} и текстовые поля по
+ * {@link ProductField}.
+ * <p>
+ * Через этот интерфейс парсер, сортировщик и экспортеры обмениваются продуктами, не создавая объект на каждую
+ * строку: реализацией может быть курсор по колоночному хранилищу или переиспользуемый буфер разбора. Такие строки
+ * действительны только до перехода к следующей — чтобы сохранить продукт, его копируют через
+ * {@link #toProductData()}.
+ * </p>
+ */
+public interface ProductRow {
+
+    /**
+     * @return {@code true}, если в продукте был элемент {@code <indexNum>}
+     */
+    boolean hasIndexNum();
+
+    /**
+     * @return значение {@code indexNum}; 0, если оно отсутствует
+     */
+    int indexNum();
+
+    /**
+     * Возвращает текстовое поле продукта.
+     *
+     * @param field поле, кроме {@link ProductField#INDEX_NUM}
+     * @return значение поля или {@code null}, если оно не заполнено
+     * @throws IllegalArgumentException если запрошен {@link ProductField#INDEX_NUM}
+     */
+    String get(ProductField field);
+
+    /**
+     * Копирует строку в самостоятельный объект {@link ProductData}.
+     *
+     * @return новый объект с теми же значениями полей
+     */
+    default ProductData toProductData() {
+        return ProductData.builder()
+                .indexNum(hasIndexNum() ? indexNum() : null)
+                .unit(get(ProductField.UNIT))
+                .okpd2(get(ProductField.OKPD2))
+                .nkmi(get(ProductField.NKMI))
+                .manufacturer(get(ProductField.MANUFACTURER))
+                .country(get(ProductField.COUNTRY))
+                .certNumber(get(ProductField.CERT_NUMBER))
+                .fullName(get(ProductField.FULL_NAME))
+                .tradeMark(get(ProductField.TRADE_MARK))
+                .build();
+    }
+
+}
@@ -0,0 +1,27 @@
+package ru.oiteb.xmlparser.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+
+import java.util.List;
+
+/**
+ * Результат проверки XML-документа без конвертации.
+ */
+@Getter
+@AllArgsConstructor
+@Builder
+public class ValidationReport {
+
+    /** В документе не найдено нарушений. */
+    private boolean valid;
+
+    /** Число найденных {@code <productInfo>}; если документ повреждён — число продуктов до места повреждения. */
+    private long products;
+
+    private List<ValidationViolation> violations;
+
+    /** Нарушений больше, чем {@code converter.parser.validation.max-violations}, и в отчёт попали только первые. */
+    private boolean truncated;
+}
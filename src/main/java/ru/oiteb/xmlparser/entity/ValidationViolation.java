@@ -0,0 +1,27 @@
+package ru.oiteb.xmlparser.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * Нарушение, найденное при проверке XML-документа.
+ */
+@Getter
+@AllArgsConstructor
+@Builder
+@ToString
+public class ValidationViolation {
+
+    /** Номер строки документа, на которой нарушение обнаружено (с 1); -1, если неизвестен. */
+    private int line;
+
+    /** Номер столбца, на котором нарушение обнаружено (с 1); -1, если неизвестен. */
+    private int column;
+
+    /** Порядковый номер {@code <productInfo>} в документе (с 1); {@code null} для ошибок вне продукта. */
+    private Integer product;
+
+    private String message;
+}
@@ -0,0 +1,13 @@
+package ru.oiteb.xmlparser.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.NOT_FOUND)
+public class ConversionJobNotFoundException extends ParserParentException {
+
+    public ConversionJobNotFoundException(String message) {
+        super("Conversion job not found" + message);
+    }
+
+}
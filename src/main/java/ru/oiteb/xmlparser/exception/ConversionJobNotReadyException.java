@@ -0,0 +1,13 @@
+package ru.oiteb.xmlparser.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.CONFLICT)
+public class ConversionJobNotReadyException extends ParserParentException {
+
+    public ConversionJobNotReadyException(String message) {
+        super("Conversion job result is not ready" + message);
+    }
+
+}
@@ -0,0 +1,18 @@
+package ru.oiteb.xmlparser.exception;
+
+import lombok.Getter;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@Getter
+@ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+public class ConversionOverloadedException extends ParserParentException {
+
+    private final long retryAfterSeconds;
+
+    public ConversionOverloadedException(String message, long retryAfterSeconds) {
+        super("Conversion capacity exceeded" + message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+}
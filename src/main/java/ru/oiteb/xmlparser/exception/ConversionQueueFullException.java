@@ -0,0 +1,13 @@
+package ru.oiteb.xmlparser.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.TOO_MANY_REQUESTS)
+public class ConversionQueueFullException extends ParserParentException {
+
+    public ConversionQueueFullException(String message) {
+        super("Conversion queue is full" + message);
+    }
+
+}
@@ -0,0 +1,13 @@
+package ru.oiteb.xmlparser.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.INTERNAL_SERVER_ERROR)
+public class ProductSortException extends ParserParentException {
+
+    public ProductSortException(String message) {
+        super("Exception when sorting products" + message);
+    }
+
+}
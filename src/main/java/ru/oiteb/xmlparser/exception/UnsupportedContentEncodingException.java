@@ -0,0 +1,13 @@
+package ru.oiteb.xmlparser.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.UNSUPPORTED_MEDIA_TYPE)
+public class UnsupportedContentEncodingException extends ParserParentException {
+
+    public UnsupportedContentEncodingException(String message) {
+        super("Unsupported content encoding" + message);
+    }
+
+}
@@ -0,0 +1,13 @@
+package ru.oiteb.xmlparser.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.BAD_REQUEST)
+public class UnsupportedExportFormatException extends ParserParentException {
+
+    public UnsupportedExportFormatException(String message) {
+        super("Unsupported export format" + message);
+    }
+
+}
@@ -0,0 +1,13 @@
+package ru.oiteb.xmlparser.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.CONTENT_TOO_LARGE)
+public class UploadTooLargeException extends ParserParentException {
+
+    public UploadTooLargeException(String message) {
+        super("Upload is too large" + message);
+    }
+
+}
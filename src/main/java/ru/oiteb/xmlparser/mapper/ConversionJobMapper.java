@@ -0,0 +1,20 @@
+package ru.oiteb.xmlparser.mapper;
+
+import ru.oiteb.xmlparser.controller.dto.ConversionJobResponse;
+import ru.oiteb.xmlparser.entity.ConversionJob;
+import ru.oiteb.xmlparser.entity.ConversionJobStatus;
+
+public class ConversionJobMapper {
+
+    public static ConversionJobResponse toResponse(ConversionJob job) {
+        return ConversionJobResponse.builder()
+                .id(job.getId())
+                .status(job.getStatus())
+                .createdAt(job.getCreatedAt())
+                .finishedAt(job.getFinishedAt())
+                .resultSize(job.getStatus() == ConversionJobStatus.DONE ? job.getResultSize() : null)
+                .error(job.getError())
+                .build();
+    }
+
+}
@@ -0,0 +1,125 @@
+package ru.oiteb.xmlparser.metrics;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.BaseUnits;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Метрики конвейера конвертации.
+ * <ul>
+ *   <li>{@code converter.stage.duration{stage}} — длительность этапов {@link Stage} с гистограммой;</li>
+ *   <li>{@code converter.input.size}, {@code converter.output.size} — размеры загруженного XML и готового XLSX;</li>
+ *   <li>{@code converter.products} — количество продуктов в документе;</li>
+ *   <li>{@code converter.conversions.active} — конвертации, которые сейчас разбирают документ или пишут XLSX.</li>
+ * </ul>
+ * <p>
+ * Все метры регистрируются один раз при создании, поэтому запись значения на горячем пути — это
+ * {@link System#nanoTime()} и обновление счётчиков без поиска в реестре.
+ * </p>
+ */
+@Component
+public class ConversionMetrics {
+
+    /**
+     * Этапы конвертации.
+     */
+    public enum Stage {
+        /** Приём multipart-загрузки. */
+        UPLOAD,
+        /** Разбор XML. */
+        PARSE,
+        /** Завершение сортировки продуктов (сортировка последней серии и слияние сброшенных на диск). */
+        SORT,
+        /** Заполнение листа книги. */
+        BUILD,
+        /** Сериализация книги в поток ответа. */
+        WRITE
+    }
+
+    private final Map<Stage, Timer> stages = new EnumMap<>(Stage.class);
+    private final DistributionSummary inputSize;
+    private final DistributionSummary outputSize;
+    private final DistributionSummary products;
+    private final AtomicInteger active = new AtomicInteger();
+
+    public ConversionMetrics(MeterRegistry registry) {
+        for (Stage stage : Stage.values()) {
+            stages.put(stage, Timer.builder("converter.stage.duration")
+                    .description("Длительность этапа конвертации")
+                    .tag("stage", stage.name().toLowerCase(Locale.ROOT))
+                    .publishPercentileHistogram()
+                    .minimumExpectedValue(Duration.ofMillis(1))
+                    .maximumExpectedValue(Duration.ofMinutes(5))
+                    .register(registry));
+        }
+        inputSize = sizeSummary("converter.input.size", "Размер загруженного XML", registry);
+        outputSize = sizeSummary("converter.output.size", "Размер сгенерированного XLSX", registry);
+        products = DistributionSummary.builder("converter.products")
+                .description("Количество продуктов в документе")
+                .publishPercentileHistogram()
+                .minimumExpectedValue(1.0)
+                .maximumExpectedValue(10_000_000.0)
+                .register(registry);
+        Gauge.builder("converter.conversions.active", active, AtomicInteger::get)
+                .description("Конвертации, выполняющиеся в данный момент")
+                .register(registry);
+    }
+
+    /**
+     * Отметка времени начала этапа для {@link #record(Stage, long)}.
+     */
+    public long start() {
+        return System.nanoTime();
+    }
+
+    /**
+     * Записывает длительность этапа, начатого в момент {@code startNanos}.
+     */
+    public void record(Stage stage, long startNanos) {
+        stages.get(stage).record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordInputSize(long bytes) {
+        inputSize.record(bytes);
+    }
+
+    public void recordOutputSize(long bytes) {
+        outputSize.record(bytes);
+    }
+
+    public void recordProducts(long count) {
+        products.record(count);
+    }
+
+    /**
+     * Увеличивает число активных конвертаций; парный вызов — {@link #conversionFinished()} в {@code finally}.
+     */
+    public void conversionStarted() {
+        active.incrementAndGet();
+    }
+
+    public void conversionFinished() {
+        active.decrementAndGet();
+    }
+
+    private static DistributionSummary sizeSummary(String name, String description, MeterRegistry registry) {
+        return DistributionSummary.builder(name)
+                .description(description)
+                .baseUnit(BaseUnits.BYTES)
+                .publishPercentileHistogram()
+                .minimumExpectedValue(1024.0)
+                .maximumExpectedValue(1024.0 * 1024 * 1024)
+                .register(registry);
+    }
+
+}
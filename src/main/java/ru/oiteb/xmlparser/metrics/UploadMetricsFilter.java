@@ -0,0 +1,50 @@
+package ru.oiteb.xmlparser.metrics;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.MediaType;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.Locale;
+
+/**
+ * Замеряет приём multipart-загрузки (этап {@link ConversionMetrics.Stage#UPLOAD}).
+ * <p>
+ * Фильтр заранее вызывает {@link HttpServletRequest#getParts()}: контейнер читает и разбирает тело запроса
+ * и кэширует результат, который затем использует {@code MultipartResolver}. Ошибки разбора (например, превышение
+ * лимита размера) фильтр не обрабатывает — они повторно возникнут при разрешении запроса и будут обработаны как обычно.
+ * </p>
+ */
+@RequiredArgsConstructor
+public class UploadMetricsFilter extends OncePerRequestFilter {
+
+    private static final String API_PREFIX = "/v1/api/";
+
+    private final ConversionMetrics metrics;
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !request.getRequestURI().startsWith(request.getContextPath() + API_PREFIX);
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        String contentType = request.getContentType();
+        if (contentType != null && contentType.toLowerCase(Locale.ROOT).startsWith(MediaType.MULTIPART_FORM_DATA_VALUE)) {
+            long start = metrics.start();
+            try {
+                request.getParts();
+                metrics.record(ConversionMetrics.Stage.UPLOAD, start);
+            } catch (IOException | ServletException | IllegalStateException e) {
+                // ошибка будет повторно получена и обработана при разрешении multipart-запроса
+            }
+        }
+        chain.doFilter(request, response);
+    }
+
+}
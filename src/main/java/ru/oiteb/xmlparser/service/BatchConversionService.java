@@ -0,0 +1,10 @@
+package ru.oiteb.xmlparser.service;
+
+import org.springframework.web.multipart.MultipartFile;
+import ru.oiteb.xmlparser.entity.BatchOutput;
+
+public interface BatchConversionService {
+
+    ConversionResult convert(MultipartFile archive, BatchOutput output);
+
+}
@@ -0,0 +1,16 @@
+package ru.oiteb.xmlparser.service;
+
+import org.springframework.web.multipart.MultipartFile;
+import ru.oiteb.xmlparser.entity.ConversionJob;
+
+import java.nio.file.Path;
+
+public interface ConversionJobService {
+
+    ConversionJob submit(MultipartFile xml);
+
+    ConversionJob getJob(String id);
+
+    Path getResult(String id);
+
+}
@@ -0,0 +1,63 @@
+package ru.oiteb.xmlparser.service;
+
+import lombok.Builder;
+import lombok.Getter;
+import org.springframework.web.multipart.MultipartFile;
+import ru.oiteb.xmlparser.service.exporter.ExportFormat;
+import ru.oiteb.xmlparser.service.upload.ContentCoding;
+
+import java.io.InputStream;
+
+/**
+ * Параметры одной конвертации для {@link ConversionService#prepare(ConversionRequest)}.
+ * <p>
+ * Источник — либо загруженный файл ({@link #upload(MultipartFile)}), либо поток ({@link #stream(InputStream, long)}):
+ * тело запроса {@code application/xml} или сохранённый файл фоновой задачи. По умолчанию документ выгружается
+ * в XLSX и считается несжатым. Если задан {@code fingerprint}, результат берётся из кэша
+ * или сохраняется в него по мере записи; без отпечатка кэш не используется.
+ * </p>
+ */
+@Getter
+@Builder
+public class ConversionRequest {
+
+    /** Загруженный файл или {@code null}, если источник — поток. */
+    private final MultipartFile upload;
+
+    /** Поток с документом или {@code null}, если источник — загруженный файл; закрывается после разбора. */
+    private final InputStream stream;
+
+    /** Размер источника в байтах или {@code -1}, если он неизвестен (chunked). */
+    private final long size;
+
+    @Builder.Default
+    private final ExportFormat format = ExportFormat.XLSX;
+
+    @Builder.Default
+    private final ContentCoding coding = ContentCoding.IDENTITY;
+
+    /** Отпечаток из {@link ConversionService#fingerprint(MultipartFile, ExportFormat)} для того же формата. */
+    private final String fingerprint;
+
+    /**
+     * Конвертация загруженного файла.
+     *
+     * @param xml загруженный XML-файл
+     * @return построитель запроса с размером файла
+     */
+    public static ConversionRequestBuilder upload(MultipartFile xml) {
+        return builder().upload(xml).size(xml == null ? 0 : xml.getSize());
+    }
+
+    /**
+     * Конвертация документа из потока.
+     *
+     * @param xml  поток с документом
+     * @param size размер документа в байтах или {@code -1}, если он неизвестен
+     * @return построитель запроса
+     */
+    public static ConversionRequestBuilder stream(InputStream xml, long size) {
+        return builder().stream(xml).size(size);
+    }
+
+}
@@ -0,0 +1,50 @@
+package ru.oiteb.xmlparser.service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Подготовленный результат конвертации, который ещё не записан в выходной поток.
+ * <p>
+ * Разбор и проверка XML выполняются до создания результата, поэтому ошибки входных данных
+ * возникают до начала отправки ответа. Сам документ формируется только при вызове
+ * {@link #writeTo(OutputStream)} и пишется напрямую в переданный поток, без промежуточного
+ * массива байтов.
+ * </p>
+ * <p>
+ * Результат может удерживать ресурсы — резерв памяти и временные файлы сортировки. Они освобождаются после
+ * {@link #writeTo(OutputStream)}, а если результат так и не был записан (клиент отключился, ответ не начался
+ * из-за ошибки), — при {@link #close()}. Повторное закрытие ничего не делает.
+ * </p>
+ */
+@FunctionalInterface
+public interface ConversionResult extends AutoCloseable {
+
+    /**
+     * Записывает результат конвертации в выходной поток.
+     *
+     * @param out поток, в который пишется документ; не закрывается методом
+     * @throws IOException если запись в поток завершилась ошибкой
+     */
+    void writeTo(OutputStream out) throws IOException;
+
+    /**
+     * Освобождает ресурсы результата, не записывая его.
+     */
+    @Override
+    default void close() {
+    }
+
+    /**
+     * Результат, который выполняет {@code release} один раз: после записи или при закрытии, смотря что
+     * произойдёт раньше.
+     *
+     * @param result  результат, удерживающий ресурсы
+     * @param release освобождение ресурсов
+     * @return результат, записывающий те же байты
+     */
+    static ConversionResult releasing(ConversionResult result, Runnable release) {
+        return new ReleasingConversionResult(result, release);
+    }
+
+}
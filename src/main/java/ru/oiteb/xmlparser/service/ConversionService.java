@@ -1,9 +1,14 @@
 package ru.oiteb.xmlparser.service;
 
 import org.springframework.web.multipart.MultipartFile;
+import ru.oiteb.xmlparser.service.exporter.ExportFormat;
 
 public interface ConversionService {
 
     byte[] convert(MultipartFile xml);
 
+    String fingerprint(MultipartFile xml, ExportFormat format);
+
+    ConversionResult prepare(ConversionRequest request);
+
 }
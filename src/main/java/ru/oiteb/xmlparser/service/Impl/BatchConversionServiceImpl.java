@@ -0,0 +1,448 @@
+package ru.oiteb.xmlparser.service.Impl;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+import ru.oiteb.xmlparser.config.BatchConversionProperties;
+import ru.oiteb.xmlparser.entity.BatchOutput;
+import ru.oiteb.xmlparser.entity.ProductRow;
+import ru.oiteb.xmlparser.exception.ConversionOverloadedException;
+import ru.oiteb.xmlparser.exception.EmptyXmlFileException;
+import ru.oiteb.xmlparser.exception.InvalidArchiveException;
+import ru.oiteb.xmlparser.exception.InvalidXmlFileException;
+import ru.oiteb.xmlparser.exception.ParsingException;
+import ru.oiteb.xmlparser.service.BatchConversionService;
+import ru.oiteb.xmlparser.service.ConversionResult;
+import ru.oiteb.xmlparser.service.admission.ConversionAdmission;
+import ru.oiteb.xmlparser.service.exporter.CsvExporter;
+import ru.oiteb.xmlparser.service.exporter.ExcelExporter;
+import ru.oiteb.xmlparser.service.parser.XmlProductParser;
+import ru.oiteb.xmlparser.service.sorter.ProductSorter;
+import ru.oiteb.xmlparser.service.sorter.SortedProducts;
+import ru.oiteb.xmlparser.service.upload.LimitedInputStream;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+import static ru.oiteb.xmlparser.constants.ExceptionsDescriptions.*;
+
+/**
+ * Пакетная конвертация ZIP-архива с XML-файлами.
+ * <p>
+ * Архив сохраняется во временный файл и открывается как {@link ZipFile}: каждый XML-файл распаковывается
+ * потоково по мере разбора, не загружаясь в память целиком. Файлы конвертируются параллельно на собственном пуле
+ * из {@code converter.batch.worker-threads} потоков; если очередь пула заполнена, файл конвертируется в потоке
+ * запроса. Ошибка в одном файле не прерывает пакет — она попадает в манифест, а остальные файлы
+ * конвертируются как обычно.
+ * </p>
+ * <p>
+ * Для результата {@link BatchOutput#ZIP} каждый файл сразу выгружается в XLSX во временный файл, и ответ
+ * собирается из готовых книг (без повторного сжатия) и {@code manifest.csv}. Для {@link BatchOutput#WORKBOOK}
+ * отсортированные продукты всех файлов сохраняются до записи ответа и выгружаются в одну книгу: лист сводки
+ * и по листу на файл.
+ * </p>
+ * <p>
+ * Перед конвертацией архив резервирует память в {@link ConversionAdmission} по распакованному размеру файлов,
+ * которые будут в памяти одновременно: для {@link BatchOutput#ZIP} — самых крупных файлов по числу потоков,
+ * которые их конвертируют, для {@link BatchOutput#WORKBOOK} — всех файлов, так как их продукты хранятся до записи
+ * книги. Резерв освобождается, когда файлы выгружены во временные XLSX или книга записана.
+ * Временные файлы и продукты освобождаются после записи результата или при его закрытии.
+ * </p>
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class BatchConversionServiceImpl implements BatchConversionService {
+
+    private static final String XML_EXTENSION = ".xml";
+    private static final String XLSX_EXTENSION = ".xlsx";
+    private static final String MACOS_METADATA_DIR = "__MACOSX/";
+    private static final String MANIFEST_NAME = "manifest.csv";
+    private static final String SUMMARY_SHEET_NAME = "Сводка";
+    private static final String[] MANIFEST_HEADERS = {"Файл", "Статус", "Продуктов", "Ошибка"};
+
+    private final XmlProductParser parser;
+    private final ProductSorter sorter;
+    private final ExcelExporter exporter;
+    private final CsvExporter csvExporter;
+    private final ConversionAdmission admission;
+    private final BatchConversionProperties properties;
+
+    private ThreadPoolExecutor executor;
+
+    @PostConstruct
+    public void init() {
+        int workers = properties.getWorkerThreads();
+        executor = new ThreadPoolExecutor(workers, workers, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(properties.getQueueCapacity()),
+                new CustomizableThreadFactory("batch-conversion-"),
+                new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Конвертирует все XML-файлы архива. Файлы разбираются до возврата результата, поэтому ошибки самого архива
+     * возникают до начала отправки ответа; ошибки отдельных файлов попадают в манифест.
+     *
+     * @param archive загруженный ZIP-архив; не должен быть null или пустым
+     * @param output  вид результата
+     * @return результат, который запишет ZIP-архив или книгу в переданный ему поток
+     * @throws EmptyXmlFileException         если архив пуст
+     * @throws InvalidXmlFileException       если архив не предоставлен или не может быть прочитан
+     * @throws InvalidArchiveException       если файл не является ZIP-архивом, не содержит XML-файлов
+     *                                       или содержит их больше {@code converter.batch.max-entries}
+     * @throws ConversionOverloadedException если памяти для конвертации не хватает
+     */
+    @Override
+    public ConversionResult convert(MultipartFile archive, BatchOutput output) {
+        if (archive == null) {
+            throw new InvalidXmlFileException(INVALID_XML_FILE);
+        }
+        if (archive.isEmpty()) {
+            throw new EmptyXmlFileException(EMPTY_XML_FILE);
+        }
+        Path file = null;
+        ConversionAdmission.Permit permit = null;
+        try {
+            file = Files.createTempFile("batch-upload-", ".zip");
+            archive.transferTo(file);
+            List<EntryResult> results;
+            try (ZipFile zip = openArchive(file)) {
+                List<? extends ZipEntry> entries = listEntries(zip);
+                permit = admission.acquire(expectedSize(entries, output));
+                results = awaitAll(submitEntries(zip, entries, output));
+            }
+            if (output == BatchOutput.WORKBOOK) {
+                ConversionResult result = workbookResult(results, permit);
+                permit = null;
+                return result;
+            }
+            return zipResult(results);
+        } catch (IOException e) {
+            throw new InvalidXmlFileException(UNREADABLE_XML_FILE);
+        } finally {
+            if (permit != null) {
+                permit.close();
+            }
+            deleteQuietly(file);
+        }
+    }
+
+    private ZipFile openArchive(Path file) throws IOException {
+        try {
+            return new ZipFile(file.toFile(), properties.getEntryNameCharset());
+        } catch (ZipException e) {
+            throw new InvalidArchiveException(": " + INVALID_ZIP_ARCHIVE);
+        }
+    }
+
+    private List<? extends ZipEntry> listEntries(ZipFile zip) {
+        List<? extends ZipEntry> entries = zip.stream()
+                .filter(entry -> !entry.isDirectory() && !entry.getName().startsWith(MACOS_METADATA_DIR))
+                .toList();
+        long xmlEntries = entries.stream().filter(this::isXml).count();
+        if (xmlEntries == 0) {
+            throw new InvalidArchiveException(": " + NO_XML_IN_ARCHIVE);
+        }
+        if (xmlEntries > properties.getMaxEntries()) {
+            throw new InvalidArchiveException(": " + TOO_MANY_ARCHIVE_ENTRIES + properties.getMaxEntries());
+        }
+        return entries;
+    }
+
+    /**
+     * Распакованный размер XML-файлов, которые одновременно находятся в памяти. Размер из заголовка архива
+     * не превышает {@code converter.batch.max-entry-size}; если он не указан, берётся это ограничение.
+     */
+    private long expectedSize(List<? extends ZipEntry> entries, BatchOutput output) {
+        long maxEntrySize = properties.getMaxEntrySize().toBytes();
+        long concurrent = output == BatchOutput.WORKBOOK ? Long.MAX_VALUE : properties.getWorkerThreads() + 1L;
+        return entries.stream()
+                .filter(this::isXml)
+                .map(entry -> entry.getSize() < 0 ? maxEntrySize : Math.min(entry.getSize(), maxEntrySize))
+                .sorted(Comparator.reverseOrder())
+                .limit(concurrent)
+                .mapToLong(Long::longValue)
+                .sum();
+    }
+
+    private List<Future<EntryResult>> submitEntries(ZipFile zip, List<? extends ZipEntry> entries, BatchOutput output) {
+        List<Future<EntryResult>> tasks = new ArrayList<>(entries.size());
+        for (ZipEntry entry : entries) {
+            if (isXml(entry)) {
+                tasks.add(executor.submit(() -> convertEntry(zip, entry, output)));
+            } else {
+                tasks.add(CompletableFuture.completedFuture(EntryResult.skipped(entry.getName())));
+            }
+        }
+        return tasks;
+    }
+
+    /**
+     * Дожидается конвертации всех файлов. Если поток запроса прерван, незавершённые конвертации отменяются,
+     * а результаты всех завершённых освобождаются — и собранных, и тех, до которых ожидание ещё не дошло.
+     */
+    private List<EntryResult> awaitAll(List<Future<EntryResult>> tasks) {
+        List<EntryResult> results = new ArrayList<>(tasks.size());
+        try {
+            for (Future<EntryResult> task : tasks) {
+                results.add(task.get());
+            }
+            return results;
+        } catch (InterruptedException | ExecutionException e) {
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            tasks.forEach(task -> task.cancel(true));
+            release(completed(tasks));
+            throw new ParsingException(INPUT_STREAM_EXCEPTION);
+        }
+    }
+
+    /**
+     * Результаты задач, которые завершились до отмены; задачи, завершившиеся исключением, пропускаются.
+     */
+    private List<EntryResult> completed(List<Future<EntryResult>> tasks) {
+        List<EntryResult> results = new ArrayList<>(tasks.size());
+        for (Future<EntryResult> task : tasks) {
+            if (!task.isDone() || task.isCancelled()) {
+                continue;
+            }
+            try {
+                results.add(task.get());
+            } catch (InterruptedException | ExecutionException ignored) {
+                // завершённая задача не ждёт, а при ошибке освобождать нечего
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Разбирает и сортирует один файл архива; для результата {@link BatchOutput#ZIP} сразу выгружает его
+     * во временный XLSX-файл. Любая ошибка превращается в строку манифеста.
+     */
+    private EntryResult convertEntry(ZipFile zip, ZipEntry entry, BatchOutput output) {
+        String name = entry.getName();
+        ProductSorter.Session sorting = sorter.openSession();
+        LimitedInputStream in = null;
+        SortedProducts products = null;
+        Path file = null;
+        try {
+            in = new LimitedInputStream(zip.getInputStream(entry), properties.getMaxEntrySize().toBytes(),
+                    ARCHIVE_ENTRY_TOO_LARGE);
+            parser.parseRows(in, sorting);
+            products = sorting.finish();
+            if (output == BatchOutput.WORKBOOK) {
+                EntryResult result = EntryResult.converted(name, products);
+                products = null;
+                return result;
+            }
+            file = Files.createTempFile("batch-entry-", XLSX_EXTENSION);
+            CRC32 crc = new CRC32();
+            try (OutputStream out = new CheckedOutputStream(new BufferedOutputStream(Files.newOutputStream(file)), crc)) {
+                exporter.writeExcel(products.rows(), out);
+            }
+            EntryResult result = EntryResult.written(name, products.size(), file, crc.getValue(), Files.size(file));
+            file = null;
+            return result;
+        } catch (Exception e) {
+            log.debug("Batch entry {} failed", name, e);
+            boolean tooLarge = in != null && in.isExceeded();
+            return EntryResult.failed(name, tooLarge ? ARCHIVE_ENTRY_TOO_LARGE : e.getMessage());
+        } finally {
+            sorting.close();
+            closeQuietly(in);
+            if (products != null) {
+                products.close();
+            }
+            deleteQuietly(file);
+        }
+    }
+
+    private ConversionResult zipResult(List<EntryResult> results) {
+        return ConversionResult.releasing(out -> {
+            ZipOutputStream zip = new ZipOutputStream(out);
+            for (EntryResult result : results) {
+                if (result.file != null) {
+                    zip.putNextEntry(storedEntry(replaceExtension(result.name, XLSX_EXTENSION), result));
+                    Files.copy(result.file, zip);
+                    zip.closeEntry();
+                }
+            }
+            zip.putNextEntry(new ZipEntry(MANIFEST_NAME));
+            csvExporter.writeRows(manifest(results), zip);
+            zip.closeEntry();
+            zip.finish();
+        }, () -> release(results));
+    }
+
+    private ConversionResult workbookResult(List<EntryResult> results, ConversionAdmission.Permit permit) {
+        return ConversionResult.releasing(out -> {
+            Map<String, Collection<ProductRow>> sheets = new LinkedHashMap<>();
+            for (EntryResult result : results) {
+                if (result.products != null) {
+                    String baseName = replaceExtension(result.name.substring(result.name.lastIndexOf('/') + 1), "");
+                    String sheet = baseName;
+                    for (int i = 2; sheets.containsKey(sheet); i++) {
+                        sheet = baseName + " (" + i + ")";
+                    }
+                    sheets.put(sheet, result.products.rows());
+                }
+            }
+            exporter.writeExcel(sheets, SUMMARY_SHEET_NAME, manifest(results), out);
+        }, () -> {
+            try (permit) {
+                release(results);
+            }
+        });
+    }
+
+    /**
+     * XLSX уже сжат, поэтому книги кладутся в архив без повторного сжатия.
+     */
+    private ZipEntry storedEntry(String name, EntryResult result) {
+        ZipEntry entry = new ZipEntry(name);
+        entry.setMethod(ZipEntry.STORED);
+        entry.setSize(result.size);
+        entry.setCompressedSize(result.size);
+        entry.setCrc(result.crc);
+        return entry;
+    }
+
+    private List<String[]> manifest(List<EntryResult> results) {
+        List<String[]> rows = new ArrayList<>(results.size() + 1);
+        rows.add(MANIFEST_HEADERS);
+        for (EntryResult result : results) {
+            rows.add(new String[]{
+                    result.name,
+                    result.status.name(),
+                    result.status == EntryStatus.CONVERTED ? Integer.toString(result.productCount) : "",
+                    result.error != null ? result.error : ""
+            });
+        }
+        return rows;
+    }
+
+    private boolean isXml(ZipEntry entry) {
+        return entry.getName().toLowerCase(Locale.ROOT).endsWith(XML_EXTENSION);
+    }
+
+    private String replaceExtension(String name, String extension) {
+        int dot = name.lastIndexOf('.');
+        return (dot > name.lastIndexOf('/') ? name.substring(0, dot) : name) + extension;
+    }
+
+    private void release(List<EntryResult> results) {
+        for (EntryResult result : results) {
+            if (result.products != null) {
+                result.products.close();
+            }
+            deleteQuietly(result.file);
+        }
+    }
+
+    private void closeQuietly(InputStream in) {
+        if (in == null) {
+            return;
+        }
+        try {
+            in.close();
+        } catch (IOException e) {
+            log.debug("Failed to close archive entry stream", e);
+        }
+    }
+
+    private void deleteQuietly(Path path) {
+        if (path == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.warn("Failed to delete {}", path, e);
+        }
+    }
+
+    private enum EntryStatus {
+        CONVERTED,
+        FAILED,
+        SKIPPED
+    }
+
+    /**
+     * Итог конвертации одного файла архива: строка манифеста и, для успешных файлов, готовый XLSX
+     * или отсортированные продукты.
+     */
+    private static final class EntryResult {
+
+        private final String name;
+        private final EntryStatus status;
+        private final int productCount;
+        private final String error;
+        private final SortedProducts products;
+        private final Path file;
+        private final long crc;
+        private final long size;
+
+        private EntryResult(String name, EntryStatus status, int productCount, String error,
+                            SortedProducts products, Path file, long crc, long size) {
+            this.name = name;
+            this.status = status;
+            this.productCount = productCount;
+            this.error = error;
+            this.products = products;
+            this.file = file;
+            this.crc = crc;
+            this.size = size;
+        }
+
+        static EntryResult converted(String name, SortedProducts products) {
+            return new EntryResult(name, EntryStatus.CONVERTED, products.size(), null, products, null, 0, 0);
+        }
+
+        static EntryResult written(String name, int productCount, Path file, long crc, long size) {
+            return new EntryResult(name, EntryStatus.CONVERTED, productCount, null, null, file, crc, size);
+        }
+
+        static EntryResult failed(String name, String error) {
+            return new EntryResult(name, EntryStatus.FAILED, 0, error, null, null, 0, 0);
+        }
+
+        static EntryResult skipped(String name) {
+            return new EntryResult(name, EntryStatus.SKIPPED, 0, NOT_XML_ARCHIVE_ENTRY, null, null, 0, 0);
+        }
+
+    }
+
+}
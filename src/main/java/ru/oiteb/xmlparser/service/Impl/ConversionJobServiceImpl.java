@@ -0,0 +1,223 @@
+package ru.oiteb.xmlparser.service.Impl;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+import ru.oiteb.xmlparser.config.ConversionJobProperties;
+import ru.oiteb.xmlparser.entity.ConversionJob;
+import ru.oiteb.xmlparser.entity.ConversionJobStatus;
+import ru.oiteb.xmlparser.exception.ConversionException;
+import ru.oiteb.xmlparser.exception.ConversionJobNotFoundException;
+import ru.oiteb.xmlparser.exception.ConversionJobNotReadyException;
+import ru.oiteb.xmlparser.exception.ConversionQueueFullException;
+import ru.oiteb.xmlparser.exception.EmptyXmlFileException;
+import ru.oiteb.xmlparser.exception.InvalidXmlFileException;
+import ru.oiteb.xmlparser.exception.ParsingException;
+import ru.oiteb.xmlparser.service.ConversionJobService;
+import ru.oiteb.xmlparser.service.ConversionRequest;
+import ru.oiteb.xmlparser.service.ConversionResult;
+import ru.oiteb.xmlparser.service.ConversionService;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import static ru.oiteb.xmlparser.constants.ExceptionsDescriptions.*;
+
+/**
+ * Асинхронные задачи конвертации.
+ * <p>
+ * Загруженный файл сохраняется в локальный каталог, после чего запрос сразу возвращается с идентификатором задачи.
+ * Конвертация выполняется на собственном пуле из {@code converter.jobs.worker-threads} потоков с очередью
+ * на {@code converter.jobs.queue-capacity} задач; если очередь заполнена,
+ * задача отклоняется с {@link ConversionQueueFullException}. Перед разбором задача резервирует память
+ * в {@code ConversionAdmission} наравне с синхронными запросами; если память не освободилась вовремя,
+ * задача завершается с ошибкой. Готовый XLSX хранится в том же каталоге
+ * не дольше {@code converter.jobs.result-ttl}, а при превышении {@code converter.jobs.max-storage-size}
+ * первыми удаляются самые старые результаты.
+ * </p>
+ * <p>
+ * Состояние задач хранится только в памяти экземпляра: после перезапуска задачи и их результаты недоступны.
+ * </p>
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ConversionJobServiceImpl implements ConversionJobService {
+
+    private final ConversionService conversionService;
+    private final ConversionJobProperties properties;
+
+    private final Map<String, ConversionJob> jobs = new ConcurrentHashMap<>();
+
+    private Path storageDir;
+    private ThreadPoolExecutor executor;
+
+    @PostConstruct
+    public void init() throws IOException {
+        Path dir = properties.getStorageDir();
+        storageDir = dir != null ? dir : Path.of(System.getProperty("java.io.tmpdir"), "xmlparser-jobs");
+        Files.createDirectories(storageDir);
+        int workers = properties.getWorkerThreads();
+        executor = new ThreadPoolExecutor(workers, workers, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(properties.getQueueCapacity()),
+                new CustomizableThreadFactory("conversion-job-"),
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Сохраняет загруженный файл и ставит задачу конвертации в очередь.
+     *
+     * @param xml загруженный XML-файл; не должен быть null или пустым
+     * @return созданная задача в статусе {@link ConversionJobStatus#QUEUED}
+     * @throws EmptyXmlFileException        если файл пуст
+     * @throws InvalidXmlFileException      если файл не предоставлен
+     * @throws ConversionQueueFullException если очередь задач заполнена
+     */
+    @Override
+    public ConversionJob submit(MultipartFile xml) {
+        if (xml == null) {
+            throw new InvalidXmlFileException(INVALID_XML_FILE);
+        }
+        if (xml.isEmpty()) {
+            throw new EmptyXmlFileException(EMPTY_XML_FILE);
+        }
+        String id = UUID.randomUUID().toString();
+        Path inputFile = storageDir.resolve(id + ".xml");
+        try {
+            xml.transferTo(inputFile);
+        } catch (IOException e) {
+            deleteQuietly(inputFile);
+            throw new ParsingException(CONVERSION_JOB_STORAGE_ERROR);
+        }
+        ConversionJob job = new ConversionJob(id, inputFile);
+        jobs.put(id, job);
+        try {
+            executor.execute(() -> run(job));
+        } catch (RejectedExecutionException e) {
+            jobs.remove(id);
+            deleteQuietly(inputFile);
+            throw new ConversionQueueFullException(": " + CONVERSION_QUEUE_FULL);
+        }
+        return job;
+    }
+
+    /**
+     * @throws ConversionJobNotFoundException если задача не существует или её результат уже удалён
+     */
+    @Override
+    public ConversionJob getJob(String id) {
+        ConversionJob job = jobs.get(id);
+        if (job == null) {
+            throw new ConversionJobNotFoundException(": " + id);
+        }
+        return job;
+    }
+
+    /**
+     * Возвращает путь к готовому XLSX-файлу задачи.
+     *
+     * @throws ConversionJobNotFoundException  если задача не существует или её результат уже удалён
+     * @throws ConversionJobNotReadyException  если задача ещё выполняется
+     * @throws ConversionException             если конвертация завершилась ошибкой
+     */
+    @Override
+    public Path getResult(String id) {
+        ConversionJob job = getJob(id);
+        if (job.getStatus() == ConversionJobStatus.FAILED) {
+            throw new ConversionException(": " + job.getError());
+        }
+        if (job.getStatus() != ConversionJobStatus.DONE) {
+            throw new ConversionJobNotReadyException(": " + id);
+        }
+        return job.getResultFile();
+    }
+
+    /**
+     * Удаляет результаты, срок хранения которых истёк, и самые старые результаты сверх лимита объёма.
+     */
+    @Scheduled(fixedDelayString = "${converter.jobs.cleanup-interval:PT1M}")
+    public void evictExpired() {
+        Instant expiredBefore = Instant.now().minus(properties.getResultTtl());
+        for (ConversionJob job : jobs.values()) {
+            if (job.isFinished() && job.getFinishedAt().isBefore(expiredBefore)) {
+                evict(job);
+            }
+        }
+        evictOverLimit();
+    }
+
+    private void run(ConversionJob job) {
+        job.markRunning();
+        Path resultFile = storageDir.resolve(job.getId() + ".xlsx");
+        try (InputStream in = Files.newInputStream(job.getInputFile());
+             ConversionResult result = conversionService.prepare(
+                     ConversionRequest.stream(in, Files.size(job.getInputFile())).build())) {
+            try (OutputStream out = Files.newOutputStream(resultFile)) {
+                result.writeTo(out);
+            }
+            job.markDone(resultFile, Files.size(resultFile));
+        } catch (Exception e) {
+            log.debug("Conversion job {} failed", job.getId(), e);
+            deleteQuietly(resultFile);
+            job.markFailed(e.getMessage());
+        } finally {
+            deleteQuietly(job.getInputFile());
+        }
+        evictOverLimit();
+    }
+
+    private synchronized void evictOverLimit() {
+        long limit = properties.getMaxStorageSize().toBytes();
+        List<ConversionJob> done = jobs.values().stream()
+                .filter(job -> job.getStatus() == ConversionJobStatus.DONE)
+                .sorted(Comparator.comparing(ConversionJob::getFinishedAt))
+                .toList();
+        long total = done.stream().mapToLong(ConversionJob::getResultSize).sum();
+        for (ConversionJob job : done) {
+            if (total <= limit) {
+                break;
+            }
+            total -= job.getResultSize();
+            evict(job);
+        }
+    }
+
+    private void evict(ConversionJob job) {
+        jobs.remove(job.getId());
+        if (job.getResultFile() != null) {
+            deleteQuietly(job.getResultFile());
+        }
+    }
+
+    private void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.warn("Failed to delete {}", path, e);
+        }
+    }
+
+}
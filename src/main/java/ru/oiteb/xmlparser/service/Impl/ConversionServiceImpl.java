@@ -1,30 +1,88 @@
 package ru.oiteb.xmlparser.service.Impl;
 
-import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
-import ru.oiteb.xmlparser.entity.ProductData;
+import ru.oiteb.xmlparser.exception.ConversionOverloadedException;
 import ru.oiteb.xmlparser.exception.EmptyXmlFileException;
+import ru.oiteb.xmlparser.exception.ExcelGenerationException;
 import ru.oiteb.xmlparser.exception.InvalidXmlFileException;
+import ru.oiteb.xmlparser.exception.UploadTooLargeException;
+import ru.oiteb.xmlparser.metrics.ConversionMetrics;
+import ru.oiteb.xmlparser.service.ConversionRequest;
+import ru.oiteb.xmlparser.service.ConversionResult;
 import ru.oiteb.xmlparser.service.ConversionService;
-import ru.oiteb.xmlparser.service.exporter.ExcelExporter;
+import ru.oiteb.xmlparser.service.admission.ConversionAdmission;
+import ru.oiteb.xmlparser.service.cache.ConversionResultCache;
+import ru.oiteb.xmlparser.service.exporter.ExportFormat;
+import ru.oiteb.xmlparser.service.exporter.ProductExporter;
 import ru.oiteb.xmlparser.service.parser.XmlProductParser;
+import ru.oiteb.xmlparser.service.sorter.ProductSorter;
+import ru.oiteb.xmlparser.service.sorter.SortedProducts;
+import ru.oiteb.xmlparser.service.upload.ContentCoding;
+import ru.oiteb.xmlparser.service.upload.LimitedInputStream;
+import ru.oiteb.xmlparser.service.upload.UploadDecoder;
+import ru.oiteb.xmlparser.service.upload.UploadSpooler;
 
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
 import java.io.IOException;
-import java.util.Comparator;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.EnumMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 import static ru.oiteb.xmlparser.constants.ExceptionsDescriptions.*;
+import static ru.oiteb.xmlparser.metrics.ConversionMetrics.Stage.PARSE;
+import static ru.oiteb.xmlparser.metrics.ConversionMetrics.Stage.SORT;
 
 @Service
-@RequiredArgsConstructor
 public class ConversionServiceImpl implements ConversionService {
 
     private final XmlProductParser parser;
-    private final ExcelExporter exporter;
+    private final Map<ExportFormat, ProductExporter> exporters = new EnumMap<>(ExportFormat.class);
+    private final ProductSorter sorter;
+    private final ConversionResultCache cache;
+    private final ConversionAdmission admission;
+    private final UploadDecoder decoder;
+    private final UploadSpooler spooler;
+    private final ConversionMetrics metrics;
+
+    /**
+     * Создаёт сервис и раскладывает экспортеры по форматам, которые они выгружают.
+     *
+     * @param exporters экспортеры всех поддерживаемых форматов; формат определяется {@link ProductExporter#format()}
+     * @throws IllegalStateException если два экспортера объявляют один и тот же формат
+     */
+    public ConversionServiceImpl(XmlProductParser parser, List<ProductExporter> exporters, ProductSorter sorter,
+                                 ConversionResultCache cache, ConversionAdmission admission, UploadDecoder decoder,
+                                 UploadSpooler spooler, ConversionMetrics metrics) {
+        this.parser = parser;
+        for (ProductExporter exporter : exporters) {
+            ProductExporter previous = this.exporters.putIfAbsent(exporter.format(), exporter);
+            if (previous != null) {
+                throw new IllegalStateException("Формат " + exporter.format() + " объявлен двумя экспортерами: "
+                        + previous.getClass().getName() + " и " + exporter.getClass().getName());
+            }
+        }
+        this.sorter = sorter;
+        this.cache = cache;
+        this.admission = admission;
+        this.decoder = decoder;
+        this.spooler = spooler;
+        this.metrics = metrics;
+    }
 
     /**
      * Конвертирует XML-данные в формат XLSX и возвращает байтовое представление Excel-файла.
+     * <p>
+     * Метод держит весь документ в памяти; для отправки клиенту следует использовать
+     * {@link #prepare(ConversionRequest)}, который пишет XLSX напрямую в поток ответа.
+     * </p>
      *
      * @param xml загруженный XML-файл; не должен быть null или пустым
      * @return массив байтов XLSX-файла
@@ -33,20 +91,241 @@ public class ConversionServiceImpl implements ConversionService {
      */
     @Override
     public byte[] convert(MultipartFile xml) {
+        ConversionResult result = prepare(ConversionRequest.upload(xml).build());
+        try (ByteArrayOutputStream bos = new ByteArrayOutputStream()) {
+            result.writeTo(bos);
+            return bos.toByteArray();
+        } catch (IOException e) {
+            throw new ExcelGenerationException(e.getMessage());
+        }
+    }
+
+    /**
+     * Вычисляет отпечаток загруженного файла: SHA-256 от версии конвертера и содержимого.
+     * <p>
+     * Одинаковые файлы при одной версии конвертера дают одинаковый результат, поэтому отпечаток служит
+     * и ключом кэша результатов, и ETag ответа. Для форматов, отличных от XLSX, к отпечатку добавляется
+     * имя формата, чтобы выгрузки одного файла в разных форматах не совпадали.
+     * </p>
+     *
+     * @param xml    загруженный XML-файл; не должен быть null или пустым
+     * @param format формат выгрузки
+     * @return отпечаток
+     * @throws EmptyXmlFileException   если файл пуст
+     * @throws InvalidXmlFileException если файл не предоставлен или не может быть прочитан
+     */
+    @Override
+    public String fingerprint(MultipartFile xml, ExportFormat format) {
         if (xml == null) {
             throw new InvalidXmlFileException(INVALID_XML_FILE);
         }
         if (xml.isEmpty()) {
             throw new EmptyXmlFileException(EMPTY_XML_FILE);
         }
-        List<ProductData> products;
+        try (InputStream inputStream = xml.getInputStream()) {
+            String key = cache.keyOf(inputStream);
+            return format == ExportFormat.XLSX ? key : key + '-' + format.name().toLowerCase(Locale.ROOT);
+        } catch (IOException e) {
+            throw new InvalidXmlFileException(UNREADABLE_XML_FILE);
+        }
+    }
+
+    /**
+     * Разбирает документ и возвращает результат, который запишет его в формате запроса.
+     * <p>
+     * Если в запросе задан отпечаток, результат берётся из кэша, а при промахе сохраняется в кэш по мере записи.
+     * Перед разбором конвертация резервирует оценку нужной ей памяти в {@link ConversionAdmission}; для сжатого
+     * источника оценка строится по ожидаемому размеру после распаковки, а для потока неизвестной длины — по
+     * допустимому размеру документа. Резерв освобождается после записи или закрытия результата, или сразу
+     * при ошибке разбора.
+     * </p>
+     * <p>
+     * Загруженный файл читается напрямую из потока загрузки, без копирования в массив байтов; сжатая загрузка
+     * распаковывается на лету. Крупные несжатые файлы (от {@code converter.upload.spool.threshold} или от порога
+     * параллельного разбора) сохраняются во временный файл через {@link UploadSpooler} и отображаются в память:
+     * документ не копируется в кучу, а его участки можно разбирать одновременно. Файл удаляется сразу после разбора.
+     * Поток (тело запроса, файл фоновой задачи) разбирается по мере чтения, пока байты ещё поступают.
+     * </p>
+     *
+     * @param request источник, формат, сжатие и необязательный отпечаток
+     * @return результат конвертации, который запишет документ в переданный ему поток
+     * @throws EmptyXmlFileException         если документ пуст
+     * @throws InvalidXmlFileException       если файл не предоставлен, повреждён, не XML или не может быть прочитан
+     * @throws UploadTooLargeException       если распакованный документ превышает допустимый размер
+     * @throws ConversionOverloadedException если памяти или места под временные файлы для конвертации не хватает
+     */
+    @Override
+    public ConversionResult prepare(ConversionRequest request) {
+        String fingerprint = request.getFingerprint();
+        if (fingerprint == null) {
+            return prepareUncached(request);
+        }
+        return cache.get(fingerprint)
+                .orElseGet(() -> cache.cacheOnWrite(fingerprint, prepareUncached(request)));
+    }
+
+    private ConversionResult prepareUncached(ConversionRequest request) {
+        if (request.getStream() != null) {
+            return prepareStream(request.getStream(), request.getSize(), request.getFormat(), request.getCoding());
+        }
+        return prepareUpload(request.getUpload(), request.getFormat(), request.getCoding());
+    }
+
+    private ConversionResult prepareUpload(MultipartFile xml, ExportFormat format, ContentCoding coding) {
+        if (xml == null) {
+            throw new InvalidXmlFileException(INVALID_XML_FILE);
+        }
+        if (xml.isEmpty()) {
+            throw new EmptyXmlFileException(EMPTY_XML_FILE);
+        }
+        metrics.recordInputSize(xml.getSize());
+        return admitted(decoder.expectedSize(xml.getSize(), coding), () -> prepareAdmitted(xml, format, coding));
+    }
+
+    private ConversionResult prepareAdmitted(MultipartFile xml, ExportFormat format, ContentCoding coding) {
+        if (coding == ContentCoding.IDENTITY
+                && (spooler.shouldSpool(xml.getSize()) || parser.shouldParseInParallel(xml.getSize()))) {
+            return prepareSpooled(xml, format);
+        }
+        try (LimitedInputStream inputStream = decoder.decode(xml.getInputStream(), coding)) {
+            return sortAndExport(sorting -> parseLimited(inputStream, sorting), format);
+        } catch (IOException e) {
+            throw new InvalidXmlFileException(UNREADABLE_XML_FILE);
+        }
+    }
+
+    /**
+     * Разбирает поток, не копируя документ ни во временный файл, ни в массив байтов; поток закрывается
+     * после разбора.
+     */
+    private ConversionResult prepareStream(InputStream xml, long contentLength, ExportFormat format,
+                                           ContentCoding coding) {
+        if (contentLength == 0) {
+            throw new EmptyXmlFileException(EMPTY_XML_FILE);
+        }
+        if (contentLength > 0) {
+            metrics.recordInputSize(contentLength);
+        }
+        return admitted(decoder.expectedSize(contentLength, coding), () -> {
+            try (LimitedInputStream in = decoder.decode(xml, coding)) {
+                return sortAndExport(sorting -> parseLimited(in, sorting), format);
+            } catch (IOException e) {
+                throw new InvalidXmlFileException(UNREADABLE_XML_FILE);
+            }
+        });
+    }
+
+    /**
+     * Разбирает поток с ограничением размера; если разбор прерван из-за превышения лимита,
+     * ошибка парсера заменяется на {@link UploadTooLargeException}.
+     */
+    private void parseLimited(LimitedInputStream xml, ProductSorter.Session sorting) {
         try {
-            products = parser.parseXml(xml.getBytes());
+            parser.parseRows(xml, sorting);
+        } catch (RuntimeException e) {
+            if (xml.isExceeded()) {
+                throw new UploadTooLargeException(": " + DECOMPRESSED_SIZE_EXCEEDED);
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Резервирует память под конвертацию и выполняет её; резерв освобождается после записи или закрытия
+     * результата, или сразу, если подготовка завершилась ошибкой.
+     */
+    private ConversionResult admitted(long expectedSize, Supplier<ConversionResult> conversion) {
+        ConversionAdmission.Permit permit = admission.acquire(expectedSize);
+        try {
+            return ConversionResult.releasing(conversion.get(), permit::close);
+        } catch (RuntimeException e) {
+            permit.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Разбирает загрузку из временного файла: через отображение в память, а если файл больше 2 ГБ — потоком.
+     */
+    private ConversionResult prepareSpooled(MultipartFile xml, ExportFormat format) {
+        try (UploadSpooler.SpooledUpload upload = spooler.spool(xml)) {
+            if (upload.isMappable()) {
+                ByteBuffer buffer = upload.map();
+                return sortAndExport(sorting -> parser.parseRows(buffer, sorting), format);
+            }
+            try (LimitedInputStream in = decoder.decode(upload.openStream(), ContentCoding.IDENTITY)) {
+                return sortAndExport(sorting -> parseLimited(in, sorting), format);
+            }
         } catch (IOException e) {
             throw new InvalidXmlFileException(UNREADABLE_XML_FILE);
         }
-        products.sort(Comparator.comparingInt(ProductData::getIndexNum));
-        return exporter.generateExcelToBytes(products);
     }
 
-}
\ No newline at end of file
+    /**
+     * Разбирает документ в сессию сортировки и возвращает результат, который выгрузит продукты в формате
+     * {@code format}. Этапы разбора, сортировки и записи учитываются в {@link ConversionMetrics}. Временные файлы
+     * сортировки удаляются после записи или закрытия результата.
+     */
+    private ConversionResult sortAndExport(Consumer<ProductSorter.Session> parse, ExportFormat format) {
+        ProductExporter productExporter = exporterFor(format);
+        metrics.conversionStarted();
+        ProductSorter.Session sorting = sorter.openSession();
+        SortedProducts products;
+        try {
+            long start = metrics.start();
+            parse.accept(sorting);
+            metrics.record(PARSE, start);
+            start = metrics.start();
+            products = sorting.finish();
+            metrics.record(SORT, start);
+            metrics.recordProducts(products.size());
+        } finally {
+            sorting.close();
+            metrics.conversionFinished();
+        }
+        return ConversionResult.releasing(out -> {
+            metrics.conversionStarted();
+            try {
+                CountingOutputStream counting = new CountingOutputStream(out);
+                productExporter.write(products.rows(), counting);
+                metrics.recordOutputSize(counting.count);
+            } finally {
+                metrics.conversionFinished();
+            }
+        }, products::close);
+    }
+
+    private ProductExporter exporterFor(ExportFormat format) {
+        ProductExporter exporter = exporters.get(format);
+        if (exporter == null) {
+            throw new IllegalStateException("Нет экспортера для формата " + format);
+        }
+        return exporter;
+    }
+
+    /**
+     * Считает записанные байты; поток назначения не закрывает.
+     */
+    private static final class CountingOutputStream extends FilterOutputStream {
+
+        private long count;
+
+        private CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+
+    }
+
+}
@@ -0,0 +1,98 @@
+package ru.oiteb.xmlparser.service.Impl;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+import ru.oiteb.xmlparser.entity.ValidationReport;
+import ru.oiteb.xmlparser.exception.EmptyXmlFileException;
+import ru.oiteb.xmlparser.exception.InvalidXmlFileException;
+import ru.oiteb.xmlparser.exception.UploadTooLargeException;
+import ru.oiteb.xmlparser.service.ValidationService;
+import ru.oiteb.xmlparser.service.parser.XmlProductValidator;
+import ru.oiteb.xmlparser.service.upload.ContentCoding;
+import ru.oiteb.xmlparser.service.upload.LimitedInputStream;
+import ru.oiteb.xmlparser.service.upload.UploadDecoder;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import static ru.oiteb.xmlparser.constants.ExceptionsDescriptions.*;
+
+/**
+ * Проверка загруженного XML без конвертации.
+ * <p>
+ * Сжатая загрузка распаковывается на лету с тем же ограничением размера, что и при конвертации.
+ * Проверка занимает постоянный объём памяти независимо от размера документа, поэтому допуск по памяти
+ * ({@link ru.oiteb.xmlparser.service.admission.ConversionAdmission}) и кэш результатов не используются.
+ * </p>
+ */
+@Service
+@RequiredArgsConstructor
+public class ValidationServiceImpl implements ValidationService {
+
+    private final XmlProductValidator validator;
+    private final UploadDecoder decoder;
+
+    /**
+     * Проверяет загруженный XML-файл.
+     *
+     * @param xml    загруженный XML-файл; не должен быть null или пустым
+     * @param coding сжатие загрузки
+     * @return число продуктов и найденные нарушения
+     * @throws EmptyXmlFileException   если файл пуст
+     * @throws InvalidXmlFileException если файл не предоставлен или не может быть прочитан
+     * @throws UploadTooLargeException если распакованный документ превышает допустимый размер
+     */
+    @Override
+    public ValidationReport validate(MultipartFile xml, ContentCoding coding) {
+        if (xml == null) {
+            throw new InvalidXmlFileException(INVALID_XML_FILE);
+        }
+        if (xml.isEmpty()) {
+            throw new EmptyXmlFileException(EMPTY_XML_FILE);
+        }
+        try {
+            return validate(xml.getInputStream(), coding);
+        } catch (IOException e) {
+            throw new InvalidXmlFileException(UNREADABLE_XML_FILE);
+        }
+    }
+
+    /**
+     * Проверяет XML прямо из потока тела запроса, по мере его приёма.
+     *
+     * @param xml           поток тела запроса; закрывается после проверки
+     * @param contentLength длина тела в байтах или {@code -1}, если она неизвестна
+     * @param coding        сжатие тела запроса
+     * @return число продуктов и найденные нарушения
+     * @throws EmptyXmlFileException   если тело запроса пустое
+     * @throws InvalidXmlFileException если поток не может быть прочитан
+     * @throws UploadTooLargeException если документ превышает допустимый размер
+     */
+    @Override
+    public ValidationReport validate(InputStream xml, long contentLength, ContentCoding coding) {
+        if (contentLength == 0) {
+            throw new EmptyXmlFileException(EMPTY_XML_FILE);
+        }
+        try {
+            return validate(xml, coding);
+        } catch (IOException e) {
+            throw new InvalidXmlFileException(UNREADABLE_XML_FILE);
+        }
+    }
+
+    /**
+     * Проверяет поток с ограничением размера; если проверка прервана из-за превышения лимита, вместо отчёта
+     * о повреждённом документе выбрасывается {@link UploadTooLargeException}.
+     */
+    private ValidationReport validate(InputStream xml, ContentCoding coding) throws IOException {
+        try (InputStream raw = xml; LimitedInputStream in = decoder.decode(raw, coding)) {
+            ValidationReport report = validator.validate(in);
+            if (in.isExceeded()) {
+                throw new UploadTooLargeException(": " + DECOMPRESSED_SIZE_EXCEEDED);
+            }
+            return report;
+        }
+    }
+
+}
@@ -0,0 +1,41 @@
+package ru.oiteb.xmlparser.service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Результат, который освобождает ресурсы ровно один раз — после записи или при закрытии.
+ */
+final class ReleasingConversionResult implements ConversionResult {
+
+    private final ConversionResult result;
+    private final Runnable release;
+    private final AtomicBoolean released = new AtomicBoolean();
+
+    ReleasingConversionResult(ConversionResult result, Runnable release) {
+        this.result = result;
+        this.release = release;
+    }
+
+    @Override
+    public void writeTo(OutputStream out) throws IOException {
+        try {
+            result.writeTo(out);
+        } finally {
+            close();
+        }
+    }
+
+    @Override
+    public void close() {
+        if (released.compareAndSet(false, true)) {
+            try {
+                result.close();
+            } finally {
+                release.run();
+            }
+        }
+    }
+
+}
@@ -0,0 +1,15 @@
+package ru.oiteb.xmlparser.service;
+
+import org.springframework.web.multipart.MultipartFile;
+import ru.oiteb.xmlparser.entity.ValidationReport;
+import ru.oiteb.xmlparser.service.upload.ContentCoding;
+
+import java.io.InputStream;
+
+public interface ValidationService {
+
+    ValidationReport validate(MultipartFile xml, ContentCoding coding);
+
+    ValidationReport validate(InputStream xml, long contentLength, ContentCoding coding);
+
+}
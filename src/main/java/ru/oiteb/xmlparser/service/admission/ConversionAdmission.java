@@ -0,0 +1,205 @@
+package ru.oiteb.xmlparser.service.admission;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.BaseUnits;
+import org.springframework.stereotype.Component;
+import ru.oiteb.xmlparser.config.AdmissionProperties;
+import ru.oiteb.xmlparser.exception.ConversionOverloadedException;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static ru.oiteb.xmlparser.constants.ExceptionsDescriptions.CONVERSION_CAPACITY_EXCEEDED;
+
+/**
+ * Допуск конвертаций по памяти.
+ * <p>
+ * Перед конвертацией запрос резервирует оценку нужной ему памяти — размер загрузки, умноженный на
+ * {@code cost-factor}, но не меньше {@code min-cost} — из общего бюджета кучи. Если свободной части бюджета
+ * не хватает, запрос ждёт в ограниченной очереди не дольше {@code max-wait}; при заполненной очереди или по
+ * истечении ожидания он отклоняется с {@link ConversionOverloadedException} (503 с {@code Retry-After}).
+ * Очередь обслуживается по порядку поступления: пока в ней есть запросы, новые не обходят их, даже если
+ * помещаются в свободный остаток бюджета, поэтому крупные файлы не откладываются бесконечно.
+ * Оценка одной конвертации не превышает весь бюджет, поэтому на свободном сервере принимается любой файл,
+ * прошедший ограничение размера загрузки.
+ * </p>
+ * <p>
+ * Ожидание построено на {@link ReentrantLock}, а не на {@code synchronized}, чтобы ждущий виртуальный поток
+ * не удерживал поток-носитель.
+ * </p>
+ * <p>
+ * Метрики: {@code converter.admission.budget}, {@code converter.admission.reserved},
+ * {@code converter.admission.queued} и счётчик отказов {@code converter.admission.rejected}.
+ * </p>
+ */
+@Component
+public class ConversionAdmission {
+
+    private final AdmissionProperties properties;
+    private final long budget;
+    private final Counter rejected;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition released = lock.newCondition();
+    private final Deque<Object> waiters = new ArrayDeque<>();
+    private long reserved;
+
+    public ConversionAdmission(AdmissionProperties properties, MeterRegistry registry) {
+        this.properties = properties;
+        this.budget = properties.getHeapBudget() != null
+                ? properties.getHeapBudget().toBytes()
+                : (long) (Runtime.getRuntime().maxMemory() * properties.getHeapFraction());
+        Gauge.builder("converter.admission.budget", this, ConversionAdmission::budget)
+                .description("Память, доступная конвертациям")
+                .baseUnit(BaseUnits.BYTES)
+                .register(registry);
+        Gauge.builder("converter.admission.reserved", this, ConversionAdmission::reserved)
+                .description("Память, зарезервированная выполняющимися конвертациями")
+                .baseUnit(BaseUnits.BYTES)
+                .register(registry);
+        Gauge.builder("converter.admission.queued", this, ConversionAdmission::queued)
+                .description("Запросы, ожидающие освобождения памяти")
+                .register(registry);
+        this.rejected = Counter.builder("converter.admission.rejected")
+                .description("Запросы, отклонённые из-за нехватки памяти")
+                .register(registry);
+    }
+
+    /**
+     * Резервирует память для конвертации загрузки указанного размера, при необходимости дожидаясь её освобождения.
+     *
+     * @param inputSize размер загруженного файла в байтах
+     * @return разрешение, которое нужно закрыть после завершения конвертации
+     * @throws ConversionOverloadedException если очередь ожидания заполнена или память не освободилась
+     *                                       за {@code max-wait}
+     */
+    public Permit acquire(long inputSize) {
+        if (!properties.isEnabled()) {
+            return new Permit(0);
+        }
+        long cost = estimate(inputSize);
+        lock.lock();
+        try {
+            if (waiters.isEmpty() && reserved + cost <= budget) {
+                reserved += cost;
+                return new Permit(cost);
+            }
+            if (waiters.size() >= properties.getQueueCapacity()) {
+                throw reject();
+            }
+            Object ticket = new Object();
+            waiters.addLast(ticket);
+            try {
+                long remaining = properties.getMaxWait().toNanos();
+                while (waiters.peekFirst() != ticket || reserved + cost > budget) {
+                    if (remaining <= 0) {
+                        throw reject();
+                    }
+                    remaining = released.awaitNanos(remaining);
+                }
+                reserved += cost;
+                return new Permit(cost);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw reject();
+            } finally {
+                waiters.remove(ticket);
+                released.signalAll();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Оценивает память, которую займёт конвертация загрузки указанного размера.
+     */
+    public long estimate(long inputSize) {
+        long cost = (long) Math.ceil(inputSize * properties.getCostFactor());
+        return Math.min(budget, Math.max(properties.getMinCost().toBytes(), cost));
+    }
+
+    /**
+     * Принимаются ли новые запросы: очередь ожидания не заполнена.
+     */
+    public boolean isAccepting() {
+        return !properties.isEnabled() || queued() < properties.getQueueCapacity();
+    }
+
+    public long budget() {
+        return budget;
+    }
+
+    public long reserved() {
+        lock.lock();
+        try {
+            return reserved;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long available() {
+        return Math.max(0, budget - reserved());
+    }
+
+    public int queued() {
+        lock.lock();
+        try {
+            return waiters.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int queueCapacity() {
+        return properties.getQueueCapacity();
+    }
+
+    private ConversionOverloadedException reject() {
+        rejected.increment();
+        return new ConversionOverloadedException(": " + CONVERSION_CAPACITY_EXCEEDED,
+                Math.max(1, properties.getRetryAfter().toSeconds()));
+    }
+
+    private void release(long cost) {
+        lock.lock();
+        try {
+            reserved -= cost;
+            released.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Зарезервированная под конвертацию память; повторное закрытие ничего не делает.
+     */
+    public final class Permit implements AutoCloseable {
+
+        private final long cost;
+        private final AtomicBoolean closed = new AtomicBoolean();
+
+        private Permit(long cost) {
+            this.cost = cost;
+        }
+
+        public long cost() {
+            return cost;
+        }
+
+        @Override
+        public void close() {
+            if (cost > 0 && closed.compareAndSet(false, true)) {
+                release(cost);
+            }
+        }
+
+    }
+
+}
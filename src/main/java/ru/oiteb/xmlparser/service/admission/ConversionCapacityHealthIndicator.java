@@ -0,0 +1,34 @@
+package ru.oiteb.xmlparser.service.admission;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.health.contributor.Health;
+import org.springframework.boot.health.contributor.HealthIndicator;
+import org.springframework.stereotype.Component;
+
+/**
+ * Свободная ёмкость конвертаций для балансировщика ({@code /actuator/health/readiness}).
+ * <p>
+ * Пока очередь ожидания памяти не заполнена, экземпляр готов принимать запросы ({@code UP}); при заполненной
+ * очереди новые конвертации отклонялись бы с 503, поэтому экземпляр сообщает {@code OUT_OF_SERVICE}, и
+ * балансировщик направляет трафик на другие экземпляры.
+ * </p>
+ */
+@Component
+@RequiredArgsConstructor
+public class ConversionCapacityHealthIndicator implements HealthIndicator {
+
+    private final ConversionAdmission admission;
+
+    @Override
+    public Health health() {
+        Health.Builder builder = admission.isAccepting() ? Health.up() : Health.outOfService();
+        return builder
+                .withDetail("budget", admission.budget())
+                .withDetail("reserved", admission.reserved())
+                .withDetail("available", admission.available())
+                .withDetail("queued", admission.queued())
+                .withDetail("queueCapacity", admission.queueCapacity())
+                .build();
+    }
+
+}
@@ -0,0 +1,341 @@
+package ru.oiteb.xmlparser.service.cache;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.info.BuildProperties;
+import org.springframework.stereotype.Component;
+import ru.oiteb.xmlparser.config.ConversionCacheProperties;
+import ru.oiteb.xmlparser.config.ExcelExportProperties;
+import ru.oiteb.xmlparser.service.ConversionResult;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Кэш готовых результатов конвертации, адресуемый содержимым: ключ — SHA-256 от версии конвертера,
+ * настроек генерации XLSX ({@code converter.excel.*}) и байтов загруженного XML.
+ * <p>
+ * Версия конвертера — {@code converter.cache.version}, если она задана, иначе версия и время сборки из
+ * {@code META-INF/build-info.properties}: каждая новая сборка получает новые ключи, даже если версия в
+ * {@code pom.xml} не менялась.
+ * </p>
+ * <p>
+ * Результаты хранятся в памяти с вытеснением давно не запрошенных (LRU) по суммарному размеру
+ * {@code converter.cache.max-memory-size}. При включённом дисковом уровне каждый сохраняемый результат
+ * также пишется в {@code converter.cache.disk.dir}; промах в памяти проверяет диск и поднимает найденный
+ * результат обратно в память. Ошибки дискового уровня не прерывают конвертацию — результат просто не кэшируется.
+ * </p>
+ */
+@Slf4j
+@Component
+public class ConversionResultCache {
+
+    private static final String FILE_SUFFIX = ".bin";
+    private static final String UNKNOWN_BUILD = "dev";
+
+    private final ConversionCacheProperties properties;
+    private final ExcelExportProperties excel;
+    private final String buildVersion;
+
+    private final LinkedHashMap<String, byte[]> memory = new LinkedHashMap<>(16, 0.75f, true);
+    private final LinkedHashMap<String, Long> disk = new LinkedHashMap<>(16, 0.75f, true);
+    private long memorySize;
+    private long diskSize;
+
+    private Path diskDir;
+
+    /**
+     * @param properties настройки кэша
+     * @param excel      настройки генерации XLSX; входят в ключ кэша
+     * @param build      сведения о сборке; отсутствуют при запуске без {@code build-info.properties}
+     *                   (например, из IDE)
+     */
+    public ConversionResultCache(ConversionCacheProperties properties, ExcelExportProperties excel,
+                                 Optional<BuildProperties> build) {
+        this.properties = properties;
+        this.excel = excel;
+        this.buildVersion = build.map(info -> info.getVersion() + '@' + info.getTime()).orElse(UNKNOWN_BUILD);
+    }
+
+    /**
+     * Создаёт каталог дискового уровня и восстанавливает его содержимое, начиная с самых старых файлов.
+     */
+    @PostConstruct
+    public void init() throws IOException {
+        if (!properties.isEnabled() || !properties.getDisk().isEnabled()) {
+            return;
+        }
+        Path dir = properties.getDisk().getDir();
+        diskDir = dir != null ? dir : Path.of(System.getProperty("java.io.tmpdir"), "xmlparser-cache");
+        Files.createDirectories(diskDir);
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(diskDir, "*" + FILE_SUFFIX)) {
+            stream.forEach(files::add);
+        }
+        files.sort(Comparator.comparingLong(this::lastModified));
+        synchronized (this) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                registerOnDisk(name.substring(0, name.length() - FILE_SUFFIX.length()), file.toFile().length());
+            }
+        }
+    }
+
+    /**
+     * Вычисляет ключ кэша для загруженного документа. Поток читается до конца, но не закрывается.
+     *
+     * @param xml содержимое загруженного XML-файла
+     * @return SHA-256 от версии конвертера, настроек генерации XLSX и содержимого в шестнадцатеричном виде
+     * @throws IOException если поток не удалось прочитать
+     */
+    public String keyOf(InputStream xml) throws IOException {
+        MessageDigest digest = sha256();
+        digest.update(version().getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+        digest.update(excelSettings().getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+        byte[] buffer = new byte[64 * 1024];
+        int read;
+        while ((read = xml.read(buffer)) != -1) {
+            digest.update(buffer, 0, read);
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private String version() {
+        String version = properties.getVersion();
+        return version != null && !version.isBlank() ? version : buildVersion;
+    }
+
+    /**
+     * Настройки, от которых зависят байты XLSX: движок записи и параметры потокового режима.
+     */
+    private String excelSettings() {
+        ExcelExportProperties.Streaming streaming = excel.getStreaming();
+        return excel.getEngine() + ";" + streaming.getRowThreshold() + ";" + streaming.getRowAccessWindow()
+                + ";" + streaming.isCompressTempFiles() + ";" + streaming.isSharedStrings();
+    }
+
+    /**
+     * Ищет готовый результат по ключу.
+     *
+     * @param key ключ, полученный из {@link #keyOf(InputStream)}
+     * @return результат, который запишет закэшированный XLSX, или пустой {@link Optional} при промахе
+     */
+    public Optional<ConversionResult> get(String key) {
+        if (!properties.isEnabled()) {
+            return Optional.empty();
+        }
+        byte[] content = lookup(key);
+        if (content == null) {
+            return Optional.empty();
+        }
+        ConversionResult result = out -> out.write(content);
+        return Optional.of(result);
+    }
+
+    /**
+     * Оборачивает результат конвертации так, что записанный XLSX одновременно сохраняется в кэш.
+     * <p>
+     * Если результат превысил {@code converter.cache.max-entry-size} или запись завершилась ошибкой,
+     * в кэш ничего не попадает.
+     * </p>
+     *
+     * @param key    ключ, под которым сохраняется результат
+     * @param result исходный результат конвертации
+     * @return результат, пишущий те же байты в переданный поток и в кэш; закрытие закрывает исходный результат
+     */
+    public ConversionResult cacheOnWrite(String key, ConversionResult result) {
+        if (!properties.isEnabled()) {
+            return result;
+        }
+        return ConversionResult.releasing(out -> {
+            CapturingOutputStream capture = new CapturingOutputStream(out, properties.getMaxEntrySize().toBytes());
+            result.writeTo(capture);
+            if (!capture.isOverflowed()) {
+                put(key, capture.toByteArray());
+            }
+        }, result::close);
+    }
+
+    /**
+     * Сохраняет результат в кэш.
+     *
+     * @param key     ключ результата
+     * @param content содержимое XLSX
+     */
+    public void put(String key, byte[] content) {
+        if (!properties.isEnabled() || content.length > properties.getMaxEntrySize().toBytes()) {
+            return;
+        }
+        if (diskDir != null) {
+            writeToDisk(key, content);
+        }
+        putInMemory(key, content);
+    }
+
+    private byte[] lookup(String key) {
+        synchronized (this) {
+            byte[] content = memory.get(key);
+            if (content != null || diskDir == null || !disk.containsKey(key)) {
+                return content;
+            }
+        }
+        byte[] content = readFromDisk(key);
+        if (content != null) {
+            putInMemory(key, content);
+        }
+        return content;
+    }
+
+    private synchronized void putInMemory(String key, byte[] content) {
+        byte[] previous = memory.put(key, content);
+        memorySize += content.length - (previous != null ? previous.length : 0);
+        long limit = properties.getMaxMemorySize().toBytes();
+        Iterator<Map.Entry<String, byte[]>> eldest = memory.entrySet().iterator();
+        while (memorySize > limit && eldest.hasNext()) {
+            memorySize -= eldest.next().getValue().length;
+            eldest.remove();
+        }
+    }
+
+    private void writeToDisk(String key, byte[] content) {
+        Path file = diskDir.resolve(key + FILE_SUFFIX);
+        try {
+            Path temp = Files.createTempFile(diskDir, key, ".tmp");
+            try {
+                Files.write(temp, content);
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        } catch (IOException e) {
+            log.warn("Failed to write cached result {}", file, e);
+            return;
+        }
+        List<String> evicted;
+        synchronized (this) {
+            evicted = registerOnDisk(key, content.length);
+        }
+        evicted.forEach(evictedKey -> deleteQuietly(diskDir.resolve(evictedKey + FILE_SUFFIX)));
+    }
+
+    /**
+     * Учитывает файл в дисковом уровне и возвращает ключи вытесненных файлов, которые нужно удалить.
+     */
+    private List<String> registerOnDisk(String key, long size) {
+        Long previous = disk.put(key, size);
+        diskSize += size - (previous != null ? previous : 0);
+        long limit = properties.getDisk().getMaxSize().toBytes();
+        List<String> evicted = new ArrayList<>();
+        Iterator<Map.Entry<String, Long>> eldest = disk.entrySet().iterator();
+        while (diskSize > limit && eldest.hasNext()) {
+            Map.Entry<String, Long> entry = eldest.next();
+            if (entry.getKey().equals(key)) {
+                continue;
+            }
+            diskSize -= entry.getValue();
+            evicted.add(entry.getKey());
+            eldest.remove();
+        }
+        return evicted;
+    }
+
+    private byte[] readFromDisk(String key) {
+        Path file = diskDir.resolve(key + FILE_SUFFIX);
+        try {
+            return Files.readAllBytes(file);
+        } catch (IOException e) {
+            synchronized (this) {
+                Long size = disk.remove(key);
+                diskSize -= size != null ? size : 0;
+            }
+            return null;
+        }
+    }
+
+    private long lastModified(Path file) {
+        return file.toFile().lastModified();
+    }
+
+    private void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.warn("Failed to delete {}", path, e);
+        }
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Поток, который пишет данные дальше и параллельно копит их в памяти до заданного предела.
+     */
+    private static final class CapturingOutputStream extends FilterOutputStream {
+
+        private final long limit;
+        private ByteArrayOutputStream captured = new ByteArrayOutputStream();
+
+        private CapturingOutputStream(OutputStream out, long limit) {
+            super(out);
+            this.limit = limit;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            if (capture(1)) {
+                captured.write(b);
+            }
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            if (capture(len)) {
+                captured.write(b, off, len);
+            }
+        }
+
+        private boolean capture(int len) {
+            if (captured != null && captured.size() + (long) len > limit) {
+                captured = null;
+            }
+            return captured != null;
+        }
+
+        private boolean isOverflowed() {
+            return captured == null;
+        }
+
+        private byte[] toByteArray() {
+            return captured.toByteArray();
+        }
+
+    }
+
+}
@@ -0,0 +1,195 @@
+package ru.oiteb.xmlparser.service.exporter;
+
+import org.apache.poi.ss.usermodel.Sheet;
+
+/**
+ * Оценщик ширины колонок листа Excel, заменяющий {@link Sheet#autoSizeColumn(int)}.
+ * <p>
+ * {@code autoSizeColumn} после заполнения листа заново проходит по всем строкам и измеряет текст
+ * через метрики шрифтов AWT, а в потоковом режиме видит только строки из окна в памяти.
+ * Оценщик запоминает максимальную ширину каждой колонки прямо во время записи строк,
+ * а ширины выставляются один раз в конце через {@link #applyTo(Sheet)}.
+ * </p>
+ * <p>
+ * Ширина символа берётся из таблицы, приближённой к метрикам шрифта Calibri 11 (шрифт книги по умолчанию),
+ * в единицах 1/256 ширины символа {@code 0} — тех же, что принимает {@link Sheet#setColumnWidth(int, int)}.
+ * Учитываются узкие и широкие латинские буквы, кириллица и полноширинные символы (CJK, Hangul).
+ * Как и {@code autoSizeColumn}, к ширине самого длинного значения добавляется отступ в один символ {@code 0}.
+ * </p>
+ */
+class ColumnWidthEstimator {
+
+    /**
+     * Ширина символа {@code 0}, относительно которой Excel задаёт ширину колонок.
+     */
+    private static final int CHAR_WIDTH = 256;
+
+    /**
+     * Максимальная ширина колонки, допустимая в Excel (255 символов).
+     */
+    private static final int MAX_COLUMN_WIDTH = 255 * CHAR_WIDTH;
+
+    /**
+     * Отступ, который {@code autoSizeColumn} добавляет к тексту ячейки, чтобы он не упирался в границу колонки.
+     */
+    private static final int PADDING = CHAR_WIDTH;
+
+    private static final int NARROW = 115;
+    private static final int SEMI_NARROW = 155;
+    private static final int LATIN_LOWER = 243;
+    private static final int LATIN_UPPER = 307;
+    private static final int CYRILLIC_LOWER = 256;
+    private static final int CYRILLIC_UPPER = 320;
+    private static final int BROAD_LOWER = 333;
+    private static final int BROAD_UPPER = 400;
+    private static final int FULL_WIDTH = 2 * CHAR_WIDTH;
+
+    private final int[] maxWidths;
+
+    ColumnWidthEstimator(int columns) {
+        this.maxWidths = new int[columns];
+    }
+
+    /**
+     * Учитывает текстовое значение ячейки.
+     *
+     * @param column номер колонки
+     * @param value  значение ячейки; {@code null} считается пустой ячейкой
+     */
+    void accept(int column, String value) {
+        if (value == null || value.isEmpty()) {
+            return;
+        }
+        int width = measure(value);
+        if (width > maxWidths[column]) {
+            maxWidths[column] = width;
+        }
+    }
+
+    /**
+     * Учитывает числовое значение ячейки, отображаемое в формате «Общий».
+     *
+     * @param column номер колонки
+     * @param value  значение ячейки
+     */
+    void accept(int column, long value) {
+        int digits = value < 0 ? 2 : 1;
+        for (long rest = Math.abs(value / 10); rest > 0; rest /= 10) {
+            digits++;
+        }
+        int width = digits * CHAR_WIDTH;
+        if (width > maxWidths[column]) {
+            maxWidths[column] = width;
+        }
+    }
+
+    /**
+     * Выставляет накопленные ширины всем колонкам листа. Колонки без значений остаются с шириной по умолчанию.
+     *
+     * @param sheet лист, строки которого передавались в оценщик
+     */
+    void applyTo(Sheet sheet) {
+        for (int i = 0; i < maxWidths.length; i++) {
+            if (maxWidths[i] > 0) {
+                sheet.setColumnWidth(i, columnWidth(i));
+            }
+        }
+    }
+
+    int getWidth(int column) {
+        return maxWidths[column];
+    }
+
+    /**
+     * @return ширина колонки с отступом, ограниченная максимумом Excel; 0, если в колонке не было значений
+     */
+    int columnWidth(int column) {
+        if (maxWidths[column] == 0) {
+            return 0;
+        }
+        return Math.min(maxWidths[column] + PADDING, MAX_COLUMN_WIDTH);
+    }
+
+    int columns() {
+        return maxWidths.length;
+    }
+
+    /**
+     * Вычисляет ширину самой длинной строки текста (по переводам строк) в единицах 1/256 символа.
+     */
+    static int measure(String value) {
+        int max = 0;
+        int line = 0;
+        for (int i = 0; i < value.length(); ) {
+            int codePoint = value.codePointAt(i);
+            i += Character.charCount(codePoint);
+            if (codePoint == '\n') {
+                max = Math.max(max, line);
+                line = 0;
+            } else if (codePoint != '\r') {
+                line += charWidth(codePoint);
+            }
+        }
+        return Math.max(max, line);
+    }
+
+    private static int charWidth(int c) {
+        if (c < 0x80) {
+            return asciiWidth(c);
+        }
+        if (c >= 0x0400 && c <= 0x04FF) {
+            return cyrillicWidth(c);
+        }
+        return isFullWidth(c) ? FULL_WIDTH : CHAR_WIDTH;
+    }
+
+    private static int asciiWidth(int c) {
+        if (c >= '0' && c <= '9') {
+            return CHAR_WIDTH;
+        }
+        switch (c) {
+            case 'i', 'l', 'j', 'I', '.', ',', ':', ';', '\'', '|', '!':
+                return NARROW;
+            case ' ', 't', 'f', 'r', '(', ')', '[', ']', '-', '/':
+                return SEMI_NARROW;
+            case 'm', 'w':
+                return BROAD_LOWER;
+            case 'M', 'W', '@', '%':
+                return BROAD_UPPER;
+            default:
+                break;
+        }
+        if (c >= 'a' && c <= 'z') {
+            return LATIN_LOWER;
+        }
+        if (c >= 'A' && c <= 'Z') {
+            return LATIN_UPPER;
+        }
+        return CHAR_WIDTH;
+    }
+
+    private static int cyrillicWidth(int c) {
+        switch (c) {
+            case 'ж', 'ш', 'щ', 'ю', 'м', 'ф', 'ы':
+                return BROAD_LOWER;
+            case 'Ж', 'Ш', 'Щ', 'Ю', 'М', 'Ф', 'Ы':
+                return BROAD_UPPER;
+            default:
+                break;
+        }
+        boolean upper = (c >= 0x0400 && c <= 0x042F) || ((c >= 0x0460 && c <= 0x04FF) && (c & 1) == 0);
+        return upper ? CYRILLIC_UPPER : CYRILLIC_LOWER;
+    }
+
+    private static boolean isFullWidth(int c) {
+        return (c >= 0x1100 && c <= 0x115F)
+                || (c >= 0x2E80 && c <= 0xA4CF)
+                || (c >= 0xAC00 && c <= 0xD7A3)
+                || (c >= 0xF900 && c <= 0xFAFF)
+                || (c >= 0xFE30 && c <= 0xFE4F)
+                || (c >= 0xFF00 && c <= 0xFF60)
+                || (c >= 0xFFE0 && c <= 0xFFE6)
+                || (c >= 0x20000 && c <= 0x3FFFD);
+    }
+
+}
@@ -0,0 +1,141 @@
+package ru.oiteb.xmlparser.service.exporter;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import ru.oiteb.xmlparser.constants.ExcelConstants;
+import ru.oiteb.xmlparser.entity.ProductField;
+import ru.oiteb.xmlparser.entity.ProductRow;
+import ru.oiteb.xmlparser.exception.ProductExportException;
+import ru.oiteb.xmlparser.metrics.ConversionMetrics;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Экспортер продуктов в CSV (RFC 4180, UTF-8, разделитель строк {@code CRLF}).
+ * <p>
+ * Первая строка содержит заголовки {@link ExcelConstants#HEADERS}, далее по строке на продукт в том же порядке
+ * колонок. Значения, содержащие запятую, кавычку или перевод строки, заключаются в кавычки.
+ * Строки пишутся в поток по мере обхода коллекции, поэтому документ целиком в памяти не собирается.
+ * </p>
+ */
+@Component
+@RequiredArgsConstructor
+public class CsvExporter implements ProductExporter {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final char SEPARATOR = ',';
+    private static final char QUOTE = '"';
+    private static final String LINE_SEPARATOR = "\r\n";
+
+    private final ConversionMetrics metrics;
+
+    @Override
+    public ExportFormat format() {
+        return ExportFormat.CSV;
+    }
+
+    /**
+     * Записывает продукты в CSV. Время записи учитывается как этап {@link ConversionMetrics.Stage#WRITE}.
+     *
+     * @param products данные о продуктах в порядке строк; коллекция обходится один раз
+     * @param out      поток, в который пишется CSV; не закрывается методом
+     * @throws ProductExportException если запись в поток завершилась ошибкой
+     */
+    @Override
+    public void write(Collection<? extends ProductRow> products, OutputStream out) {
+        long start = metrics.start();
+        try {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), BUFFER_SIZE);
+            String[] headers = ExcelConstants.HEADERS;
+            for (int i = 0; i < headers.length; i++) {
+                writeValue(writer, i, headers[i]);
+            }
+            writer.write(LINE_SEPARATOR);
+            for (ProductRow p : products) {
+                if (p.hasIndexNum()) {
+                    writer.write(Integer.toString(p.indexNum()));
+                }
+                writeValue(writer, 1, p.get(ProductField.UNIT));
+                writeValue(writer, 2, p.get(ProductField.OKPD2));
+                writeValue(writer, 3, p.get(ProductField.NKMI));
+                writeValue(writer, 4, p.get(ProductField.MANUFACTURER));
+                writeValue(writer, 5, p.get(ProductField.COUNTRY));
+                writeValue(writer, 6, p.get(ProductField.CERT_NUMBER));
+                writeValue(writer, 7, p.get(ProductField.FULL_NAME));
+                writeValue(writer, 8, p.get(ProductField.TRADE_MARK));
+                writer.write(LINE_SEPARATOR);
+            }
+            writer.flush();
+        } catch (IOException e) {
+            throw new ProductExportException(e.getMessage());
+        }
+        metrics.record(ConversionMetrics.Stage.WRITE, start);
+    }
+
+    /**
+     * Записывает произвольную таблицу строк в CSV с теми же правилами экранирования, что и для продуктов.
+     *
+     * @param rows строки таблицы; первая строка обычно содержит заголовки
+     * @param out  поток, в который пишется CSV; не закрывается методом
+     * @throws ProductExportException если запись в поток завершилась ошибкой
+     */
+    public void writeRows(List<String[]> rows, OutputStream out) {
+        try {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), BUFFER_SIZE);
+            for (String[] values : rows) {
+                for (int i = 0; i < values.length; i++) {
+                    writeValue(writer, i, values[i]);
+                }
+                writer.write(LINE_SEPARATOR);
+            }
+            writer.flush();
+        } catch (IOException e) {
+            throw new ProductExportException(e.getMessage());
+        }
+    }
+
+    /**
+     * Записывает значение колонки, предваряя его разделителем для всех колонок, кроме первой.
+     */
+    private void writeValue(Writer writer, int column, String value) throws IOException {
+        if (column > 0) {
+            writer.write(SEPARATOR);
+        }
+        if (value == null || value.isEmpty()) {
+            return;
+        }
+        if (!needsQuoting(value)) {
+            writer.write(value);
+            return;
+        }
+        writer.write(QUOTE);
+        int from = 0;
+        for (int i = 0; i < value.length(); i++) {
+            if (value.charAt(i) == QUOTE) {
+                writer.write(value, from, i + 1 - from);
+                writer.write(QUOTE);
+                from = i + 1;
+            }
+        }
+        writer.write(value, from, value.length() - from);
+        writer.write(QUOTE);
+    }
+
+    private boolean needsQuoting(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == SEPARATOR || c == QUOTE || c == '\n' || c == '\r') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+}
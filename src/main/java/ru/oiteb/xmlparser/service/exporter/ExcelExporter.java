@@ -1,22 +1,38 @@
 package ru.oiteb.xmlparser.service.exporter;
 
-import org.apache.poi.xssf.usermodel.XSSFRow;
-import org.apache.poi.xssf.usermodel.XSSFSheet;
+import lombok.RequiredArgsConstructor;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.ss.util.WorkbookUtil;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
 import org.apache.poi.xssf.usermodel.XSSFWorkbook;
 import org.springframework.stereotype.Component;
+import ru.oiteb.xmlparser.config.ExcelExportProperties;
 import ru.oiteb.xmlparser.constants.ExcelConstants;
 import ru.oiteb.xmlparser.entity.ProductData;
+import ru.oiteb.xmlparser.entity.ProductField;
+import ru.oiteb.xmlparser.entity.ProductRow;
 import ru.oiteb.xmlparser.exception.ExcelGenerationException;
+import ru.oiteb.xmlparser.metrics.ConversionMetrics;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
 
 /**
  * Экспортер данных о продуктах в формат Microsoft Excel (.xlsx).
  * <p>
- * Класс отвечает за создание XLSX-документа на основе списка объектов {@link ProductData},
- * используя библиотеку Apache POI. Генерация происходит полностью в памяти — файл на диск не записывается.
+ * Класс отвечает за создание XLSX-документа на основе строк {@link ProductRow} (например, объектов
+ * {@link ProductData}), используя библиотеку Apache POI. Файл на диск не записывается: документ либо сериализуется в массив байтов,
+ * либо пишется напрямую в переданный выходной поток.
  * </p>
  * <p>
  * Структура документа:
@@ -30,9 +46,37 @@ import java.util.List;
  * Данный компонент предназначен для использования в связке с {@link ru.oiteb.xmlparser.service.ConversionService}
  * и не содержит логики валидации входных данных — предполагается, что список продуктов уже прошёл проверку.
  * </p>
+ * <p>
+ * Небольшие списки собираются в обычной {@link XSSFWorkbook}. Если строк больше, чем
+ * {@code converter.excel.streaming.row-threshold}, используется {@link SXSSFWorkbook}: в памяти держится
+ * только окно из последних строк, остальные сбрасываются во временные файлы, которые удаляются после записи.
+ * </p>
+ * <p>
+ * При {@code converter.excel.engine: direct} объектная модель POI не используется: строки пишутся готовым XML
+ * через {@link XlsxWriter}. Содержимое книги то же, но без объектов строк и ячеек на каждое значение.
+ * </p>
  */
 @Component
-public class ExcelExporter {
+@RequiredArgsConstructor
+public class ExcelExporter implements ProductExporter {
+
+    private static final int MAX_SHEET_NAME_LENGTH = 31;
+
+    private final ExcelExportProperties properties;
+    private final ConversionMetrics metrics;
+
+    @Override
+    public ExportFormat format() {
+        return ExportFormat.XLSX;
+    }
+
+    /**
+     * Записывает продукты в поток в виде XLSX-файла; то же, что {@link #writeExcel(Collection, OutputStream)}.
+     */
+    @Override
+    public void write(Collection<? extends ProductRow> products, OutputStream out) {
+        writeExcel(products, out);
+    }
 
     /**
      * Генерирует Excel-файл в формате .xlsx и возвращает его как массив байтов.
@@ -52,55 +96,295 @@ public class ExcelExporter {
      * (рабочая книга и поток). При возникновении ошибки исключение оборачивается
      * в {@link ExcelGenerationException} с сохранением первопричины.
      */
-    public byte[] generateExcelToBytes(List<ProductData> products) {
-        try (XSSFWorkbook workbook = new XSSFWorkbook();
-             ByteArrayOutputStream bos = new ByteArrayOutputStream()) {
-            createSheet(workbook, products);
-            workbook.write(bos);
+    public byte[] generateExcelToBytes(List<? extends ProductRow> products) {
+        try (ByteArrayOutputStream bos = new ByteArrayOutputStream()) {
+            writeExcel(products, bos);
             return bos.toByteArray();
         } catch (IOException e) {
             throw new ExcelGenerationException(e.getMessage());
         }
     }
 
+    /**
+     * Генерирует Excel-файл в формате .xlsx и записывает его напрямую в выходной поток.
+     * <p>
+     * В отличие от {@link #generateExcelToBytes(List)} не создаёт промежуточный массив байтов:
+     * сериализованная книга сразу уходит в переданный поток (например, в поток HTTP-ответа).
+     * </p>
+     *
+     * @param products данные о продуктах для экспорта в порядке строк; не должны быть {@code null}.
+     *                 Коллекция обходится один раз, поэтому может читать продукты с диска и переиспользовать
+     *                 строки (см. {@link ru.oiteb.xmlparser.service.sorter.SortedProducts#rows()})
+     * @param out      поток, в который записывается XLSX-файл; не закрывается методом
+     * @throws ExcelGenerationException если возникла ошибка при генерации или записи Excel-документа
+     */
+    public void writeExcel(Collection<? extends ProductRow> products, OutputStream out) {
+        if (properties.getEngine() == ExcelExportProperties.Engine.DIRECT) {
+            writeDirectExcel(products.size(),
+                    (xlsx, spool) -> writeSheet(xlsx, ExcelConstants.sheetName, products, spool), out);
+            return;
+        }
+        writeWorkbook(products.size(), workbook -> createSheet(workbook, ExcelConstants.sheetName, products), out);
+    }
+
+    /**
+     * Генерирует одну книгу, в которой каждому набору продуктов соответствует отдельный лист, и записывает её
+     * в выходной поток.
+     * <p>
+     * Листы создаются в порядке обхода {@code sheets}; имена приводятся к допустимым в Excel
+     * (не длиннее 31 символа, без {@code []:*?/\}) и при совпадении дополняются номером.
+     * Если передана сводка, она выводится первым листом: первая строка сводки — заголовки.
+     * Потоковый режим выбирается по суммарному числу строк всех листов.
+     * </p>
+     *
+     * @param sheets      имена листов и продукты для них; каждая коллекция обходится один раз
+     * @param summaryName имя листа сводки
+     * @param summary     строки сводки или {@code null}, если лист сводки не нужен
+     * @param out         поток, в который записывается XLSX-файл; не закрывается методом
+     * @throws ExcelGenerationException если возникла ошибка при генерации или записи Excel-документа
+     */
+    public void writeExcel(Map<String, ? extends Collection<? extends ProductRow>> sheets, String summaryName,
+                           List<String[]> summary, OutputStream out) {
+        long rows = sheets.values().stream().mapToLong(Collection::size).sum();
+        if (properties.getEngine() == ExcelExportProperties.Engine.DIRECT) {
+            writeDirectExcel(rows, (xlsx, spool) -> {
+                Set<String> names = new HashSet<>();
+                if (summary != null) {
+                    writeTableSheet(xlsx, uniqueSheetName(summaryName, names), summary, spool);
+                }
+                for (Map.Entry<String, ? extends Collection<? extends ProductRow>> sheet : sheets.entrySet()) {
+                    writeSheet(xlsx, uniqueSheetName(sheet.getKey(), names), sheet.getValue(), spool);
+                }
+            }, out);
+            return;
+        }
+        writeWorkbook(rows, workbook -> {
+            Set<String> names = new HashSet<>();
+            if (summary != null) {
+                createTableSheet(workbook, uniqueSheetName(summaryName, names), summary);
+            }
+            sheets.forEach((name, products) -> createSheet(workbook, uniqueSheetName(name, names), products));
+        }, out);
+    }
+
+    /**
+     * Выбирает реализацию книги по числу строк и записывает в поток книгу, заполненную {@code build}.
+     */
+    private void writeWorkbook(long rows, Consumer<Workbook> build, OutputStream out) {
+        if (rows > properties.getStreaming().getRowThreshold()) {
+            writeStreamingExcel(build, out);
+            return;
+        }
+        try (XSSFWorkbook workbook = new XSSFWorkbook()) {
+            buildAndWrite(workbook, build, out);
+        } catch (IOException e) {
+            throw new ExcelGenerationException(e.getMessage());
+        }
+    }
+
+    /**
+     * Генерирует Excel-файл в потоковом режиме {@link SXSSFWorkbook}.
+     * <p>
+     * Объём памяти под строки листа ограничен окном из {@code row-access-window} строк. При включённом
+     * {@code shared-strings} все различные значения книги собираются в таблицу общих строк, которая держится
+     * в памяти до конца записи, — для больших книг с уникальными наименованиями эта настройка не подходит.
+     * </p>
+     *
+     * @param build заполнение книги листами
+     * @param out   поток, в который записывается XLSX-файл; не закрывается методом
+     * @throws ExcelGenerationException если возникла ошибка при генерации или записи Excel-документа
+     * @implNote Временные файлы удаляются через {@link SXSSFWorkbook#dispose()} в блоке {@code finally},
+     * в том числе при ошибке записи.
+     */
+    private void writeStreamingExcel(Consumer<Workbook> build, OutputStream out) {
+        ExcelExportProperties.Streaming streaming = properties.getStreaming();
+        try (SXSSFWorkbook workbook = new SXSSFWorkbook(null, streaming.getRowAccessWindow(),
+                streaming.isCompressTempFiles(), streaming.isSharedStrings())) {
+            try {
+                buildAndWrite(workbook, build, out);
+            } finally {
+                workbook.dispose();
+            }
+        } catch (IOException e) {
+            throw new ExcelGenerationException(e.getMessage());
+        }
+    }
+
+    /**
+     * Заполняет книгу и сериализует её в поток, замеряя оба этапа
+     * ({@link ConversionMetrics.Stage#BUILD} и {@link ConversionMetrics.Stage#WRITE}).
+     */
+    private void buildAndWrite(Workbook workbook, Consumer<Workbook> build, OutputStream out) throws IOException {
+        long start = metrics.start();
+        build.accept(workbook);
+        metrics.record(ConversionMetrics.Stage.BUILD, start);
+        start = metrics.start();
+        workbook.write(out);
+        metrics.record(ConversionMetrics.Stage.WRITE, start);
+    }
+
+    /**
+     * Генерирует Excel-файл через {@link XlsxWriter}, замеряя заполнение листов
+     * ({@link ConversionMetrics.Stage#BUILD}) и сборку пакета ({@link ConversionMetrics.Stage#WRITE}).
+     * <p>
+     * Если строк больше {@code converter.excel.streaming.row-threshold}, строки листов накапливаются
+     * во временных файлах, а не в памяти; файлы удаляются после записи, в том числе при ошибке.
+     * </p>
+     *
+     * @param rows  суммарное число строк с данными
+     * @param build заполнение книги листами
+     * @param out   поток, в который записывается XLSX-файл; не закрывается методом
+     * @throws ExcelGenerationException если возникла ошибка при генерации или записи Excel-документа
+     */
+    private void writeDirectExcel(long rows, SheetWriter build, OutputStream out) {
+        ExcelExportProperties.Streaming streaming = properties.getStreaming();
+        boolean spool = rows > streaming.getRowThreshold();
+        try (XlsxWriter xlsx = new XlsxWriter(streaming.isSharedStrings(), streaming.isCompressTempFiles())) {
+            long start = metrics.start();
+            build.write(xlsx, spool);
+            metrics.record(ConversionMetrics.Stage.BUILD, start);
+            start = metrics.start();
+            xlsx.write(out);
+            metrics.record(ConversionMetrics.Stage.WRITE, start);
+        } catch (IOException e) {
+            throw new ExcelGenerationException(e.getMessage());
+        }
+    }
+
     /**
      * Создаёт и заполняет лист Excel данными о продуктах.
      * <p>
      * Метод формирует структуру листа: сначала заголовки, затем строки с данными.
-     * Каждая ячейка заполняется соответствующим полем из {@link ProductData}.
+     * Каждая ячейка заполняется соответствующим полем из {@link ProductRow}.
      * Порядок колонок строго соответствует массиву {@link ExcelConstants#HEADERS}.
+     * Ширина колонок накапливается {@link ColumnWidthEstimator} по ходу записи и выставляется один раз в конце,
+     * без повторного прохода по строкам.
      * </p>
      *
      * @param workbook рабочая книга Excel, в которую будет добавлен лист
+     * @param name     имя листа
      * @param products список продуктов для экспорта (не null)
      * @implNote Метод не проверяет наличие обязательных полей — предполагается,
-     * что все данные уже валидны. Пустые строки или null-значения
+     * что все данные уже валидны. Пустые строки или null-значения, как и отсутствующий {@code indexNum},
      * будут записаны как пустые ячейки.
      */
-    private void createSheet(XSSFWorkbook workbook, List<ProductData> products) {
-        XSSFSheet sheet = workbook.createSheet(ExcelConstants.sheetName);
+    private void createSheet(Workbook workbook, String name, Collection<? extends ProductRow> products) {
+        Sheet sheet = workbook.createSheet(name);
         String[] headers = ExcelConstants.HEADERS;
-        XSSFRow headerRow = sheet.createRow(0);
+        ColumnWidthEstimator widths = new ColumnWidthEstimator(headers.length);
+        Row headerRow = sheet.createRow(0);
         for (int i = 0; i < headers.length; i++) {
-            headerRow.createCell(i).setCellValue(headers[i]);
+            setCell(headerRow, i, headers[i], widths);
         }
-        for (int i = 0; i < products.size(); i++) {
-            ProductData p = products.get(i);
-            XSSFRow row = sheet.createRow(i + 1);
-            row.createCell(0).setCellValue(p.getIndexNum());
-            row.createCell(1).setCellValue(p.getUnit());
-            row.createCell(2).setCellValue(p.getOkpd2());
-            row.createCell(3).setCellValue(p.getNkmi());
-            row.createCell(4).setCellValue(p.getManufacturer());
-            row.createCell(5).setCellValue(p.getCountry());
-            row.createCell(6).setCellValue(p.getCertNumber());
-            row.createCell(7).setCellValue(p.getFullName());
-            row.createCell(8).setCellValue(p.getTradeMark());
+        int rowNum = 1;
+        for (ProductRow p : products) {
+            Row row = sheet.createRow(rowNum++);
+            if (p.hasIndexNum()) {
+                row.createCell(0).setCellValue(p.indexNum());
+                widths.accept(0, p.indexNum());
+            } else {
+                row.createCell(0);
+            }
+            setCell(row, 1, p.get(ProductField.UNIT), widths);
+            setCell(row, 2, p.get(ProductField.OKPD2), widths);
+            setCell(row, 3, p.get(ProductField.NKMI), widths);
+            setCell(row, 4, p.get(ProductField.MANUFACTURER), widths);
+            setCell(row, 5, p.get(ProductField.COUNTRY), widths);
+            setCell(row, 6, p.get(ProductField.CERT_NUMBER), widths);
+            setCell(row, 7, p.get(ProductField.FULL_NAME), widths);
+            setCell(row, 8, p.get(ProductField.TRADE_MARK), widths);
         }
 
+        widths.applyTo(sheet);
+    }
+
+    /**
+     * Создаёт лист с произвольной таблицей строк; первая строка таблицы считается заголовками.
+     */
+    private void createTableSheet(Workbook workbook, String name, List<String[]> rows) {
+        Sheet sheet = workbook.createSheet(name);
+        ColumnWidthEstimator widths = new ColumnWidthEstimator(rows.isEmpty() ? 0 : rows.get(0).length);
+        int rowNum = 0;
+        for (String[] values : rows) {
+            Row row = sheet.createRow(rowNum++);
+            for (int i = 0; i < values.length; i++) {
+                setCell(row, i, values[i], widths);
+            }
+        }
+        widths.applyTo(sheet);
+    }
+
+    /**
+     * Записывает лист с продуктами через {@link XlsxWriter}; колонки те же, что в {@link #createSheet}.
+     * Для отсутствующего {@code indexNum} и {@code null}-значений ячейки не создаются. Через таблицу общих строк
+     * идут только справочные колонки (единица измерения, ОКПД2, страна, товарный знак); наименование, код НКМИ
+     * и прочие почти уникальные значения пишутся прямо в ячейки.
+     */
+    private void writeSheet(XlsxWriter xlsx, String name, Collection<? extends ProductRow> products, boolean spool)
+            throws IOException {
+        String[] headers = ExcelConstants.HEADERS;
+        XlsxWriter.Sheet sheet = xlsx.addSheet(name, headers.length, spool);
+        sheet.startRow();
         for (int i = 0; i < headers.length; i++) {
-            sheet.autoSizeColumn(i);
+            sheet.text(i, headers[i]);
+        }
+        for (ProductRow p : products) {
+            sheet.startRow();
+            if (p.hasIndexNum()) {
+                sheet.number(0, p.indexNum());
+            }
+            sheet.sharedText(1, p.get(ProductField.UNIT));
+            sheet.sharedText(2, p.get(ProductField.OKPD2));
+            sheet.text(3, p.get(ProductField.NKMI));
+            sheet.text(4, p.get(ProductField.MANUFACTURER));
+            sheet.sharedText(5, p.get(ProductField.COUNTRY));
+            sheet.text(6, p.get(ProductField.CERT_NUMBER));
+            sheet.text(7, p.get(ProductField.FULL_NAME));
+            sheet.sharedText(8, p.get(ProductField.TRADE_MARK));
+        }
+    }
+
+    /**
+     * Записывает через {@link XlsxWriter} лист с произвольной таблицей строк, как {@link #createTableSheet}.
+     */
+    private void writeTableSheet(XlsxWriter xlsx, String name, List<String[]> rows, boolean spool)
+            throws IOException {
+        XlsxWriter.Sheet sheet = xlsx.addSheet(name, rows.isEmpty() ? 0 : rows.get(0).length, spool);
+        for (String[] values : rows) {
+            sheet.startRow();
+            for (int i = 0; i < values.length; i++) {
+                sheet.text(i, values[i]);
+            }
+        }
+    }
+
+    /**
+     * Приводит имя к допустимому имени листа и, если такое уже занято, добавляет к нему номер.
+     */
+    private String uniqueSheetName(String name, Set<String> taken) {
+        String safe = WorkbookUtil.createSafeSheetName(name);
+        String candidate = safe;
+        for (int i = 2; !taken.add(candidate.toLowerCase(Locale.ROOT)); i++) {
+            String suffix = " (" + i + ")";
+            candidate = safe.substring(0, Math.min(safe.length(), MAX_SHEET_NAME_LENGTH - suffix.length())) + suffix;
         }
+        return candidate;
+    }
+
+    /**
+     * Записывает текстовое значение в новую ячейку строки и учитывает его в ширине колонки.
+     */
+    private void setCell(Row row, int column, String value, ColumnWidthEstimator widths) {
+        row.createCell(column).setCellValue(value);
+        widths.accept(column, value);
+    }
+
+    /**
+     * Заполнение книги {@link XlsxWriter}; {@code spool} — накапливать ли строки листов во временных файлах.
+     */
+    @FunctionalInterface
+    private interface SheetWriter {
+        void write(XlsxWriter xlsx, boolean spool) throws IOException;
     }
 
 }
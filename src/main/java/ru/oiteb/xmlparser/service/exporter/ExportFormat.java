@@ -0,0 +1,44 @@
+package ru.oiteb.xmlparser.service.exporter;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.util.Locale;
+import java.util.Optional;
+
+import static ru.oiteb.xmlparser.constants.CommonConstants.*;
+
+/**
+ * Форматы выгрузки результата конвертации.
+ */
+@Getter
+@RequiredArgsConstructor
+public enum ExportFormat {
+
+    /** Книга Excel; формат по умолчанию. */
+    XLSX(EXCEL_XLSX, EXCEL_CONTENT_DISPOSITION),
+    /** CSV по RFC 4180 в UTF-8, первая строка — заголовки колонок. */
+    CSV(TEXT_CSV, CSV_CONTENT_DISPOSITION),
+    /** Один JSON-объект на продукт, объекты разделены переводом строки. */
+    NDJSON(APPLICATION_NDJSON, NDJSON_CONTENT_DISPOSITION);
+
+    private final String mediaType;
+    private final String contentDisposition;
+
+    /**
+     * Находит формат по имени без учёта регистра ({@code xlsx}, {@code csv}, {@code ndjson}).
+     *
+     * @param name имя формата
+     * @return формат, если имя известно
+     */
+    public static Optional<ExportFormat> fromName(String name) {
+        String normalized = name.trim().toUpperCase(Locale.ROOT);
+        for (ExportFormat format : values()) {
+            if (format.name().equals(normalized)) {
+                return Optional.of(format);
+            }
+        }
+        return Optional.empty();
+    }
+
+}
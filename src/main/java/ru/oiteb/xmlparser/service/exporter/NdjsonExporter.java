@@ -0,0 +1,126 @@
+package ru.oiteb.xmlparser.service.exporter;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import ru.oiteb.xmlparser.entity.ProductData;
+import ru.oiteb.xmlparser.entity.ProductField;
+import ru.oiteb.xmlparser.entity.ProductRow;
+import ru.oiteb.xmlparser.exception.ProductExportException;
+import ru.oiteb.xmlparser.metrics.ConversionMetrics;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+
+/**
+ * Экспортер продуктов в NDJSON: по одному JSON-объекту на продукт, объекты разделены символом {@code \n}.
+ * <p>
+ * Ключи объекта — имена полей {@link ProductData} в порядке колонок
+ * {@link ru.oiteb.xmlparser.constants.ExcelConstants#HEADERS}; отсутствующие значения пишутся как {@code null}.
+ * Строка заголовков не выводится. Объекты пишутся в поток по мере обхода коллекции без промежуточного
+ * дерева JSON, поэтому получатель может обрабатывать их построчно, не дожидаясь конца ответа.
+ * </p>
+ */
+@Component
+@RequiredArgsConstructor
+public class NdjsonExporter implements ProductExporter {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final ConversionMetrics metrics;
+
+    @Override
+    public ExportFormat format() {
+        return ExportFormat.NDJSON;
+    }
+
+    /**
+     * Записывает продукты в NDJSON. Время записи учитывается как этап {@link ConversionMetrics.Stage#WRITE}.
+     *
+     * @param products данные о продуктах в порядке строк; коллекция обходится один раз
+     * @param out      поток, в который пишется NDJSON; не закрывается методом
+     * @throws ProductExportException если запись в поток завершилась ошибкой
+     */
+    @Override
+    public void write(Collection<? extends ProductRow> products, OutputStream out) {
+        long start = metrics.start();
+        try {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), BUFFER_SIZE);
+            for (ProductRow p : products) {
+                writer.write("{\"indexNum\":");
+                writer.write(p.hasIndexNum() ? Integer.toString(p.indexNum()) : "null");
+                writeField(writer, "unit", p.get(ProductField.UNIT));
+                writeField(writer, "okpd2", p.get(ProductField.OKPD2));
+                writeField(writer, "nkmi", p.get(ProductField.NKMI));
+                writeField(writer, "manufacturer", p.get(ProductField.MANUFACTURER));
+                writeField(writer, "country", p.get(ProductField.COUNTRY));
+                writeField(writer, "certNumber", p.get(ProductField.CERT_NUMBER));
+                writeField(writer, "fullName", p.get(ProductField.FULL_NAME));
+                writeField(writer, "tradeMark", p.get(ProductField.TRADE_MARK));
+                writer.write("}\n");
+            }
+            writer.flush();
+        } catch (IOException e) {
+            throw new ProductExportException(e.getMessage());
+        }
+        metrics.record(ConversionMetrics.Stage.WRITE, start);
+    }
+
+    private void writeField(Writer writer, String key, String value) throws IOException {
+        writer.write(",\"");
+        writer.write(key);
+        writer.write("\":");
+        if (value == null) {
+            writer.write("null");
+            return;
+        }
+        writer.write('"');
+        writeEscaped(writer, value);
+        writer.write('"');
+    }
+
+    /**
+     * Пишет строку с экранированием по RFC 8259: кавычка, обратная косая черта и управляющие символы.
+     * Участки без спецсимволов пишутся одним вызовом.
+     */
+    private void writeEscaped(Writer writer, String value) throws IOException {
+        int from = 0;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c != '"' && c != '\\' && c >= 0x20) {
+                continue;
+            }
+            writer.write(value, from, i - from);
+            from = i + 1;
+            switch (c) {
+                case '"':
+                    writer.write("\\\"");
+                    break;
+                case '\\':
+                    writer.write("\\\\");
+                    break;
+                case '\n':
+                    writer.write("\\n");
+                    break;
+                case '\r':
+                    writer.write("\\r");
+                    break;
+                case '\t':
+                    writer.write("\\t");
+                    break;
+                default:
+                    writer.write("\\u00");
+                    writer.write(HEX[c >> 4]);
+                    writer.write(HEX[c & 0xF]);
+                    break;
+            }
+        }
+        writer.write(value, from, value.length() - from);
+    }
+
+}
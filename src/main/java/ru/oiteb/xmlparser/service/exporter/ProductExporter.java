@@ -0,0 +1,31 @@
+package ru.oiteb.xmlparser.service.exporter;
+
+import ru.oiteb.xmlparser.entity.ProductRow;
+
+import java.io.OutputStream;
+import java.util.Collection;
+
+/**
+ * Выгрузка продуктов в один из форматов {@link ExportFormat}.
+ * <p>
+ * Колонки (или поля) выгружаются в порядке {@link ru.oiteb.xmlparser.constants.ExcelConstants#HEADERS}.
+ * </p>
+ */
+public interface ProductExporter {
+
+    /**
+     * @return формат, который пишет экспортер
+     */
+    ExportFormat format();
+
+    /**
+     * Записывает продукты в выходной поток.
+     *
+     * @param products данные о продуктах в порядке строк; коллекция обходится один раз, и элемент используется
+     *                 только до перехода к следующему, поэтому подходят и переиспользуемые строки
+     *                 (например, {@link ru.oiteb.xmlparser.service.sorter.SortedProducts#rows()})
+     * @param out      поток, в который пишется результат; не закрывается методом
+     */
+    void write(Collection<? extends ProductRow> products, OutputStream out);
+
+}
@@ -0,0 +1,501 @@
+package ru.oiteb.xmlparser.service.exporter;
+
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Запись XLSX напрямую в {@link ZipOutputStream}, без объектной модели Apache POI.
+ * <p>
+ * Книга состоит из минимального набора частей SpreadsheetML: {@code [Content_Types].xml}, связи пакета и книги,
+ * {@code workbook.xml}, стили по умолчанию, листы и, если включены общие строки, {@code sharedStrings.xml}.
+ * В таблицу общих строк попадают только значения, записанные через {@link Sheet#sharedText(int, String)}, —
+ * колонки с небольшим набором повторяющихся значений; остальной текст пишется прямо в ячейки, и таблица
+ * не растёт вместе с числом строк.
+ * Строки листа пишутся как готовый XML в буфер листа — в памяти или во временном файле: объектов строк и ячеек,
+ * поиска стилей и промежуточного XML-дерева нет. Буфер нужен потому, что ширины колонок ({@code <cols>})
+ * в XML листа идут раньше данных, а известны только после записи всех строк.
+ * </p>
+ * <p>
+ * Порядок работы: листы создаются через {@link #addSheet(String, int, boolean)} и заполняются по очереди,
+ * затем {@link #write(OutputStream)} собирает пакет. Временные файлы удаляются в {@link #close()}.
+ * Не потокобезопасен.
+ * </p>
+ */
+final class XlsxWriter implements Closeable {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final String XML_DECLARATION = "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>\n";
+    private static final String MAIN_NS = "http://schemas.openxmlformats.org/spreadsheetml/2006/main";
+    private static final String RELATIONSHIPS_NS = "http://schemas.openxmlformats.org/package/2006/relationships";
+    private static final String DOCUMENT_RELATIONSHIP =
+            "http://schemas.openxmlformats.org/officeDocument/2006/relationships";
+    private static final String CONTENT_TYPE_PREFIX = "application/vnd.openxmlformats-officedocument.spreadsheetml.";
+    private static final String STYLES = "<styleSheet xmlns=\"" + MAIN_NS + "\">"
+            + "<fonts count=\"1\"><font><sz val=\"11\"/><name val=\"Calibri\"/><family val=\"2\"/></font></fonts>"
+            + "<fills count=\"2\"><fill><patternFill patternType=\"none\"/></fill>"
+            + "<fill><patternFill patternType=\"gray125\"/></fill></fills>"
+            + "<borders count=\"1\"><border><left/><right/><top/><bottom/><diagonal/></border></borders>"
+            + "<cellStyleXfs count=\"1\"><xf numFmtId=\"0\" fontId=\"0\" fillId=\"0\" borderId=\"0\"/></cellStyleXfs>"
+            + "<cellXfs count=\"1\"><xf numFmtId=\"0\" fontId=\"0\" fillId=\"0\" borderId=\"0\" xfId=\"0\"/></cellXfs>"
+            + "<cellStyles count=\"1\"><cellStyle name=\"Normal\" xfId=\"0\" builtinId=\"0\"/></cellStyles>"
+            + "</styleSheet>";
+
+    private final boolean sharedStrings;
+    private final boolean compressTempFiles;
+    private final List<Sheet> sheets = new ArrayList<>();
+    private final Map<String, Integer> stringIndex = new HashMap<>();
+    private final List<String> strings = new ArrayList<>();
+    private long stringReferences;
+
+    /**
+     * @param sharedStrings     писать значения {@link Sheet#sharedText(int, String)} через таблицу общих строк;
+     *                          иначе — прямо в ячейки ({@code inlineStr}), как весь остальной текст
+     * @param compressTempFiles сжимать временные файлы листов
+     */
+    XlsxWriter(boolean sharedStrings, boolean compressTempFiles) {
+        this.sharedStrings = sharedStrings;
+        this.compressTempFiles = compressTempFiles;
+    }
+
+    /**
+     * Добавляет лист; строки ранее добавленного листа после этого дописывать нельзя.
+     *
+     * @param name    допустимое и уникальное имя листа
+     * @param columns число колонок
+     * @param spool   накапливать строки во временном файле, а не в памяти
+     * @return лист для записи строк
+     * @throws IOException если временный файл не удалось создать
+     */
+    Sheet addSheet(String name, int columns, boolean spool) throws IOException {
+        if (!sheets.isEmpty()) {
+            sheets.get(sheets.size() - 1).finish();
+        }
+        Sheet sheet = new Sheet(name, columns, spool);
+        sheets.add(sheet);
+        return sheet;
+    }
+
+    /**
+     * Записывает пакет XLSX в поток.
+     *
+     * @param out поток, в который пишется XLSX; не закрывается методом
+     * @throws IOException если запись завершилась ошибкой
+     */
+    void write(OutputStream out) throws IOException {
+        if (!sheets.isEmpty()) {
+            sheets.get(sheets.size() - 1).finish();
+        }
+        ZipOutputStream zip = new ZipOutputStream(out, StandardCharsets.UTF_8);
+        Writer text = new BufferedWriter(new OutputStreamWriter(zip, StandardCharsets.UTF_8), BUFFER_SIZE);
+
+        startPart(zip, "[Content_Types].xml");
+        text.write("<Types xmlns=\"http://schemas.openxmlformats.org/package/2006/content-types\">"
+                + "<Default Extension=\"rels\" ContentType=\"application/vnd.openxmlformats-package.relationships+xml\"/>"
+                + "<Default Extension=\"xml\" ContentType=\"application/xml\"/>");
+        override(text, "/xl/workbook.xml", "sheet.main+xml");
+        for (int i = 1; i <= sheets.size(); i++) {
+            override(text, "/xl/worksheets/sheet" + i + ".xml", "worksheet+xml");
+        }
+        override(text, "/xl/styles.xml", "styles+xml");
+        if (sharedStrings) {
+            override(text, "/xl/sharedStrings.xml", "sharedStrings+xml");
+        }
+        text.write("</Types>");
+        endPart(zip, text);
+
+        startPart(zip, "_rels/.rels");
+        text.write("<Relationships xmlns=\"" + RELATIONSHIPS_NS + "\">");
+        relationship(text, "rId1", "officeDocument", "xl/workbook.xml");
+        text.write("</Relationships>");
+        endPart(zip, text);
+
+        startPart(zip, "xl/workbook.xml");
+        text.write("<workbook xmlns=\"" + MAIN_NS + "\" xmlns:r=\"" + DOCUMENT_RELATIONSHIP + "\">"
+                + "<bookViews><workbookView activeTab=\"0\"/></bookViews><sheets>");
+        for (int i = 0; i < sheets.size(); i++) {
+            text.write("<sheet name=\"");
+            writeEscaped(text, sheets.get(i).name, true);
+            text.write("\" sheetId=\"" + (i + 1) + "\" r:id=\"rId" + (i + 1) + "\"/>");
+        }
+        text.write("</sheets></workbook>");
+        endPart(zip, text);
+
+        startPart(zip, "xl/_rels/workbook.xml.rels");
+        text.write("<Relationships xmlns=\"" + RELATIONSHIPS_NS + "\">");
+        for (int i = 1; i <= sheets.size(); i++) {
+            relationship(text, "rId" + i, "worksheet", "worksheets/sheet" + i + ".xml");
+        }
+        relationship(text, "rId" + (sheets.size() + 1), "styles", "styles.xml");
+        if (sharedStrings) {
+            relationship(text, "rId" + (sheets.size() + 2), "sharedStrings", "sharedStrings.xml");
+        }
+        text.write("</Relationships>");
+        endPart(zip, text);
+
+        startPart(zip, "xl/styles.xml");
+        text.write(STYLES);
+        endPart(zip, text);
+
+        for (int i = 0; i < sheets.size(); i++) {
+            startPart(zip, "xl/worksheets/sheet" + (i + 1) + ".xml");
+            sheets.get(i).writeTo(text, zip);
+            endPart(zip, text);
+        }
+
+        if (sharedStrings) {
+            startPart(zip, "xl/sharedStrings.xml");
+            text.write("<sst xmlns=\"" + MAIN_NS + "\" count=\"" + stringReferences
+                    + "\" uniqueCount=\"" + strings.size() + "\">");
+            for (String value : strings) {
+                text.write("<si>");
+                writeTextElement(text, value);
+                text.write("</si>");
+            }
+            text.write("</sst>");
+            endPart(zip, text);
+        }
+        zip.finish();
+        out.flush();
+    }
+
+    /**
+     * Удаляет временные файлы листов.
+     */
+    @Override
+    public void close() {
+        sheets.forEach(Sheet::delete);
+    }
+
+    private void startPart(ZipOutputStream zip, String name) throws IOException {
+        zip.putNextEntry(new ZipEntry(name));
+        zip.write(XML_DECLARATION.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private void endPart(ZipOutputStream zip, Writer text) throws IOException {
+        text.flush();
+        zip.closeEntry();
+    }
+
+    private void override(Writer text, String part, String type) throws IOException {
+        text.write("<Override PartName=\"" + part + "\" ContentType=\"" + CONTENT_TYPE_PREFIX + type + "\"/>");
+    }
+
+    private void relationship(Writer text, String id, String type, String target) throws IOException {
+        text.write("<Relationship Id=\"" + id + "\" Type=\"" + DOCUMENT_RELATIONSHIP + "/" + type
+                + "\" Target=\"" + target + "\"/>");
+    }
+
+    private int sharedStringIndex(String value) {
+        stringReferences++;
+        Integer index = stringIndex.get(value);
+        if (index == null) {
+            index = strings.size();
+            strings.add(value);
+            stringIndex.put(value, index);
+        }
+        return index;
+    }
+
+    /**
+     * Пишет элемент {@code <t>}; пробелы по краям сохраняются атрибутом {@code xml:space}.
+     */
+    private static void writeTextElement(Writer out, String value) throws IOException {
+        boolean preserve = !value.isEmpty()
+                && (isSpace(value.charAt(0)) || isSpace(value.charAt(value.length() - 1)));
+        out.write(preserve ? "<t xml:space=\"preserve\">" : "<t>");
+        writeEscaped(out, value, false);
+        out.write("</t>");
+    }
+
+    private static boolean isSpace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\r';
+    }
+
+    /**
+     * Пишет текст с экранированием XML. Символы, недопустимые в XML 1.0, и {@code \r} кодируются так, как это
+     * делает Excel — {@code _xHHHH_}; подчёркивание, с которого начинается такая последовательность в самом тексте,
+     * экранируется как {@code _x005F_}, чтобы текст прочитался без изменений. Участки без спецсимволов
+     * пишутся одним вызовом.
+     */
+    private static void writeEscaped(Writer out, String value, boolean attribute) throws IOException {
+        int from = 0;
+        int length = value.length();
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            String replacement;
+            if (c == '&') {
+                replacement = "&amp;";
+            } else if (c == '<') {
+                replacement = "&lt;";
+            } else if (c == '>') {
+                replacement = "&gt;";
+            } else if (c == '"' && attribute) {
+                replacement = "&quot;";
+            } else if ((c < 0x20 && c != '\t' && c != '\n') || c == 0xFFFE || c == 0xFFFF) {
+                replacement = attribute ? " " : escapedChar(c);
+            } else if (c == '_' && !attribute && isEscapeSequence(value, i)) {
+                replacement = "_x005F_";
+            } else {
+                continue;
+            }
+            out.write(value, from, i - from);
+            out.write(replacement);
+            from = i + 1;
+        }
+        out.write(value, from, length - from);
+    }
+
+    private static String escapedChar(char c) {
+        return String.format("_x%04X_", (int) c);
+    }
+
+    /**
+     * Начинается ли с позиции {@code i} последовательность вида {@code _xHHHH_}.
+     */
+    private static boolean isEscapeSequence(String value, int i) {
+        if (i + 6 >= value.length() || value.charAt(i + 1) != 'x' || value.charAt(i + 6) != '_') {
+            return false;
+        }
+        for (int k = i + 2; k < i + 6; k++) {
+            if (Character.digit(value.charAt(k), 16) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Лист книги. Строки добавляются по порядку через {@link #startRow()}, ячейки строки — по возрастанию колонок.
+     */
+    final class Sheet {
+
+        private final String name;
+        private final String[] columnNames;
+        private final ColumnWidthEstimator widths;
+        private final char[] digits = new char[20];
+        private final Path file;
+        private final ByteArrayOutputStream memory;
+        private final Writer rows;
+        private int rowNumber;
+        private boolean rowOpen;
+        private boolean finished;
+
+        private Sheet(String name, int columns, boolean spool) throws IOException {
+            this.name = name;
+            this.columnNames = new String[Math.max(1, columns)];
+            for (int i = 0; i < columnNames.length; i++) {
+                columnNames[i] = columnName(i);
+            }
+            this.widths = new ColumnWidthEstimator(columnNames.length);
+            OutputStream target;
+            if (spool) {
+                file = Files.createTempFile("xlsx-sheet-", ".xml");
+                memory = null;
+                OutputStream stream = Files.newOutputStream(file);
+                target = compressTempFiles
+                        ? new DeflaterOutputStream(stream, new Deflater(Deflater.BEST_SPEED, true), BUFFER_SIZE) {
+                            @Override
+                            public void close() throws IOException {
+                                try {
+                                    super.close();
+                                } finally {
+                                    def.end();
+                                }
+                            }
+                        }
+                        : stream;
+            } else {
+                file = null;
+                memory = new ByteArrayOutputStream(BUFFER_SIZE);
+                target = memory;
+            }
+            rows = new BufferedWriter(new OutputStreamWriter(target, StandardCharsets.UTF_8), BUFFER_SIZE);
+        }
+
+        /**
+         * Начинает следующую строку листа.
+         */
+        void startRow() throws IOException {
+            if (rowOpen) {
+                rows.write("</row>");
+            }
+            rowNumber++;
+            rows.write("<row r=\"");
+            writeNumber(rowNumber);
+            rows.write("\">");
+            rowOpen = true;
+        }
+
+        /**
+         * Записывает числовую ячейку.
+         */
+        void number(int column, long value) throws IOException {
+            startCell(column);
+            rows.write("\"><v>");
+            writeNumber(value);
+            rows.write("</v></c>");
+            widths.accept(column, value);
+        }
+
+        /**
+         * Записывает текстовую ячейку прямо в лист ({@code inlineStr}); для {@code null} ячейка не создаётся.
+         */
+        void text(int column, String value) throws IOException {
+            if (value == null) {
+                return;
+            }
+            startCell(column);
+            rows.write("\" t=\"inlineStr\"><is>");
+            writeTextElement(rows, value);
+            rows.write("</is></c>");
+            widths.accept(column, value);
+        }
+
+        /**
+         * Записывает текстовую ячейку со ссылкой на таблицу общих строк, если она включена, иначе —
+         * как {@link #text(int, String)}. Предназначен для колонок с небольшим набором повторяющихся значений:
+         * каждое различное значение держится в памяти до конца записи книги.
+         */
+        void sharedText(int column, String value) throws IOException {
+            if (value == null || !sharedStrings) {
+                text(column, value);
+                return;
+            }
+            startCell(column);
+            rows.write("\" t=\"s\"><v>");
+            writeNumber(sharedStringIndex(value));
+            rows.write("</v></c>");
+            widths.accept(column, value);
+        }
+
+        private void startCell(int column) throws IOException {
+            rows.write("<c r=\"");
+            rows.write(columnNames[column]);
+            writeNumber(rowNumber);
+        }
+
+        private void writeNumber(long value) throws IOException {
+            if (value == Long.MIN_VALUE) {
+                rows.write(Long.toString(value));
+                return;
+            }
+            long rest = Math.abs(value);
+            int pos = digits.length;
+            do {
+                digits[--pos] = (char) ('0' + rest % 10);
+                rest /= 10;
+            } while (rest > 0);
+            if (value < 0) {
+                digits[--pos] = '-';
+            }
+            rows.write(digits, pos, digits.length - pos);
+        }
+
+        private void finish() throws IOException {
+            if (finished) {
+                return;
+            }
+            finished = true;
+            if (rowOpen) {
+                rows.write("</row>");
+            }
+            rows.close();
+        }
+
+        /**
+         * Пишет XML листа: размеры, ширины колонок и накопленные строки.
+         */
+        private void writeTo(Writer text, OutputStream zip) throws IOException {
+            text.write("<worksheet xmlns=\"" + MAIN_NS + "\"><dimension ref=\"A1");
+            if (rowNumber > 0) {
+                text.write(":" + columnNames[columnNames.length - 1] + rowNumber);
+            }
+            text.write("\"/>");
+            boolean cols = false;
+            for (int i = 0; i < widths.columns(); i++) {
+                int width = widths.columnWidth(i);
+                if (width > 0) {
+                    text.write(cols ? "" : "<cols>");
+                    cols = true;
+                    text.write("<col min=\"" + (i + 1) + "\" max=\"" + (i + 1) + "\" width=\"" + width / 256.0
+                            + "\" customWidth=\"1\"/>");
+                }
+            }
+            text.write(cols ? "</cols><sheetData>" : "<sheetData>");
+            text.flush();
+            if (memory != null) {
+                memory.writeTo(zip);
+            } else {
+                try (InputStream in = openSpool()) {
+                    in.transferTo(zip);
+                }
+            }
+            text.write("</sheetData></worksheet>");
+        }
+
+        private InputStream openSpool() throws IOException {
+            InputStream stream = Files.newInputStream(file);
+            if (!compressTempFiles) {
+                return stream;
+            }
+            Inflater inflater = new Inflater(true);
+            return new InflaterInputStream(stream, inflater, BUFFER_SIZE) {
+                @Override
+                public void close() throws IOException {
+                    try {
+                        super.close();
+                    } finally {
+                        inflater.end();
+                    }
+                }
+            };
+        }
+
+        private void delete() {
+            try {
+                rows.close();
+            } catch (IOException ignored) {
+                // файл удаляется ниже
+            }
+            if (file == null) {
+                return;
+            }
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException ignored) {
+                file.toFile().deleteOnExit();
+            }
+        }
+    }
+
+    /**
+     * Буквенное имя колонки Excel: A, B, …, Z, AA, AB, …
+     */
+    static String columnName(int index) {
+        StringBuilder name = new StringBuilder();
+        for (int rest = index + 1; rest > 0; rest = (rest - 1) / 26) {
+            name.insert(0, (char) ('A' + (rest - 1) % 26));
+        }
+        return name.toString();
+    }
+
+}
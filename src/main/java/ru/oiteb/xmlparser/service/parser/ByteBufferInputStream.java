@@ -0,0 +1,51 @@
+package ru.oiteb.xmlparser.service.parser;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * {@link InputStream} поверх {@link ByteBuffer}, в том числе отображённого в память файла.
+ * <p>
+ * Читает собственную копию позиции буфера ({@link ByteBuffer#duplicate()}), поэтому несколько потоков
+ * могут независимо читать разные участки одного буфера.
+ * </p>
+ */
+public class ByteBufferInputStream extends InputStream {
+
+    private final ByteBuffer buffer;
+
+    public ByteBufferInputStream(ByteBuffer buffer) {
+        this.buffer = buffer.duplicate();
+    }
+
+    @Override
+    public int read() {
+        return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+    }
+
+    @Override
+    public int read(byte[] bytes, int off, int len) {
+        if (len == 0) {
+            return 0;
+        }
+        if (!buffer.hasRemaining()) {
+            return -1;
+        }
+        int count = Math.min(len, buffer.remaining());
+        buffer.get(bytes, off, count);
+        return count;
+    }
+
+    @Override
+    public long skip(long n) {
+        int count = (int) Math.max(0, Math.min(n, buffer.remaining()));
+        buffer.position(buffer.position() + count);
+        return count;
+    }
+
+    @Override
+    public int available() {
+        return buffer.remaining();
+    }
+
+}
@@ -0,0 +1,120 @@
+package ru.oiteb.xmlparser.service.parser;
+
+import ru.oiteb.xmlparser.config.ParserProperties;
+import ru.oiteb.xmlparser.entity.ProductField;
+
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Ограниченный словарь строк одной конвертации: повторяющиеся значения полей
+ * (страна, единица измерения, ОКПД2, товарный знак и т.п.) приводятся к одному экземпляру {@link String}.
+ * <p>
+ * Поиск выполняется по символам прочитанного текста, поэтому для уже встречавшегося значения новая строка
+ * не создаётся. Словарь — таблица с открытой адресацией фиксированного размера, заполняемая без блокировок,
+ * так что им могут одновременно пользоваться участки параллельного разбора. После {@code maxEntries}
+ * различных значений новые значения в словарь не добавляются и возвращаются как есть.
+ * </p>
+ */
+final class StringDictionary {
+
+    private final Set<ProductField> fields;
+    private final int maxEntries;
+    private final int maxValueLength;
+    private final AtomicReferenceArray<String> table;
+    private final int mask;
+    private final AtomicInteger size = new AtomicInteger();
+
+    private StringDictionary(Set<ProductField> fields, int maxEntries, int maxValueLength) {
+        this.fields = fields;
+        this.maxEntries = maxEntries;
+        this.maxValueLength = maxValueLength;
+        int capacity = Integer.highestOneBit(Math.max(1, maxEntries) * 2 - 1) << 1;
+        this.table = new AtomicReferenceArray<>(fields.isEmpty() ? 1 : capacity);
+        this.mask = table.length() - 1;
+    }
+
+    /**
+     * Создаёт пустой словарь для новой конвертации.
+     */
+    static StringDictionary create(ParserProperties.Dedup dedup) {
+        Set<ProductField> fields = dedup.isEnabled() && dedup.getMaxEntries() > 0 && !dedup.getFields().isEmpty()
+                ? EnumSet.copyOf(dedup.getFields())
+                : EnumSet.noneOf(ProductField.class);
+        return new StringDictionary(fields, dedup.getMaxEntries(), dedup.getMaxValueLength());
+    }
+
+    /**
+     * Нужно ли приводить значения поля к словарным.
+     */
+    boolean isDeduplicated(ProductField field) {
+        return fields.contains(field);
+    }
+
+    /**
+     * Количество различных значений в словаре.
+     */
+    int size() {
+        return size.get();
+    }
+
+    /**
+     * Возвращает строку с символами {@code text[start, end)}: словарный экземпляр, если такое значение
+     * уже встречалось, иначе новую строку, которая по возможности добавляется в словарь.
+     */
+    String canonicalize(CharSequence text, int start, int end) {
+        int length = end - start;
+        if (length == 0) {
+            return "";
+        }
+        if (length > maxValueLength) {
+            return text.subSequence(start, end).toString();
+        }
+        int index = hash(text, start, end) & mask;
+        String created = null;
+        for (int probe = 0; probe <= mask; probe++) {
+            String candidate = table.get(index);
+            if (candidate == null) {
+                if (created == null) {
+                    created = text.subSequence(start, end).toString();
+                }
+                if (size.get() >= maxEntries) {
+                    return created;
+                }
+                if (table.compareAndSet(index, null, created)) {
+                    size.incrementAndGet();
+                    return created;
+                }
+                candidate = table.get(index);
+            }
+            if (matches(candidate, text, start, end)) {
+                return candidate;
+            }
+            index = (index + 1) & mask;
+        }
+        return created != null ? created : text.subSequence(start, end).toString();
+    }
+
+    private static int hash(CharSequence text, int start, int end) {
+        int hash = 0;
+        for (int i = start; i < end; i++) {
+            hash = 31 * hash + text.charAt(i);
+        }
+        return hash ^ (hash >>> 16);
+    }
+
+    private static boolean matches(String candidate, CharSequence text, int start, int end) {
+        if (candidate.length() != end - start) {
+            return false;
+        }
+        for (int i = 0; i < candidate.length(); i++) {
+            if (candidate.charAt(i) != text.charAt(start + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+}
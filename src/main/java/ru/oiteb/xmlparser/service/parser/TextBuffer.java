@@ -0,0 +1,90 @@
+package ru.oiteb.xmlparser.service.parser;
+
+import java.util.Arrays;
+
+/**
+ * Переиспользуемый буфер для текста одного элемента.
+ * <p>
+ * Текст копируется в буфер прямо из внутреннего массива StAX-парсера ({@code getTextCharacters}),
+ * обрезка пробельных символов выполняется по индексам, а строка создаётся только для итогового значения поля.
+ * Буфер не потокобезопасен: у каждого разбора свой экземпляр.
+ * </p>
+ */
+final class TextBuffer implements CharSequence {
+
+    private static final int INITIAL_CAPACITY = 256;
+    private static final int MAX_RETAINED_CAPACITY = 64 * 1024;
+
+    private char[] chars = new char[INITIAL_CAPACITY];
+    private int length;
+
+    /**
+     * Очищает буфер; слишком разросшийся после длинного текста массив освобождается.
+     */
+    void clear() {
+        length = 0;
+        if (chars.length > MAX_RETAINED_CAPACITY) {
+            chars = new char[INITIAL_CAPACITY];
+        }
+    }
+
+    void append(char[] source, int start, int count) {
+        if (length + count > chars.length) {
+            chars = Arrays.copyOf(chars, Math.max(length + count, chars.length * 2));
+        }
+        System.arraycopy(source, start, chars, length, count);
+        length += count;
+    }
+
+    /**
+     * Начало текста без ведущих пробельных символов (по правилам {@link String#trim()}).
+     */
+    int trimmedStart() {
+        int start = 0;
+        while (start < length && chars[start] <= ' ') {
+            start++;
+        }
+        return start;
+    }
+
+    /**
+     * Конец текста без завершающих пробельных символов (по правилам {@link String#trim()}).
+     */
+    int trimmedEnd() {
+        int end = length;
+        while (end > 0 && chars[end - 1] <= ' ') {
+            end--;
+        }
+        return end;
+    }
+
+    /**
+     * Текст без пробельных символов по краям, как {@code toString().trim()}, но без промежуточной строки.
+     */
+    String toTrimmedString() {
+        int start = trimmedStart();
+        int end = Math.max(start, trimmedEnd());
+        return start == end ? "" : new String(chars, start, end - start);
+    }
+
+    @Override
+    public int length() {
+        return length;
+    }
+
+    @Override
+    public char charAt(int index) {
+        return chars[index];
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        return new String(chars, start, end - start);
+    }
+
+    @Override
+    public String toString() {
+        return new String(chars, 0, length);
+    }
+
+}
@@ -0,0 +1,472 @@
+package ru.oiteb.xmlparser.service.parser;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Разбиение XML-документа на независимые участки по границам заданного элемента
+ * (у нас — {@code <productInfo>}) быстрым побайтовым просмотром, без построения событий StAX.
+ * <p>
+ * Каждый найденный элемент целиком попадает в один из участков ({@link Chunk}); соседние элементы
+ * группируются до достижения целевого размера участка. Всё, что лежит вне этих элементов, образует «скелет»
+ * документа — его отдельно проверяют на корректность, чтобы параллельный разбор не пропустил ошибку,
+ * которую нашёл бы последовательный.
+ * </p>
+ * <p>
+ * Участок разбирается как отдельный документ: объявление XML (для кодировки), синтетический корневой элемент
+ * с объявлениями пространств имён, действующими в месте его элементов, и байты элементов. Объявления
+ * отслеживаются по областям видимости открытых элементов, поэтому переобъявленный во вложенном элементе префикс
+ * действует только внутри него, а элементы с разными наборами объявлений не попадают в один участок. Просмотр корректен для
+ * кодировок, совместимых с ASCII (UTF-8, windows-1251 и т.п.). Если документ в UTF-16, содержит DOCTYPE,
+ * вложенные друг в друга искомые элементы или элемент вне корня, разбиение не выполняется
+ * и {@link #split} возвращает {@code null} — документ разбирается последовательно.
+ * </p>
+ */
+final class XmlChunkSplitter {
+
+    private static final byte[] UTF8_BOM = {(byte) 0xEF, (byte) 0xBB, (byte) 0xBF};
+    private static final byte[] XML_DECLARATION = ascii("<?xml");
+    private static final byte[] COMMENT_START = ascii("<!--");
+    private static final byte[] COMMENT_END = ascii("-->");
+    private static final byte[] CDATA_START = ascii("<![CDATA[");
+    private static final byte[] CDATA_END = ascii("]]>");
+    private static final byte[] PI_END = ascii("?>");
+    private static final byte[] XMLNS = ascii("xmlns");
+    private static final byte[] CHUNK_ROOT_START = ascii("<chunk");
+    private static final byte[] CHUNK_ROOT_END = ascii("</chunk>");
+
+    private XmlChunkSplitter() {
+        throw new UnsupportedOperationException("Utility class");
+    }
+
+    /**
+     * Участок байтов документа {@code [start, end)} в абсолютных индексах буфера.
+     */
+    record Range(int start, int end) {
+    }
+
+    /**
+     * Участок для независимого разбора: открывающий тег синтетического корня и подряд идущие элементы.
+     */
+    record Chunk(byte[] rootStartTag, List<Range> elements) {
+    }
+
+    /**
+     * Результат разбиения документа.
+     * <p>
+     * Число элементов и глубина вложенности считаются по всему документу: участки разбираются как отдельные
+     * документы, и ограничения парсера на них по отдельности не совпадают с ограничениями на весь документ.
+     * </p>
+     *
+     * @param prolog       BOM и объявление XML, которые добавляются в начало каждого участка
+     * @param chunks       участки с искомыми элементами в порядке документа
+     * @param skeleton     части документа вне искомых элементов
+     * @param elementCount число элементов в документе
+     * @param maxDepth     наибольшая глубина вложенности элементов в документе
+     */
+    record Split(byte[] prolog, List<Chunk> chunks, List<Range> skeleton, long elementCount, int maxDepth) {
+
+        /**
+         * Поток, представляющий участок как самостоятельный XML-документ.
+         */
+        InputStream chunkStream(ByteBuffer document, Chunk chunk) {
+            List<InputStream> parts = new ArrayList<>(chunk.elements().size() + 3);
+            parts.add(new ByteArrayInputStream(prolog));
+            parts.add(new ByteArrayInputStream(chunk.rootStartTag()));
+            for (Range element : chunk.elements()) {
+                parts.add(slice(document, element));
+            }
+            parts.add(new ByteArrayInputStream(CHUNK_ROOT_END));
+            return new SequenceInputStream(Collections.enumeration(parts));
+        }
+
+        /**
+         * Поток с документом, из которого вырезаны все искомые элементы.
+         */
+        InputStream skeletonStream(ByteBuffer document) {
+            List<InputStream> parts = new ArrayList<>(skeleton.size());
+            for (Range range : skeleton) {
+                parts.add(slice(document, range));
+            }
+            return new SequenceInputStream(Collections.enumeration(parts));
+        }
+
+        private static InputStream slice(ByteBuffer document, Range range) {
+            return new ByteBufferInputStream(document.duplicate().limit(range.end()).position(range.start()));
+        }
+    }
+
+    /**
+     * Разбивает документ на участки по границам элемента {@code elementName}.
+     *
+     * @param document    документ; используются байты от {@code position} до {@code limit}
+     * @param elementName локальное имя элемента, по границам которого выполняется разбиение
+     * @param chunkSize   целевой размер участка в байтах
+     * @return разбиение или {@code null}, если документ нельзя надёжно разбить побайтово
+     */
+    static Split split(ByteBuffer document, String elementName, int chunkSize) {
+        return new Scanner(document, ascii(elementName), chunkSize).scan();
+    }
+
+    private static final class Scanner {
+
+        private final ByteBuffer doc;
+        private final byte[] element;
+        private final int chunkSize;
+        private final int end;
+
+        private final List<Chunk> chunks = new ArrayList<>();
+        private final List<Range> skeleton = new ArrayList<>();
+        private final Deque<Map<String, byte[]>> scopes = new ArrayDeque<>();
+
+        private byte[] scopeRoot;
+        private long elementCount;
+        private int maxDepth;
+        private List<Range> chunkElements;
+        private byte[] chunkRoot;
+        private int chunkBytes;
+
+        private Scanner(ByteBuffer doc, byte[] element, int chunkSize) {
+            this.doc = doc;
+            this.element = element;
+            this.chunkSize = chunkSize;
+            this.end = doc.limit();
+        }
+
+        private Split scan() {
+            int start = doc.position();
+            int i = start;
+            if (startsWith(i, UTF8_BOM)) {
+                i += UTF8_BOM.length;
+            }
+            if (i + 1 >= end || doc.get(i) == 0 || doc.get(i + 1) == 0 || (doc.get(i) & 0xFF) >= 0xFE) {
+                return null;
+            }
+            byte[] prolog = new byte[0];
+            if (startsWith(i, XML_DECLARATION)) {
+                int declarationEnd = indexOf(i, PI_END);
+                if (declarationEnd < 0) {
+                    return null;
+                }
+                i = declarationEnd + PI_END.length;
+                prolog = copy(start, i);
+            }
+            int skeletonStart = start;
+            while (i < end) {
+                int lt = indexOf(i, (byte) '<');
+                if (lt < 0 || lt + 1 >= end) {
+                    break;
+                }
+                byte next = doc.get(lt + 1);
+                if (next == '!') {
+                    i = skipMarkup(lt);
+                } else if (next == '?') {
+                    i = skipTo(lt + 2, PI_END);
+                } else if (next == '/') {
+                    int gt = indexOf(lt, (byte) '>');
+                    if (scopes.isEmpty()) {
+                        return null;
+                    }
+                    if (!scopes.pop().isEmpty()) {
+                        scopeRoot = null;
+                    }
+                    i = gt < 0 ? -1 : gt + 1;
+                } else {
+                    int tagEnd = findTagEnd(lt + 1);
+                    if (tagEnd < 0) {
+                        return null;
+                    }
+                    int nameEnd = nameEnd(lt + 1, tagEnd);
+                    boolean selfClosing = doc.get(tagEnd - 1) == '/';
+                    countElement(scopes.size() + 1);
+                    if (isElement(lt + 1, nameEnd)) {
+                        if (scopes.isEmpty()) {
+                            return null;
+                        }
+                        int elementEnd = selfClosing ? tagEnd + 1 : findElementEnd(tagEnd + 1, scopes.size() + 1);
+                        if (elementEnd < 0) {
+                            return null;
+                        }
+                        skeleton.add(new Range(skeletonStart, lt));
+                        skeletonStart = elementEnd;
+                        addElement(new Range(lt, elementEnd));
+                        i = elementEnd;
+                    } else {
+                        if (!selfClosing) {
+                            Map<String, byte[]> declarations = collectNamespaces(nameEnd, tagEnd);
+                            scopes.push(declarations);
+                            if (!declarations.isEmpty()) {
+                                scopeRoot = null;
+                            }
+                        }
+                        i = tagEnd + 1;
+                    }
+                }
+                if (i < 0) {
+                    return null;
+                }
+            }
+            skeleton.add(new Range(skeletonStart, end));
+            closeChunk();
+            return chunks.isEmpty() ? null : new Split(prolog, chunks, skeleton, elementCount, maxDepth);
+        }
+
+        private void countElement(int depth) {
+            elementCount++;
+            maxDepth = Math.max(maxDepth, depth);
+        }
+
+        private void addElement(Range range) {
+            if (scopeRoot == null) {
+                scopeRoot = rootStartTag();
+            }
+            if (chunkElements != null && chunkRoot != scopeRoot && !Arrays.equals(chunkRoot, scopeRoot)) {
+                closeChunk();
+            }
+            if (chunkElements == null) {
+                chunkElements = new ArrayList<>();
+                chunkRoot = scopeRoot;
+                chunkBytes = 0;
+            }
+            chunkElements.add(range);
+            chunkBytes += range.end() - range.start();
+            if (chunkBytes >= chunkSize) {
+                closeChunk();
+            }
+        }
+
+        private void closeChunk() {
+            if (chunkElements != null) {
+                chunks.add(new Chunk(chunkRoot, chunkElements));
+                chunkElements = null;
+            }
+        }
+
+        /**
+         * Открывающий тег синтетического корня с объявлениями, действующими в текущей позиции:
+         * объявления вложенных элементов перекрывают внешние объявления того же префикса.
+         */
+        private byte[] rootStartTag() {
+            Map<String, byte[]> namespaces = new LinkedHashMap<>();
+            scopes.descendingIterator().forEachRemaining(namespaces::putAll);
+            ByteArrayOutputStream tag = new ByteArrayOutputStream();
+            tag.writeBytes(CHUNK_ROOT_START);
+            for (byte[] declaration : namespaces.values()) {
+                tag.write(' ');
+                tag.writeBytes(declaration);
+            }
+            tag.write('>');
+            return tag.toByteArray();
+        }
+
+        /**
+         * Пропускает комментарий или CDATA; DOCTYPE и прочие объявления не поддерживаются.
+         */
+        private int skipMarkup(int lt) {
+            if (startsWith(lt, COMMENT_START)) {
+                return skipTo(lt + COMMENT_START.length, COMMENT_END);
+            }
+            if (startsWith(lt, CDATA_START)) {
+                return skipTo(lt + CDATA_START.length, CDATA_END);
+            }
+            return -1;
+        }
+
+        private int skipTo(int from, byte[] terminator) {
+            int found = indexOf(from, terminator);
+            return found < 0 ? -1 : found + terminator.length;
+        }
+
+        /**
+         * Ищет конец элемента, начатого до {@code from}: индекс сразу после его закрывающего тега.
+         * Внутри элемента каждый {@code '<'} вне комментариев, CDATA и инструкций обработки начинает тег,
+         * так как в тексте и значениях атрибутов он должен быть экранирован. Вложенные элементы учитываются
+         * в числе элементов и глубине документа.
+         *
+         * @param depth глубина самого элемента в документе
+         * @return индекс после закрывающего тега или {@code -1}, если элемент вложен сам в себя или не закрыт
+         */
+        private int findElementEnd(int from, int depth) {
+            int i = from;
+            while (i >= 0 && i < end) {
+                int lt = indexOf(i, (byte) '<');
+                if (lt < 0 || lt + 1 >= end) {
+                    return -1;
+                }
+                byte next = doc.get(lt + 1);
+                if (next == '!') {
+                    i = skipMarkup(lt);
+                } else if (next == '?') {
+                    i = skipTo(lt + 2, PI_END);
+                } else if (next == '/') {
+                    int gt = indexOf(lt, (byte) '>');
+                    if (gt < 0) {
+                        return -1;
+                    }
+                    if (isElement(lt + 2, nameEnd(lt + 2, gt))) {
+                        return gt + 1;
+                    }
+                    depth--;
+                    i = gt + 1;
+                } else {
+                    int tagEnd = findTagEnd(lt + 1);
+                    if (tagEnd < 0 || isElement(lt + 1, nameEnd(lt + 1, tagEnd))) {
+                        return -1;
+                    }
+                    countElement(depth + 1);
+                    if (doc.get(tagEnd - 1) != '/') {
+                        depth++;
+                    }
+                    i = tagEnd + 1;
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * Индекс символа {@code '>'}, закрывающего открывающий тег, с учётом кавычек в значениях атрибутов.
+         */
+        private int findTagEnd(int from) {
+            byte quote = 0;
+            for (int i = from; i < end; i++) {
+                byte b = doc.get(i);
+                if (quote != 0) {
+                    if (b == quote) {
+                        quote = 0;
+                    }
+                } else if (b == '"' || b == '\'') {
+                    quote = b;
+                } else if (b == '>') {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        private int nameEnd(int from, int limit) {
+            int i = from;
+            while (i < limit) {
+                byte b = doc.get(i);
+                if (b == ' ' || b == '\t' || b == '\n' || b == '\r' || b == '/' || b == '>') {
+                    break;
+                }
+                i++;
+            }
+            return i;
+        }
+
+        /**
+         * Совпадает ли локальное имя (после префикса) в {@code [from, to)} с искомым элементом.
+         */
+        private boolean isElement(int from, int to) {
+            int localStart = from;
+            for (int i = from; i < to; i++) {
+                if (doc.get(i) == ':') {
+                    localStart = i + 1;
+                }
+            }
+            if (to - localStart != element.length) {
+                return false;
+            }
+            for (int i = 0; i < element.length; i++) {
+                if (doc.get(localStart + i) != element[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Атрибуты {@code xmlns} и {@code xmlns:prefix} тега по префиксам — для объявления в корне участков,
+         * лежащих внутри этого элемента.
+         */
+        private Map<String, byte[]> collectNamespaces(int from, int tagEnd) {
+            Map<String, byte[]> namespaces = Map.of();
+            int i = from;
+            while ((i = indexOf(i, XMLNS, tagEnd)) >= 0) {
+                byte before = doc.get(i - 1);
+                int eq = indexOf(i, (byte) '=');
+                if (eq < 0 || eq >= tagEnd || !(before == ' ' || before == '\t' || before == '\n' || before == '\r')) {
+                    i += XMLNS.length;
+                    continue;
+                }
+                int valueStart = eq + 1;
+                while (valueStart < tagEnd && doc.get(valueStart) != '"' && doc.get(valueStart) != '\'') {
+                    valueStart++;
+                }
+                if (valueStart >= tagEnd) {
+                    return namespaces;
+                }
+                int valueEnd = indexOf(valueStart + 1, doc.get(valueStart));
+                if (valueEnd < 0 || valueEnd > tagEnd) {
+                    return namespaces;
+                }
+                String prefix = new String(copy(i + XMLNS.length, eq), StandardCharsets.ISO_8859_1).trim();
+                if (namespaces.isEmpty()) {
+                    namespaces = new LinkedHashMap<>();
+                }
+                namespaces.put(prefix, copy(i, valueEnd + 1));
+                i = valueEnd + 1;
+            }
+            return namespaces;
+        }
+
+        private boolean startsWith(int from, byte[] prefix) {
+            if (from + prefix.length > end) {
+                return false;
+            }
+            for (int i = 0; i < prefix.length; i++) {
+                if (doc.get(from + i) != prefix[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private int indexOf(int from, byte value) {
+            for (int i = from; i < end; i++) {
+                if (doc.get(i) == value) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        private int indexOf(int from, byte[] value) {
+            return indexOf(from, value, end);
+        }
+
+        private int indexOf(int from, byte[] value, int limit) {
+            int last = limit - value.length;
+            for (int i = from; i <= last; i++) {
+                if (doc.get(i) == value[0] && startsWith(i, value)) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        private byte[] copy(int from, int to) {
+            byte[] bytes = new byte[to - from];
+            doc.duplicate().position(from).get(bytes);
+            return bytes;
+        }
+    }
+
+    private static byte[] ascii(String value) {
+        return value.getBytes(StandardCharsets.US_ASCII);
+    }
+
+}
@@ -0,0 +1,39 @@
+package ru.oiteb.xmlparser.service.parser;
+
+import java.util.regex.Pattern;
+
+/**
+ * Распознавание нарушений ограничений {@code converter.parser.limits} среди ошибок парсера.
+ * <p>
+ * Woodstox не выделяет их в отдельный тип исключения: о превышении глубины, числа элементов и атрибутов,
+ * длины текста и размера документа он сообщает обычным {@link javax.xml.stream.XMLStreamException} с текстом
+ * вида {@code "Maximum Element Depth limit (64) Exceeded"}, поэтому нарушение узнаётся по тексту сообщения.
+ * При ленивом разборе ошибка приходит обёрнутой в {@link com.ctc.wstx.exc.WstxLazyException}.
+ * </p>
+ */
+final class XmlLimitViolations {
+
+    private static final Pattern LIMIT_EXCEEDED = Pattern.compile("limit\\s*\\(\\d+\\)\\s*exceeded",
+            Pattern.CASE_INSENSITIVE);
+
+    private XmlLimitViolations() {
+        throw new UnsupportedOperationException("Utility class");
+    }
+
+    /**
+     * Вызвана ли ошибка (или одна из её причин) нарушением ограничений парсера.
+     *
+     * @param error ошибка чтения XML
+     * @return {@code true}, если превышено одно из ограничений
+     */
+    static boolean isLimitViolation(Throwable error) {
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            String message = cause.getMessage();
+            if (message != null && LIMIT_EXCEEDED.matcher(message).find()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+}
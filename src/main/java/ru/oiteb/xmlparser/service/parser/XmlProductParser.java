@@ -1,22 +1,35 @@
 package ru.oiteb.xmlparser.service.parser;
 
+import com.ctc.wstx.exc.WstxLazyException;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Component;
+import ru.oiteb.xmlparser.config.ParserProperties;
 import ru.oiteb.xmlparser.entity.ProductData;
+import ru.oiteb.xmlparser.entity.ProductField;
+import ru.oiteb.xmlparser.entity.ProductRow;
 import ru.oiteb.xmlparser.exception.InvalidXmlFileException;
 import ru.oiteb.xmlparser.exception.ParsingException;
+import ru.oiteb.xmlparser.service.table.MutableProductRow;
+import ru.oiteb.xmlparser.service.table.ProductTable;
 
 import javax.xml.stream.XMLInputFactory;
-import javax.xml.stream.XMLStreamConstants;
 import javax.xml.stream.XMLStreamException;
 import javax.xml.stream.XMLStreamReader;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 
-import static javax.xml.stream.XMLStreamConstants.*;
 import static ru.oiteb.xmlparser.constants.ExceptionsDescriptions.*;
 import static ru.oiteb.xmlparser.constants.XmlTagConstants.*;
 
@@ -25,19 +38,46 @@ import static ru.oiteb.xmlparser.constants.XmlTagConstants.*;
  * <p>
  * Реализует потоковый (streaming) подход с использованием {@link XMLStreamReader},
  * что позволяет обрабатывать большие XML-файлы с минимальным потреблением памяти.
- * Основной метод {@link #parseXml(byte[])} принимает байтовый массив XML и возвращает список объектов {@link ProductData}.
+ * Основной метод {@link #parseXml(InputStream)} читает XML напрямую из потока и возвращает список объектов {@link ProductData};
+ * {@link #parseXml(byte[])} оставлен для случаев, когда документ уже находится в памяти.
  * </p>
  * <p>
  * Парсер ожидает XML-структуру, содержащую элементы {@code <productInfo>},
  * внутри которых расположены теги: {@code indexNum}, {@code name}, {@code OKEIInfo},
  * {@code OKPD2Info}, {@code medicalProductCode}, {@code countryFullName}, {@code trademarkInfo} и др.
+ * Обход документа общий с {@link XmlProductValidator} ({@link XmlProductTraversal}): парсер только заполняет
+ * строку продукта и прерывает разбор на первом нарушении.
+ * </p>
+ * <p>
+ * Документы, размер которых превышает порог {@code converter.parser.parallel.threshold}, могут разбираться
+ * параллельно — см. {@link #parseXml(ByteBuffer, Consumer)}.
+ * </p>
+ * <p>
+ * Методы {@code parseRows} передают продукты как {@link ProductRow} — одну переиспользуемую строку на разбор,
+ * без объекта {@link ProductData} на каждый продукт; получатель копирует значения к себе (например, в
+ * {@link ProductTable}). Методы {@code parseXml} — обёртка над ними для получателей {@link ProductData}.
+ * </p>
+ * <p>
+ * Повторяющиеся значения полей из {@code converter.parser.dedup.fields} приводятся к одному экземпляру строки
+ * с помощью словаря, который создаётся на каждый разбираемый документ ({@link StringDictionary}).
+ * </p>
+ * <p>
+ * Документы, нарушающие ограничения {@code converter.parser.limits} (глубина, число элементов и атрибутов,
+ * длина текста и размер документа), отклоняются с {@link InvalidXmlFileException} с сообщением
+ * {@code XML_LIMITS_EXCEEDED} без дочитывания.
  * </p>
  */
 @Component
 @RequiredArgsConstructor
 public class XmlProductParser {
 
+    /**
+     * Сколько участков на поток пула разбирается одновременно при параллельном разборе.
+     */
+    private static final int CHUNKS_PER_THREAD = 2;
+
     private final XMLInputFactory xmlInputFactory;
+    private final ParserProperties properties;
 
     /**
      * Парсит XML-данные из байтового массива и возвращает список продуктов.
@@ -60,197 +100,305 @@ public class XmlProductParser {
             throw new InvalidXmlFileException(EMPTY_XML_FILE);
         }
         try (InputStream inputStream = new ByteArrayInputStream(xmlBytes)) {
-            XMLStreamReader reader = xmlInputFactory.createXMLStreamReader(inputStream);
-            List<ProductData> products = new ArrayList<>();
-
-            while (reader.hasNext()) {
-                if (reader.next() == START_ELEMENT && PRODUCT_INFO.equals(reader.getLocalName())) {
-                    products.add(parseProduct(reader));
-                }
-            }
-            return products;
-        } catch (XMLStreamException e) {
-            throw new InvalidXmlFileException(INVALID_XML_FILE);
+            return parseXml(inputStream);
         } catch (IOException e) {
             throw new ParsingException(INPUT_STREAM_EXCEPTION);
         }
     }
 
     /**
-     * Извлекает данные одного продукта из XML-потока, начиная с тега {@code <productInfo>}.
+     * Парсит XML-данные напрямую из потока и возвращает список продуктов.
      * <p>
-     * Метод парсит дочерние элементы до тех пор, пока не встретит закрывающий {@code </productInfo>}.
-     * Поддерживаются вложенные структуры: {@code trademarkInfo → trademark}, {@code OKPD2Info → OKPDCode} и др.
+     * Поток читается по мере разбора, поэтому исходный документ целиком в памяти не хранится.
+     * Метод не закрывает переданный поток — за это отвечает вызывающий код.
      * </p>
      *
-     * @param reader поток, позиционированный на открывающем теге {@code <productInfo>}
-     * @return заполненный объект {@link ProductData}
-     * @throws InvalidXmlFileException если структура XML внутри {@code <productInfo>} нарушена
-     * @throws XMLStreamException      если возникла низкоуровневая ошибка при чтении XML
+     * @param inputStream поток с содержимым XML-файла; не должен быть {@code null}
+     * @return список объектов {@link ProductData}, по одному на каждый найденный {@code <productInfo>}
+     * @throws InvalidXmlFileException если поток {@code null}, пуст или XML не соответствует ожидаемой структуре
+     * @see #parseXml(InputStream, Consumer)
      */
-    private ProductData parseProduct(XMLStreamReader reader) throws XMLStreamException {
-        ProductData product = new ProductData();
-        while (reader.hasNext()) {
-            int event = reader.next();
-            if (event == START_ELEMENT) {
-                String elementName = reader.getLocalName();
-                switch (elementName) {
-                    case INDEX_NUM:
-                        product.setIndexNum(parseIndexNumber(reader));
-                        break;
-                    case NAME:
-                        if (isEmpty(product.getFullName())) {
-                            product.setFullName(readElementText(reader));
-                        } else {
-                            readElementText(reader);
-                        }
-                        break;
-                    case TRADEMARK_INFO:
-                        product.setTradeMark(parseTrademark(reader));
-                        break;
-                    case OKEI_INFO:
-                        product.setUnit(parseOKEIUnit(reader));
-                        break;
-                    case OKPD2_INFO:
-                        product.setOkpd2(parseOkpd2(reader));
-                        break;
-                    case MEDICAL_PRODUCT_CODE:
-                        product.setNkmi(readElementText(reader));
-                        break;
-                    case COUNTRY_FULL_NAME:
-                        product.setCountry(readElementText(reader));
-                        break;
-                    default:
-                        readElementText(reader);
-                        break;
-                }
-            }
-            if (event == END_ELEMENT && PRODUCT_INFO.equals(reader.getLocalName())) {
-                break;
-            }
-        }
-        return product;
+    public List<ProductData> parseXml(InputStream inputStream) {
+        List<ProductData> products = new ArrayList<>();
+        parseXml(inputStream, products::add);
+        return products;
     }
 
     /**
-     * Безопасно считывает текстовое содержимое текущего XML-элемента.
+     * Парсит XML-данные из потока и передаёт каждый найденный продукт получателю сразу после его разбора.
      * <p>
-     * Метод обрабатывает возможное разделение текста на несколько {@code CHARACTERS}-событий
-     * (что допустимо в StAX) и объединяет их в одну строку.
-     * Также поддерживает CDATA-секции.
+     * Позволяет обрабатывать продукты (например, сортировать со сбросом на диск), не собирая их
+     * в общий список. Продукты передаются в порядке документа.
      * </p>
      *
-     * @param reader поток, позиционированный на открывающем теге элемента
-     * @return текстовое содержимое элемента, обрезанное по краям; пустая строка, если содержимого нет
-     * @throws XMLStreamException если поток завершился некорректно
+     * @param inputStream поток с содержимым XML-файла; не должен быть {@code null}
+     * @param consumer    получатель продуктов
+     * @throws InvalidXmlFileException если поток {@code null}, пуст или XML не соответствует ожидаемой структуре
      */
-    private String readElementText(XMLStreamReader reader) throws XMLStreamException {
-        StringBuilder text = new StringBuilder();
-        while (reader.hasNext()) {
-            int event = reader.next();
-            if (event == CHARACTERS || event == XMLStreamConstants.CDATA) {
-                text.append(reader.getText());
-            } else if (event == END_ELEMENT) {
-                break;
-            }
-        }
-        return text.toString().trim();
+    public void parseXml(InputStream inputStream, Consumer<ProductData> consumer) {
+        parseRows(inputStream, row -> consumer.accept(row.toProductData()));
     }
 
     /**
-     * Парсит числовое значение индекса продукта.
+     * Парсит XML-данные из потока и передаёт каждый продукт получателю как строку {@link ProductRow}.
+     * <p>
+     * Строка одна на весь разбор и заполняется заново для каждого продукта, поэтому действительна только
+     * во время вызова получателя: значения нужно скопировать (например, в {@link ProductTable#add(ProductRow)}).
+     * </p>
      *
-     * @param reader поток, позиционированный на открывающем теге {@code <indexNum>}
-     * @return целое число; 0, если тег пуст
-     * @throws InvalidXmlFileException если содержимое тега не является допустимым целым числом
-     * @throws XMLStreamException      если возникла ошибка при чтении XML
+     * @param inputStream поток с содержимым XML-файла; не должен быть {@code null}
+     * @param consumer    получатель продуктов
+     * @throws InvalidXmlFileException если поток {@code null}, пуст или XML не соответствует ожидаемой структуре
      */
-    private int parseIndexNumber(XMLStreamReader reader) throws XMLStreamException {
-        String text = readElementText(reader);
-        if (isEmpty(text)) {
-            return 0;
+    public void parseRows(InputStream inputStream, Consumer<? super ProductRow> consumer) {
+        parseRows(inputStream, consumer, StringDictionary.create(properties.getDedup()));
+    }
+
+    private void parseRows(InputStream inputStream, Consumer<? super ProductRow> consumer,
+                           StringDictionary dictionary) {
+        if (inputStream == null) {
+            throw new InvalidXmlFileException(EMPTY_XML_FILE);
         }
+        XmlProductTraversal traversal = new XmlProductTraversal(properties.getLimits().getMaxTextLength());
+        XMLStreamReader reader = null;
         try {
-            return Integer.parseInt(text);
-        } catch (NumberFormatException e) {
-            throw new InvalidXmlFileException(UNREADABLE_XML_FILE);
+            reader = xmlInputFactory.createXMLStreamReader(inputStream);
+            traversal.traverse(reader, new RowSink(dictionary, consumer));
+        } catch (XMLStreamException | WstxLazyException e) {
+            throw new InvalidXmlFileException(
+                    XmlLimitViolations.isLimitViolation(e) ? XML_LIMITS_EXCEEDED : INVALID_XML_FILE);
+        } finally {
+            XmlProductTraversal.closeQuietly(reader);
         }
     }
 
     /**
-     * Извлекает наименование торговой марки из блока {@code <trademarkInfo>}.
+     * Парсит XML-документ, целиком находящийся в буфере (например, в отображённом в память файле),
+     * и передаёт продукты получателю в порядке документа.
+     * <p>
+     * Если документ достаточно велик ({@link #shouldParseInParallel(long)}), он делится побайтовым просмотром
+     * на участки по границам {@code <productInfo>}, которые разбираются в {@link ForkJoinPool#commonPool()}
+     * той же логикой, что и при последовательном разборе. Части документа вне {@code <productInfo>}
+     * проверяются отдельно. Одновременно в пуле не больше двух участков на поток: следующий участок ставится
+     * в очередь, когда очередной разобранный передаётся получателю, а таблица переданного участка сразу
+     * освобождается. Если какой-либо участок не разобран, документ дочитывается последовательно
+     * с пропуском уже переданных продуктов — поэтому ошибка совпадает с ошибкой последовательного разбора.
+     * Исключение, выброшенное получателем, передаётся вызывающему коду без повторного разбора.
+     * </p>
      *
-     * @param reader поток, позиционированный на открывающем теге {@code <trademarkInfo>}
-     * @return значение {@code <trademark>}, или пустая строка, если не найдено
-     * @throws XMLStreamException если возникла ошибка при чтении XML
+     * @param xml      буфер с содержимым XML-файла от {@code position} до {@code limit}; позиция не изменяется
+     * @param consumer получатель продуктов
+     * @throws InvalidXmlFileException если буфер {@code null}, пуст или XML не соответствует ожидаемой структуре
      */
-    private String parseTrademark(XMLStreamReader reader) throws XMLStreamException {
-        while (reader.hasNext()) {
-            int event = reader.next();
-            if (event == START_ELEMENT && TRADEMARK.equals(reader.getLocalName())) {
-                return readElementText(reader);
-            }
-            if (event == END_ELEMENT && TRADEMARK_INFO.equals(reader.getLocalName())) {
-                break;
-            }
+    public void parseXml(ByteBuffer xml, Consumer<ProductData> consumer) {
+        parseRows(xml, row -> consumer.accept(row.toProductData()));
+    }
+
+    /**
+     * То же, что {@link #parseXml(ByteBuffer, Consumer)}, но продукты передаются как {@link ProductRow}:
+     * при последовательном разборе — переиспользуемой строкой, при параллельном — курсором по
+     * {@link ProductTable} участка. Строка действительна только во время вызова получателя.
+     *
+     * @param xml      буфер с содержимым XML-файла от {@code position} до {@code limit}; позиция не изменяется
+     * @param consumer получатель продуктов
+     * @throws InvalidXmlFileException если буфер {@code null}, пуст или XML не соответствует ожидаемой структуре
+     */
+    public void parseRows(ByteBuffer xml, Consumer<? super ProductRow> consumer) {
+        if (xml == null || !xml.hasRemaining()) {
+            throw new InvalidXmlFileException(EMPTY_XML_FILE);
         }
-        return "";
+        XmlChunkSplitter.Split split = shouldParseInParallel(xml.remaining())
+                ? XmlChunkSplitter.split(xml, PRODUCT_INFO, (int) properties.getParallel().getChunkSize().toBytes())
+                : null;
+        if (split == null || split.chunks().size() < 2 || !withinLimits(split)) {
+            parseRows(new ByteBufferInputStream(xml), consumer);
+            return;
+        }
+        parseInParallel(xml, split, consumer);
+    }
+
+    /**
+     * Укладывается ли документ целиком в ограничения на число элементов и глубину вложенности.
+     * Участки проверяются парсером по отдельности, поэтому документ, превышающий ограничения, разбирается
+     * последовательно — и отклоняется в том же месте и с той же ошибкой.
+     */
+    private boolean withinLimits(XmlChunkSplitter.Split split) {
+        ParserProperties.Limits limits = properties.getLimits();
+        return split.elementCount() <= limits.getMaxElementCount()
+                && split.maxDepth() <= limits.getMaxElementDepth();
     }
 
     /**
-     * Извлекает национальный код единицы измерения из блока {@code <OKEIInfo>}.
+     * Стоит ли разбирать документ указанного размера параллельно.
      * <p>
-     * Элемент {@code <nationalCode>} является обязательным — если он отсутствует,
-     * выбрасывается исключение.
+     * Документ больше {@code converter.parser.limits.max-document-size} байт разбирается последовательно:
+     * ограничение на размер проверяется только при чтении документа целиком.
      * </p>
      *
-     * @param reader поток, позиционированный на открывающем теге {@code <OKEIInfo>}
-     * @return значение {@code <nationalCode>}
-     * @throws InvalidXmlFileException если элемент {@code <nationalCode>} отсутствует или пуст
-     * @throws XMLStreamException      если возникла ошибка при чтении XML
+     * @param size размер документа в байтах
+     * @return {@code true}, если параллельный разбор включён и размер не меньше порога и не больше ограничения
      */
-    private String parseOKEIUnit(XMLStreamReader reader) throws XMLStreamException {
-        while (reader.hasNext()) {
-            int event = reader.next();
-            if (event == START_ELEMENT) {
-                if (NATIONAL_CODE.equals(reader.getLocalName())) {
-                    String code = readElementText(reader);
-                    if (isEmpty(code)) {
-                        throw new InvalidXmlFileException(EMPTY_NATIONAL_CODE);
-                    }
-                    return code;
-                } else {
-                    readElementText(reader);
+    public boolean shouldParseInParallel(long size) {
+        ParserProperties.Parallel parallel = properties.getParallel();
+        return parallel.isEnabled()
+                && size >= parallel.getThreshold().toBytes()
+                && size <= properties.getLimits().getMaxDocumentSize().toBytes()
+                && Runtime.getRuntime().availableProcessors() > 1;
+    }
+
+    private void parseInParallel(ByteBuffer xml, XmlChunkSplitter.Split split, Consumer<? super ProductRow> consumer) {
+        ForkJoinPool pool = ForkJoinPool.commonPool();
+        StringDictionary dictionary = StringDictionary.create(properties.getDedup());
+        int window = Math.max(2, pool.getParallelism() * CHUNKS_PER_THREAD);
+        Iterator<XmlChunkSplitter.Chunk> pending = split.chunks().iterator();
+        Deque<ForkJoinTask<ProductTable>> inFlight = new ArrayDeque<>(window);
+        ForkJoinTask<ProductTable> skeleton = pool.submit(() -> parseChunk(split.skeletonStream(xml), dictionary));
+        try {
+            while (inFlight.size() < window && pending.hasNext()) {
+                inFlight.add(submitChunk(pool, xml, split, pending.next(), dictionary));
+            }
+            if (joinParsed(skeleton) == null) {
+                cancel(inFlight);
+                parseSkipping(xml, 0, consumer, dictionary);
+                return;
+            }
+            int delivered = 0;
+            while (!inFlight.isEmpty()) {
+                ProductTable products = joinParsed(inFlight.poll());
+                if (products == null) {
+                    cancel(inFlight);
+                    parseSkipping(xml, delivered, consumer, dictionary);
+                    return;
                 }
-            } else if (event == END_ELEMENT && OKEI_INFO.equals(reader.getLocalName())) {
-                throw new InvalidXmlFileException(INVALID_OKEI_INFO);
+                if (pending.hasNext()) {
+                    inFlight.add(submitChunk(pool, xml, split, pending.next(), dictionary));
+                }
+                // исключения получателя не означают ошибку разбора и передаются вызывающему коду как есть
+                products.rows().forEach(consumer);
+                delivered += products.size();
             }
+        } finally {
+            skeleton.cancel(false);
+            cancel(inFlight);
         }
-        throw new InvalidXmlFileException(EMPTY_OKEI_INFO);
+    }
+
+    private ForkJoinTask<ProductTable> submitChunk(ForkJoinPool pool, ByteBuffer xml, XmlChunkSplitter.Split split,
+                                                   XmlChunkSplitter.Chunk chunk, StringDictionary dictionary) {
+        return pool.submit(() -> parseChunk(split.chunkStream(xml, chunk), dictionary));
     }
 
     /**
-     * Извлекает код ОКПД2 из блока {@code <OKPD2Info>}.
-     *
-     * @param reader поток, позиционированный на открывающем теге {@code <OKPD2Info>}
-     * @return значение {@code <OKPDCode>}, или пустая строка, если не найдено
-     * @throws XMLStreamException если возникла ошибка при чтении XML
+     * Отменяет ещё не переданные участки и убирает их из очереди.
+     */
+    private static void cancel(Deque<ForkJoinTask<ProductTable>> inFlight) {
+        for (ForkJoinTask<ProductTable> task = inFlight.poll(); task != null; task = inFlight.poll()) {
+            task.cancel(false);
+        }
+    }
+
+    /**
+     * Результат разбора участка или {@code null}, если участок не разобран и документ нужно дочитать
+     * последовательно.
      */
-    private String parseOkpd2(XMLStreamReader reader) throws XMLStreamException {
-        while (reader.hasNext()) {
-            int event = reader.next();
-            if (event == START_ELEMENT && OKPD_CODE.equals(reader.getLocalName())) {
-                return readElementText(reader);
+    private ProductTable joinParsed(ForkJoinTask<ProductTable> task) {
+        try {
+            return join(task);
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    private ProductTable parseChunk(InputStream chunk, StringDictionary dictionary) {
+        ProductTable products = new ProductTable();
+        parseRows(chunk, products::add, dictionary);
+        return products;
+    }
+
+    /**
+     * Последовательно разбирает документ, не передавая получателю первые {@code skip} продуктов.
+     */
+    private void parseSkipping(ByteBuffer xml, int skip, Consumer<? super ProductRow> consumer,
+                               StringDictionary dictionary) {
+        AtomicInteger seen = new AtomicInteger();
+        parseRows(new ByteBufferInputStream(xml), product -> {
+            if (seen.getAndIncrement() >= skip) {
+                consumer.accept(product);
             }
-            if (event == END_ELEMENT && OKPD2_INFO.equals(reader.getLocalName())) {
-                break;
+        }, dictionary);
+    }
+
+    private <T> T join(ForkJoinTask<T> task) {
+        try {
+            return task.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
             }
+            throw new ParsingException(INPUT_STREAM_EXCEPTION);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ParsingException(INPUT_STREAM_EXCEPTION);
         }
-        return "";
     }
 
-    private boolean isEmpty(String str) {
-        return str == null || str.isEmpty();
+    /**
+     * Заполняет переиспользуемую строку данными продукта и передаёт её получателю в конце {@code <productInfo>}.
+     * Значения дедуплицируемых полей берутся из словаря документа: для уже встречавшегося значения используется
+     * тот же экземпляр строки, и новая строка не создаётся. Нарушения правил документа прерывают разбор.
+     */
+    private static final class RowSink implements XmlProductTraversal.Sink {
+
+        private final MutableProductRow row = new MutableProductRow();
+        private final StringDictionary dictionary;
+        private final Consumer<? super ProductRow> consumer;
+
+        private RowSink(StringDictionary dictionary, Consumer<? super ProductRow> consumer) {
+            this.dictionary = dictionary;
+            this.consumer = consumer;
+        }
+
+        @Override
+        public void startProduct() {
+            row.clear();
+        }
+
+        @Override
+        public void indexNum(int value) {
+            row.setIndexNum(value);
+        }
+
+        @Override
+        public void field(ProductField field, TextBuffer text) {
+            if (!dictionary.isDeduplicated(field)) {
+                row.set(field, text.toTrimmedString());
+                return;
+            }
+            int start = text.trimmedStart();
+            row.set(field, dictionary.canonicalize(text, start, Math.max(start, text.trimmedEnd())));
+        }
+
+        @Override
+        public void endProduct() {
+            consumer.accept(row);
+        }
+
+        @Override
+        public void violation(XMLStreamReader reader, XmlProductTraversal.Violation violation, TextBuffer value) {
+            switch (violation) {
+                case TEXT_TOO_LONG:
+                    throw new InvalidXmlFileException(XML_LIMITS_EXCEEDED);
+                case INVALID_INDEX_NUM:
+                    throw new InvalidXmlFileException(UNREADABLE_XML_FILE);
+                case EMPTY_NATIONAL_CODE:
+                    throw new InvalidXmlFileException(EMPTY_NATIONAL_CODE);
+                case MISSING_NATIONAL_CODE:
+                    throw new InvalidXmlFileException(INVALID_OKEI_INFO);
+                default:
+                    throw new InvalidXmlFileException(EMPTY_OKEI_INFO);
+            }
+        }
+
     }
 
 }
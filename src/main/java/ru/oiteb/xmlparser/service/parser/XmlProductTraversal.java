@@ -0,0 +1,293 @@
+package ru.oiteb.xmlparser.service.parser;
+
+import org.codehaus.stax2.XMLStreamReader2;
+import ru.oiteb.xmlparser.entity.ProductField;
+
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import static javax.xml.stream.XMLStreamConstants.*;
+
+/**
+ * Обход элементов {@code <productInfo>} документа, общий для {@link XmlProductParser} и {@link XmlProductValidator}.
+ * <p>
+ * Обход находит продукты на любом уровне вложенности, сопоставляет имена дочерних элементов через {@link XmlTag},
+ * собирает их текст в переиспользуемый {@link TextBuffer} и передаёт значения полей в {@link Sink}. Неизвестные
+ * элементы пропускаются целиком вместе с вложенными, поэтому их дочерние элементы не принимаются за поля продукта.
+ * Из нескольких {@code <name>} берётся первый непустой, из вложенных блоков ({@code <trademarkInfo>},
+ * {@code <OKPD2Info>}, {@code <OKEIInfo>}) — первый элемент с полем.
+ * </p>
+ * <p>
+ * Нарушения правил документа передаются в {@link Sink#violation}: парсер выбрасывает исключение, а проверка
+ * записывает нарушение и продолжает обход. Обход не потокобезопасен: у каждого разбора свой экземпляр.
+ * </p>
+ */
+final class XmlProductTraversal {
+
+    private final TextBuffer text = new TextBuffer();
+    private final int maxTextLength;
+
+    XmlProductTraversal(int maxTextLength) {
+        this.maxTextLength = maxTextLength;
+    }
+
+    /**
+     * Нарушение правил документа, обнаруженное при обходе.
+     */
+    enum Violation {
+        /**
+         * Текст элемента длиннее {@code converter.parser.limits.max-text-length}.
+         */
+        TEXT_TOO_LONG,
+        /**
+         * {@code <indexNum>} не является целым числом.
+         */
+        INVALID_INDEX_NUM,
+        /**
+         * {@code <nationalCode>} пуст.
+         */
+        EMPTY_NATIONAL_CODE,
+        /**
+         * В {@code <OKEIInfo>} нет {@code <nationalCode>}.
+         */
+        MISSING_NATIONAL_CODE,
+        /**
+         * Документ закончился внутри {@code <OKEIInfo>}.
+         */
+        UNTERMINATED_OKEI_INFO
+    }
+
+    /**
+     * Получатель продуктов. Текст передаётся буфером, который действителен только во время вызова.
+     */
+    interface Sink {
+
+        /**
+         * Начало очередного {@code <productInfo>}.
+         */
+        void startProduct();
+
+        /**
+         * Значение {@code <indexNum>}; 0, если элемент пуст.
+         */
+        void indexNum(int value);
+
+        /**
+         * Текст элемента поля; пробельные символы по краям не отброшены.
+         */
+        void field(ProductField field, TextBuffer text);
+
+        /**
+         * Конец {@code <productInfo>}.
+         */
+        void endProduct();
+
+        /**
+         * Нарушение правил документа. Если метод вернул управление, обход продолжается.
+         *
+         * @param reader    поток, позиционированный там, где обнаружено нарушение
+         * @param violation вид нарушения
+         * @param value     текст элемента, нарушившего правило, или {@code null}
+         */
+        void violation(XMLStreamReader reader, Violation violation, TextBuffer value);
+
+    }
+
+    /**
+     * Проходит документ до конца, передавая продукты получателю в порядке документа.
+     *
+     * @param reader поток в начале документа
+     * @param sink   получатель продуктов
+     * @throws XMLStreamException если документ некорректен или нарушает ограничения парсера
+     */
+    void traverse(XMLStreamReader reader, Sink sink) throws XMLStreamException {
+        while (reader.hasNext()) {
+            if (reader.next() == START_ELEMENT && XmlTag.of(reader.getLocalName()) == XmlTag.PRODUCT_INFO) {
+                sink.startProduct();
+                traverseProduct(reader, sink);
+                sink.endProduct();
+            }
+        }
+    }
+
+    /**
+     * Проходит дочерние элементы одного продукта до закрывающего {@code </productInfo>}.
+     */
+    private void traverseProduct(XMLStreamReader reader, Sink sink) throws XMLStreamException {
+        boolean named = false;
+        while (reader.hasNext()) {
+            int event = reader.next();
+            if (event == START_ELEMENT) {
+                switch (XmlTag.of(reader.getLocalName())) {
+                    case INDEX_NUM:
+                        indexNum(reader, sink);
+                        break;
+                    case NAME:
+                        if (named) {
+                            skipElement(reader);
+                        } else {
+                            TextBuffer name = collectElementText(reader, sink);
+                            named = name.trimmedStart() < name.trimmedEnd();
+                            sink.field(ProductField.FULL_NAME, name);
+                        }
+                        break;
+                    case TRADEMARK_INFO:
+                        nested(reader, sink, XmlTag.TRADEMARK_INFO, XmlTag.TRADEMARK, ProductField.TRADE_MARK);
+                        break;
+                    case OKEI_INFO:
+                        okeiInfo(reader, sink);
+                        break;
+                    case OKPD2_INFO:
+                        nested(reader, sink, XmlTag.OKPD2_INFO, XmlTag.OKPD_CODE, ProductField.OKPD2);
+                        break;
+                    case MEDICAL_PRODUCT_CODE:
+                        sink.field(ProductField.NKMI, collectElementText(reader, sink));
+                        break;
+                    case COUNTRY_FULL_NAME:
+                        sink.field(ProductField.COUNTRY, collectElementText(reader, sink));
+                        break;
+                    default:
+                        skipElement(reader);
+                        break;
+                }
+            }
+            if (event == END_ELEMENT && XmlTag.of(reader.getLocalName()) == XmlTag.PRODUCT_INFO) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * Разбирает {@code <indexNum>} прямо из буфера, без промежуточной строки.
+     */
+    private void indexNum(XMLStreamReader reader, Sink sink) throws XMLStreamException {
+        TextBuffer value = collectElementText(reader, sink);
+        int start = value.trimmedStart();
+        int end = value.trimmedEnd();
+        if (start >= end) {
+            sink.indexNum(0);
+            return;
+        }
+        int parsed;
+        try {
+            parsed = Integer.parseInt(value, start, end, 10);
+        } catch (NumberFormatException e) {
+            sink.violation(reader, Violation.INVALID_INDEX_NUM, value);
+            return;
+        }
+        sink.indexNum(parsed);
+    }
+
+    /**
+     * Находит обязательный {@code <nationalCode>} в блоке {@code <OKEIInfo>}.
+     */
+    private void okeiInfo(XMLStreamReader reader, Sink sink) throws XMLStreamException {
+        while (reader.hasNext()) {
+            int event = reader.next();
+            if (event == START_ELEMENT) {
+                if (XmlTag.of(reader.getLocalName()) == XmlTag.NATIONAL_CODE) {
+                    TextBuffer code = collectElementText(reader, sink);
+                    if (code.trimmedStart() >= code.trimmedEnd()) {
+                        sink.violation(reader, Violation.EMPTY_NATIONAL_CODE, code);
+                    } else {
+                        sink.field(ProductField.UNIT, code);
+                    }
+                    return;
+                }
+                skipElement(reader);
+            } else if (event == END_ELEMENT && XmlTag.of(reader.getLocalName()) == XmlTag.OKEI_INFO) {
+                sink.violation(reader, Violation.MISSING_NATIONAL_CODE, null);
+                return;
+            }
+        }
+        sink.violation(reader, Violation.UNTERMINATED_OKEI_INFO, null);
+    }
+
+    /**
+     * Передаёт текст первого элемента {@code element} внутри блока {@code block}
+     * (например, {@code <trademark>} в {@code <trademarkInfo>}) или пустой текст, если элемента в блоке нет.
+     */
+    private void nested(XMLStreamReader reader, Sink sink, XmlTag block, XmlTag element, ProductField field)
+            throws XMLStreamException {
+        while (reader.hasNext()) {
+            int event = reader.next();
+            if (event == START_ELEMENT && XmlTag.of(reader.getLocalName()) == element) {
+                sink.field(field, collectElementText(reader, sink));
+                return;
+            }
+            if (event == END_ELEMENT && XmlTag.of(reader.getLocalName()) == block) {
+                break;
+            }
+        }
+        text.clear();
+        sink.field(field, text);
+    }
+
+    /**
+     * Собирает текст текущего элемента в буфер обхода.
+     * <p>
+     * Текст может прийти несколькими событиями {@code CHARACTERS} и {@code CDATA}; символы копируются
+     * из внутреннего массива парсера ({@link XMLStreamReader#getTextCharacters()}) без промежуточных строк.
+     * Парсер ограничивает длину каждого события, но не элемента целиком, поэтому длина объединённого текста
+     * сверяется с {@code converter.parser.limits.max-text-length}; если получатель продолжил обход после
+     * нарушения, остаток элемента дочитывается без копирования.
+     * </p>
+     */
+    private TextBuffer collectElementText(XMLStreamReader reader, Sink sink) throws XMLStreamException {
+        text.clear();
+        boolean exceeded = false;
+        while (reader.hasNext()) {
+            int event = reader.next();
+            if ((event == CHARACTERS || event == XMLStreamConstants.CDATA) && !exceeded) {
+                text.append(reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength());
+                if (text.length() > maxTextLength) {
+                    exceeded = true;
+                    sink.violation(reader, Violation.TEXT_TOO_LONG, text);
+                }
+            } else if (event == END_ELEMENT) {
+                break;
+            }
+        }
+        return text;
+    }
+
+    /**
+     * Пропускает элемент целиком, вместе со всеми вложенными элементами, не материализуя текст.
+     * <p>
+     * Для Woodstox используется {@link XMLStreamReader2#skipElement()}: содержимое проходится без разбора
+     * текста и атрибутов. Для прочих реализаций StAX события пропускаются с учётом глубины вложенности.
+     * После вызова поток позиционирован на закрывающем теге пропущенного элемента.
+     * </p>
+     */
+    private static void skipElement(XMLStreamReader reader) throws XMLStreamException {
+        if (reader instanceof XMLStreamReader2 stax2) {
+            stax2.skipElement();
+            return;
+        }
+        int depth = 1;
+        while (depth > 0 && reader.hasNext()) {
+            int event = reader.next();
+            if (event == START_ELEMENT) {
+                depth++;
+            } else if (event == END_ELEMENT) {
+                depth--;
+            }
+        }
+    }
+
+    /**
+     * Закрывает поток парсера, не выбрасывая исключений; исходный поток закрывает вызывающий код.
+     */
+    static void closeQuietly(XMLStreamReader reader) {
+        if (reader == null) {
+            return;
+        }
+        try {
+            reader.close();
+        } catch (XMLStreamException e) {
+            // ресурсы парсера освобождены настолько, насколько это возможно
+        }
+    }
+
+}
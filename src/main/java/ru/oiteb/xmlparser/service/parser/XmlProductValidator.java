@@ -0,0 +1,200 @@
+package ru.oiteb.xmlparser.service.parser;
+
+import com.ctc.wstx.exc.WstxLazyException;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import ru.oiteb.xmlparser.config.ParserProperties;
+import ru.oiteb.xmlparser.entity.ProductField;
+import ru.oiteb.xmlparser.entity.ValidationReport;
+import ru.oiteb.xmlparser.entity.ValidationViolation;
+import ru.oiteb.xmlparser.exception.InvalidXmlFileException;
+
+import javax.xml.stream.Location;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import static ru.oiteb.xmlparser.constants.ExceptionsDescriptions.*;
+
+/**
+ * Проверка XML-документа по тем же правилам, что применяет {@link XmlProductParser}, без конвертации.
+ * <p>
+ * Документ проходится тем же обходом ({@link XmlProductTraversal}) и с теми же ограничениями
+ * {@code converter.parser.limits}, но объекты {@link ru.oiteb.xmlparser.entity.ProductData} не создаются, строки для значений полей не
+ * материализуются, а книга не строится: текст элементов копируется в один переиспользуемый буфер, и из него
+ * проверяются только значения, на которые есть правила. Поэтому проверка занимает постоянный объём памяти
+ * и работает в разы быстрее конвертации.
+ * </p>
+ * <p>
+ * В отличие от парсера, проверка не останавливается на первом нарушении правил ({@code nationalCode} в
+ * {@code <OKEIInfo>}, числовой {@code indexNum}, длина текста элемента) и перечисляет все нарушения с номером
+ * строки и столбца из {@link Location} парсера. Нарушение корректности XML или ограничений парсера
+ * дальнейшее чтение делает невозможным, поэтому оно всегда последнее в отчёте; превышение ограничений
+ * описывается тем же сообщением, что и у парсера.
+ * </p>
+ */
+@Component
+@RequiredArgsConstructor
+public class XmlProductValidator {
+
+    private static final int MAX_QUOTED_VALUE_LENGTH = 64;
+
+    private final XMLInputFactory xmlInputFactory;
+    private final ParserProperties properties;
+
+    /**
+     * Проверяет XML-документ из потока. Метод не закрывает переданный поток — за это отвечает вызывающий код.
+     *
+     * @param inputStream поток с содержимым XML-файла; не должен быть {@code null}
+     * @return число продуктов и найденные нарушения
+     * @throws InvalidXmlFileException если поток {@code null}
+     */
+    public ValidationReport validate(InputStream inputStream) {
+        if (inputStream == null) {
+            throw new InvalidXmlFileException(EMPTY_XML_FILE);
+        }
+        Session session = new Session(properties.getValidation().getMaxViolations());
+        XmlProductTraversal traversal = new XmlProductTraversal(properties.getLimits().getMaxTextLength());
+        XMLStreamReader reader = null;
+        try {
+            reader = xmlInputFactory.createXMLStreamReader(inputStream);
+            traversal.traverse(reader, session);
+        } catch (XMLStreamException e) {
+            session.malformed(e);
+        } catch (WstxLazyException e) {
+            session.malformed(e.getCause() instanceof XMLStreamException cause
+                    ? cause
+                    : new XMLStreamException(e.getMessage()));
+        } finally {
+            XmlProductTraversal.closeQuietly(reader);
+        }
+        return session.report();
+    }
+
+    /**
+     * Состояние одной проверки: счётчик продуктов и найденные нарушения. Значения полей не сохраняются —
+     * проверяются только правила, о которых сообщает обход.
+     */
+    private static final class Session implements XmlProductTraversal.Sink {
+
+        private static final String MESSAGE_MARKER = "Message: ";
+
+        private final List<ValidationViolation> violations = new ArrayList<>();
+        private final int maxViolations;
+        private long products;
+        private boolean inProduct;
+        private boolean truncated;
+
+        private Session(int maxViolations) {
+            this.maxViolations = maxViolations;
+        }
+
+        @Override
+        public void startProduct() {
+            products++;
+            inProduct = true;
+        }
+
+        @Override
+        public void indexNum(int value) {
+            // значение не нужно: проверяется только, что это целое число
+        }
+
+        @Override
+        public void field(ProductField field, TextBuffer text) {
+            // значения полей не проверяются
+        }
+
+        @Override
+        public void endProduct() {
+            inProduct = false;
+        }
+
+        /**
+         * Нарушение в текущем продукте на позиции, до которой дочитан документ.
+         */
+        @Override
+        public void violation(XMLStreamReader reader, XmlProductTraversal.Violation violation, TextBuffer value) {
+            add(reader.getLocation(), currentProduct(), describe(violation, value));
+        }
+
+        private static String describe(XmlProductTraversal.Violation violation, TextBuffer value) {
+            switch (violation) {
+                case TEXT_TOO_LONG:
+                    return XML_LIMITS_EXCEEDED;
+                case INVALID_INDEX_NUM:
+                    return INVALID_INDEX_NUM + quote(value);
+                case EMPTY_NATIONAL_CODE:
+                    return EMPTY_NATIONAL_CODE;
+                case MISSING_NATIONAL_CODE:
+                    return INVALID_OKEI_INFO;
+                default:
+                    return EMPTY_OKEI_INFO;
+            }
+        }
+
+        /**
+         * Значение без пробельных символов по краям, не длиннее {@code MAX_QUOTED_VALUE_LENGTH} символов.
+         */
+        private static CharSequence quote(TextBuffer value) {
+            int start = value.trimmedStart();
+            return value.subSequence(start, Math.min(value.trimmedEnd(), start + MAX_QUOTED_VALUE_LENGTH));
+        }
+
+        /**
+         * Нарушение корректности XML или ограничений парсера; продукт указывается, если разбор прерван
+         * внутри {@code <productInfo>}.
+         */
+        private void malformed(XMLStreamException e) {
+            String message = XmlLimitViolations.isLimitViolation(e)
+                    ? XML_LIMITS_EXCEEDED
+                    : MALFORMED_XML + describe(e.getMessage());
+            add(e.getLocation(), inProduct ? currentProduct() : null, message);
+        }
+
+        private Integer currentProduct() {
+            return (int) Math.min(products, Integer.MAX_VALUE);
+        }
+
+        private void add(Location location, Integer product, String message) {
+            if (violations.size() >= maxViolations) {
+                truncated = true;
+                return;
+            }
+            violations.add(ValidationViolation.builder()
+                    .line(location != null ? location.getLineNumber() : -1)
+                    .column(location != null ? location.getColumnNumber() : -1)
+                    .product(product)
+                    .message(message)
+                    .build());
+        }
+
+        private ValidationReport report() {
+            return ValidationReport.builder()
+                    .valid(violations.isEmpty() && !truncated)
+                    .products(products)
+                    .violations(violations)
+                    .truncated(truncated)
+                    .build();
+        }
+
+        /**
+         * Текст ошибки парсера без описания позиции: позиция передаётся в отчёте отдельно. Woodstox добавляет её
+         * после перевода строки, а парсер JDK — перед текстом, отделяя его префиксом {@code Message:}.
+         */
+        private static String describe(String message) {
+            if (message == null) {
+                return "";
+            }
+            int marker = message.indexOf(MESSAGE_MARKER);
+            String text = marker < 0 ? message : message.substring(marker + MESSAGE_MARKER.length());
+            int newline = text.indexOf('\n');
+            return (newline < 0 ? text : text.substring(0, newline)).trim();
+        }
+
+    }
+
+}
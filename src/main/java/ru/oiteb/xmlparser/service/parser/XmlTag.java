@@ -0,0 +1,51 @@
+package ru.oiteb.xmlparser.service.parser;
+
+import ru.oiteb.xmlparser.constants.XmlTagConstants;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Элементы XML, которые распознаёт {@link XmlProductParser}.
+ * <p>
+ * Локальное имя элемента переводится в константу одним поиском в заранее построенной таблице.
+ * StAX-реализации (в том числе Woodstox) возвращают для одинаковых имён один и тот же экземпляр строки
+ * с уже вычисленным хеш-кодом, поэтому поиск сводится к сравнению ссылок. Все прочие имена — {@link #OTHER}.
+ * </p>
+ */
+enum XmlTag {
+
+    PRODUCT_INFO(XmlTagConstants.PRODUCT_INFO),
+    INDEX_NUM(XmlTagConstants.INDEX_NUM),
+    NAME(XmlTagConstants.NAME),
+    TRADEMARK_INFO(XmlTagConstants.TRADEMARK_INFO),
+    TRADEMARK(XmlTagConstants.TRADEMARK),
+    OKEI_INFO(XmlTagConstants.OKEI_INFO),
+    NATIONAL_CODE(XmlTagConstants.NATIONAL_CODE),
+    OKPD2_INFO(XmlTagConstants.OKPD2_INFO),
+    OKPD_CODE(XmlTagConstants.OKPD_CODE),
+    MEDICAL_PRODUCT_CODE(XmlTagConstants.MEDICAL_PRODUCT_CODE),
+    COUNTRY_FULL_NAME(XmlTagConstants.COUNTRY_FULL_NAME),
+    OTHER(null);
+
+    private static final Map<String, XmlTag> BY_LOCAL_NAME = new HashMap<>();
+
+    static {
+        for (XmlTag tag : values()) {
+            if (tag.localName != null) {
+                BY_LOCAL_NAME.put(tag.localName, tag);
+            }
+        }
+    }
+
+    private final String localName;
+
+    XmlTag(String localName) {
+        this.localName = localName;
+    }
+
+    static XmlTag of(String localName) {
+        return BY_LOCAL_NAME.getOrDefault(localName, OTHER);
+    }
+
+}
@@ -0,0 +1,104 @@
+package ru.oiteb.xmlparser.service.sorter;
+
+import java.util.Arrays;
+
+/**
+ * Устойчивая сортировка строк по примитивному ключу {@code indexNum}.
+ * <p>
+ * Ключи передаются массивом {@code int[]} (колонкой {@link ru.oiteb.xmlparser.service.table.ProductTable}),
+ * а результат — перестановка номеров строк, поэтому при сортировке не происходит распаковки {@link Integer},
+ * вызовов компаратора и перемещения самих продуктов. Для плотного диапазона ключей используется
+ * сортировка подсчётом за O(n + k), иначе — поразрядная LSD-сортировка по байтам за четыре прохода,
+ * из которых пропускаются проходы с единственным непустым разрядом.
+ * </p>
+ */
+final class IndexNumSort {
+
+    private static final int RADIX = 256;
+
+    private IndexNumSort() {
+        throw new UnsupportedOperationException("Utility class");
+    }
+
+    /**
+     * Упорядочивает строки по ключам, сохраняя исходный порядок строк с равными ключами.
+     *
+     * @param keys        ключи строк; первые {@code size} элементов
+     * @param size        количество строк
+     * @param min         минимальный ключ
+     * @param max         максимальный ключ
+     * @param rangeFactor во сколько раз диапазон ключей может превышать количество строк для сортировки подсчётом
+     * @return номера строк длиной {@code size} в порядке возрастания ключа
+     */
+    static int[] sort(int[] keys, int size, int min, int max, int rangeFactor) {
+        long range = (long) max - min + 1;
+        if (range <= (long) rangeFactor * size && range < Integer.MAX_VALUE) {
+            return countingSort(keys, size, min, (int) range);
+        }
+        return radixSort(keys, size);
+    }
+
+    private static int[] countingSort(int[] keys, int size, int min, int range) {
+        int[] starts = new int[range + 1];
+        for (int i = 0; i < size; i++) {
+            starts[keys[i] - min + 1]++;
+        }
+        for (int k = 1; k <= range; k++) {
+            starts[k] += starts[k - 1];
+        }
+        int[] order = new int[size];
+        for (int i = 0; i < size; i++) {
+            order[starts[keys[i] - min]++] = i;
+        }
+        return order;
+    }
+
+    private static int[] radixSort(int[] keys, int size) {
+        int[] srcKeys = new int[size];
+        int[] srcIdx = new int[size];
+        for (int i = 0; i < size; i++) {
+            srcKeys[i] = keys[i] ^ Integer.MIN_VALUE;
+            srcIdx[i] = i;
+        }
+        int[] dstKeys = new int[size];
+        int[] dstIdx = new int[size];
+        int[] counts = new int[RADIX + 1];
+        for (int shift = 0; shift < Integer.SIZE; shift += 8) {
+            Arrays.fill(counts, 0);
+            for (int i = 0; i < size; i++) {
+                counts[((srcKeys[i] >>> shift) & 0xFF) + 1]++;
+            }
+            if (isSingleBucket(counts, size)) {
+                continue;
+            }
+            for (int b = 1; b <= RADIX; b++) {
+                counts[b] += counts[b - 1];
+            }
+            for (int i = 0; i < size; i++) {
+                int pos = counts[(srcKeys[i] >>> shift) & 0xFF]++;
+                dstKeys[pos] = srcKeys[i];
+                dstIdx[pos] = srcIdx[i];
+            }
+            int[] swapKeys = srcKeys;
+            srcKeys = dstKeys;
+            dstKeys = swapKeys;
+            int[] swapIdx = srcIdx;
+            srcIdx = dstIdx;
+            dstIdx = swapIdx;
+        }
+        return srcIdx;
+    }
+
+    private static boolean isSingleBucket(int[] counts, int size) {
+        for (int b = 1; b <= RADIX; b++) {
+            if (counts[b] == size) {
+                return true;
+            }
+            if (counts[b] != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+}
@@ -0,0 +1,152 @@
+package ru.oiteb.xmlparser.service.sorter;
+
+import ru.oiteb.xmlparser.entity.ProductField;
+import ru.oiteb.xmlparser.entity.ProductRow;
+import ru.oiteb.xmlparser.service.table.MutableProductRow;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * Временный файл с отсортированной серией продуктов, сброшенной на диск при внешней сортировке.
+ * <p>
+ * Записи хранятся в компактном двоичном виде: признак наличия и значение {@code indexNum},
+ * затем восемь строковых полей в порядке колонок {@link ru.oiteb.xmlparser.constants.ExcelConstants#HEADERS}
+ * как длина в байтах UTF-8 и сами байты. Длина {@code -1} обозначает {@code null}, чтобы после чтения
+ * продукт совпадал с исходным.
+ * </p>
+ */
+final class ProductRunFile {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final ProductField[] TEXT_FIELDS =
+            Arrays.copyOfRange(ProductField.values(), 1, ProductField.values().length);
+
+    private final Path path;
+    private final int size;
+
+    private ProductRunFile(Path path, int size) {
+        this.path = path;
+        this.size = size;
+    }
+
+    /**
+     * Записывает серию продуктов во временный файл в заданном порядке.
+     *
+     * @param dir      каталог для временного файла
+     * @param products продукты серии, уже упорядоченные по {@code indexNum}
+     * @return описание записанной серии
+     * @throws IOException если файл не удалось создать или записать
+     */
+    static ProductRunFile write(Path dir, Collection<? extends ProductRow> products) throws IOException {
+        Path path = Files.createTempFile(dir, "xmlparser-sort-", ".run");
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(path), BUFFER_SIZE))) {
+            for (ProductRow product : products) {
+                writeProduct(out, product);
+            }
+        } catch (IOException e) {
+            Files.deleteIfExists(path);
+            throw e;
+        }
+        return new ProductRunFile(path, products.size());
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Открывает серию для последовательного чтения.
+     */
+    Reader open() throws IOException {
+        return new Reader(new DataInputStream(new BufferedInputStream(Files.newInputStream(path), BUFFER_SIZE)), size);
+    }
+
+    void delete() {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException ignored) {
+            path.toFile().deleteOnExit();
+        }
+    }
+
+    private static void writeProduct(DataOutputStream out, ProductRow product) throws IOException {
+        out.writeBoolean(product.hasIndexNum());
+        out.writeInt(product.indexNum());
+        for (ProductField field : TEXT_FIELDS) {
+            writeString(out, product.get(field));
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * Последовательное чтение продуктов серии в одну переиспользуемую строку.
+     */
+    static final class Reader implements Closeable {
+
+        private final DataInputStream in;
+        private final MutableProductRow row = new MutableProductRow();
+        private int remaining;
+
+        private Reader(DataInputStream in, int size) {
+            this.in = in;
+            this.remaining = size;
+        }
+
+        boolean hasNext() {
+            return remaining > 0;
+        }
+
+        /**
+         * Читает следующий продукт. Возвращается одна и та же строка, перезаписанная новыми значениями.
+         */
+        ProductRow next() throws IOException {
+            remaining--;
+            boolean hasIndexNum = in.readBoolean();
+            int indexNum = in.readInt();
+            row.clear();
+            if (hasIndexNum) {
+                row.setIndexNum(indexNum);
+            }
+            for (ProductField field : TEXT_FIELDS) {
+                row.set(field, readString(in));
+            }
+            return row;
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+
+        private static String readString(DataInputStream in) throws IOException {
+            int length = in.readInt();
+            if (length < 0) {
+                return null;
+            }
+            byte[] bytes = new byte[length];
+            in.readFully(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    }
+
+}
@@ -0,0 +1,163 @@
+package ru.oiteb.xmlparser.service.sorter;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import ru.oiteb.xmlparser.config.SortProperties;
+import ru.oiteb.xmlparser.entity.ProductRow;
+import ru.oiteb.xmlparser.exception.ProductSortException;
+import ru.oiteb.xmlparser.service.table.ProductTable;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Сортировщик продуктов по {@code indexNum}, принимающий продукты по одному прямо во время разбора XML.
+ * <p>
+ * Поддерживает несколько стратегий, выбираемых по фактическим данным:
+ * <ul>
+ *   <li>если продукты уже пришли упорядоченными (обычный случай для наших выгрузок), сортировка пропускается;</li>
+ *   <li>для плотного диапазона {@code indexNum} — сортировка подсчётом по примитивным ключам;</li>
+ *   <li>для разреженного диапазона — поразрядная сортировка по примитивным ключам;</li>
+ *   <li>если оценочный объём продуктов превышает {@code converter.sort.memory-budget}, отсортированные серии
+ *   сбрасываются во временные файлы и сливаются при чтении результата.</li>
+ * </ul>
+ * Продукты копируются в колоночную {@link ProductTable}, а сортируется только перестановка номеров строк,
+ * поэтому сессия принимает и переиспользуемые строки парсера ({@link ProductRow}).
+ * Все стратегии устойчивы: продукты с равным {@code indexNum} сохраняют порядок документа,
+ * как и при {@code List.sort(Comparator.comparingInt(...))}. Отсутствующий {@code indexNum} считается равным 0.
+ * </p>
+ */
+@Component
+@RequiredArgsConstructor
+public class ProductSorter {
+
+    private final SortProperties properties;
+
+    /**
+     * Открывает сессию сортировки, в которую продукты передаются по мере разбора.
+     *
+     * @return новая сессия; должна быть завершена через {@link Session#finish()} или закрыта
+     */
+    public Session openSession() {
+        return new Session();
+    }
+
+    /**
+     * Сортирует уже собранную коллекцию продуктов.
+     *
+     * @param products продукты в порядке документа
+     * @return продукты, упорядоченные по {@code indexNum}; должны быть закрыты после использования
+     */
+    public SortedProducts sort(Collection<? extends ProductRow> products) {
+        Session session = openSession();
+        try {
+            products.forEach(session);
+            return session.finish();
+        } catch (RuntimeException e) {
+            session.close();
+            throw e;
+        }
+    }
+
+    private Path tempDir() {
+        Path dir = properties.getTempDir();
+        return dir != null ? dir : Path.of(System.getProperty("java.io.tmpdir"));
+    }
+
+    /**
+     * Сессия сортировки одной конвертации. Не потокобезопасна.
+     */
+    public final class Session implements Consumer<ProductRow>, Closeable {
+
+        private final long budget = properties.getMemoryBudget().toBytes();
+        private final List<ProductRunFile> runs = new ArrayList<>();
+
+        private ProductTable table = new ProductTable();
+        private int min = Integer.MAX_VALUE;
+        private int max = Integer.MIN_VALUE;
+        private boolean bufferOrdered = true;
+
+        private boolean ordered = true;
+        private boolean started;
+        private int lastKey;
+        private boolean finished;
+
+        private Session() {
+        }
+
+        /**
+         * Добавляет очередной продукт в порядке документа. Значения копируются, поэтому строку после вызова
+         * можно переиспользовать.
+         *
+         * @throws ProductSortException если серию не удалось сбросить на диск
+         */
+        @Override
+        public void accept(ProductRow product) {
+            int key = product.indexNum();
+            if (started && key < lastKey) {
+                ordered = false;
+                if (!table.isEmpty()) {
+                    bufferOrdered = false;
+                }
+            }
+            started = true;
+            lastKey = key;
+            table.add(product);
+            min = Math.min(min, key);
+            max = Math.max(max, key);
+            if (table.estimatedBytes() > budget) {
+                spill();
+            }
+        }
+
+        /**
+         * Завершает приём продуктов и возвращает их в отсортированном виде.
+         *
+         * @return упорядоченные продукты; после этого временные файлы принадлежат результату
+         */
+        public SortedProducts finish() {
+            finished = true;
+            return new SortedProducts(table, sortedOrder(), runs, ordered);
+        }
+
+        /**
+         * Удаляет сброшенные серии, если сессия не была завершена (например, при ошибке разбора).
+         */
+        @Override
+        public void close() {
+            if (!finished) {
+                runs.forEach(ProductRunFile::delete);
+                runs.clear();
+            }
+        }
+
+        /**
+         * Порядок строк буфера по {@code indexNum}; {@code null}, если строки уже упорядочены.
+         */
+        private int[] sortedOrder() {
+            if (bufferOrdered) {
+                return null;
+            }
+            return IndexNumSort.sort(table.indexNums(), table.size(), min, max,
+                    properties.getCountingSortRangeFactor());
+        }
+
+        private void spill() {
+            try {
+                runs.add(ProductRunFile.write(tempDir(), table.rows(sortedOrder())));
+            } catch (IOException e) {
+                throw new ProductSortException(e.getMessage());
+            }
+            table = new ProductTable();
+            min = Integer.MAX_VALUE;
+            max = Integer.MIN_VALUE;
+            bufferOrdered = true;
+        }
+    }
+
+}
@@ -0,0 +1,241 @@
+package ru.oiteb.xmlparser.service.sorter;
+
+import ru.oiteb.xmlparser.entity.ProductData;
+import ru.oiteb.xmlparser.entity.ProductRow;
+import ru.oiteb.xmlparser.exception.ProductSortException;
+import ru.oiteb.xmlparser.service.table.ProductTable;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.AbstractCollection;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+
+/**
+ * Продукты, упорядоченные по {@code indexNum}, полученные от {@link ProductSorter}.
+ * <p>
+ * Если все продукты поместились в бюджет памяти, коллекция обходит {@link ProductTable} в порядке
+ * отсортированной перестановки строк. Иначе часть продуктов лежит в отсортированных сериях во временных файлах,
+ * и итератор читает их, сливая серии с остатком в памяти. Если вход изначально был упорядочен, серии не сливаются,
+ * а читаются одна за другой.
+ * </p>
+ * <p>
+ * Как коллекция {@link ProductData} она создаёт объект на каждый продукт при обходе — для существующих
+ * получателей. Экспортеры обходят {@link #rows()}: те же продукты переиспользуемыми строками, без объектов.
+ * </p>
+ * <p>
+ * Коллекция должна быть закрыта после использования — {@link #close()} удаляет временные файлы.
+ * </p>
+ */
+public final class SortedProducts extends AbstractCollection<ProductData> implements Closeable {
+
+    private static final Comparator<Source> MERGE_ORDER =
+            Comparator.<Source>comparingInt(source -> source.key).thenComparingInt(source -> source.order);
+
+    private final ProductTable inMemory;
+    private final int[] inMemoryOrder;
+    private final List<ProductRunFile> runs;
+    private final boolean ordered;
+    private final int size;
+    private final List<ProductRunFile.Reader> openReaders = new ArrayList<>();
+
+    SortedProducts(ProductTable inMemory, int[] inMemoryOrder, List<ProductRunFile> runs, boolean ordered) {
+        this.inMemory = inMemory;
+        this.inMemoryOrder = inMemoryOrder;
+        this.runs = runs;
+        this.ordered = ordered;
+        int total = inMemory.size();
+        for (ProductRunFile run : runs) {
+            total += run.size();
+        }
+        this.size = total;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Возвращает итератор по продуктам в порядке возрастания {@code indexNum}; каждый продукт — новый объект.
+     * <p>
+     * Для продуктов, сброшенных на диск, каждый вызов заново открывает файлы серий.
+     * </p>
+     *
+     * @throws ProductSortException если файл серии не удалось прочитать
+     */
+    @Override
+    public Iterator<ProductData> iterator() {
+        Iterator<ProductRow> rows = rowIterator();
+        return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return rows.hasNext();
+            }
+
+            @Override
+            public ProductData next() {
+                return rows.next().toProductData();
+            }
+        };
+    }
+
+    /**
+     * Те же продукты в том же порядке как строки {@link ProductRow}, без создания объекта на продукт.
+     * Итератор переиспользует строки, поэтому элемент действителен только до следующего вызова {@code next()}.
+     *
+     * @return представление коллекции с тем же размером
+     * @throws ProductSortException если файл серии не удалось прочитать
+     */
+    public Collection<ProductRow> rows() {
+        return new AbstractCollection<>() {
+            @Override
+            public Iterator<ProductRow> iterator() {
+                return rowIterator();
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    private Iterator<ProductRow> rowIterator() {
+        Collection<ProductRow> memory = inMemory.rows(inMemoryOrder);
+        if (runs.isEmpty()) {
+            return memory.iterator();
+        }
+        List<Source> sources = new ArrayList<>(runs.size() + 1);
+        try {
+            for (ProductRunFile run : runs) {
+                ProductRunFile.Reader reader = run.open();
+                openReaders.add(reader);
+                sources.add(new Source(reader, null, sources.size()));
+            }
+        } catch (IOException e) {
+            throw new ProductSortException(e.getMessage());
+        }
+        sources.add(new Source(null, memory.iterator(), sources.size()));
+        return new RunIterator(sources);
+    }
+
+    /**
+     * Закрывает открытые файлы серий и удаляет их.
+     */
+    @Override
+    public void close() {
+        for (ProductRunFile.Reader reader : openReaders) {
+            try {
+                reader.close();
+            } catch (IOException ignored) {
+                // файл всё равно удаляется ниже
+            }
+        }
+        openReaders.clear();
+        runs.forEach(ProductRunFile::delete);
+    }
+
+    /**
+     * Итератор по сериям: последовательный для упорядоченного входа, иначе k-путевое слияние.
+     * При равных {@code indexNum} раньше идёт продукт из более ранней серии, поэтому порядок устойчив.
+     * <p>
+     * Источники переиспользуют строку, поэтому источник последнего выданного продукта продвигается
+     * не сразу, а при следующем обращении к итератору.
+     * </p>
+     */
+    private final class RunIterator implements Iterator<ProductRow> {
+
+        private final Deque<Source> sequence = new ArrayDeque<>();
+        private final PriorityQueue<Source> heap = new PriorityQueue<>(MERGE_ORDER);
+        private Source current;
+
+        private RunIterator(List<Source> sources) {
+            for (Source source : sources) {
+                if (source.advance()) {
+                    if (ordered) {
+                        sequence.addLast(source);
+                    } else {
+                        heap.add(source);
+                    }
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            advanceCurrent();
+            return ordered ? !sequence.isEmpty() : !heap.isEmpty();
+        }
+
+        @Override
+        public ProductRow next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            current = ordered ? sequence.pollFirst() : heap.poll();
+            return current.head;
+        }
+
+        private void advanceCurrent() {
+            if (current == null) {
+                return;
+            }
+            Source source = current;
+            current = null;
+            if (source.advance()) {
+                if (ordered) {
+                    sequence.addFirst(source);
+                } else {
+                    heap.add(source);
+                }
+            }
+        }
+    }
+
+    /**
+     * Источник продуктов для слияния: файл серии или остаток в памяти, с текущим продуктом в голове.
+     */
+    private static final class Source {
+
+        private final ProductRunFile.Reader reader;
+        private final Iterator<ProductRow> memory;
+        private final int order;
+        private ProductRow head;
+        private int key;
+
+        private Source(ProductRunFile.Reader reader, Iterator<ProductRow> memory, int order) {
+            this.reader = reader;
+            this.memory = memory;
+            this.order = order;
+        }
+
+        private boolean advance() {
+            if (reader != null) {
+                if (!reader.hasNext()) {
+                    return false;
+                }
+                try {
+                    head = reader.next();
+                } catch (IOException e) {
+                    throw new ProductSortException(e.getMessage());
+                }
+            } else {
+                if (!memory.hasNext()) {
+                    return false;
+                }
+                head = memory.next();
+            }
+            key = head.indexNum();
+            return true;
+        }
+    }
+
+}
@@ -0,0 +1,63 @@
+package ru.oiteb.xmlparser.service.table;
+
+import ru.oiteb.xmlparser.entity.ProductField;
+import ru.oiteb.xmlparser.entity.ProductRow;
+
+import java.util.Arrays;
+
+/**
+ * Изменяемая строка продукта, которую переиспользуют при разборе и чтении файлов серий вместо создания
+ * {@link ru.oiteb.xmlparser.entity.ProductData} на каждый продукт.
+ */
+public final class MutableProductRow implements ProductRow {
+
+    private final String[] values = new String[ProductField.values().length];
+    private boolean hasIndexNum;
+    private int indexNum;
+
+    /**
+     * Очищает все поля перед заполнением следующего продукта.
+     */
+    public void clear() {
+        Arrays.fill(values, null);
+        hasIndexNum = false;
+        indexNum = 0;
+    }
+
+    public void setIndexNum(int indexNum) {
+        this.indexNum = indexNum;
+        this.hasIndexNum = true;
+    }
+
+    /**
+     * @param field текстовое поле
+     * @param value значение; {@code null} — поле не заполнено
+     * @throws IllegalArgumentException если указан {@link ProductField#INDEX_NUM}
+     */
+    public void set(ProductField field, String value) {
+        values[textIndex(field)] = value;
+    }
+
+    @Override
+    public boolean hasIndexNum() {
+        return hasIndexNum;
+    }
+
+    @Override
+    public int indexNum() {
+        return indexNum;
+    }
+
+    @Override
+    public String get(ProductField field) {
+        return values[textIndex(field)];
+    }
+
+    private static int textIndex(ProductField field) {
+        if (field == ProductField.INDEX_NUM) {
+            throw new IllegalArgumentException(field.name());
+        }
+        return field.ordinal();
+    }
+
+}
@@ -0,0 +1,225 @@
+package ru.oiteb.xmlparser.service.table;
+
+import ru.oiteb.xmlparser.entity.ProductData;
+import ru.oiteb.xmlparser.entity.ProductField;
+import ru.oiteb.xmlparser.entity.ProductRow;
+
+import java.util.AbstractCollection;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Колоночное хранилище продуктов: {@code indexNum} в массиве {@code int[]}, текстовые поля — в
+ * {@link StringColumn} со словарём или упакованными символами.
+ * <p>
+ * В отличие от списка {@link ProductData}, строка таблицы не требует объекта продукта, {@link Integer} и
+ * восьми ссылок на строки, а повторяющиеся значения хранятся один раз. Строки читаются через курсор
+ * {@link ProductRow} ({@link #rows()}, {@link #rows(int[])}), который переиспользуется при обходе; объект
+ * {@link ProductData} создаётся только по запросу ({@link #toProductData(int)}).
+ * </p>
+ * <p>
+ * Таблица только дополняется и не потокобезопасна.
+ * </p>
+ */
+public final class ProductTable {
+
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final ProductField[] TEXT_FIELDS =
+            Arrays.copyOfRange(ProductField.values(), 1, ProductField.values().length);
+
+    private final StringColumn[] columns = new StringColumn[TEXT_FIELDS.length];
+    private final BitSet missingIndexNums = new BitSet();
+    private int[] indexNums;
+    private int size;
+
+    public ProductTable() {
+        this(INITIAL_CAPACITY);
+    }
+
+    /**
+     * @param capacity ожидаемое число строк
+     */
+    public ProductTable(int capacity) {
+        int initial = Math.max(16, capacity);
+        indexNums = new int[initial];
+        for (int i = 0; i < columns.length; i++) {
+            columns[i] = new StringColumn(initial);
+        }
+    }
+
+    /**
+     * Добавляет строку, копируя значения полей; переданный объект после вызова можно переиспользовать.
+     *
+     * @param row продукт
+     */
+    public void add(ProductRow row) {
+        if (size == indexNums.length) {
+            indexNums = Arrays.copyOf(indexNums, size * 2);
+        }
+        indexNums[size] = row.indexNum();
+        if (!row.hasIndexNum()) {
+            missingIndexNums.set(size);
+        }
+        for (int i = 0; i < columns.length; i++) {
+            columns[i].add(row.get(TEXT_FIELDS[i]));
+        }
+        size++;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public boolean hasIndexNum(int row) {
+        return !missingIndexNums.get(checkRow(row));
+    }
+
+    /**
+     * @return {@code indexNum} строки; 0, если он отсутствует
+     */
+    public int indexNum(int row) {
+        return indexNums[checkRow(row)];
+    }
+
+    /**
+     * Возвращает колонку {@code indexNum} без копирования — например, как ключи для сортировки.
+     * Значимы первые {@link #size()} элементов; массив нельзя изменять.
+     */
+    public int[] indexNums() {
+        return indexNums;
+    }
+
+    /**
+     * @param row   номер строки
+     * @param field текстовое поле
+     * @return значение поля или {@code null}
+     * @throws IllegalArgumentException если запрошен {@link ProductField#INDEX_NUM}
+     */
+    public String get(int row, ProductField field) {
+        return column(field).get(checkRow(row));
+    }
+
+    /**
+     * Копирует строку в самостоятельный объект.
+     */
+    public ProductData toProductData(int row) {
+        Cursor cursor = new Cursor(null, 0);
+        cursor.row = checkRow(row);
+        return cursor.toProductData();
+    }
+
+    /**
+     * Оценка объёма таблицы в куче: колонка {@code indexNum} и строковые колонки с их словарями.
+     * Считается по мере добавления строк, поэтому вызов дешёвый.
+     *
+     * @return размер в байтах
+     */
+    public long estimatedBytes() {
+        long bytes = (long) Integer.BYTES * size + size / Byte.SIZE;
+        for (StringColumn column : columns) {
+            bytes += column.estimatedBytes();
+        }
+        return bytes;
+    }
+
+    /**
+     * Строки в порядке добавления.
+     *
+     * @see #rows(int[])
+     */
+    public Collection<ProductRow> rows() {
+        return rows(null);
+    }
+
+    /**
+     * Строки в заданном порядке. Итератор возвращает один и тот же курсор, переставляя его на следующую строку,
+     * поэтому элемент действителен только до следующего вызова {@code next()}; для сохранения строки служит
+     * {@link ProductRow#toProductData()}.
+     *
+     * @param order номера строк в порядке обхода (обычно перестановка всех строк); {@code null} — все строки
+     *              в порядке добавления
+     * @return представление таблицы
+     */
+    public Collection<ProductRow> rows(int[] order) {
+        int count = order == null ? size : order.length;
+        return new AbstractCollection<>() {
+            @Override
+            public Iterator<ProductRow> iterator() {
+                return new Cursor(order, count);
+            }
+
+            @Override
+            public int size() {
+                return count;
+            }
+        };
+    }
+
+    private StringColumn column(ProductField field) {
+        if (field == ProductField.INDEX_NUM) {
+            throw new IllegalArgumentException(field.name());
+        }
+        return columns[field.ordinal() - 1];
+    }
+
+    private int checkRow(int row) {
+        if (row < 0 || row >= size) {
+            throw new IndexOutOfBoundsException(row);
+        }
+        return row;
+    }
+
+    /**
+     * Курсор по строкам таблицы: одновременно итератор и текущая строка.
+     */
+    private final class Cursor implements Iterator<ProductRow>, ProductRow {
+
+        private final int[] order;
+        private final int end;
+        private int position;
+        private int row = -1;
+
+        private Cursor(int[] order, int end) {
+            this.order = order;
+            this.end = end;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return position < end;
+        }
+
+        @Override
+        public ProductRow next() {
+            if (position >= end) {
+                throw new NoSuchElementException();
+            }
+            row = order == null ? position : order[position];
+            position++;
+            return this;
+        }
+
+        @Override
+        public boolean hasIndexNum() {
+            return !missingIndexNums.get(row);
+        }
+
+        @Override
+        public int indexNum() {
+            return indexNums[row];
+        }
+
+        @Override
+        public String get(ProductField field) {
+            return column(field).get(row);
+        }
+    }
+
+}
@@ -0,0 +1,166 @@
+package ru.oiteb.xmlparser.service.table;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Строковая колонка {@link ProductTable}.
+ * <p>
+ * Пока значения повторяются (единицы измерения, страны, производители), колонка хранит словарь различных
+ * значений и по коду {@code int} на строку. Если различных значений оказывается слишком много (уникальные
+ * наименования), колонка переходит к упакованному виду: символы всех значений подряд в одном {@code char[]}
+ * и смещение конца каждого значения в {@code int[]}. В обоих видах строка стоит несколько байт сверх самих
+ * символов, без объекта {@link String} и ссылки на него.
+ * </p>
+ */
+final class StringColumn {
+
+    /**
+     * Число строк, после которого по доле различных значений решается, выгоден ли словарь.
+     */
+    static final int DICTIONARY_PROBE_ROWS = 4096;
+    static final int MAX_DICTIONARY_SIZE = 1 << 16;
+
+    private static final int NULL_CODE = -1;
+    private static final long STRING_OVERHEAD = 40;
+    private static final long DICTIONARY_ENTRY_OVERHEAD = 48;
+
+    private int size;
+    private long bytes;
+
+    private int[] codes;
+    private String[] values;
+    private int distinct;
+    private Map<String, Integer> index;
+
+    private char[] chars;
+    private int charCount;
+    private int[] ends;
+    private BitSet nulls;
+
+    StringColumn(int capacity) {
+        codes = new int[capacity];
+        values = new String[16];
+        index = new HashMap<>();
+    }
+
+    void add(String value) {
+        if (codes != null) {
+            addCode(value);
+        } else {
+            addPacked(value);
+        }
+        size++;
+    }
+
+    String get(int row) {
+        if (codes != null) {
+            int code = codes[row];
+            return code == NULL_CODE ? null : values[code];
+        }
+        if (nulls.get(row)) {
+            return null;
+        }
+        int start = row == 0 ? 0 : ends[row - 1];
+        return new String(chars, start, ends[row] - start);
+    }
+
+    boolean isDictionary() {
+        return codes != null;
+    }
+
+    /**
+     * @return оценка объёма колонки в куче в байтах
+     */
+    long estimatedBytes() {
+        return bytes;
+    }
+
+    private void addCode(String value) {
+        if (size == codes.length) {
+            codes = Arrays.copyOf(codes, size * 2);
+        }
+        bytes += Integer.BYTES;
+        if (value == null) {
+            codes[size] = NULL_CODE;
+            return;
+        }
+        Integer code = index.get(value);
+        if (code == null) {
+            if (distinct >= MAX_DICTIONARY_SIZE || (size >= DICTIONARY_PROBE_ROWS && distinct * 2L > size)) {
+                bytes -= Integer.BYTES;
+                pack();
+                addPacked(value);
+                return;
+            }
+            code = distinct;
+            if (distinct == values.length) {
+                values = Arrays.copyOf(values, distinct * 2);
+            }
+            values[distinct++] = value;
+            index.put(value, code);
+            bytes += STRING_OVERHEAD + DICTIONARY_ENTRY_OVERHEAD + 2L * value.length();
+        }
+        codes[size] = code;
+    }
+
+    private void addPacked(String value) {
+        if (size == ends.length) {
+            ends = Arrays.copyOf(ends, size * 2);
+        }
+        if (value == null) {
+            nulls.set(size);
+        } else {
+            ensureChars(value.length());
+            value.getChars(0, value.length(), chars, charCount);
+            charCount += value.length();
+        }
+        ends[size] = charCount;
+        bytes = (long) Integer.BYTES * (size + 1) + 2L * charCount;
+    }
+
+    /**
+     * Переводит колонку из словаря в упакованный вид.
+     */
+    private void pack() {
+        long total = 0;
+        for (int row = 0; row < size; row++) {
+            int code = codes[row];
+            if (code != NULL_CODE) {
+                total += values[code].length();
+            }
+        }
+        chars = new char[(int) Math.min(Integer.MAX_VALUE - 8, Math.max(16, total * 2))];
+        ends = new int[codes.length];
+        nulls = new BitSet();
+        for (int row = 0; row < size; row++) {
+            int code = codes[row];
+            if (code == NULL_CODE) {
+                nulls.set(row);
+            } else {
+                String value = values[code];
+                value.getChars(0, value.length(), chars, charCount);
+                charCount += value.length();
+            }
+            ends[row] = charCount;
+        }
+        codes = null;
+        values = null;
+        index = null;
+        distinct = 0;
+        bytes = (long) Integer.BYTES * size + 2L * charCount;
+    }
+
+    private void ensureChars(int length) {
+        long required = (long) charCount + length;
+        if (required > Integer.MAX_VALUE - 8) {
+            throw new IllegalStateException("Колонка не вмещает " + required + " символов");
+        }
+        if (required > chars.length) {
+            chars = Arrays.copyOf(chars, (int) Math.min(Integer.MAX_VALUE - 8, Math.max(required, chars.length * 2L)));
+        }
+    }
+
+}
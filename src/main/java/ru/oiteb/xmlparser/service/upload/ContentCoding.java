@@ -0,0 +1,90 @@
+package ru.oiteb.xmlparser.service.upload;
+
+import org.springframework.web.multipart.MultipartFile;
+import ru.oiteb.xmlparser.exception.UnsupportedContentEncodingException;
+
+import java.util.Locale;
+
+import static ru.oiteb.xmlparser.constants.ExceptionsDescriptions.UNSUPPORTED_CONTENT_ENCODING;
+
+/**
+ * Сжатие загруженного XML.
+ */
+public enum ContentCoding {
+
+    IDENTITY,
+    GZIP,
+    DEFLATE;
+
+    private static final String GZIP_SUFFIX = ".gz";
+
+    /**
+     * Определяет сжатие по значению заголовка {@code Content-Encoding}. Значения {@code identity} в списке
+     * кодирований пропускаются; поддерживается не более одного настоящего кодирования.
+     *
+     * @param contentEncoding значение заголовка; {@code null} или пустая строка означают отсутствие сжатия
+     * @return сжатие загрузки
+     * @throws UnsupportedContentEncodingException если кодирование не поддерживается
+     */
+    public static ContentCoding fromHeader(String contentEncoding) {
+        ContentCoding result = IDENTITY;
+        if (contentEncoding == null) {
+            return result;
+        }
+        for (String token : contentEncoding.split(",")) {
+            String value = token.trim().toLowerCase(Locale.ROOT);
+            ContentCoding coding;
+            switch (value) {
+                case "":
+                case "identity":
+                    continue;
+                case "gzip":
+                case "x-gzip":
+                    coding = GZIP;
+                    break;
+                case "deflate":
+                    coding = DEFLATE;
+                    break;
+                default:
+                    throw new UnsupportedContentEncodingException(": " + UNSUPPORTED_CONTENT_ENCODING + contentEncoding);
+            }
+            if (result != IDENTITY) {
+                throw new UnsupportedContentEncodingException(": " + UNSUPPORTED_CONTENT_ENCODING + contentEncoding);
+            }
+            result = coding;
+        }
+        return result;
+    }
+
+    /**
+     * Определяет сжатие загруженного файла: по заголовку {@code Content-Encoding} части multipart-запроса,
+     * а если его нет — по расширению {@code .gz} (например, {@code products.xml.gz}) или типу
+     * {@code application/gzip}.
+     *
+     * @param contentEncoding значение {@code Content-Encoding} части с файлом; может быть {@code null}
+     * @param file            загруженный файл
+     * @return сжатие загрузки
+     * @throws UnsupportedContentEncodingException если кодирование из заголовка не поддерживается
+     */
+    public static ContentCoding ofUpload(String contentEncoding, MultipartFile file) {
+        if (contentEncoding != null && !contentEncoding.isBlank()) {
+            return fromHeader(contentEncoding);
+        }
+        if (file == null) {
+            return IDENTITY;
+        }
+        String name = file.getOriginalFilename();
+        if (name != null && name.toLowerCase(Locale.ROOT).endsWith(GZIP_SUFFIX)) {
+            return GZIP;
+        }
+        String type = file.getContentType();
+        if (type != null) {
+            String normalized = type.toLowerCase(Locale.ROOT);
+            if (normalized.startsWith("application/gzip") || normalized.startsWith("application/x-gzip")) {
+                return GZIP;
+            }
+        }
+        return IDENTITY;
+    }
+
+}
@@ -0,0 +1,67 @@
+package ru.oiteb.xmlparser.service.upload;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Поток, который прерывает чтение с {@link IOException}, когда прочитано больше допустимого, — защита
+ * от сжатых загрузок и архивов, разворачивающихся в гигабайты. Парсер XML оборачивает эту ошибку в свою,
+ * поэтому после неудачного разбора причину проверяют через {@link #isExceeded()}.
+ */
+public final class LimitedInputStream extends FilterInputStream {
+
+    private final long limit;
+    private final String message;
+    private long count;
+    private boolean exceeded;
+
+    /**
+     * @param in      исходный поток; закрывается вместе с этим
+     * @param limit   сколько байтов можно прочитать
+     * @param message сообщение {@link IOException} при превышении
+     */
+    public LimitedInputStream(InputStream in, long limit, String message) {
+        super(in);
+        this.limit = limit;
+        this.message = message;
+    }
+
+    @Override
+    public int read() throws IOException {
+        int b = in.read();
+        if (b != -1) {
+            count(1);
+        }
+        return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        int read = in.read(b, off, len);
+        if (read > 0) {
+            count(read);
+        }
+        return read;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        long skipped = in.skip(n);
+        count(skipped);
+        return skipped;
+    }
+
+    public boolean isExceeded() {
+        return exceeded;
+    }
+
+    private void count(long bytes) throws IOException {
+        count += bytes;
+        if (count > limit) {
+            exceeded = true;
+            throw new IOException(message);
+        }
+    }
+
+}
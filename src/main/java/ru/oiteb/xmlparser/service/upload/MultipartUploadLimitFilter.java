@@ -0,0 +1,118 @@
+package ru.oiteb.xmlparser.service.upload;
+
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.core.Ordered;
+import org.springframework.http.MediaType;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerExceptionResolver;
+import ru.oiteb.xmlparser.exception.ConversionOverloadedException;
+import ru.oiteb.xmlparser.exception.UploadTooLargeException;
+
+import java.io.IOException;
+import java.util.Locale;
+
+/**
+ * Резервирует место под временные файлы multipart-запросов к API до того, как контейнер начнёт их писать.
+ * <p>
+ * Контейнер сохраняет части multipart-запроса больше {@code spring.servlet.multipart.file-size-threshold}
+ * во временные файлы при первом обращении к ним, и {@code spring.servlet.multipart.max-request-size} ограничивает
+ * только один запрос. Фильтр стоит раньше всех, кто читает части запроса, и резервирует {@code Content-Length}
+ * запроса в общем объёме временных файлов загрузок ({@link UploadSpooler#reserveRequest(long)}); если длина
+ * неизвестна, резервируется {@code max-request-size}. Запрос, который не помещается в свободный объём, отклоняется
+ * с {@link ConversionOverloadedException} (503 с {@code Retry-After}) ещё до чтения тела. Запросы не больше
+ * порога контейнер держит в памяти, поэтому они проходят без резерва и не зависят от медленных загрузок.
+ * Резерв освобождается, когда запрос завершён целиком, включая асинхронную отправку результата: до этого
+ * контейнер не удаляет временные файлы.
+ * </p>
+ */
+public class MultipartUploadLimitFilter extends OncePerRequestFilter implements Ordered {
+
+    private static final String API_PREFIX = "/v1/api/";
+
+    private final UploadSpooler spooler;
+    private final long fileSizeThreshold;
+    private final long maxRequestSize;
+    private final HandlerExceptionResolver exceptionResolver;
+
+    public MultipartUploadLimitFilter(UploadSpooler spooler, DataSize fileSizeThreshold, DataSize maxRequestSize,
+                                      HandlerExceptionResolver exceptionResolver) {
+        this.spooler = spooler;
+        this.fileSizeThreshold = fileSizeThreshold.toBytes();
+        this.maxRequestSize = maxRequestSize.toBytes();
+        this.exceptionResolver = exceptionResolver;
+    }
+
+    @Override
+    public int getOrder() {
+        return Ordered.HIGHEST_PRECEDENCE + 10;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        String contentType = request.getContentType();
+        long length = request.getContentLengthLong();
+        return !request.getRequestURI().startsWith(request.getContextPath() + API_PREFIX)
+                || contentType == null
+                || !contentType.toLowerCase(Locale.ROOT).startsWith(MediaType.MULTIPART_FORM_DATA_VALUE)
+                || (length >= 0 && length <= fileSizeThreshold);
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        long length = request.getContentLengthLong();
+        UploadSpooler.Reservation reservation;
+        try {
+            reservation = spooler.reserveRequest(length >= 0 ? length : maxRequestSize);
+        } catch (ConversionOverloadedException | UploadTooLargeException e) {
+            exceptionResolver.resolveException(request, response, null, e);
+            return;
+        }
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            if (request.isAsyncStarted()) {
+                request.getAsyncContext().addListener(new ReleaseOnComplete(reservation));
+            } else {
+                reservation.close();
+            }
+        }
+    }
+
+    private static final class ReleaseOnComplete implements AsyncListener {
+
+        private final UploadSpooler.Reservation reservation;
+
+        private ReleaseOnComplete(UploadSpooler.Reservation reservation) {
+            this.reservation = reservation;
+        }
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+            reservation.close();
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+            // за тайм-аутом всегда следует onComplete
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+            // за ошибкой всегда следует onComplete
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+            // запрос уже учтён
+        }
+
+    }
+
+}
@@ -0,0 +1,99 @@
+package ru.oiteb.xmlparser.service.upload;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import ru.oiteb.xmlparser.config.UploadProperties;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+import static ru.oiteb.xmlparser.constants.ExceptionsDescriptions.DECOMPRESSED_SIZE_EXCEEDED;
+
+/**
+ * Распаковывает сжатые загрузки на лету, без промежуточного файла или массива байтов.
+ * <p>
+ * Объём распакованных данных ограничен {@code converter.upload.max-decompressed-size}: небольшой архив,
+ * разворачивающийся в гигабайты (zip-бомба), прерывается, как только превысит лимит. Для {@code deflate}
+ * принимаются и поток zlib (как требует HTTP), и «сырой» deflate без заголовка, который отправляют некоторые клиенты.
+ * </p>
+ */
+@Component
+@RequiredArgsConstructor
+public class UploadDecoder {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final UploadProperties properties;
+
+    /**
+     * Оборачивает поток загрузки распаковкой. Несжатый поток возвращается с тем же ограничением размера.
+     *
+     * @param in     поток загрузки; закрывается вместе с возвращённым потоком
+     * @param coding сжатие загрузки
+     * @return поток распакованного XML
+     * @throws IOException если заголовок сжатого потока повреждён
+     */
+    public LimitedInputStream decode(InputStream in, ContentCoding coding) throws IOException {
+        long limit = properties.getMaxDecompressedSize().toBytes();
+        switch (coding) {
+            case GZIP:
+                return new LimitedInputStream(new GZIPInputStream(in, BUFFER_SIZE), limit,
+                        DECOMPRESSED_SIZE_EXCEEDED);
+            case DEFLATE:
+                return new LimitedInputStream(inflate(in), limit, DECOMPRESSED_SIZE_EXCEEDED);
+            default:
+                return new LimitedInputStream(in, limit, DECOMPRESSED_SIZE_EXCEEDED);
+        }
+    }
+
+    /**
+     * Оценивает размер распакованного документа: для сжатой загрузки — по ожидаемой степени сжатия,
+     * но не больше допустимого размера после распаковки. Если размер загрузки неизвестен, возвращается
+     * допустимый размер после распаковки.
+     *
+     * @param uploadSize размер загрузки в байтах или отрицательное число, если он неизвестен
+     * @param coding     сжатие загрузки
+     * @return ожидаемый размер XML в байтах
+     */
+    public long expectedSize(long uploadSize, ContentCoding coding) {
+        long limit = properties.getMaxDecompressedSize().toBytes();
+        if (uploadSize < 0) {
+            return limit;
+        }
+        if (coding == ContentCoding.IDENTITY) {
+            return uploadSize;
+        }
+        long ratio = properties.getExpectedCompressionRatio();
+        return uploadSize > limit / ratio ? limit : uploadSize * ratio;
+    }
+
+    private InputStream inflate(InputStream in) throws IOException {
+        PushbackInputStream pushback = new PushbackInputStream(in, 2);
+        byte[] header = new byte[2];
+        int read = pushback.readNBytes(header, 0, 2);
+        pushback.unread(header, 0, read);
+        Inflater inflater = new Inflater(!(read == 2 && isZlibHeader(header[0] & 0xFF, header[1] & 0xFF)));
+        return new InflaterInputStream(pushback, inflater, BUFFER_SIZE) {
+            @Override
+            public void close() throws IOException {
+                try {
+                    super.close();
+                } finally {
+                    inflater.end();
+                }
+            }
+        };
+    }
+
+    /**
+     * Заголовок zlib (RFC 1950): метод сжатия deflate и контрольная сумма двух байтов, кратная 31.
+     */
+    private static boolean isZlibHeader(int cmf, int flg) {
+        return (cmf & 0x0F) == 8 && (cmf >> 4) <= 7 && ((cmf << 8) | flg) % 31 == 0;
+    }
+
+}
@@ -0,0 +1,267 @@
+package ru.oiteb.xmlparser.service.upload;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.BaseUnits;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.web.multipart.MultipartFile;
+import ru.oiteb.xmlparser.config.AdmissionProperties;
+import ru.oiteb.xmlparser.config.UploadProperties;
+import ru.oiteb.xmlparser.exception.ConversionOverloadedException;
+import ru.oiteb.xmlparser.exception.UploadTooLargeException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static ru.oiteb.xmlparser.constants.ExceptionsDescriptions.UPLOAD_SPOOL_FULL;
+import static ru.oiteb.xmlparser.constants.ExceptionsDescriptions.UPLOAD_SPOOL_SIZE_EXCEEDED;
+
+/**
+ * Временные файлы крупных загрузок.
+ * <p>
+ * Загрузка сохраняется в каталог {@code converter.upload.spool.directory} через {@link MultipartFile#transferTo(Path)}:
+ * если контейнер уже держит часть multipart-запроса на диске, файл обычно переносится, а не копируется.
+ * Сохранённый файл отображается в память ({@link FileChannel#map}), и парсер читает документ из отображения —
+ * содержимое не попадает в кучу, поэтому допустимый размер загрузки не ограничен {@code -Xmx}.
+ * </p>
+ * <p>
+ * Суммарный объём файлов ограничен {@code converter.upload.spool.max-total-size}: место резервируется до записи
+ * файла по размеру загрузки и освобождается при закрытии {@link SpooledUpload}, которое удаляет файл. Файлы,
+ * оставшиеся после аварийного завершения предыдущего запуска, удаляются при старте. Каталог не должен быть общим
+ * для нескольких экземпляров.
+ * </p>
+ * <p>
+ * В тот же каталог ({@code spring.servlet.multipart.location}) контейнер пишет части multipart-запросов, поэтому
+ * сохранение загрузки обычно сводится к переименованию файла. Место под них {@link MultipartUploadLimitFilter}
+ * резервирует в том же объёме ({@link #reserveRequest(long)}) ещё до разбора тела, так что каталог целиком не
+ * превышает {@code max-total-size}.
+ * </p>
+ * <p>
+ * Метрика: {@code converter.upload.spooled} — объём, занятый временными файлами загрузок.
+ * </p>
+ */
+@Slf4j
+@Component
+public class UploadSpooler {
+
+    private static final String FILE_PREFIX = "upload-";
+    /**
+     * Временные файлы частей multipart-запроса, которые Tomcat создаёт в том же каталоге.
+     */
+    private static final String MULTIPART_FILE_PREFIX = "upload_";
+
+    private final UploadProperties.Spool properties;
+    private final AdmissionProperties admissionProperties;
+    private final AtomicLong reserved = new AtomicLong();
+
+    public UploadSpooler(UploadProperties properties, AdmissionProperties admissionProperties,
+                         MeterRegistry registry) {
+        this.properties = properties.getSpool();
+        this.admissionProperties = admissionProperties;
+        Gauge.builder("converter.upload.spooled", reserved, AtomicLong::get)
+                .description("Объём временных файлов крупных загрузок")
+                .baseUnit(BaseUnits.BYTES)
+                .register(registry);
+    }
+
+    /**
+     * Создаёт каталог временных файлов (контейнер требует, чтобы каталог multipart-файлов существовал)
+     * и удаляет временные файлы загрузок и multipart-запросов, созданные до запуска приложения.
+     */
+    @PostConstruct
+    public void init() {
+        Path dir = directory();
+        long startTime = ManagementFactory.getRuntimeMXBean().getStartTime();
+        String pattern = "{" + FILE_PREFIX + "," + MULTIPART_FILE_PREFIX + "}*";
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(Files.createDirectories(dir), pattern)) {
+            for (Path file : files) {
+                if (Files.getLastModifiedTime(file).toMillis() < startTime) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        } catch (IOException e) {
+            log.warn("Failed to clean up upload spool directory {}", dir, e);
+        }
+    }
+
+    /**
+     * Нужно ли сохранять загрузку указанного размера во временный файл.
+     *
+     * @param size размер загрузки в байтах
+     * @return {@code true}, если размер не меньше {@code converter.upload.spool.threshold}
+     */
+    public boolean shouldSpool(long size) {
+        return size >= properties.getThreshold().toBytes();
+    }
+
+    /**
+     * Сохраняет загрузку во временный файл.
+     *
+     * @param upload загруженный файл
+     * @return сохранённая загрузка; её нужно закрыть, чтобы удалить файл и освободить место
+     * @throws UploadTooLargeException       если загрузка больше {@code max-total-size}
+     * @throws ConversionOverloadedException если свободного места под временные файлы не хватает
+     * @throws IOException                   если файл не удалось записать
+     */
+    public SpooledUpload spool(MultipartFile upload) throws IOException {
+        long size = upload.getSize();
+        reserve(size);
+        Path file = null;
+        try {
+            Path dir = Files.createDirectories(directory());
+            file = Files.createTempFile(dir, FILE_PREFIX, ".xml");
+            upload.transferTo(file);
+            return new SpooledUpload(file, size);
+        } catch (IOException | RuntimeException e) {
+            delete(file);
+            reserved.addAndGet(-size);
+            throw e;
+        }
+    }
+
+    /**
+     * Резервирует место под части multipart-запроса, которые контейнер запишет на диск при разборе тела.
+     *
+     * @param size размер тела запроса в байтах
+     * @return резерв; его нужно закрыть после завершения запроса, повторное закрытие ничего не делает
+     * @throws UploadTooLargeException       если запрос больше {@code max-total-size}
+     * @throws ConversionOverloadedException если свободного места под временные файлы не хватает
+     */
+    public Reservation reserveRequest(long size) {
+        reserve(size);
+        return new Reservation(size);
+    }
+
+    /**
+     * Объём, занятый временными файлами загрузок и зарезервированный под части multipart-запросов, в байтах.
+     */
+    public long spooled() {
+        return reserved.get();
+    }
+
+    private void reserve(long size) {
+        long limit = properties.getMaxTotalSize().toBytes();
+        if (size > limit) {
+            throw new UploadTooLargeException(": " + UPLOAD_SPOOL_SIZE_EXCEEDED);
+        }
+        long current;
+        do {
+            current = reserved.get();
+            if (current + size > limit) {
+                throw new ConversionOverloadedException(": " + UPLOAD_SPOOL_FULL,
+                        Math.max(1, admissionProperties.getRetryAfter().toSeconds()));
+            }
+        } while (!reserved.compareAndSet(current, current + size));
+    }
+
+    private Path directory() {
+        Path dir = properties.getDirectory();
+        return dir != null ? dir : Path.of(System.getProperty("java.io.tmpdir"), "xmlparser-uploads");
+    }
+
+    /**
+     * Удаляет временный файл; если файл ещё занят отображением в память (Windows), удаляет его при завершении JVM.
+     */
+    private static void delete(Path file) {
+        if (file == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            file.toFile().deleteOnExit();
+        }
+    }
+
+    /**
+     * Место, зарезервированное под части multipart-запроса.
+     */
+    public final class Reservation implements AutoCloseable {
+
+        private final long size;
+        private final AtomicBoolean closed = new AtomicBoolean();
+
+        private Reservation(long size) {
+            this.size = size;
+        }
+
+        @Override
+        public void close() {
+            if (closed.compareAndSet(false, true)) {
+                reserved.addAndGet(-size);
+            }
+        }
+
+    }
+
+    /**
+     * Загрузка, сохранённая во временный файл; закрытие удаляет файл, повторное закрытие ничего не делает.
+     */
+    public final class SpooledUpload implements AutoCloseable {
+
+        private final Path file;
+        private final long size;
+        private final AtomicBoolean closed = new AtomicBoolean();
+
+        private SpooledUpload(Path file, long size) {
+            this.file = file;
+            this.size = size;
+        }
+
+        public Path file() {
+            return file;
+        }
+
+        public long size() {
+            return size;
+        }
+
+        /**
+         * Можно ли отобразить файл в память одним буфером (не больше 2 ГБ).
+         */
+        public boolean isMappable() {
+            return size <= Integer.MAX_VALUE;
+        }
+
+        /**
+         * Отображает файл в память только для чтения. Отображение остаётся действительным и после закрытия канала,
+         * но читать его после {@link #close()} нельзя.
+         *
+         * @return буфер с содержимым файла
+         * @throws IOException если файл не удалось отобразить
+         */
+        public ByteBuffer map() throws IOException {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            }
+        }
+
+        /**
+         * Открывает поток чтения файла — для файлов, которые нельзя отобразить одним буфером.
+         */
+        public InputStream openStream() throws IOException {
+            return Files.newInputStream(file);
+        }
+
+        @Override
+        public void close() {
+            if (closed.compareAndSet(false, true)) {
+                delete(file);
+                reserved.addAndGet(-size);
+            }
+        }
+
+    }
+
+}
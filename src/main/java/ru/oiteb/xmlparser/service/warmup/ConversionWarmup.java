@@ -0,0 +1,143 @@
+package ru.oiteb.xmlparser.service.warmup;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ApplicationContext;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.multipart.MultipartFile;
+import ru.oiteb.xmlparser.config.ParserProperties;
+import ru.oiteb.xmlparser.config.WarmupProperties;
+import ru.oiteb.xmlparser.service.ConversionRequest;
+import ru.oiteb.xmlparser.service.ConversionResult;
+import ru.oiteb.xmlparser.service.ConversionService;
+import ru.oiteb.xmlparser.service.exporter.ExportFormat;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+
+/**
+ * Прогрев экземпляра синтетическими конвертациями при старте.
+ * <p>
+ * Первые конвертации после запуска заметно медленнее установившихся: классы парсера, Apache POI и схем OOXML
+ * загружаются лениво, а JIT ещё не скомпилировал горячие участки. При {@code converter.warmup.enabled} документы
+ * {@link SyntheticXmlGenerator} из {@code converter.warmup.products} продуктов конвертируются через
+ * {@link ConversionService} — тем же путём, что и загруженный файл, с допуском по памяти, — а результат
+ * отбрасывается. При {@code converter.warmup.parallel} конвертируется и документ не меньше
+ * {@code converter.parser.parallel.threshold}: он сохраняется во временный файл и разбирается параллельно, как
+ * крупная загрузка. Spring Boot сообщает о готовности ({@code /actuator/health/readiness}) только после
+ * {@link ApplicationRunner}-ов, поэтому балансировщик направляет запросы на уже прогретый экземпляр.
+ * </p>
+ * <p>
+ * Ошибка прогрева записывается в журнал и не мешает запуску. Конвертации прогрева учитываются в метриках
+ * {@code converter.*} так же, как обычные.
+ * </p>
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ConversionWarmup implements ApplicationRunner {
+
+    private static final long SEED = 42L;
+
+    private final ConversionService conversionService;
+    private final WarmupProperties properties;
+    private final ParserProperties parserProperties;
+    private final ApplicationContext context;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        long start = System.nanoTime();
+        try {
+            for (int i = 0; i < properties.getIterations(); i++) {
+                for (int products : properties.getProducts()) {
+                    convert(SyntheticXmlGenerator.generate(products, SEED));
+                }
+                ParserProperties.Parallel parallel = parserProperties.getParallel();
+                if (properties.isParallel() && parallel.isEnabled()) {
+                    int threshold = Math.toIntExact(parallel.getThreshold().toBytes());
+                    convert(SyntheticXmlGenerator.generateAtLeast(threshold, SEED));
+                }
+            }
+            log.info("Warm-up finished in {} ms", (System.nanoTime() - start) / 1_000_000);
+        } catch (RuntimeException | IOException e) {
+            log.warn("Warm-up conversion failed", e);
+        }
+        if (properties.isExit()) {
+            System.exit(SpringApplication.exit(context));
+        }
+    }
+
+    private void convert(byte[] xml) throws IOException {
+        for (ExportFormat format : properties.getFormats()) {
+            try (ConversionResult result = conversionService.prepare(
+                    ConversionRequest.upload(new SyntheticUpload(xml)).format(format).build())) {
+                result.writeTo(OutputStream.nullOutputStream());
+            }
+        }
+    }
+
+    /**
+     * Синтетический документ в виде загруженного файла.
+     */
+    private static final class SyntheticUpload implements MultipartFile {
+
+        private final byte[] content;
+
+        private SyntheticUpload(byte[] content) {
+            this.content = content;
+        }
+
+        @Override
+        public String getName() {
+            return "file";
+        }
+
+        @Override
+        public String getOriginalFilename() {
+            return "warmup.xml";
+        }
+
+        @Override
+        public String getContentType() {
+            return MediaType.APPLICATION_XML_VALUE;
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return content.length == 0;
+        }
+
+        @Override
+        public long getSize() {
+            return content.length;
+        }
+
+        @Override
+        public byte[] getBytes() {
+            return content;
+        }
+
+        @Override
+        public InputStream getInputStream() {
+            return new ByteArrayInputStream(content);
+        }
+
+        @Override
+        public void transferTo(File dest) throws IOException {
+            Files.write(dest.toPath(), content);
+        }
+
+    }
+
+}
@@ -0,0 +1,166 @@
+package ru.oiteb.xmlparser.service.warmup;
+
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.SplittableRandom;
+import java.util.function.IntPredicate;
+
+/**
+ * Генератор синтетических XML-выгрузок для прогрева при старте ({@link ConversionWarmup}) и бенчмарков.
+ * <p>
+ * Форма документа повторяет реальные выгрузки: корень с префиксом пространства имён, служебный заголовок,
+ * {@code <productInfo>} со всеми поддерживаемыми блоками, часть продуктов без товарного знака или кода НКМИ,
+ * неразбираемые вложенные блоки характеристик и вложений. Значения единиц измерения, стран, ОКПД2 и товарных
+ * знаков берутся из небольших справочников и многократно повторяются, наименования уникальны.
+ * {@code indexNum} в основном возрастает, но часть значений идёт вне порядка. Результат детерминирован
+ * для одинакового размера и {@code seed}.
+ * </p>
+ */
+public final class SyntheticXmlGenerator {
+
+    private static final String[] UNITS = {"796", "778", "166", "112", "876", "715", "625"};
+    private static final String[] COUNTRIES = {
+            "Российская Федерация", "Германия", "Индия", "Китайская Народная Республика", "Франция",
+            "Швейцария", "Республика Беларусь", "Венгрия", "Словения", "Италия"};
+    private static final String[] OKPD2 = {
+            "21.20.10.131", "21.20.10.190", "21.20.23.111", "32.50.13.110", "32.50.50.190",
+            "21.20.24.150", "22.19.71.190", "32.50.21.121"};
+    private static final String[] TRADEMARKS = {
+            "Bayer", "Фармстандарт", "Sanofi", "Органика", "Teva", "Биокад", "Novartis", "Герофарм", "KRKA"};
+    private static final String[] NAMES = {
+            "Ацетилсалициловая кислота", "Парацетамол", "Шприц инъекционный однократного применения",
+            "Перчатки смотровые нитриловые", "Амоксициллин", "Бинт марлевый медицинский стерильный",
+            "Катетер внутривенный периферический", "Метформин", "Раствор натрия хлорида"};
+    private static final String[] FORMS = {
+            "таблетки, покрытые оболочкой", "раствор для инфузий", "капсулы", "размер M", "5 мл", "7 м x 14 см"};
+
+    private SyntheticXmlGenerator() {
+        throw new UnsupportedOperationException("Utility class");
+    }
+
+    /**
+     * Генерирует документ с {@code products} продуктами в виде массива байтов UTF-8.
+     */
+    public static byte[] generate(int products, long seed) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(products * 900 + 1024);
+        try {
+            write(out, products, seed);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Генерирует документ размером не меньше {@code bytes} байтов: продукты добавляются, пока размер
+     * не достигнет заданного. Размер сверяется по байтам, уже вытесненным из буфера записи, поэтому документ
+     * может оказаться больше на размер буфера.
+     */
+    public static byte[] generateAtLeast(int bytes, long seed) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(bytes + 128 * 1024);
+        try {
+            write(out, seed, i -> out.size() < bytes);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Записывает документ с {@code products} продуктами в поток в кодировке UTF-8. Поток не закрывается.
+     */
+    public static void write(OutputStream out, int products, long seed) throws IOException {
+        write(out, seed, i -> i < products);
+    }
+
+    /**
+     * Записывает продукты, пока {@code hasNext} принимает номер очередного продукта.
+     */
+    private static void write(OutputStream out, long seed, IntPredicate hasNext) throws IOException {
+        SplittableRandom random = new SplittableRandom(seed);
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 64 * 1024);
+        writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+        writer.write("<ns2:export xmlns=\"http://zakupki.gov.ru/oos/types/1\" "
+                + "xmlns:ns2=\"http://zakupki.gov.ru/oos/export/1\">\n");
+        writer.write("<ns2:contract schemeVersion=\"13.2\">\n<id>" + seed + "</id>\n");
+        writer.write("<publishDate>2024-03-01T10:00:00+03:00</publishDate>\n<products>\n");
+        for (int i = 0; hasNext.test(i); i++) {
+            writeProduct(writer, i, random);
+        }
+        writer.write("</products>\n</ns2:contract>\n</ns2:export>\n");
+        writer.flush();
+    }
+
+    private static void writeProduct(Writer writer, int i, SplittableRandom random) throws IOException {
+        int indexNum = random.nextInt(20) == 0 ? random.nextInt(Math.max(1, i)) + 1 : i + 1;
+        writer.write("<productInfo>\n<indexNum>");
+        writer.write(Integer.toString(indexNum));
+        writer.write("</indexNum>\n<name>");
+        writer.write(pick(NAMES, random));
+        writer.write(", ");
+        writer.write(pick(FORMS, random));
+        writer.write(", арт. ");
+        writer.write(Integer.toString(i));
+        writer.write("</name>\n");
+        if (random.nextInt(10) != 0) {
+            writer.write("<trademarkInfo><trademark>");
+            writer.write(pick(TRADEMARKS, random));
+            writer.write("</trademark></trademarkInfo>\n");
+        }
+        writer.write("<OKEIInfo><code>");
+        String unit = pick(UNITS, random);
+        writer.write(unit);
+        writer.write("</code><nationalCode>");
+        writer.write(unit);
+        writer.write("</nationalCode><fullName>Штука</fullName></OKEIInfo>\n<OKPD2Info><OKPDCode>");
+        writer.write(pick(OKPD2, random));
+        writer.write("</OKPDCode><OKPDName>Препараты лекарственные</OKPDName></OKPD2Info>\n");
+        if (random.nextInt(4) != 0) {
+            writer.write("<medicalProductCode>21.20.10.131-00000");
+            writer.write(Integer.toString(random.nextInt(1000)));
+            writer.write("</medicalProductCode>\n");
+        }
+        writer.write("<countryFullName>");
+        writer.write(pick(COUNTRIES, random));
+        writer.write("</countryFullName>\n");
+        if (random.nextInt(3) == 0) {
+            writeCharacteristics(writer, random);
+        }
+        if (random.nextInt(50) == 0) {
+            writer.write("<attachment><fileName>spec.pdf</fileName><content>");
+            for (int j = 0; j < 40; j++) {
+                writer.write("JVBERi0xLjQKJcOkw7zDtsOfCjIgMCBvYmoKPDwvTGVuZ3RoIDMgMCBSL0ZpbHRlci9GbGF0ZURlY29kZT4+");
+            }
+            writer.write("</content></attachment>\n");
+        }
+        writer.write("<price>");
+        writer.write(Integer.toString(random.nextInt(100_000)));
+        writer.write(".00</price>\n<quantity>");
+        writer.write(Integer.toString(random.nextInt(1000) + 1));
+        writer.write("</quantity>\n</productInfo>\n");
+    }
+
+    private static void writeCharacteristics(Writer writer, SplittableRandom random) throws IOException {
+        writer.write("<characteristics>");
+        int count = random.nextInt(5) + 1;
+        for (int j = 0; j < count; j++) {
+            writer.write("<characteristic><code>");
+            writer.write(Integer.toString(random.nextInt(10_000)));
+            writer.write("</code><value><qualityDescription>");
+            writer.write(pick(FORMS, random));
+            writer.write("</qualityDescription></value></characteristic>");
+        }
+        writer.write("</characteristics>\n");
+    }
+
+    private static String pick(String[] values, SplittableRandom random) {
+        return values[random.nextInt(values.length)];
+    }
+
+}
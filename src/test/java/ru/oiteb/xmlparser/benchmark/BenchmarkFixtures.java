@@ -0,0 +1,80 @@
+package ru.oiteb.xmlparser.benchmark;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import ru.oiteb.xmlparser.config.AdmissionProperties;
+import ru.oiteb.xmlparser.config.ConversionCacheProperties;
+import ru.oiteb.xmlparser.config.ExcelExportProperties;
+import ru.oiteb.xmlparser.config.ParserProperties;
+import ru.oiteb.xmlparser.config.SortProperties;
+import ru.oiteb.xmlparser.config.UploadProperties;
+import ru.oiteb.xmlparser.config.XmlFactoryConfig;
+import ru.oiteb.xmlparser.metrics.ConversionMetrics;
+import ru.oiteb.xmlparser.service.Impl.ConversionServiceImpl;
+import ru.oiteb.xmlparser.service.admission.ConversionAdmission;
+import ru.oiteb.xmlparser.service.cache.ConversionResultCache;
+import ru.oiteb.xmlparser.service.exporter.CsvExporter;
+import ru.oiteb.xmlparser.service.exporter.ExcelExporter;
+import ru.oiteb.xmlparser.service.exporter.NdjsonExporter;
+import ru.oiteb.xmlparser.service.parser.XmlProductParser;
+import ru.oiteb.xmlparser.service.parser.XmlProductValidator;
+import ru.oiteb.xmlparser.service.sorter.ProductSorter;
+import ru.oiteb.xmlparser.service.upload.UploadDecoder;
+import ru.oiteb.xmlparser.service.upload.UploadSpooler;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Компоненты конвейера, собранные без Spring-контекста с настройками по умолчанию.
+ */
+final class BenchmarkFixtures {
+
+    static final long SEED = 42L;
+
+    private static final ConversionMetrics METRICS = new ConversionMetrics(new SimpleMeterRegistry());
+
+    private BenchmarkFixtures() {
+        throw new UnsupportedOperationException("Utility class");
+    }
+
+    static XmlProductParser parser() {
+        return parser(new ParserProperties());
+    }
+
+    static XmlProductParser parser(ParserProperties properties) {
+        return new XmlProductParser(new XmlFactoryConfig().secureXmlInputFactory(properties), properties);
+    }
+
+    static XmlProductValidator validator() {
+        ParserProperties properties = new ParserProperties();
+        return new XmlProductValidator(new XmlFactoryConfig().secureXmlInputFactory(properties), properties);
+    }
+
+    static ExcelExporter exporter() {
+        return exporter(ExcelExportProperties.Engine.POI);
+    }
+
+    static ExcelExporter exporter(ExcelExportProperties.Engine engine) {
+        ExcelExportProperties properties = new ExcelExportProperties();
+        properties.setEngine(engine);
+        return new ExcelExporter(properties, METRICS);
+    }
+
+    /**
+     * Сервис конвертации с выключенными кэшем результатов и допуском по памяти, чтобы каждая итерация
+     * проходила весь конвейер и не ждала соседних потоков.
+     */
+    static ConversionServiceImpl conversionService() {
+        ConversionCacheProperties cache = new ConversionCacheProperties();
+        cache.setEnabled(false);
+        AdmissionProperties admission = new AdmissionProperties();
+        admission.setEnabled(false);
+        return new ConversionServiceImpl(parser(),
+                List.of(exporter(), new CsvExporter(METRICS), new NdjsonExporter(METRICS)),
+                new ProductSorter(new SortProperties()),
+                new ConversionResultCache(cache, new ExcelExportProperties(), Optional.empty()),
+                new ConversionAdmission(admission, new SimpleMeterRegistry()), new UploadDecoder(new UploadProperties()),
+                new UploadSpooler(new UploadProperties(), admission, new SimpleMeterRegistry()), METRICS);
+    }
+
+}
@@ -0,0 +1,50 @@
+package ru.oiteb.xmlparser.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.mock.web.MockMultipartFile;
+import ru.oiteb.xmlparser.service.Impl.ConversionServiceImpl;
+import ru.oiteb.xmlparser.service.warmup.SyntheticXmlGenerator;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Конвертация целиком: {@link ConversionServiceImpl#convert} от загруженного XML до байтов XLSX,
+ * включая сортировку продуктов.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms6g", "-Xmx6g"})
+public class ConversionPipelineBenchmark {
+
+    @Param({"1000", "10000", "100000", "1000000"})
+    private int products;
+
+    private MockMultipartFile file;
+    private ConversionServiceImpl service;
+
+    @Setup
+    public void setUp() {
+        byte[] xml = SyntheticXmlGenerator.generate(products, BenchmarkFixtures.SEED);
+        file = new MockMultipartFile("file", "products.xml", "application/xml", xml);
+        service = BenchmarkFixtures.conversionService();
+    }
+
+    @Benchmark
+    public byte[] convert() {
+        return service.convert(file);
+    }
+
+}
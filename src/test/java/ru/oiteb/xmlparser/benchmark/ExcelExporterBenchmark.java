@@ -0,0 +1,54 @@
+package ru.oiteb.xmlparser.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.oiteb.xmlparser.config.ExcelExportProperties;
+import ru.oiteb.xmlparser.entity.ProductData;
+import ru.oiteb.xmlparser.service.exporter.ExcelExporter;
+import ru.oiteb.xmlparser.service.warmup.SyntheticXmlGenerator;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Генерация XLSX через {@link ExcelExporter#generateExcelToBytes(List)} из заранее разобранных продуктов:
+ * объектной моделью POI и прямой записью OOXML ({@code converter.excel.engine}).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms6g", "-Xmx6g"})
+public class ExcelExporterBenchmark {
+
+    @Param({"1000", "10000", "100000", "1000000"})
+    private int products;
+
+    @Param({"POI", "DIRECT"})
+    private ExcelExportProperties.Engine engine;
+
+    private List<ProductData> data;
+    private ExcelExporter exporter;
+
+    @Setup
+    public void setUp() {
+        data = BenchmarkFixtures.parser().parseXml(SyntheticXmlGenerator.generate(products, BenchmarkFixtures.SEED));
+        exporter = BenchmarkFixtures.exporter(engine);
+    }
+
+    @Benchmark
+    public byte[] generateExcelToBytes() {
+        return exporter.generateExcelToBytes(data);
+    }
+
+}
@@ -0,0 +1,481 @@
+package ru.oiteb.xmlparser.benchmark;
+
+import ru.oiteb.xmlparser.service.warmup.SyntheticXmlGenerator;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Нагрузочный тест запущенного конвертера через {@link HttpClient}: одновременные клиенты, файлы разного размера,
+ * задержки по перцентилям и пиковое потребление кучи сервера.
+ * <p>
+ * В отличие от JMH-бенчмарков тест ничего не поднимает сам: приложение запускается отдельно
+ * ({@code mvn spring-boot:run} или Docker-образ), а тест отправляет ему запросы. Запуск:
+ * {@code mvn -Ploadtest -DskipTests test -Dloadtest.args="concurrency=16 rate=4 duration=PT2M"}.
+ * </p>
+ * <p>
+ * Корпус — синтетические выгрузки {@link SyntheticXmlGenerator} размеров из {@code sizes}
+ * ({@code продуктов:вес,...}); размер каждого запроса выбирается случайно пропорционально весу. К каждому документу
+ * после корневого элемента дописывается комментарий с номером запроса, чтобы сервер не отдавал результат из
+ * кэша конвертаций ({@code cacheBusting=false} отключает это).
+ * </p>
+ * <p>
+ * Модель нагрузки:
+ * <ul>
+ *   <li>{@code rate=0} — закрытая: {@code concurrency} клиентов отправляют запросы друг за другом;</li>
+ *   <li>{@code rate>0} — открытая: запросы поступают пуассоновским потоком со средней частотой {@code rate} в
+ *   секунду, одновременно выполняется не больше {@code concurrency}, остальные ждут. Задержка отсчитывается от
+ *   запланированного момента отправки, поэтому ожидание свободного клиента в неё входит и перегрузка не
+ *   скрывается (coordinated omission).</li>
+ * </ul>
+ * Запросы, завершившиеся во время прогрева ({@code warmup}), в результат не входят.
+ * </p>
+ * <p>
+ * Куча сервера снимается с {@code /actuator/prometheus} ({@code jvm_memory_used_bytes} и
+ * {@code jvm_memory_committed_bytes} по областям {@code heap}) с периодом {@code heapSampleInterval}. Результат
+ * выводится в консоль и пишется в JSON ({@code out}, по умолчанию {@code target/loadtest-result.json}), чтобы
+ * прогоны можно было сравнивать.
+ * </p>
+ * <p>
+ * Параметры ({@code ключ=значение}): {@code baseUrl}, {@code path}, {@code body} ({@code multipart} или {@code raw}),
+ * {@code format}, {@code sizes}, {@code concurrency}, {@code rate}, {@code duration}, {@code warmup},
+ * {@code timeout}, {@code heapSampleInterval}, {@code seed}, {@code cacheBusting}, {@code out}.
+ * </p>
+ */
+public final class LoadTest {
+
+    private static final String BOUNDARY = "----LoadTestBoundary7d3c1f";
+    private static final Pattern HEAP_SAMPLE = Pattern.compile(
+            "^jvm_memory_(used|committed|max)_bytes\\{[^}]*area=\"heap\"[^}]*}\\s+(\\S+)");
+
+    private final Map<String, String> settings;
+    private final URI target;
+    private final URI prometheus;
+    private final boolean multipart;
+    private final boolean cacheBusting;
+    private final int concurrency;
+    private final double rate;
+    private final Duration duration;
+    private final Duration warmup;
+    private final Duration timeout;
+    private final Duration heapSampleInterval;
+    private final long seed;
+    private final Path out;
+
+    private final int[] sizes;
+    private final int[] weights;
+    private final Map<Integer, byte[]> corpus = new LinkedHashMap<>();
+    private final Map<Integer, Stats> statsBySize = new LinkedHashMap<>();
+    private final Stats total = new Stats();
+    private final HeapStats heap = new HeapStats();
+    private final AtomicLong sequence = new AtomicLong();
+
+    private HttpClient client;
+    private long measureFrom;
+
+    private LoadTest(Map<String, String> settings) {
+        this.settings = settings;
+        String baseUrl = setting("baseUrl", "http://localhost:8080").replaceAll("/+$", "");
+        String format = setting("format", "");
+        this.target = URI.create(baseUrl + setting("path", "/v1/api/xml-converter")
+                + (format.isEmpty() ? "" : "?format=" + format));
+        this.prometheus = URI.create(baseUrl + "/actuator/prometheus");
+        this.multipart = !"raw".equals(setting("body", "multipart"));
+        this.cacheBusting = Boolean.parseBoolean(setting("cacheBusting", "true"));
+        this.concurrency = Integer.parseInt(setting("concurrency", "8"));
+        this.rate = Double.parseDouble(setting("rate", "0"));
+        this.duration = Duration.parse(setting("duration", "PT1M"));
+        this.warmup = Duration.parse(setting("warmup", "PT10S"));
+        this.timeout = Duration.parse(setting("timeout", "PT5M"));
+        this.heapSampleInterval = Duration.parse(setting("heapSampleInterval", "PT1S"));
+        this.seed = Long.parseLong(setting("seed", "42"));
+        this.out = Path.of(setting("out", "target/loadtest-result.json"));
+        String[] entries = setting("sizes", "1000:70,10000:25,100000:5").split(",");
+        this.sizes = new int[entries.length];
+        this.weights = new int[entries.length];
+        for (int i = 0; i < entries.length; i++) {
+            String[] entry = entries[i].trim().split(":");
+            sizes[i] = Integer.parseInt(entry[0]);
+            weights[i] = entry.length > 1 ? Integer.parseInt(entry[1]) : 1;
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> settings = new LinkedHashMap<>();
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (eq <= 0) {
+                throw new IllegalArgumentException("Expected key=value, got: " + arg);
+            }
+            settings.put(arg.substring(0, eq), arg.substring(eq + 1));
+        }
+        new LoadTest(settings).run();
+    }
+
+    private String setting(String key, String defaultValue) {
+        return settings.computeIfAbsent(key, k -> defaultValue);
+    }
+
+    private void run() throws Exception {
+        for (int i = 0; i < sizes.length; i++) {
+            corpus.put(sizes[i], SyntheticXmlGenerator.generate(sizes[i], seed + i));
+            statsBySize.put(sizes[i], new Stats());
+        }
+        corpus.forEach((products, xml) -> System.out.printf(Locale.ROOT, "corpus: %d products, %.1f MB%n",
+                products, xml.length / 1_048_576.0));
+
+        ExecutorService workers = Executors.newFixedThreadPool(concurrency);
+        ScheduledExecutorService sampler = Executors.newSingleThreadScheduledExecutor();
+        client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(10))
+                .executor(Executors.newCachedThreadPool())
+                .build();
+        Instant startedAt = Instant.now();
+        long start = System.nanoTime();
+        measureFrom = start + warmup.toNanos();
+        long end = measureFrom + duration.toNanos();
+        sampler.scheduleAtFixedRate(this::sampleHeap, 0, heapSampleInterval.toMillis(), TimeUnit.MILLISECONDS);
+        try {
+            if (rate > 0) {
+                runOpen(workers, end);
+            } else {
+                runClosed(workers, end);
+            }
+            workers.shutdown();
+            workers.awaitTermination(timeout.toMillis(), TimeUnit.MILLISECONDS);
+        } finally {
+            workers.shutdownNow();
+            sampler.shutdownNow();
+        }
+        sampleHeap();
+        double seconds = Math.max(1e-9, (Math.min(System.nanoTime(), end) - measureFrom) / 1e9);
+        String json = toJson(startedAt, seconds);
+        Path parent = out.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        Files.writeString(out, json, StandardCharsets.UTF_8);
+        printSummary(seconds);
+        System.out.println("result: " + out.toAbsolutePath());
+        System.exit(0);
+    }
+
+    /**
+     * Закрытая модель: каждый клиент отправляет следующий запрос сразу после ответа на предыдущий.
+     */
+    private void runClosed(ExecutorService workers, long end) {
+        for (int i = 0; i < concurrency; i++) {
+            SplittableRandom random = new SplittableRandom(seed * 31 + i);
+            workers.execute(() -> {
+                while (System.nanoTime() < end && !Thread.currentThread().isInterrupted()) {
+                    send(pickSize(random), System.nanoTime());
+                }
+            });
+        }
+    }
+
+    /**
+     * Открытая модель: запросы планируются пуассоновским потоком независимо от того, успевает ли сервер.
+     */
+    private void runOpen(ExecutorService workers, long end) throws InterruptedException {
+        SplittableRandom random = new SplittableRandom(seed);
+        long next = System.nanoTime();
+        while (next < end) {
+            long wait = next - System.nanoTime();
+            if (wait > 0) {
+                TimeUnit.NANOSECONDS.sleep(wait);
+            }
+            int products = pickSize(random);
+            long scheduled = next;
+            workers.execute(() -> send(products, scheduled));
+            next += (long) (-Math.log(1 - random.nextDouble()) / rate * 1e9);
+        }
+    }
+
+    private int pickSize(SplittableRandom random) {
+        int sum = Arrays.stream(weights).sum();
+        int pick = random.nextInt(sum);
+        for (int i = 0; i < sizes.length; i++) {
+            pick -= weights[i];
+            if (pick < 0) {
+                return sizes[i];
+            }
+        }
+        return sizes[sizes.length - 1];
+    }
+
+    /**
+     * Отправляет один запрос и учитывает его результат, если он завершился после прогрева.
+     *
+     * @param products  размер документа
+     * @param scheduled момент, на который запрос был запланирован ({@link System#nanoTime()})
+     */
+    private void send(int products, long scheduled) {
+        byte[] xml = corpus.get(products);
+        List<byte[]> parts = new ArrayList<>(4);
+        if (multipart) {
+            parts.add(("--" + BOUNDARY + "\r\nContent-Disposition: form-data; name=\"file\"; filename=\"products-"
+                    + products + ".xml\"\r\nContent-Type: application/xml\r\n\r\n").getBytes(StandardCharsets.UTF_8));
+        }
+        parts.add(xml);
+        if (cacheBusting) {
+            parts.add(("<!-- " + sequence.incrementAndGet() + " -->\n").getBytes(StandardCharsets.UTF_8));
+        }
+        if (multipart) {
+            parts.add(("\r\n--" + BOUNDARY + "--\r\n").getBytes(StandardCharsets.UTF_8));
+        }
+        long uploaded = parts.stream().mapToLong(part -> part.length).sum();
+        HttpRequest request = HttpRequest.newBuilder(target)
+                .timeout(timeout)
+                .header("Content-Type", multipart ? "multipart/form-data; boundary=" + BOUNDARY : "application/xml")
+                // с Content-Length сервер резервирует место под части multipart по размеру тела
+                .POST(HttpRequest.BodyPublishers.fromPublisher(
+                        HttpRequest.BodyPublishers.ofByteArrays(parts), uploaded))
+                .build();
+        String outcome;
+        long downloaded = 0;
+        try {
+            HttpResponse<InputStream> response = client.send(request, HttpResponse.BodyHandlers.ofInputStream());
+            try (InputStream body = response.body()) {
+                downloaded = body.transferTo(OutputStream.nullOutputStream());
+            }
+            outcome = Integer.toString(response.statusCode());
+        } catch (IOException e) {
+            outcome = e.getClass().getSimpleName();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        long finished = System.nanoTime();
+        if (finished < measureFrom) {
+            return;
+        }
+        long latency = finished - scheduled;
+        total.record(outcome, latency, uploaded, downloaded);
+        statsBySize.get(products).record(outcome, latency, uploaded, downloaded);
+    }
+
+    /**
+     * Снимает занятую и выделенную кучу сервера с Prometheus-эндпоинта. Ошибки учитываются, но тест не прерывают.
+     */
+    private void sampleHeap() {
+        try {
+            HttpResponse<String> response = client.send(HttpRequest.newBuilder(prometheus)
+                    .timeout(Duration.ofSeconds(5)).GET().build(), HttpResponse.BodyHandlers.ofString());
+            if (response.statusCode() != 200) {
+                heap.failed();
+                return;
+            }
+            Map<String, Double> sums = new HashMap<>();
+            for (String line : response.body().split("\n")) {
+                Matcher matcher = HEAP_SAMPLE.matcher(line);
+                if (matcher.find()) {
+                    double value = Double.parseDouble(matcher.group(2));
+                    if (value > 0) {
+                        sums.merge(matcher.group(1), value, Double::sum);
+                    }
+                }
+            }
+            heap.sample(sums.getOrDefault("used", 0.0).longValue(), sums.getOrDefault("committed", 0.0).longValue(),
+                    sums.getOrDefault("max", 0.0).longValue());
+        } catch (IOException e) {
+            heap.failed();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void printSummary(double seconds) {
+        System.out.printf(Locale.ROOT, "%-10s %8s %8s %9s %9s %9s %9s%n",
+                "products", "requests", "errors", "req/s", "p50 ms", "p95 ms", "p99 ms");
+        statsBySize.forEach((products, stats) -> printRow(Integer.toString(products), stats, seconds));
+        printRow("total", total, seconds);
+        System.out.printf(Locale.ROOT, "server heap used max: %.1f MB%n", heap.maxUsed / 1_048_576.0);
+    }
+
+    private void printRow(String name, Stats stats, double seconds) {
+        synchronized (stats) {
+            long[] sorted = stats.sortedLatencies();
+            System.out.printf(Locale.ROOT, "%-10s %8d %8d %9.2f %9.1f %9.1f %9.1f%n", name, stats.requests(),
+                    stats.errors(), stats.requests() / seconds, percentile(sorted, 50) / 1e6,
+                    percentile(sorted, 95) / 1e6, percentile(sorted, 99) / 1e6);
+        }
+    }
+
+    private String toJson(Instant startedAt, double seconds) {
+        StringBuilder json = new StringBuilder("{\n");
+        json.append("  \"startedAt\": \"").append(startedAt).append("\",\n");
+        json.append("  \"target\": \"").append(escape(target.toString())).append("\",\n");
+        json.append("  \"settings\": {");
+        String separator = "";
+        for (Map.Entry<String, String> setting : new TreeMap<>(settings).entrySet()) {
+            json.append(separator).append('"').append(escape(setting.getKey())).append("\": \"")
+                    .append(escape(setting.getValue())).append('"');
+            separator = ", ";
+        }
+        json.append("},\n");
+        json.append("  \"measuredSeconds\": ").append(number(seconds)).append(",\n");
+        json.append("  \"total\": ");
+        appendStats(json, total, seconds, "  ");
+        json.append(",\n  \"bySize\": {\n");
+        separator = "";
+        for (Map.Entry<Integer, Stats> entry : statsBySize.entrySet()) {
+            json.append(separator).append("    \"").append(entry.getKey()).append("\": ");
+            appendStats(json, entry.getValue(), seconds, "    ");
+            separator = ",\n";
+        }
+        json.append("\n  },\n");
+        synchronized (heap) {
+            json.append("  \"serverHeap\": {\"samples\": ").append(heap.samples)
+                    .append(", \"failedSamples\": ").append(heap.failures)
+                    .append(", \"maxUsedBytes\": ").append(heap.maxUsed)
+                    .append(", \"maxCommittedBytes\": ").append(heap.maxCommitted)
+                    .append(", \"maxBytes\": ").append(heap.max).append("}\n");
+        }
+        return json.append("}\n").toString();
+    }
+
+    private void appendStats(StringBuilder json, Stats stats, double seconds, String indent) {
+        synchronized (stats) {
+            long[] sorted = stats.sortedLatencies();
+            long requests = stats.requests();
+            json.append("{\n");
+            json.append(indent).append("  \"requests\": ").append(requests).append(",\n");
+            json.append(indent).append("  \"errors\": ").append(stats.errors()).append(",\n");
+            json.append(indent).append("  \"errorRate\": ")
+                    .append(number(requests == 0 ? 0 : (double) stats.errors() / requests)).append(",\n");
+            json.append(indent).append("  \"throughputPerSecond\": ").append(number(requests / seconds)).append(",\n");
+            json.append(indent).append("  \"uploadedBytes\": ").append(stats.uploaded).append(",\n");
+            json.append(indent).append("  \"downloadedBytes\": ").append(stats.downloaded).append(",\n");
+            json.append(indent).append("  \"outcomes\": {");
+            String separator = "";
+            for (Map.Entry<String, Long> outcome : stats.outcomes.entrySet()) {
+                json.append(separator).append('"').append(escape(outcome.getKey())).append("\": ")
+                        .append(outcome.getValue());
+                separator = ", ";
+            }
+            json.append("},\n");
+            json.append(indent).append("  \"latencyMs\": {\"mean\": ")
+                    .append(number(sorted.length == 0 ? 0 : Arrays.stream(sorted).average().orElse(0) / 1e6))
+                    .append(", \"p50\": ").append(number(percentile(sorted, 50) / 1e6))
+                    .append(", \"p95\": ").append(number(percentile(sorted, 95) / 1e6))
+                    .append(", \"p99\": ").append(number(percentile(sorted, 99) / 1e6))
+                    .append(", \"max\": ").append(number(sorted.length == 0 ? 0 : sorted[sorted.length - 1] / 1e6))
+                    .append("}\n");
+            json.append(indent).append('}');
+        }
+    }
+
+    /**
+     * Перцентиль по методу ближайшего ранга.
+     */
+    static long percentile(long[] sorted, double percent) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int rank = (int) Math.ceil(percent / 100 * sorted.length);
+        return sorted[Math.min(sorted.length, Math.max(1, rank)) - 1];
+    }
+
+    private static String number(double value) {
+        return String.format(Locale.ROOT, "%.3f", value);
+    }
+
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"");
+    }
+
+    /**
+     * Результаты запросов одной группы: исходы (код ответа или тип ошибки), задержки и объём переданных данных.
+     * Ошибкой считается любой исход, кроме 2xx.
+     */
+    private static final class Stats {
+
+        private final Map<String, Long> outcomes = new TreeMap<>();
+        private long[] latencies = new long[1024];
+        private int count;
+        private long errors;
+        private long uploaded;
+        private long downloaded;
+
+        synchronized void record(String outcome, long latencyNanos, long uploadedBytes, long downloadedBytes) {
+            outcomes.merge(outcome, 1L, Long::sum);
+            if (!outcome.startsWith("2")) {
+                errors++;
+            }
+            if (count == latencies.length) {
+                latencies = Arrays.copyOf(latencies, count * 2);
+            }
+            latencies[count++] = latencyNanos;
+            uploaded += uploadedBytes;
+            downloaded += downloadedBytes;
+        }
+
+        long requests() {
+            return count;
+        }
+
+        long errors() {
+            return errors;
+        }
+
+        long[] sortedLatencies() {
+            long[] sorted = Arrays.copyOf(latencies, count);
+            Arrays.sort(sorted);
+            return sorted;
+        }
+
+    }
+
+    /**
+     * Пиковые значения кучи сервера по всем снятым образцам.
+     */
+    private static final class HeapStats {
+
+        private long samples;
+        private long failures;
+        private long maxUsed;
+        private long maxCommitted;
+        private long max;
+
+        synchronized void sample(long used, long committed, long maxHeap) {
+            samples++;
+            maxUsed = Math.max(maxUsed, used);
+            maxCommitted = Math.max(maxCommitted, committed);
+            max = Math.max(max, maxHeap);
+        }
+
+        synchronized void failed() {
+            failures++;
+        }
+
+    }
+
+}
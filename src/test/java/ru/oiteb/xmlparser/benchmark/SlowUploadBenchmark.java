@@ -0,0 +1,225 @@
+package ru.oiteb.xmlparser.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import ru.oiteb.xmlparser.XmlParserApplication;
+import ru.oiteb.xmlparser.service.warmup.SyntheticXmlGenerator;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Задержка короткой конвертации на работающем сервере, пока другие клиенты медленно загружают большие файлы.
+ * <p>
+ * Пул Tomcat ограничен {@value #TOMCAT_MAX_THREADS} потоками. На платформенных потоках каждая медленная загрузка
+ * занимает поток пула на всё время передачи тела, и быстрые запросы ждут в очереди. С
+ * {@code spring.threads.virtual.enabled=true} заблокированный на вводе-выводе запрос освобождает поток-носитель.
+ * Виртуальные потоки требуют Java 21: {@code mvn -Pjava21,benchmark -DskipTests test
+ * -Djmh.include=SlowUploadBenchmark -Djmh.params=""}.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 10)
+@Threads(4)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class SlowUploadBenchmark {
+
+    private static final int TOMCAT_MAX_THREADS = 16;
+    private static final String BOUNDARY = "----SlowUploadBenchmarkBoundary";
+    private static final String CONVERTER_PATH = "/v1/api/xml-converter";
+
+    @Param({"false", "true"})
+    private boolean virtualThreads;
+
+    /** Число одновременных медленных загрузок. */
+    @Param({"64"})
+    private int slowUploads;
+
+    /** Скорость передачи тела одним медленным клиентом, КБ/с. */
+    @Param({"64"})
+    private int uploadRateKb;
+
+    private ConfigurableApplicationContext context;
+    private HttpClient client;
+    private URI converterUri;
+    private byte[] fastBody;
+    private byte[] slowXml;
+    private List<Thread> uploaders;
+    private volatile boolean running;
+
+    @Setup
+    public void setUp() {
+        context = new SpringApplicationBuilder(XmlParserApplication.class)
+                .properties(
+                        "server.port=0",
+                        "server.tomcat.threads.max=" + TOMCAT_MAX_THREADS,
+                        "spring.threads.virtual.enabled=" + virtualThreads,
+                        "spring.main.banner-mode=off",
+                        "logging.level.root=WARN",
+                        "converter.cache.enabled=false")
+                .run();
+        int port = context.getEnvironment().getRequiredProperty("local.server.port", Integer.class);
+        converterUri = URI.create("http://localhost:" + port + CONVERTER_PATH);
+        client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(10))
+                .build();
+
+        fastBody = multipart(SyntheticXmlGenerator.generate(100, BenchmarkFixtures.SEED));
+        slowXml = SyntheticXmlGenerator.generate(2_000, BenchmarkFixtures.SEED);
+
+        running = true;
+        uploaders = new ArrayList<>(slowUploads);
+        for (int i = 0; i < slowUploads; i++) {
+            Thread uploader = new Thread(this::uploadSlowly, "slow-upload-" + i);
+            uploader.setDaemon(true);
+            uploader.start();
+            uploaders.add(uploader);
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws InterruptedException {
+        running = false;
+        for (Thread uploader : uploaders) {
+            uploader.interrupt();
+        }
+        for (Thread uploader : uploaders) {
+            uploader.join(TimeUnit.SECONDS.toMillis(5));
+        }
+        context.close();
+    }
+
+    @Benchmark
+    public int convertSmallFile() throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(converterUri)
+                .header("Content-Type", "multipart/form-data; boundary=" + BOUNDARY)
+                .POST(HttpRequest.BodyPublishers.ofByteArray(fastBody))
+                .build();
+        HttpResponse<byte[]> response = client.send(request, HttpResponse.BodyHandlers.ofByteArray());
+        if (response.statusCode() != 200) {
+            throw new IllegalStateException("Unexpected status " + response.statusCode());
+        }
+        return response.body().length;
+    }
+
+    private void uploadSlowly() {
+        while (running) {
+            HttpRequest request = HttpRequest.newBuilder(converterUri)
+                    .header("Content-Type", "multipart/form-data; boundary=" + BOUNDARY)
+                    .POST(HttpRequest.BodyPublishers.fromPublisher(
+                            HttpRequest.BodyPublishers.ofInputStream(this::slowMultipart), slowBodyLength()))
+                    .build();
+            try {
+                client.send(request, HttpResponse.BodyHandlers.discarding());
+            } catch (IOException e) {
+                // соединение оборвано при остановке сервера или по таймауту — следующая загрузка начнётся заново
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private InputStream slowMultipart() {
+        InputStream body = new SequenceInputStream(new SequenceInputStream(
+                new ByteArrayInputStream(partHeader()),
+                new ByteArrayInputStream(slowXml)),
+                new ByteArrayInputStream(partFooter()));
+        return new ThrottledInputStream(body, uploadRateKb * 1024);
+    }
+
+    /**
+     * Длина тела медленной загрузки: с {@code Content-Length} сервер резервирует под неё место по размеру,
+     * а не по {@code max-request-size}, как для тела неизвестной длины.
+     */
+    private long slowBodyLength() {
+        return partHeader().length + slowXml.length + partFooter().length;
+    }
+
+    private static byte[] multipart(byte[] xml) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(xml.length + 256);
+        out.writeBytes(partHeader());
+        out.writeBytes(xml);
+        out.writeBytes(partFooter());
+        return out.toByteArray();
+    }
+
+    private static byte[] partHeader() {
+        return ("--" + BOUNDARY + "\r\n"
+                + "Content-Disposition: form-data; name=\"file\"; filename=\"products.xml\"\r\n"
+                + "Content-Type: application/xml\r\n\r\n").getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private static byte[] partFooter() {
+        return ("\r\n--" + BOUNDARY + "--\r\n").getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Отдаёт данные порциями не быстрее заданного числа байт в секунду.
+     */
+    private static final class ThrottledInputStream extends InputStream {
+
+        private static final int TICKS_PER_SECOND = 10;
+
+        private final InputStream delegate;
+        private final int bytesPerTick;
+
+        private ThrottledInputStream(InputStream delegate, int bytesPerSecond) {
+            this.delegate = delegate;
+            this.bytesPerTick = Math.max(1, bytesPerSecond / TICKS_PER_SECOND);
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] single = new byte[1];
+            return read(single, 0, 1) < 0 ? -1 : single[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            try {
+                Thread.sleep(1000L / TICKS_PER_SECOND);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Upload interrupted", e);
+            }
+            return delegate.read(buffer, offset, Math.min(length, bytesPerTick));
+        }
+
+        @Override
+        public void close() throws IOException {
+            delegate.close();
+        }
+
+    }
+
+}
@@ -0,0 +1,73 @@
+package ru.oiteb.xmlparser.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.util.unit.DataSize;
+import ru.oiteb.xmlparser.config.ParserProperties;
+import ru.oiteb.xmlparser.entity.ProductData;
+import ru.oiteb.xmlparser.entity.ValidationReport;
+import ru.oiteb.xmlparser.service.parser.XmlProductParser;
+import ru.oiteb.xmlparser.service.parser.XmlProductValidator;
+import ru.oiteb.xmlparser.service.warmup.SyntheticXmlGenerator;
+
+import java.io.ByteArrayInputStream;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Разбор XML: последовательный {@link XmlProductParser#parseXml(byte[])} и параллельный разбор буфера,
+ * а также проверка документа без построения продуктов ({@link XmlProductValidator}) для сравнения с ними.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms6g", "-Xmx6g"})
+public class XmlProductParserBenchmark {
+
+    @Param({"1000", "10000", "100000", "1000000"})
+    private int products;
+
+    private byte[] xml;
+    private XmlProductParser parser;
+    private XmlProductParser parallelParser;
+    private XmlProductValidator validator;
+
+    @Setup
+    public void setUp() {
+        xml = SyntheticXmlGenerator.generate(products, BenchmarkFixtures.SEED);
+        parser = BenchmarkFixtures.parser();
+        ParserProperties parallel = new ParserProperties();
+        parallel.getParallel().setThreshold(DataSize.ofBytes(0));
+        parallelParser = BenchmarkFixtures.parser(parallel);
+        validator = BenchmarkFixtures.validator();
+    }
+
+    @Benchmark
+    public List<ProductData> parse() {
+        return parser.parseXml(xml);
+    }
+
+    @Benchmark
+    public void parseParallel(Blackhole blackhole) {
+        parallelParser.parseXml(ByteBuffer.wrap(xml), blackhole::consume);
+    }
+
+    @Benchmark
+    public ValidationReport validate() {
+        return validator.validate(new ByteArrayInputStream(xml));
+    }
+
+}
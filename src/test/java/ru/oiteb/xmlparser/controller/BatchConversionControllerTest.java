@@ -0,0 +1,85 @@
+package ru.oiteb.xmlparser.controller;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.webmvc.test.autoconfigure.WebMvcTest;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.web.multipart.MultipartFile;
+import ru.oiteb.xmlparser.entity.BatchOutput;
+import ru.oiteb.xmlparser.exception.InvalidArchiveException;
+import ru.oiteb.xmlparser.service.BatchConversionService;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.multipart;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+import static ru.oiteb.xmlparser.constants.CommonConstants.*;
+
+@WebMvcTest(BatchConversionController.class)
+public class BatchConversionControllerTest {
+
+    private static final MockMultipartFile ARCHIVE =
+            new MockMultipartFile("file", "batch.zip", APPLICATION_ZIP, new byte[]{0x50, 0x4B, 0x05, 0x06});
+
+    @Autowired
+    private MockMvc mockMvc;
+    @MockitoBean
+    private BatchConversionService batchService;
+
+    @Test
+    void shouldReturnZipByDefault() throws Exception {
+        byte[] zip = {0x50, 0x4B, 0x03, 0x04};
+        when(batchService.convert(any(MultipartFile.class), eq(BatchOutput.ZIP))).thenReturn(out -> out.write(zip));
+
+        MvcResult result = mockMvc.perform(multipart("/v1/api/xml-converter/batch").file(ARCHIVE))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Content-Type", APPLICATION_ZIP))
+                .andExpect(header().string("Content-Disposition", ZIP_CONTENT_DISPOSITION))
+                .andExpect(content().bytes(zip));
+    }
+
+    @Test
+    void shouldReturnSingleWorkbookWhenRequested() throws Exception {
+        byte[] xlsx = {0x50, 0x4B, 0x03, 0x04, 0x14};
+        when(batchService.convert(any(MultipartFile.class), eq(BatchOutput.WORKBOOK))).thenReturn(out -> out.write(xlsx));
+
+        MvcResult result = mockMvc.perform(multipart("/v1/api/xml-converter/batch").file(ARCHIVE)
+                        .param("output", "workbook"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Content-Type", EXCEL_XLSX))
+                .andExpect(header().string("Content-Disposition", EXCEL_CONTENT_DISPOSITION))
+                .andExpect(content().bytes(xlsx));
+    }
+
+    @Test
+    void shouldRejectUnknownOutput() throws Exception {
+        mockMvc.perform(multipart("/v1/api/xml-converter/batch").file(ARCHIVE).param("output", "tar"))
+                .andExpect(status().isBadRequest());
+
+        verify(batchService, never()).convert(any(), any());
+    }
+
+    @Test
+    void shouldReturnBadRequestForBrokenArchive() throws Exception {
+        when(batchService.convert(any(MultipartFile.class), any())).thenThrow(new InvalidArchiveException(": broken"));
+
+        mockMvc.perform(multipart("/v1/api/xml-converter/batch").file(ARCHIVE))
+                .andExpect(status().isBadRequest());
+    }
+
+}
@@ -5,21 +5,45 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.webmvc.test.autoconfigure.WebMvcTest;
 import org.springframework.http.MediaType;
 import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.mock.web.MockPart;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.web.multipart.MultipartFile;
+import ru.oiteb.xmlparser.exception.ConversionOverloadedException;
 import ru.oiteb.xmlparser.exception.EmptyXmlFileException;
+import ru.oiteb.xmlparser.exception.UploadTooLargeException;
+import ru.oiteb.xmlparser.service.ConversionRequest;
+import ru.oiteb.xmlparser.service.ConversionResult;
 import ru.oiteb.xmlparser.service.ConversionService;
+import ru.oiteb.xmlparser.service.exporter.ExportFormat;
+import ru.oiteb.xmlparser.service.upload.ContentCoding;
+
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
 
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.multipart;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+import static ru.oiteb.xmlparser.constants.CommonConstants.CSV_CONTENT_DISPOSITION;
 import static ru.oiteb.xmlparser.constants.CommonConstants.EXCEL_CONTENT_DISPOSITION;
 import static ru.oiteb.xmlparser.constants.CommonConstants.EXCEL_XLSX;
+import static ru.oiteb.xmlparser.constants.CommonConstants.NDJSON_CONTENT_DISPOSITION;
 
 @WebMvcTest(ConversionController.class)
 public class ConversionControllerTest {
 
+    private static final String FINGERPRINT = "0123456789abcdef";
+
     @Autowired
     private MockMvc mockMvc;
     @MockitoBean
@@ -28,7 +52,9 @@ public class ConversionControllerTest {
     @Test
     void shouldReturnExcelFileOnValidXml() throws Exception {
         byte[] fakeExcel = new byte[]{0x50, 0x4B, 0x03, 0x04};
-        when(conversionService.convert(any())).thenReturn(fakeExcel);
+        when(conversionService.fingerprint(any(MultipartFile.class), eq(ExportFormat.XLSX))).thenReturn(FINGERPRINT);
+        when(conversionService.prepare(upload(FINGERPRINT, ExportFormat.XLSX, ContentCoding.IDENTITY)))
+                .thenReturn(out -> out.write(fakeExcel));
 
         MockMultipartFile xmlFile = new MockMultipartFile(
                 "file",
@@ -37,18 +63,40 @@ public class ConversionControllerTest {
                 "<products><productInfo><indexNum>1</indexNum></productInfo></products>".getBytes()
         );
 
-        mockMvc.perform(multipart("/v1/api/xml-converter")
+        MvcResult result = mockMvc.perform(multipart("/v1/api/xml-converter")
                         .file(xmlFile)
                         .contentType(MediaType.MULTIPART_FORM_DATA))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
                 .andExpect(status().isOk())
                 .andExpect(header().string("Content-Type", EXCEL_XLSX))
                 .andExpect(header().string("Content-Disposition", EXCEL_CONTENT_DISPOSITION))
+                .andExpect(header().string("ETag", "\"" + FINGERPRINT + "\""))
                 .andExpect(content().bytes(fakeExcel));
     }
 
+    @Test
+    void shouldReturnNotModifiedWhenETagMatches() throws Exception {
+        when(conversionService.fingerprint(any(MultipartFile.class), any())).thenReturn(FINGERPRINT);
+
+        MockMultipartFile xmlFile = new MockMultipartFile("file", "test.xml", "application/xml", "<a></a>".getBytes());
+
+        mockMvc.perform(multipart("/v1/api/xml-converter")
+                        .file(xmlFile)
+                        .header("If-None-Match", "\"other\", W/\"" + FINGERPRINT + "\""))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string("ETag", "\"" + FINGERPRINT + "\""))
+                .andExpect(content().bytes(new byte[0]));
+
+        verify(conversionService, never()).prepare(any(ConversionRequest.class));
+    }
+
     @Test
     void shouldReturn500OnConversionFailure() throws Exception {
-        when(conversionService.convert(any()))
+        when(conversionService.fingerprint(any(MultipartFile.class), any())).thenReturn(FINGERPRINT);
+        when(conversionService.prepare(any(ConversionRequest.class)))
                 .thenThrow(new RuntimeException("Internal error"));
 
         MockMultipartFile xmlFile = new MockMultipartFile(
@@ -63,7 +111,7 @@ public class ConversionControllerTest {
 
     @Test
     void shouldRejectEmptyFile() throws Exception {
-        when(conversionService.convert(any()))
+        when(conversionService.fingerprint(any(MultipartFile.class), any()))
                 .thenThrow(new EmptyXmlFileException("File is empty"));
 
         MockMultipartFile emptyFile = new MockMultipartFile("file", "empty.xml", "application/xml", new byte[0]);
@@ -72,4 +120,194 @@ public class ConversionControllerTest {
                 .andExpect(status().is5xxServerError());
     }
 
+    @Test
+    void shouldReturnCsvWhenRequestedByParameter() throws Exception {
+        byte[] csv = "№ п/п\r\n1\r\n".getBytes(StandardCharsets.UTF_8);
+        when(conversionService.fingerprint(any(MultipartFile.class), eq(ExportFormat.CSV))).thenReturn(FINGERPRINT + "-csv");
+        when(conversionService.prepare(upload(FINGERPRINT + "-csv", ExportFormat.CSV, ContentCoding.IDENTITY)))
+                .thenReturn(out -> out.write(csv));
+
+        MockMultipartFile xmlFile = new MockMultipartFile("file", "test.xml", "application/xml", "<a></a>".getBytes());
+
+        MvcResult result = mockMvc.perform(multipart("/v1/api/xml-converter").file(xmlFile).param("format", "csv"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith("text/csv"))
+                .andExpect(header().string("Content-Disposition", CSV_CONTENT_DISPOSITION))
+                .andExpect(header().string("ETag", "\"" + FINGERPRINT + "-csv\""))
+                .andExpect(content().bytes(csv));
+    }
+
+    @Test
+    void shouldChooseFormatByAcceptHeader() throws Exception {
+        byte[] ndjson = "{\"indexNum\":1}\n".getBytes(StandardCharsets.UTF_8);
+        when(conversionService.fingerprint(any(MultipartFile.class), eq(ExportFormat.NDJSON))).thenReturn(FINGERPRINT);
+        when(conversionService.prepare(upload(FINGERPRINT, ExportFormat.NDJSON, ContentCoding.IDENTITY)))
+                .thenReturn(out -> out.write(ndjson));
+
+        MockMultipartFile xmlFile = new MockMultipartFile("file", "test.xml", "application/xml", "<a></a>".getBytes());
+
+        MvcResult result = mockMvc.perform(multipart("/v1/api/xml-converter").file(xmlFile)
+                        .header("Accept", "text/csv;q=0.5, application/x-ndjson"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Content-Type", "application/x-ndjson"))
+                .andExpect(header().string("Content-Disposition", NDJSON_CONTENT_DISPOSITION))
+                .andExpect(content().bytes(ndjson));
+    }
+
+    @Test
+    void shouldRejectUnknownFormat() throws Exception {
+        MockMultipartFile xmlFile = new MockMultipartFile("file", "test.xml", "application/xml", "<a></a>".getBytes());
+
+        mockMvc.perform(multipart("/v1/api/xml-converter").file(xmlFile).param("format", "pdf"))
+                .andExpect(status().isBadRequest());
+
+        verify(conversionService, never()).fingerprint(any(MultipartFile.class), any());
+    }
+
+    @Test
+    void shouldReturnServiceUnavailableWithRetryAfterWhenOverloaded() throws Exception {
+        when(conversionService.fingerprint(any(MultipartFile.class), eq(ExportFormat.XLSX))).thenReturn(FINGERPRINT);
+        when(conversionService.prepare(upload(FINGERPRINT, ExportFormat.XLSX, ContentCoding.IDENTITY)))
+                .thenThrow(new ConversionOverloadedException("", 7));
+
+        MockMultipartFile xmlFile = new MockMultipartFile("file", "test.xml", "application/xml", "<a></a>".getBytes());
+
+        mockMvc.perform(multipart("/v1/api/xml-converter").file(xmlFile))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(header().string("Retry-After", "7"));
+    }
+
+    @Test
+    void shouldPassGzipCodingForGzFileName() throws Exception {
+        when(conversionService.fingerprint(any(MultipartFile.class), eq(ExportFormat.XLSX))).thenReturn(FINGERPRINT);
+        when(conversionService.prepare(upload(FINGERPRINT, ExportFormat.XLSX, ContentCoding.GZIP)))
+                .thenReturn(out -> out.write(1));
+
+        MockMultipartFile xmlFile = new MockMultipartFile("file", "products.xml.gz", "application/octet-stream",
+                new byte[]{0x1f, (byte) 0x8b});
+
+        MvcResult result = mockMvc.perform(multipart("/v1/api/xml-converter").file(xmlFile))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result)).andExpect(status().isOk());
+    }
+
+    @Test
+    void shouldReadCodingFromPartContentEncoding() throws Exception {
+        when(conversionService.fingerprint(any(MultipartFile.class), eq(ExportFormat.XLSX))).thenReturn(FINGERPRINT);
+        when(conversionService.prepare(upload(FINGERPRINT, ExportFormat.XLSX, ContentCoding.DEFLATE)))
+                .thenReturn(out -> out.write(1));
+
+        MockPart part = new MockPart("file", "products.xml", new byte[]{0x78, (byte) 0x9c});
+        part.getHeaders().set("Content-Encoding", "deflate");
+
+        MvcResult result = mockMvc.perform(multipart("/v1/api/xml-converter").part(part))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result)).andExpect(status().isOk());
+    }
+
+    @Test
+    void shouldRejectUnsupportedContentEncoding() throws Exception {
+        MockPart part = new MockPart("file", "products.xml", new byte[]{1, 2, 3});
+        part.getHeaders().set("Content-Encoding", "br");
+
+        mockMvc.perform(multipart("/v1/api/xml-converter").part(part))
+                .andExpect(status().isUnsupportedMediaType());
+
+        verify(conversionService, never()).fingerprint(any(MultipartFile.class), any());
+    }
+
+    @Test
+    void shouldReturnContentTooLargeWhenDecompressedSizeIsExceeded() throws Exception {
+        when(conversionService.fingerprint(any(MultipartFile.class), eq(ExportFormat.XLSX))).thenReturn(FINGERPRINT);
+        when(conversionService.prepare(upload(FINGERPRINT, ExportFormat.XLSX, ContentCoding.GZIP)))
+                .thenThrow(new UploadTooLargeException(""));
+
+        MockMultipartFile xmlFile = new MockMultipartFile("file", "products.xml.gz", "application/gzip",
+                new byte[]{0x1f, (byte) 0x8b});
+
+        mockMvc.perform(multipart("/v1/api/xml-converter").file(xmlFile))
+                .andExpect(status().is(413));
+    }
+
+    @Test
+    void shouldConvertRawXmlBody() throws Exception {
+        byte[] xml = "<products></products>".getBytes(StandardCharsets.UTF_8);
+        byte[] csv = "№ п/п\r\n".getBytes(StandardCharsets.UTF_8);
+        when(conversionService.prepare(stream((long) xml.length, ExportFormat.CSV, ContentCoding.IDENTITY)))
+                .thenReturn(out -> out.write(csv));
+
+        MvcResult result = mockMvc.perform(post("/v1/api/xml-converter")
+                        .contentType(MediaType.APPLICATION_XML)
+                        .param("format", "csv")
+                        .content(xml))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Content-Disposition", CSV_CONTENT_DISPOSITION))
+                .andExpect(header().doesNotExist("ETag"))
+                .andExpect(content().bytes(csv));
+        verify(conversionService, never()).fingerprint(any(MultipartFile.class), any());
+    }
+
+    @Test
+    void shouldPassContentEncodingOfRawBody() throws Exception {
+        when(conversionService.prepare(stream(2L, ExportFormat.XLSX, ContentCoding.GZIP)))
+                .thenReturn(out -> out.write(1));
+
+        MvcResult result = mockMvc.perform(post("/v1/api/xml-converter")
+                        .contentType(MediaType.APPLICATION_XML)
+                        .header("Content-Encoding", "gzip")
+                        .content(new byte[]{0x1f, (byte) 0x8b}))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Content-Type", EXCEL_XLSX));
+    }
+
+    @Test
+    void shouldCloseResultAfterWritingIt() throws Exception {
+        ConversionResult conversion = mock(ConversionResult.class);
+        when(conversionService.prepare(stream(4L, ExportFormat.XLSX, ContentCoding.IDENTITY)))
+                .thenReturn(conversion);
+
+        MvcResult result = mockMvc.perform(post("/v1/api/xml-converter")
+                        .contentType(MediaType.APPLICATION_XML)
+                        .content("<a/>"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk());
+
+        verify(conversion).writeTo(any(OutputStream.class));
+        verify(conversion, atLeastOnce()).close();
+    }
+
+    private static ConversionRequest upload(String fingerprint, ExportFormat format, ContentCoding coding) {
+        return argThat(request -> request != null && request.getUpload() != null
+                && fingerprint.equals(request.getFingerprint())
+                && request.getFormat() == format && request.getCoding() == coding);
+    }
+
+    private static ConversionRequest stream(long size, ExportFormat format, ContentCoding coding) {
+        return argThat(request -> request != null && request.getStream() != null && request.getSize() == size
+                && request.getFingerprint() == null
+                && request.getFormat() == format && request.getCoding() == coding);
+    }
+
 }
@@ -0,0 +1,77 @@
+package ru.oiteb.xmlparser.controller;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.webmvc.test.autoconfigure.WebMvcTest;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.web.servlet.MockMvc;
+import ru.oiteb.xmlparser.entity.ConversionJob;
+import ru.oiteb.xmlparser.exception.ConversionJobNotReadyException;
+import ru.oiteb.xmlparser.exception.ConversionQueueFullException;
+import ru.oiteb.xmlparser.service.ConversionJobService;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.multipart;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+import static ru.oiteb.xmlparser.constants.CommonConstants.EXCEL_XLSX;
+
+@WebMvcTest(ConversionJobController.class)
+public class ConversionJobControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+    @MockitoBean
+    private ConversionJobService jobService;
+
+    @TempDir
+    Path tempDir;
+
+    private final MockMultipartFile xmlFile = new MockMultipartFile(
+            "file", "test.xml", "application/xml", "<products/>".getBytes());
+
+    @Test
+    void shouldAcceptJob() throws Exception {
+        when(jobService.submit(any())).thenReturn(new ConversionJob("42", tempDir.resolve("42.xml")));
+
+        mockMvc.perform(multipart("/v1/api/xml-converter/jobs").file(xmlFile))
+                .andExpect(status().isAccepted())
+                .andExpect(header().string("Location", "http://localhost/v1/api/xml-converter/jobs/42"))
+                .andExpect(jsonPath("$.id").value("42"))
+                .andExpect(jsonPath("$.status").value("QUEUED"));
+    }
+
+    @Test
+    void shouldReturn429WhenQueueIsFull() throws Exception {
+        when(jobService.submit(any())).thenThrow(new ConversionQueueFullException(""));
+
+        mockMvc.perform(multipart("/v1/api/xml-converter/jobs").file(xmlFile))
+                .andExpect(status().isTooManyRequests());
+    }
+
+    @Test
+    void shouldReturn409WhenResultIsNotReady() throws Exception {
+        when(jobService.getResult("42")).thenThrow(new ConversionJobNotReadyException(""));
+
+        mockMvc.perform(get("/v1/api/xml-converter/jobs/42/result"))
+                .andExpect(status().isConflict());
+    }
+
+    @Test
+    void shouldDownloadResult() throws Exception {
+        Path result = Files.write(tempDir.resolve("42.xlsx"), new byte[]{0x50, 0x4B, 0x03, 0x04});
+        when(jobService.getResult("42")).thenReturn(result);
+
+        mockMvc.perform(get("/v1/api/xml-converter/jobs/42/result"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Content-Type", EXCEL_XLSX))
+                .andExpect(content().bytes(new byte[]{0x50, 0x4B, 0x03, 0x04}));
+    }
+
+}
@@ -0,0 +1,105 @@
+package ru.oiteb.xmlparser.controller;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.webmvc.test.autoconfigure.WebMvcTest;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.web.multipart.MultipartFile;
+import ru.oiteb.xmlparser.entity.ValidationReport;
+import ru.oiteb.xmlparser.entity.ValidationViolation;
+import ru.oiteb.xmlparser.exception.UploadTooLargeException;
+import ru.oiteb.xmlparser.service.ValidationService;
+import ru.oiteb.xmlparser.service.upload.ContentCoding;
+
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.multipart;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+import static ru.oiteb.xmlparser.constants.ExceptionsDescriptions.EMPTY_NATIONAL_CODE;
+
+@WebMvcTest(ValidationController.class)
+public class ValidationControllerTest {
+
+    private static final byte[] XML = "<products></products>".getBytes(StandardCharsets.UTF_8);
+
+    @Autowired
+    private MockMvc mockMvc;
+    @MockitoBean
+    private ValidationService validationService;
+
+    @Test
+    void shouldReturnReportForUploadedFile() throws Exception {
+        ValidationReport report = ValidationReport.builder()
+                .valid(false)
+                .products(3)
+                .violations(List.of(new ValidationViolation(7, 19, 2, EMPTY_NATIONAL_CODE)))
+                .build();
+        when(validationService.validate(any(MultipartFile.class), eq(ContentCoding.IDENTITY))).thenReturn(report);
+
+        mockMvc.perform(multipart("/v1/api/xml-converter/validate")
+                        .file(new MockMultipartFile("file", "products.xml", "text/xml", XML)))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON))
+                .andExpect(jsonPath("$.valid").value(false))
+                .andExpect(jsonPath("$.products").value(3))
+                .andExpect(jsonPath("$.violations[0].line").value(7))
+                .andExpect(jsonPath("$.violations[0].column").value(19))
+                .andExpect(jsonPath("$.violations[0].product").value(2))
+                .andExpect(jsonPath("$.violations[0].message").value(EMPTY_NATIONAL_CODE));
+    }
+
+    @Test
+    void shouldDetectGzipUploadByFileName() throws Exception {
+        when(validationService.validate(any(MultipartFile.class), eq(ContentCoding.GZIP)))
+                .thenReturn(ValidationReport.builder().valid(true).products(1).violations(List.of()).build());
+
+        mockMvc.perform(multipart("/v1/api/xml-converter/validate")
+                        .file(new MockMultipartFile("file", "products.xml.gz", "application/octet-stream", XML)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.valid").value(true));
+    }
+
+    @Test
+    void shouldValidateRawXmlBody() throws Exception {
+        when(validationService.validate(any(InputStream.class), eq((long) XML.length), eq(ContentCoding.DEFLATE)))
+                .thenReturn(ValidationReport.builder().valid(true).products(0).violations(List.of()).build());
+
+        mockMvc.perform(post("/v1/api/xml-converter/validate")
+                        .contentType(MediaType.APPLICATION_XML)
+                        .header("Content-Encoding", "deflate")
+                        .content(XML))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.products").value(0));
+    }
+
+    @Test
+    void shouldReturnPayloadTooLargeForDecompressionBomb() throws Exception {
+        when(validationService.validate(any(InputStream.class), eq((long) XML.length), eq(ContentCoding.GZIP)))
+                .thenThrow(new UploadTooLargeException(": bomb"));
+
+        mockMvc.perform(post("/v1/api/xml-converter/validate")
+                        .contentType(MediaType.APPLICATION_XML)
+                        .header("Content-Encoding", "gzip")
+                        .content(XML))
+                .andExpect(status().is(413));
+    }
+
+    @Test
+    void shouldRejectUnsupportedContentEncoding() throws Exception {
+        mockMvc.perform(post("/v1/api/xml-converter/validate")
+                        .contentType(MediaType.APPLICATION_XML)
+                        .header("Content-Encoding", "br")
+                        .content(XML))
+                .andExpect(status().isUnsupportedMediaType());
+    }
+
+}
@@ -0,0 +1,206 @@
+package ru.oiteb.xmlparser.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.util.unit.DataSize;
+import ru.oiteb.xmlparser.config.AdmissionProperties;
+import ru.oiteb.xmlparser.config.BatchConversionProperties;
+import ru.oiteb.xmlparser.config.ExcelExportProperties;
+import ru.oiteb.xmlparser.config.ParserProperties;
+import ru.oiteb.xmlparser.config.SortProperties;
+import ru.oiteb.xmlparser.config.XmlFactoryConfig;
+import ru.oiteb.xmlparser.entity.BatchOutput;
+import ru.oiteb.xmlparser.exception.ConversionOverloadedException;
+import ru.oiteb.xmlparser.exception.InvalidArchiveException;
+import ru.oiteb.xmlparser.metrics.ConversionMetrics;
+import ru.oiteb.xmlparser.service.Impl.BatchConversionServiceImpl;
+import ru.oiteb.xmlparser.service.admission.ConversionAdmission;
+import ru.oiteb.xmlparser.service.exporter.CsvExporter;
+import ru.oiteb.xmlparser.service.exporter.ExcelExporter;
+import ru.oiteb.xmlparser.service.parser.XmlProductParser;
+import ru.oiteb.xmlparser.service.sorter.ProductSorter;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static ru.oiteb.xmlparser.constants.ExceptionsDescriptions.ARCHIVE_ENTRY_TOO_LARGE;
+
+class BatchConversionServiceImplTest {
+
+    private final BatchConversionProperties properties = new BatchConversionProperties();
+    private final ConversionAdmission admission = new ConversionAdmission(admissionProperties(), new SimpleMeterRegistry());
+    private BatchConversionServiceImpl service;
+
+    @BeforeEach
+    void setUp() {
+        ParserProperties parserProperties = new ParserProperties();
+        ConversionMetrics metrics = new ConversionMetrics(new SimpleMeterRegistry());
+        service = new BatchConversionServiceImpl(
+                new XmlProductParser(new XmlFactoryConfig().secureXmlInputFactory(parserProperties), parserProperties),
+                new ProductSorter(new SortProperties()),
+                new ExcelExporter(new ExcelExportProperties(), metrics),
+                new CsvExporter(metrics),
+                admission,
+                properties);
+        service.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.shutdown();
+    }
+
+    @Test
+    void shouldConvertEntriesToZipAndReportFailuresInManifest() throws IOException {
+        Map<String, String> entries = new LinkedHashMap<>();
+        entries.put("first.xml", productsXml(3));
+        entries.put("nested/broken.xml", "<export><productInfo>");
+        entries.put("readme.txt", "not xml");
+
+        Map<String, byte[]> result = unzip(convert(zip(entries), BatchOutput.ZIP));
+
+        assertThat(result).containsOnlyKeys("first.xlsx", "manifest.csv");
+        try (XSSFWorkbook workbook = new XSSFWorkbook(new ByteArrayInputStream(result.get("first.xlsx")))) {
+            assertThat(workbook.getSheetAt(0).getLastRowNum()).isEqualTo(3);
+        }
+        String manifest = new String(result.get("manifest.csv"), StandardCharsets.UTF_8);
+        assertThat(manifest.split("\r\n")).hasSize(4);
+        assertThat(manifest).contains("first.xml,CONVERTED,3,\r\n")
+                .contains("nested/broken.xml,FAILED,,")
+                .contains("readme.txt,SKIPPED,,");
+    }
+
+    @Test
+    void shouldBuildOneWorkbookWithSheetPerEntry() throws IOException {
+        Map<String, String> entries = new LinkedHashMap<>();
+        entries.put("a.xml", productsXml(2));
+        entries.put("b.xml", productsXml(5));
+
+        byte[] result = convert(zip(entries), BatchOutput.WORKBOOK);
+
+        try (XSSFWorkbook workbook = new XSSFWorkbook(new ByteArrayInputStream(result))) {
+            assertThat(workbook.getNumberOfSheets()).isEqualTo(3);
+            assertThat(workbook.getSheetName(0)).isEqualTo("Сводка");
+            assertThat(workbook.getSheetAt(0).getLastRowNum()).isEqualTo(2);
+            assertThat(workbook.getSheet("a").getLastRowNum()).isEqualTo(2);
+            assertThat(workbook.getSheet("b").getLastRowNum()).isEqualTo(5);
+        }
+    }
+
+    @Test
+    void shouldFailOnlyEntryThatExceedsSizeLimit() throws IOException {
+        properties.setMaxEntrySize(DataSize.ofBytes(400));
+        Map<String, String> entries = new LinkedHashMap<>();
+        entries.put("small.xml", productsXml(1));
+        entries.put("large.xml", productsXml(50));
+
+        Map<String, byte[]> result = unzip(convert(zip(entries), BatchOutput.ZIP));
+
+        assertThat(result).containsKeys("small.xlsx").doesNotContainKey("large.xlsx");
+        assertThat(new String(result.get("manifest.csv"), StandardCharsets.UTF_8))
+                .contains("large.xml,FAILED,," + ARCHIVE_ENTRY_TOO_LARGE);
+    }
+
+    @Test
+    void shouldHoldPermitUntilWorkbookIsWritten() throws IOException {
+        MockMultipartFile file = new MockMultipartFile("file", "batch.zip", "application/zip",
+                zip(Map.of("a.xml", productsXml(2))));
+
+        ConversionResult result = service.convert(file, BatchOutput.WORKBOOK);
+
+        assertThat(admission.reserved()).isPositive();
+        result.writeTo(new ByteArrayOutputStream());
+        assertThat(admission.reserved()).isZero();
+    }
+
+    @Test
+    void shouldReleasePermitOnceZipEntriesAreWritten() throws IOException {
+        MockMultipartFile file = new MockMultipartFile("file", "batch.zip", "application/zip",
+                zip(Map.of("a.xml", productsXml(2))));
+
+        service.convert(file, BatchOutput.ZIP);
+
+        assertThat(admission.reserved()).isZero();
+    }
+
+    @Test
+    void shouldRejectArchiveWhenMemoryIsReserved() throws IOException {
+        MockMultipartFile file = new MockMultipartFile("file", "batch.zip", "application/zip",
+                zip(Map.of("a.xml", productsXml(2))));
+
+        try (ConversionAdmission.Permit ignored = admission.acquire(1)) {
+            assertThatThrownBy(() -> service.convert(file, BatchOutput.ZIP))
+                    .isInstanceOf(ConversionOverloadedException.class);
+        }
+    }
+
+    @Test
+    void shouldRejectUploadThatIsNotZip() {
+        MockMultipartFile file = new MockMultipartFile("file", "a.zip", "application/zip", "<a/>".getBytes());
+
+        assertThatThrownBy(() -> service.convert(file, BatchOutput.ZIP))
+                .isInstanceOf(InvalidArchiveException.class);
+    }
+
+    private byte[] convert(byte[] archive, BatchOutput output) throws IOException {
+        MockMultipartFile file = new MockMultipartFile("file", "batch.zip", "application/zip", archive);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        service.convert(file, output).writeTo(out);
+        return out.toByteArray();
+    }
+
+    private byte[] zip(Map<String, String> entries) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ZipOutputStream zip = new ZipOutputStream(bytes)) {
+            for (Map.Entry<String, String> entry : entries.entrySet()) {
+                zip.putNextEntry(new ZipEntry(entry.getKey()));
+                zip.write(entry.getValue().getBytes(StandardCharsets.UTF_8));
+                zip.closeEntry();
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    private Map<String, byte[]> unzip(byte[] archive) throws IOException {
+        Map<String, byte[]> entries = new LinkedHashMap<>();
+        try (ZipInputStream zip = new ZipInputStream(new ByteArrayInputStream(archive))) {
+            for (ZipEntry entry = zip.getNextEntry(); entry != null; entry = zip.getNextEntry()) {
+                entries.put(entry.getName(), zip.readAllBytes());
+            }
+        }
+        return entries;
+    }
+
+    private static AdmissionProperties admissionProperties() {
+        AdmissionProperties properties = new AdmissionProperties();
+        properties.setHeapBudget(DataSize.ofMegabytes(1));
+        properties.setMinCost(DataSize.ofMegabytes(1));
+        properties.setQueueCapacity(0);
+        properties.setMaxWait(Duration.ZERO);
+        return properties;
+    }
+
+    private String productsXml(int count) {
+        StringBuilder xml = new StringBuilder("<export>");
+        for (int i = 0; i < count; i++) {
+            xml.append("<productInfo><indexNum>").append(i + 1).append("</indexNum><name>Товар ").append(i)
+                    .append("</name><OKEIInfo><nationalCode>796</nationalCode></OKEIInfo></productInfo>");
+        }
+        return xml.append("</export>").toString();
+    }
+
+}
@@ -0,0 +1,173 @@
+package ru.oiteb.xmlparser.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.unit.DataSize;
+import ru.oiteb.xmlparser.config.AdmissionProperties;
+import ru.oiteb.xmlparser.exception.ConversionOverloadedException;
+import ru.oiteb.xmlparser.service.admission.ConversionAdmission;
+import ru.oiteb.xmlparser.service.admission.ConversionCapacityHealthIndicator;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class ConversionAdmissionTest {
+
+    private static final long MB = DataSize.ofMegabytes(1).toBytes();
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void shouldEstimateCostFromUploadSizeWithinBudget() {
+        ConversionAdmission admission = admission(properties(100, 1, Duration.ZERO));
+
+        assertThat(admission.estimate(1)).isEqualTo(4 * MB);
+        assertThat(admission.estimate(2 * MB)).isEqualTo(16 * MB);
+        assertThat(admission.estimate(50 * MB)).isEqualTo(100 * MB);
+    }
+
+    @Test
+    void shouldReserveAndReleaseBudget() {
+        ConversionAdmission admission = admission(properties(100, 1, Duration.ZERO));
+
+        try (ConversionAdmission.Permit permit = admission.acquire(5 * MB)) {
+            assertThat(permit.cost()).isEqualTo(40 * MB);
+            assertThat(admission.reserved()).isEqualTo(40 * MB);
+            assertThat(admission.available()).isEqualTo(60 * MB);
+        }
+
+        assertThat(admission.reserved()).isZero();
+        assertThat(registry.get("converter.admission.reserved").gauge().value()).isZero();
+    }
+
+    @Test
+    void shouldRejectWhenQueueIsFull() {
+        ConversionAdmission admission = admission(properties(100, 0, Duration.ofSeconds(10)));
+
+        try (ConversionAdmission.Permit ignored = admission.acquire(10 * MB)) {
+            assertThatThrownBy(() -> admission.acquire(10 * MB))
+                    .isInstanceOf(ConversionOverloadedException.class)
+                    .extracting("retryAfterSeconds").isEqualTo(5L);
+        }
+
+        assertThat(registry.get("converter.admission.rejected").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void shouldRejectAfterMaxWait() {
+        ConversionAdmission admission = admission(properties(100, 1, Duration.ofMillis(50)));
+
+        try (ConversionAdmission.Permit ignored = admission.acquire(10 * MB)) {
+            assertThatThrownBy(() -> admission.acquire(10 * MB))
+                    .isInstanceOf(ConversionOverloadedException.class);
+        }
+
+        assertThat(admission.queued()).isZero();
+    }
+
+    @Test
+    void shouldAdmitQueuedRequestWhenMemoryIsReleased() throws Exception {
+        ConversionAdmission admission = admission(properties(100, 1, Duration.ofSeconds(10)));
+        ConversionAdmission.Permit first = admission.acquire(10 * MB);
+
+        CompletableFuture<ConversionAdmission.Permit> second = CompletableFuture.supplyAsync(() -> admission.acquire(10 * MB), executor);
+        awaitQueued(admission, 1);
+        assertThat(second).isNotDone();
+
+        first.close();
+        first.close();
+
+        ConversionAdmission.Permit admitted = second.get(5, TimeUnit.SECONDS);
+        assertThat(admission.reserved()).isEqualTo(80 * MB);
+        admitted.close();
+        assertThat(admission.reserved()).isZero();
+    }
+
+    @Test
+    void shouldNotLetSmallRequestBypassQueuedOne() throws Exception {
+        ConversionAdmission admission = admission(properties(100, 2, Duration.ofSeconds(10)));
+        ConversionAdmission.Permit first = admission.acquire(10 * MB);
+
+        CompletableFuture<ConversionAdmission.Permit> large = CompletableFuture.supplyAsync(() -> admission.acquire(10 * MB), executor);
+        awaitQueued(admission, 1);
+        CompletableFuture<ConversionAdmission.Permit> small = CompletableFuture.supplyAsync(() -> admission.acquire(1), executor);
+        awaitQueued(admission, 2);
+        assertThat(small).isNotDone();
+
+        first.close();
+
+        large.get(5, TimeUnit.SECONDS).close();
+        small.get(5, TimeUnit.SECONDS).close();
+        assertThat(admission.reserved()).isZero();
+    }
+
+    @Test
+    void shouldReportOutOfServiceWhileQueueIsFull() throws Exception {
+        ConversionAdmission admission = admission(properties(100, 1, Duration.ofSeconds(10)));
+        ConversionCapacityHealthIndicator health = new ConversionCapacityHealthIndicator(admission);
+        ConversionAdmission.Permit first = admission.acquire(10 * MB);
+
+        assertThat(health.health().getStatus().getCode()).isEqualTo("UP");
+
+        CompletableFuture<ConversionAdmission.Permit> queued = CompletableFuture.supplyAsync(() -> admission.acquire(10 * MB), executor);
+        awaitQueued(admission, 1);
+
+        assertThat(health.health().getStatus().getCode()).isEqualTo("OUT_OF_SERVICE");
+        assertThat(health.health().getDetails()).containsEntry("queued", 1);
+
+        first.close();
+        queued.get(5, TimeUnit.SECONDS).close();
+        assertThat(health.health().getStatus().getCode()).isEqualTo("UP");
+    }
+
+    @Test
+    void shouldAdmitEverythingWhenDisabled() {
+        AdmissionProperties properties = properties(1, 0, Duration.ZERO);
+        properties.setEnabled(false);
+        ConversionAdmission admission = admission(properties);
+
+        try (ConversionAdmission.Permit first = admission.acquire(10 * MB);
+             ConversionAdmission.Permit second = admission.acquire(10 * MB)) {
+            assertThat(first.cost()).isZero();
+            assertThat(second.cost()).isZero();
+            assertThat(admission.reserved()).isZero();
+        }
+    }
+
+    private void awaitQueued(ConversionAdmission admission, int expected) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (admission.queued() < expected && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(admission.queued()).isEqualTo(expected);
+    }
+
+    private ConversionAdmission admission(AdmissionProperties properties) {
+        return new ConversionAdmission(properties, registry);
+    }
+
+    private static AdmissionProperties properties(long budgetMb, int queueCapacity, Duration maxWait) {
+        AdmissionProperties properties = new AdmissionProperties();
+        properties.setHeapBudget(DataSize.ofMegabytes(budgetMb));
+        properties.setMinCost(DataSize.ofMegabytes(4));
+        properties.setCostFactor(8);
+        properties.setQueueCapacity(queueCapacity);
+        properties.setMaxWait(maxWait);
+        properties.setRetryAfter(Duration.ofSeconds(5));
+        return properties;
+    }
+
+}
@@ -0,0 +1,125 @@
+package ru.oiteb.xmlparser.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.web.MockMultipartFile;
+import ru.oiteb.xmlparser.config.ConversionJobProperties;
+import ru.oiteb.xmlparser.entity.ConversionJob;
+import ru.oiteb.xmlparser.entity.ConversionJobStatus;
+import ru.oiteb.xmlparser.exception.ConversionJobNotFoundException;
+import ru.oiteb.xmlparser.exception.ConversionQueueFullException;
+import ru.oiteb.xmlparser.exception.InvalidXmlFileException;
+import ru.oiteb.xmlparser.service.Impl.ConversionJobServiceImpl;
+import ru.oiteb.xmlparser.service.exporter.ExportFormat;
+import ru.oiteb.xmlparser.service.upload.ContentCoding;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ConversionJobServiceImplTest {
+
+    @TempDir
+    Path storageDir;
+
+    private final ConversionService conversionService = mock(ConversionService.class);
+    private final ConversionJobProperties properties = new ConversionJobProperties();
+    private ConversionJobServiceImpl jobService;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        properties.setStorageDir(storageDir);
+        properties.setWorkerThreads(1);
+        properties.setQueueCapacity(1);
+        jobService = new ConversionJobServiceImpl(conversionService, properties);
+        jobService.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        jobService.shutdown();
+    }
+
+    @Test
+    void shouldConvertSubmittedFileInBackground() throws Exception {
+        when(conversionService.prepare(argThat(request -> request.getStream() != null && request.getSize() == 11
+                && request.getFormat() == ExportFormat.XLSX && request.getCoding() == ContentCoding.IDENTITY)))
+                .thenReturn(out -> out.write(new byte[]{1, 2, 3}));
+
+        ConversionJob job = jobService.submit(xmlFile());
+        awaitFinished(job);
+
+        assertThat(job.getStatus()).isEqualTo(ConversionJobStatus.DONE);
+        assertThat(Files.readAllBytes(jobService.getResult(job.getId()))).containsExactly(1, 2, 3);
+        assertThat(job.getInputFile()).doesNotExist();
+    }
+
+    @Test
+    void shouldMarkJobFailedWhenConversionFails() throws Exception {
+        when(conversionService.prepare(any(ConversionRequest.class))).thenThrow(new InvalidXmlFileException("broken"));
+
+        ConversionJob job = jobService.submit(xmlFile());
+        awaitFinished(job);
+
+        assertThat(job.getStatus()).isEqualTo(ConversionJobStatus.FAILED);
+        assertThat(job.getError()).isEqualTo("broken");
+    }
+
+    @Test
+    void shouldRejectWhenQueueIsFull() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        when(conversionService.prepare(any(ConversionRequest.class))).thenAnswer(invocation -> {
+            release.await();
+            return (ConversionResult) out -> out.write(0);
+        });
+
+        jobService.submit(xmlFile());
+        jobService.submit(xmlFile());
+        try {
+            assertThatThrownBy(() -> jobService.submit(xmlFile()))
+                    .isInstanceOf(ConversionQueueFullException.class);
+        } finally {
+            release.countDown();
+        }
+    }
+
+    @Test
+    void shouldEvictExpiredResults() throws Exception {
+        properties.setResultTtl(Duration.ZERO);
+        when(conversionService.prepare(any(ConversionRequest.class))).thenReturn(out -> out.write(1));
+        ConversionJob job = jobService.submit(xmlFile());
+        awaitFinished(job);
+        Path result = job.getResultFile();
+
+        Thread.sleep(5);
+        jobService.evictExpired();
+
+        assertThat(result).doesNotExist();
+        assertThatThrownBy(() -> jobService.getJob(job.getId()))
+                .isInstanceOf(ConversionJobNotFoundException.class);
+    }
+
+    private MockMultipartFile xmlFile() {
+        return new MockMultipartFile("file", "test.xml", "application/xml", "<products/>".getBytes());
+    }
+
+    private void awaitFinished(ConversionJob job) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (!job.isFinished() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(job.isFinished()).isTrue();
+    }
+
+}
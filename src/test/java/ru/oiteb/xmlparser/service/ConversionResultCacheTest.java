@@ -0,0 +1,138 @@
+package ru.oiteb.xmlparser.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.info.BuildProperties;
+import org.springframework.util.unit.DataSize;
+import ru.oiteb.xmlparser.config.ConversionCacheProperties;
+import ru.oiteb.xmlparser.config.ExcelExportProperties;
+import ru.oiteb.xmlparser.service.cache.ConversionResultCache;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Optional;
+import java.util.Properties;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ConversionResultCacheTest {
+
+    @TempDir
+    private Path tempDir;
+
+    private final ExcelExportProperties excel = new ExcelExportProperties();
+
+    @Test
+    void shouldDependOnContentAndVersion() throws IOException {
+        ConversionCacheProperties properties = new ConversionCacheProperties();
+        ConversionResultCache cache = cache(properties);
+        String key = cache.keyOf(new ByteArrayInputStream("<a/>".getBytes()));
+
+        assertThat(cache.keyOf(new ByteArrayInputStream("<a/>".getBytes()))).isEqualTo(key).hasSize(64);
+        assertThat(cache.keyOf(new ByteArrayInputStream("<b/>".getBytes()))).isNotEqualTo(key);
+
+        properties.setVersion("next");
+        assertThat(cache.keyOf(new ByteArrayInputStream("<a/>".getBytes()))).isNotEqualTo(key);
+    }
+
+    @Test
+    void shouldDependOnBuildAndExcelSettings() throws IOException {
+        ConversionCacheProperties properties = new ConversionCacheProperties();
+        String key = cache(properties).keyOf(new ByteArrayInputStream("<a/>".getBytes()));
+
+        assertThat(keyOf(properties, build("1.0", "2026-01-01T00:00:00Z"))).isNotEqualTo(key);
+        assertThat(keyOf(properties, build("1.0", "2026-01-02T00:00:00Z")))
+                .isNotEqualTo(keyOf(properties, build("1.0", "2026-01-01T00:00:00Z")));
+
+        excel.setEngine(ExcelExportProperties.Engine.DIRECT);
+        assertThat(cache(properties).keyOf(new ByteArrayInputStream("<a/>".getBytes()))).isNotEqualTo(key);
+        excel.setEngine(ExcelExportProperties.Engine.POI);
+        excel.getStreaming().setSharedStrings(false);
+        assertThat(cache(properties).keyOf(new ByteArrayInputStream("<a/>".getBytes()))).isNotEqualTo(key);
+    }
+
+    @Test
+    void shouldCacheWrittenResult() throws IOException {
+        ConversionResultCache cache = cache(new ConversionCacheProperties());
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        cache.cacheOnWrite("key", stream -> stream.write(new byte[]{1, 2, 3})).writeTo(out);
+
+        assertThat(out.toByteArray()).containsExactly(1, 2, 3);
+        assertThat(read(cache.get("key"))).containsExactly(1, 2, 3);
+    }
+
+    @Test
+    void shouldNotCacheOversizedResult() throws IOException {
+        ConversionCacheProperties properties = new ConversionCacheProperties();
+        properties.setMaxEntrySize(DataSize.ofBytes(2));
+        ConversionResultCache cache = cache(properties);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        cache.cacheOnWrite("key", stream -> stream.write(new byte[]{1, 2, 3})).writeTo(out);
+
+        assertThat(out.toByteArray()).containsExactly(1, 2, 3);
+        assertThat(cache.get("key")).isEmpty();
+    }
+
+    @Test
+    void shouldEvictLeastRecentlyUsedWhenMemoryIsFull() {
+        ConversionCacheProperties properties = new ConversionCacheProperties();
+        properties.setMaxMemorySize(DataSize.ofBytes(20));
+        ConversionResultCache cache = cache(properties);
+
+        cache.put("first", new byte[8]);
+        cache.put("second", new byte[8]);
+        cache.get("first");
+        cache.put("third", new byte[8]);
+
+        assertThat(cache.get("first")).isPresent();
+        assertThat(cache.get("second")).isEmpty();
+        assertThat(cache.get("third")).isPresent();
+    }
+
+    @Test
+    void shouldServeEvictedResultFromDisk() throws IOException {
+        ConversionCacheProperties properties = new ConversionCacheProperties();
+        properties.setMaxMemorySize(DataSize.ofBytes(4));
+        properties.getDisk().setEnabled(true);
+        properties.getDisk().setDir(tempDir);
+        ConversionResultCache cache = cache(properties);
+        cache.init();
+
+        cache.put("first", new byte[]{1, 2, 3});
+        cache.put("second", new byte[]{4, 5, 6});
+
+        assertThat(read(cache.get("first"))).containsExactly(1, 2, 3);
+
+        ConversionResultCache restarted = cache(properties);
+        restarted.init();
+        assertThat(read(restarted.get("second"))).containsExactly(4, 5, 6);
+    }
+
+    private ConversionResultCache cache(ConversionCacheProperties properties) {
+        return new ConversionResultCache(properties, excel, Optional.empty());
+    }
+
+    private String keyOf(ConversionCacheProperties properties, BuildProperties build) throws IOException {
+        return new ConversionResultCache(properties, excel, Optional.of(build))
+                .keyOf(new ByteArrayInputStream("<a/>".getBytes()));
+    }
+
+    private static BuildProperties build(String version, String time) {
+        Properties entries = new Properties();
+        entries.setProperty("version", version);
+        entries.setProperty("time", time);
+        return new BuildProperties(entries);
+    }
+
+    private byte[] read(Optional<ConversionResult> result) throws IOException {
+        assertThat(result).isPresent();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        result.get().writeTo(out);
+        return out.toByteArray();
+    }
+
+}
@@ -1,23 +1,61 @@
 package ru.oiteb.xmlparser.service;
 
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.InjectMocks;
+import org.junit.jupiter.api.io.TempDir;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.util.unit.DataSize;
+import ru.oiteb.xmlparser.config.AdmissionProperties;
+import ru.oiteb.xmlparser.config.ConversionCacheProperties;
+import ru.oiteb.xmlparser.config.ExcelExportProperties;
+import ru.oiteb.xmlparser.config.SortProperties;
+import ru.oiteb.xmlparser.config.UploadProperties;
 import ru.oiteb.xmlparser.entity.ProductData;
+import ru.oiteb.xmlparser.entity.ProductRow;
+import ru.oiteb.xmlparser.exception.ConversionOverloadedException;
 import ru.oiteb.xmlparser.exception.EmptyXmlFileException;
 import ru.oiteb.xmlparser.exception.InvalidXmlFileException;
+import ru.oiteb.xmlparser.exception.UploadTooLargeException;
+import ru.oiteb.xmlparser.metrics.ConversionMetrics;
 import ru.oiteb.xmlparser.service.Impl.ConversionServiceImpl;
+import ru.oiteb.xmlparser.service.admission.ConversionAdmission;
+import ru.oiteb.xmlparser.service.cache.ConversionResultCache;
+import ru.oiteb.xmlparser.service.exporter.CsvExporter;
 import ru.oiteb.xmlparser.service.exporter.ExcelExporter;
+import ru.oiteb.xmlparser.service.exporter.ExportFormat;
 import ru.oiteb.xmlparser.service.parser.XmlProductParser;
+import ru.oiteb.xmlparser.service.sorter.ProductSorter;
+import ru.oiteb.xmlparser.service.upload.ContentCoding;
+import ru.oiteb.xmlparser.service.upload.UploadDecoder;
+import ru.oiteb.xmlparser.service.upload.UploadSpooler;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.zip.GZIPOutputStream;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -28,23 +66,69 @@ public class ConversionServiceImplTest {
     private XmlProductParser parser;
     @Mock
     private ExcelExporter exporter;
-    @InjectMocks
+    @Mock
+    private CsvExporter csvExporter;
+    @Spy
+    private ProductSorter sorter = new ProductSorter(new SortProperties());
+    @Spy
+    private ConversionResultCache cache =
+            new ConversionResultCache(new ConversionCacheProperties(), new ExcelExportProperties(), Optional.empty());
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final UploadProperties uploadProperties = new UploadProperties();
+    @Spy
+    private ConversionAdmission admission = new ConversionAdmission(admissionProperties(), registry);
+    @Spy
+    private ConversionMetrics metrics = new ConversionMetrics(registry);
+    @Spy
+    private UploadDecoder decoder = new UploadDecoder(uploadProperties);
+    @Spy
+    private UploadSpooler spooler = new UploadSpooler(uploadProperties, new AdmissionProperties(), registry);
     private ConversionServiceImpl service;
 
+    @BeforeEach
+    void setUp() {
+        when(exporter.format()).thenReturn(ExportFormat.XLSX);
+        when(csvExporter.format()).thenReturn(ExportFormat.CSV);
+        service = new ConversionServiceImpl(parser, List.of(exporter, csvExporter), sorter, cache, admission, decoder,
+                spooler, metrics);
+    }
+
+    @Test
+    void shouldRejectTwoExportersOfSameFormat() {
+        when(csvExporter.format()).thenReturn(ExportFormat.XLSX);
+
+        assertThatThrownBy(() -> new ConversionServiceImpl(parser, List.of(exporter, csvExporter), sorter, cache,
+                admission, decoder, spooler, metrics))
+                .isInstanceOf(IllegalStateException.class);
+    }
+
     @Test
     void shouldConvertValidXmlToExcel() {
         byte[] xmlBytes = "<products></products>".getBytes();
         MockMultipartFile file = new MockMultipartFile("file", "test.xml", "application/xml", xmlBytes);
 
         List<ProductData> products = Collections.singletonList(new ProductData());
-        when(parser.parseXml(xmlBytes)).thenReturn(products);
-        when(exporter.generateExcelToBytes(products)).thenReturn(new byte[100]);
+        doAnswer(invocation -> {
+            products.forEach(invocation.<Consumer<ProductRow>>getArgument(1));
+            return null;
+        }).when(parser).parseRows(any(InputStream.class), any());
+        doAnswer(invocation -> {
+            assertThat(invocation.<Collection<ProductRow>>getArgument(0)).map(ProductRow::toProductData)
+                    .containsExactlyElementsOf(products);
+            invocation.<OutputStream>getArgument(1).write(new byte[100]);
+            return null;
+        }).when(exporter).write(any(), any(OutputStream.class));
 
         byte[] result = service.convert(file);
 
         assertThat(result).hasSize(100);
-        verify(parser).parseXml(xmlBytes);
-        verify(exporter).generateExcelToBytes(products);
+        verify(parser).parseRows(any(InputStream.class), any());
+        verify(exporter).write(any(), any(OutputStream.class));
+        assertThat(registry.get("converter.input.size").summary().totalAmount()).isEqualTo(xmlBytes.length);
+        assertThat(registry.get("converter.products").summary().totalAmount()).isEqualTo(1);
+        assertThat(registry.get("converter.output.size").summary().totalAmount()).isEqualTo(100);
+        assertThat(registry.get("converter.stage.duration").tag("stage", "parse").timer().count()).isEqualTo(1);
+        assertThat(registry.get("converter.conversions.active").gauge().value()).isZero();
     }
 
     @Test
@@ -60,4 +144,189 @@ public class ConversionServiceImplTest {
                 .isInstanceOf(EmptyXmlFileException.class);
     }
 
+    @Test
+    void shouldServeRepeatedConversionFromCache() throws IOException {
+        MockMultipartFile file = new MockMultipartFile("file", "test.xml", "application/xml",
+                "<products></products>".getBytes());
+        doAnswer(invocation -> {
+            invocation.<OutputStream>getArgument(1).write(new byte[100]);
+            return null;
+        }).when(exporter).write(any(), any(OutputStream.class));
+
+        String fingerprint = service.fingerprint(file, ExportFormat.XLSX);
+        ByteArrayOutputStream first = new ByteArrayOutputStream();
+        service.prepare(ConversionRequest.upload(file).fingerprint(fingerprint).build()).writeTo(first);
+        ByteArrayOutputStream second = new ByteArrayOutputStream();
+        service.prepare(ConversionRequest.upload(file).fingerprint(fingerprint).build()).writeTo(second);
+
+        assertThat(second.toByteArray()).hasSize(100).isEqualTo(first.toByteArray());
+        verify(parser, times(1)).parseRows(any(InputStream.class), any());
+    }
+
+    @Test
+    void shouldExportInRequestedFormatUnderSeparateFingerprint() throws IOException {
+        MockMultipartFile file = new MockMultipartFile("file", "test.xml", "application/xml",
+                "<products></products>".getBytes());
+        doAnswer(invocation -> {
+            invocation.<OutputStream>getArgument(1).write(new byte[10]);
+            return null;
+        }).when(csvExporter).write(any(), any(OutputStream.class));
+
+        String fingerprint = service.fingerprint(file, ExportFormat.CSV);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        service.prepare(ConversionRequest.upload(file).format(ExportFormat.CSV).fingerprint(fingerprint).build())
+                .writeTo(out);
+
+        assertThat(fingerprint).isEqualTo(service.fingerprint(file, ExportFormat.XLSX) + "-csv");
+        assertThat(out.toByteArray()).hasSize(10);
+        verify(exporter, never()).write(any(), any(OutputStream.class));
+    }
+
+    @Test
+    void shouldHoldAdmissionUntilResultIsWritten() throws IOException {
+        MockMultipartFile file = new MockMultipartFile("file", "test.xml", "application/xml",
+                "<products></products>".getBytes());
+
+        ConversionResult result = service.prepare(ConversionRequest.upload(file).build());
+
+        assertThat(admission.reserved()).isEqualTo(DataSize.ofMegabytes(1).toBytes());
+        assertThatThrownBy(() -> service.prepare(ConversionRequest.upload(file).build()))
+                .isInstanceOf(ConversionOverloadedException.class);
+        verify(parser, times(1)).parseRows(any(InputStream.class), any());
+
+        result.writeTo(new ByteArrayOutputStream());
+
+        assertThat(admission.reserved()).isZero();
+    }
+
+    @Test
+    void shouldReleaseAdmissionWhenResultIsClosedWithoutWriting() {
+        MockMultipartFile file = new MockMultipartFile("file", "test.xml", "application/xml",
+                "<products></products>".getBytes());
+
+        ConversionResult result = service.prepare(ConversionRequest.upload(file).build());
+        result.close();
+        result.close();
+
+        assertThat(admission.reserved()).isZero();
+        verify(exporter, never()).write(any(), any(OutputStream.class));
+    }
+
+    @Test
+    void shouldReleaseAdmissionWhenParsingFails() {
+        MockMultipartFile file = new MockMultipartFile("file", "test.xml", "application/xml",
+                "<products>".getBytes());
+        doAnswer(invocation -> {
+            throw new InvalidXmlFileException("broken");
+        }).when(parser).parseRows(any(InputStream.class), any());
+
+        assertThatThrownBy(() -> service.prepare(ConversionRequest.upload(file).build()))
+                .isInstanceOf(InvalidXmlFileException.class);
+        assertThat(admission.reserved()).isZero();
+    }
+
+    @Test
+    void shouldDecompressGzipUploadIntoParser() throws IOException {
+        byte[] xml = "<products></products>".getBytes();
+        MockMultipartFile file = new MockMultipartFile("file", "test.xml.gz", "application/gzip", gzip(xml));
+        ByteArrayOutputStream parsed = new ByteArrayOutputStream();
+        doAnswer(invocation -> {
+            invocation.<InputStream>getArgument(0).transferTo(parsed);
+            return null;
+        }).when(parser).parseRows(any(InputStream.class), any());
+
+        service.prepare(ConversionRequest.upload(file).coding(ContentCoding.GZIP).build())
+                .writeTo(new ByteArrayOutputStream());
+
+        assertThat(parsed.toByteArray()).isEqualTo(xml);
+    }
+
+    @Test
+    void shouldRejectUploadExceedingDecompressedSize() throws IOException {
+        uploadProperties.setMaxDecompressedSize(DataSize.ofKilobytes(64));
+        MockMultipartFile file = new MockMultipartFile("file", "bomb.xml.gz", "application/gzip",
+                gzip(new byte[1024 * 1024]));
+        doAnswer(invocation -> {
+            try {
+                invocation.<InputStream>getArgument(0).readAllBytes();
+            } catch (IOException e) {
+                throw new InvalidXmlFileException(e.getMessage());
+            }
+            return null;
+        }).when(parser).parseRows(any(InputStream.class), any());
+
+        assertThatThrownBy(() -> service.prepare(ConversionRequest.upload(file).coding(ContentCoding.GZIP).build()))
+                .isInstanceOf(UploadTooLargeException.class);
+        assertThat(admission.reserved()).isZero();
+    }
+
+    @Test
+    void shouldParseLargeUploadFromMappedSpoolFile(@TempDir Path spoolDir) throws IOException {
+        uploadProperties.getSpool().setThreshold(DataSize.ofBytes(1));
+        uploadProperties.getSpool().setDirectory(spoolDir);
+        byte[] xml = "<products></products>".getBytes();
+        MockMultipartFile file = new MockMultipartFile("file", "test.xml", "application/xml", xml);
+        ByteArrayOutputStream parsed = new ByteArrayOutputStream();
+        doAnswer(invocation -> {
+            ByteBuffer buffer = invocation.getArgument(0);
+            assertThat(spooler.spooled()).isEqualTo(xml.length);
+            while (buffer.hasRemaining()) {
+                parsed.write(buffer.get());
+            }
+            return null;
+        }).when(parser).parseRows(any(ByteBuffer.class), any());
+
+        service.prepare(ConversionRequest.upload(file).build()).writeTo(new ByteArrayOutputStream());
+
+        assertThat(parsed.toByteArray()).isEqualTo(xml);
+        verify(parser, never()).parseRows(any(InputStream.class), any());
+        assertThat(spooler.spooled()).isZero();
+        try (var files = Files.list(spoolDir)) {
+            assertThat(files).isEmpty();
+        }
+    }
+
+    @Test
+    void shouldParseRawBodyStream() throws IOException {
+        byte[] xml = "<products></products>".getBytes();
+        ByteArrayOutputStream parsed = new ByteArrayOutputStream();
+        doAnswer(invocation -> {
+            invocation.<InputStream>getArgument(0).transferTo(parsed);
+            return null;
+        }).when(parser).parseRows(any(InputStream.class), any());
+
+        ConversionResult result = service.prepare(ConversionRequest.stream(new ByteArrayInputStream(xml), -1).build());
+
+        assertThat(parsed.toByteArray()).isEqualTo(xml);
+        assertThat(admission.reserved()).isEqualTo(admission.budget());
+        result.writeTo(new ByteArrayOutputStream());
+        assertThat(admission.reserved()).isZero();
+        verify(cache, never()).cacheOnWrite(any(), any());
+    }
+
+    @Test
+    void shouldRejectEmptyRawBody() {
+        ConversionRequest request = ConversionRequest.stream(new ByteArrayInputStream(new byte[0]), 0).build();
+
+        assertThatThrownBy(() -> service.prepare(request))
+                .isInstanceOf(EmptyXmlFileException.class);
+    }
+
+    private static byte[] gzip(byte[] data) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(data);
+        }
+        return out.toByteArray();
+    }
+
+    private static AdmissionProperties admissionProperties() {
+        AdmissionProperties properties = new AdmissionProperties();
+        properties.setHeapBudget(DataSize.ofMegabytes(1));
+        properties.setMinCost(DataSize.ofMegabytes(1));
+        properties.setQueueCapacity(0);
+        properties.setMaxWait(Duration.ZERO);
+        return properties;
+    }
+
 }
@@ -0,0 +1,92 @@
+package ru.oiteb.xmlparser.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.util.unit.DataSize;
+import ru.oiteb.xmlparser.config.ParserProperties;
+import ru.oiteb.xmlparser.config.WarmupProperties;
+import ru.oiteb.xmlparser.config.XmlFactoryConfig;
+import ru.oiteb.xmlparser.service.exporter.ExportFormat;
+import ru.oiteb.xmlparser.service.parser.XmlProductParser;
+import ru.oiteb.xmlparser.service.upload.ContentCoding;
+import ru.oiteb.xmlparser.service.warmup.ConversionWarmup;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+public class ConversionWarmupTest {
+
+    private final ParserProperties parserProperties = new ParserProperties();
+    private final XmlProductParser parser =
+            new XmlProductParser(new XmlFactoryConfig().secureXmlInputFactory(parserProperties), parserProperties);
+    private final ConversionService conversionService = mock(ConversionService.class);
+    private final WarmupProperties properties = new WarmupProperties();
+
+    @Test
+    void shouldSkipWarmupByDefault() {
+        new ConversionWarmup(conversionService, properties, parserProperties, null).run(null);
+
+        verifyNoInteractions(conversionService);
+    }
+
+    @Test
+    void shouldConvertSyntheticDocumentsInEveryFormat() {
+        properties.setEnabled(true);
+        properties.setProducts(List.of(10, 50));
+        properties.setFormats(List.of(ExportFormat.XLSX, ExportFormat.CSV));
+        properties.setIterations(2);
+        properties.setParallel(false);
+        List<Integer> parsed = new ArrayList<>();
+        when(conversionService.prepare(argThat(request -> request.getCoding() == ContentCoding.IDENTITY)))
+                .thenAnswer(invocation -> {
+                    ConversionRequest request = invocation.getArgument(0);
+                    parsed.add(parser.parseXml(request.getUpload().getInputStream()).size());
+                    return (ConversionResult) out -> out.write(1);
+                });
+
+        new ConversionWarmup(conversionService, properties, parserProperties, null).run(null);
+
+        assertThat(parsed).containsExactly(10, 10, 50, 50, 10, 10, 50, 50);
+        verify(conversionService, times(4)).prepare(argThat(request -> request.getFormat() == ExportFormat.CSV));
+    }
+
+    @Test
+    void shouldConvertDocumentAboveParallelThreshold() {
+        parserProperties.getParallel().setThreshold(DataSize.ofKilobytes(64));
+        properties.setEnabled(true);
+        properties.setProducts(List.of());
+        properties.setIterations(1);
+        List<Long> sizes = new ArrayList<>();
+        when(conversionService.prepare(any(ConversionRequest.class))).thenAnswer(invocation -> {
+            sizes.add(invocation.<ConversionRequest>getArgument(0).getSize());
+            return (ConversionResult) out -> out.write(1);
+        });
+
+        new ConversionWarmup(conversionService, properties, parserProperties, null).run(null);
+
+        assertThat(sizes).hasSize(1);
+        assertThat(sizes.get(0)).isGreaterThanOrEqualTo(DataSize.ofKilobytes(64).toBytes());
+    }
+
+    @Test
+    void shouldNotFailStartupWhenConversionFails() {
+        properties.setEnabled(true);
+        properties.setProducts(List.of(10));
+        doThrow(new IllegalStateException("boom"))
+                .when(conversionService).prepare(any(ConversionRequest.class));
+
+        new ConversionWarmup(conversionService, properties, parserProperties, null).run(null);
+
+        verify(conversionService).prepare(argThat(request -> request.getFormat() == ExportFormat.XLSX));
+    }
+
+}
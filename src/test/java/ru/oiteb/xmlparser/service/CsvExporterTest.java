@@ -0,0 +1,54 @@
+package ru.oiteb.xmlparser.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import ru.oiteb.xmlparser.constants.ExcelConstants;
+import ru.oiteb.xmlparser.entity.ProductData;
+import ru.oiteb.xmlparser.metrics.ConversionMetrics;
+import ru.oiteb.xmlparser.service.exporter.CsvExporter;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static ru.oiteb.xmlparser.TestHelper.createProductDataBuilder;
+import static ru.oiteb.xmlparser.TestHelper.getDefaultProductData;
+
+class CsvExporterTest {
+
+    private final CsvExporter exporter = new CsvExporter(new ConversionMetrics(new SimpleMeterRegistry()));
+
+    @Test
+    void shouldWriteHeaderAndRowsInColumnOrder() {
+        String csv = write(List.of(getDefaultProductData()));
+
+        assertThat(csv.split("\r\n")).containsExactly(
+                String.join(",", ExcelConstants.HEADERS),
+                "1,796,21.20,RU-123,,Россия,,Test,OITEB");
+    }
+
+    @Test
+    void shouldQuoteValuesWithSeparatorsQuotesAndLineBreaks() {
+        ProductData product = createProductDataBuilder()
+                .fullName("Бинт \"стерильный\", 5 м")
+                .tradeMark("строка 1\nстрока 2")
+                .build();
+
+        String csv = write(List.of(product));
+
+        assertThat(csv).endsWith(",\"Бинт \"\"стерильный\"\", 5 м\",\"строка 1\nстрока 2\"\r\n");
+    }
+
+    @Test
+    void shouldWriteOnlyHeaderForEmptyList() {
+        assertThat(write(List.of())).isEqualTo(String.join(",", ExcelConstants.HEADERS) + "\r\n");
+    }
+
+    private String write(List<ProductData> products) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        exporter.write(products, out);
+        return out.toString(StandardCharsets.UTF_8);
+    }
+
+}
@@ -1,21 +1,38 @@
 package ru.oiteb.xmlparser.service;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.poi.ss.usermodel.CellType;
 import org.apache.poi.xssf.usermodel.XSSFWorkbook;
 import org.junit.jupiter.api.Test;
+import ru.oiteb.xmlparser.config.ExcelExportProperties;
+import ru.oiteb.xmlparser.config.ParserProperties;
+import ru.oiteb.xmlparser.config.XmlFactoryConfig;
+import ru.oiteb.xmlparser.constants.ExcelConstants;
 import ru.oiteb.xmlparser.entity.ProductData;
+import ru.oiteb.xmlparser.metrics.ConversionMetrics;
 import ru.oiteb.xmlparser.service.exporter.ExcelExporter;
+import ru.oiteb.xmlparser.service.parser.XmlProductParser;
 
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.fail;
+import static org.assertj.core.api.Assertions.within;
+import static ru.oiteb.xmlparser.TestHelper.createProductDataBuilder;
 import static ru.oiteb.xmlparser.TestHelper.getDefaultProductData;
 import static ru.oiteb.xmlparser.constants.ExceptionsDescriptions.XML_CREATION_EXCEPTION;
 
 class ExcelExporterTest {
 
-    private final ExcelExporter exporter = new ExcelExporter();
+    private final ExcelExporter exporter = new ExcelExporter(new ExcelExportProperties(), new ConversionMetrics(new SimpleMeterRegistry()));
 
     @Test
     void shouldGenerateValidXlsx() {
@@ -45,4 +62,182 @@ class ExcelExporterTest {
         assertThat(bytes).isNotEmpty();
     }
 
-}
\ No newline at end of file
+    @Test
+    void shouldGenerateValidXlsxInStreamingMode() {
+        ExcelExportProperties properties = new ExcelExportProperties();
+        properties.getStreaming().setRowThreshold(2);
+        properties.getStreaming().setRowAccessWindow(2);
+        ExcelExporter streamingExporter = new ExcelExporter(properties, new ConversionMetrics(new SimpleMeterRegistry()));
+        List<ProductData> products = IntStream.rangeClosed(1, 5)
+                .mapToObj(i -> createProductDataBuilder().indexNum(i).fullName("Test " + i).build())
+                .toList();
+
+        byte[] excelBytes = streamingExporter.generateExcelToBytes(products);
+
+        try (XSSFWorkbook workbook = new XSSFWorkbook(new ByteArrayInputStream(excelBytes))) {
+            var sheet = workbook.getSheetAt(0);
+            assertThat(sheet.getLastRowNum()).isEqualTo(5);
+            assertThat(sheet.getRow(1).getCell(7).getStringCellValue()).isEqualTo("Test 1");
+            assertThat(sheet.getRow(5).getCell(0).getNumericCellValue()).isEqualTo(5.0);
+        } catch (Exception e) {
+            fail(XML_CREATION_EXCEPTION, e);
+        }
+    }
+
+    @Test
+    void shouldWriteBlankCellForMissingIndexNum() {
+        ProductData p = createProductDataBuilder().indexNum(null).build();
+
+        byte[] excelBytes = exporter.generateExcelToBytes(List.of(p));
+
+        try (XSSFWorkbook workbook = new XSSFWorkbook(new ByteArrayInputStream(excelBytes))) {
+            var row = workbook.getSheetAt(0).getRow(1);
+            assertThat(row.getCell(0).getCellType()).isEqualTo(CellType.BLANK);
+            assertThat(row.getCell(1).getStringCellValue()).isEqualTo(p.getUnit());
+        } catch (Exception e) {
+            fail(XML_CREATION_EXCEPTION, e);
+        }
+    }
+
+    @Test
+    void shouldEstimateColumnWidthsCloseToAutoSize() throws IOException {
+        ParserProperties parserProperties = new ParserProperties();
+        XmlProductParser parser = new XmlProductParser(new XmlFactoryConfig().secureXmlInputFactory(parserProperties),
+                parserProperties);
+        byte[] xml = Files.readAllBytes(Path.of("src/test/resources/valid-sample.xml"));
+
+        byte[] excelBytes = exporter.generateExcelToBytes(parser.parseXml(xml));
+
+        try (XSSFWorkbook workbook = new XSSFWorkbook(new ByteArrayInputStream(excelBytes))) {
+            var sheet = workbook.getSheetAt(0);
+            for (int i = 0; i < ExcelConstants.HEADERS.length; i++) {
+                int estimated = sheet.getColumnWidth(i);
+                sheet.autoSizeColumn(i);
+                int measured = sheet.getColumnWidth(i);
+                // без Calibri AWT подставляет похожий шрифт, поэтому ширины совпадают лишь приблизительно
+                assertThat(estimated).as("колонка %d", i).isCloseTo(measured, within(Math.max(256, measured / 5)));
+            }
+        }
+    }
+
+    @Test
+    void shouldSizeColumnsToLongestValue() {
+        ProductData shortName = createProductDataBuilder().indexNum(1).fullName("Бинт").build();
+        ProductData longName = createProductDataBuilder().indexNum(2)
+                .fullName("Шприц инъекционный трёхкомпонентный однократного применения").build();
+
+        byte[] excelBytes = exporter.generateExcelToBytes(List.of(shortName, longName));
+
+        try (XSSFWorkbook workbook = new XSSFWorkbook(new ByteArrayInputStream(excelBytes))) {
+            var sheet = workbook.getSheetAt(0);
+            assertThat(sheet.getColumnWidth(7)).isGreaterThan(longName.getFullName().length() * 200);
+            assertThat(sheet.getColumnWidth(7)).isGreaterThan(sheet.getColumnWidth(0));
+        } catch (Exception e) {
+            fail(XML_CREATION_EXCEPTION, e);
+        }
+    }
+
+    @Test
+    void shouldWriteSameCellsWithDirectEngine() {
+        List<ProductData> products = List.of(getDefaultProductData(),
+                createProductDataBuilder().indexNum(null).fullName("Без номера").build());
+
+        byte[] excelBytes = directExporter(10_000, true).generateExcelToBytes(products);
+
+        try (XSSFWorkbook direct = new XSSFWorkbook(new ByteArrayInputStream(excelBytes));
+             XSSFWorkbook poi = new XSSFWorkbook(new ByteArrayInputStream(exporter.generateExcelToBytes(products)))) {
+            var sheet = direct.getSheetAt(0);
+            var expected = poi.getSheetAt(0);
+            assertThat(direct.getSheetName(0)).isEqualTo(poi.getSheetName(0));
+            assertThat(sheet.getLastRowNum()).isEqualTo(2);
+            for (int r = 0; r <= 1; r++) {
+                for (int c = 1; c < 9; c++) {
+                    assertThat(sheet.getRow(r).getCell(c).getStringCellValue())
+                            .isEqualTo(expected.getRow(r).getCell(c).getStringCellValue());
+                }
+            }
+            assertThat(sheet.getColumnWidth(7)).isEqualTo(expected.getColumnWidth(7));
+            assertThat(sheet.getRow(1).getCell(0).getNumericCellValue()).isEqualTo(1.0 * products.get(0).getIndexNum());
+            assertThat(sheet.getRow(2).getCell(0)).isNull();
+            assertThat(sheet.getRow(2).getCell(7).getStringCellValue()).isEqualTo("Без номера");
+        } catch (Exception e) {
+            fail(XML_CREATION_EXCEPTION, e);
+        }
+    }
+
+    @Test
+    void shouldKeepSpecialCharactersWithDirectEngine() {
+        String text = "a & b <c> _x0041_ \u0001\r\n";
+        ProductData p = createProductDataBuilder().indexNum(1).fullName(text).unit("  шт").build();
+
+        for (boolean sharedStrings : new boolean[]{true, false}) {
+            byte[] excelBytes = directExporter(10_000, sharedStrings).generateExcelToBytes(List.of(p));
+
+            try (XSSFWorkbook workbook = new XSSFWorkbook(new ByteArrayInputStream(excelBytes))) {
+                var row = workbook.getSheetAt(0).getRow(1);
+                assertThat(row.getCell(7).getStringCellValue()).isEqualTo(text);
+                assertThat(row.getCell(1).getStringCellValue()).isEqualTo("  шт");
+            } catch (Exception e) {
+                fail(XML_CREATION_EXCEPTION, e);
+            }
+        }
+    }
+
+    @Test
+    void shouldShareOnlyReferenceColumnsWithDirectEngine() {
+        List<ProductData> products = IntStream.rangeClosed(1, 3)
+                .mapToObj(i -> createProductDataBuilder().indexNum(i).fullName("Test " + i).nkmi("RU-" + i).build())
+                .toList();
+
+        byte[] excelBytes = directExporter(10_000, true).generateExcelToBytes(products);
+
+        try (XSSFWorkbook workbook = new XSSFWorkbook(new ByteArrayInputStream(excelBytes))) {
+            var strings = workbook.getSharedStringSource();
+            assertThat(strings.getUniqueCount()).isEqualTo(4);
+            assertThat(strings.getCount()).isEqualTo(12);
+            var row = workbook.getSheetAt(0).getRow(3);
+            assertThat(row.getCell(3).getStringCellValue()).isEqualTo("RU-3");
+            assertThat(row.getCell(5).getStringCellValue()).isEqualTo("Россия");
+            assertThat(row.getCell(7).getStringCellValue()).isEqualTo("Test 3");
+        } catch (Exception e) {
+            fail(XML_CREATION_EXCEPTION, e);
+        }
+    }
+
+    @Test
+    void shouldSpoolRowsAndWriteSeveralSheetsWithDirectEngine() {
+        List<ProductData> products = IntStream.rangeClosed(1, 5)
+                .mapToObj(i -> createProductDataBuilder().indexNum(i).fullName("Test " + i).build())
+                .toList();
+        Map<String, List<ProductData>> sheets = new LinkedHashMap<>();
+        sheets.put("Товары", products);
+        sheets.put("товары", products.subList(0, 2));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        directExporter(2, true).writeExcel(sheets, "Сводка", List.<String[]>of(new String[]{"Лист", "Строк"},
+                new String[]{"Товары", "5"}), out);
+
+        try (XSSFWorkbook workbook = new XSSFWorkbook(new ByteArrayInputStream(out.toByteArray()))) {
+            assertThat(workbook.getNumberOfSheets()).isEqualTo(3);
+            assertThat(workbook.getSheetName(0)).isEqualTo("Сводка");
+            assertThat(workbook.getSheetName(2)).isEqualTo("товары (2)");
+            assertThat(workbook.getSheetAt(0).getRow(1).getCell(1).getStringCellValue()).isEqualTo("5");
+            var sheet = workbook.getSheetAt(1);
+            assertThat(sheet.getLastRowNum()).isEqualTo(5);
+            assertThat(sheet.getRow(5).getCell(0).getNumericCellValue()).isEqualTo(5.0);
+            assertThat(sheet.getRow(5).getCell(7).getStringCellValue()).isEqualTo("Test 5");
+            assertThat(workbook.getSheetAt(2).getLastRowNum()).isEqualTo(2);
+        } catch (Exception e) {
+            fail(XML_CREATION_EXCEPTION, e);
+        }
+    }
+
+    private static ExcelExporter directExporter(int rowThreshold, boolean sharedStrings) {
+        ExcelExportProperties properties = new ExcelExportProperties();
+        properties.setEngine(ExcelExportProperties.Engine.DIRECT);
+        properties.getStreaming().setRowThreshold(rowThreshold);
+        properties.getStreaming().setSharedStrings(sharedStrings);
+        return new ExcelExporter(properties, new ConversionMetrics(new SimpleMeterRegistry()));
+    }
+
+}
@@ -0,0 +1,116 @@
+package ru.oiteb.xmlparser.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.FilterChain;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockAsyncContext;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.servlet.HandlerExceptionResolver;
+import org.springframework.web.servlet.ModelAndView;
+import ru.oiteb.xmlparser.config.AdmissionProperties;
+import ru.oiteb.xmlparser.config.UploadProperties;
+import ru.oiteb.xmlparser.exception.ConversionOverloadedException;
+import ru.oiteb.xmlparser.service.upload.MultipartUploadLimitFilter;
+import ru.oiteb.xmlparser.service.upload.UploadSpooler;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class MultipartUploadLimitFilterTest {
+
+    private static final int LARGE = (int) DataSize.ofMegabytes(2).toBytes();
+    private static final DataSize SPOOL_SIZE = DataSize.ofMegabytes(3);
+
+    private final List<Exception> rejected = new ArrayList<>();
+    private final HandlerExceptionResolver resolver = (request, response, handler, e) -> {
+        rejected.add(e);
+        response.setStatus(503);
+        return new ModelAndView();
+    };
+    private final UploadSpooler spooler = new UploadSpooler(properties(), new AdmissionProperties(),
+            new SimpleMeterRegistry());
+    private final MultipartUploadLimitFilter filter = new MultipartUploadLimitFilter(spooler,
+            DataSize.ofMegabytes(1), SPOOL_SIZE, resolver);
+
+    @Test
+    void shouldRejectMultipartUploadBeyondSpoolSpaceBeforeReadingBody() throws Exception {
+        MockHttpServletResponse second = new MockHttpServletResponse();
+        FilterChain chain = (request, response) -> filter.doFilter(multipart(LARGE), second, (req, res) -> {
+            throw new AssertionError("body must not be read");
+        });
+
+        filter.doFilter(multipart(LARGE), new MockHttpServletResponse(), chain);
+
+        assertThat(second.getStatus()).isEqualTo(503);
+        assertThat(rejected).singleElement().isInstanceOf(ConversionOverloadedException.class);
+        assertThat(spooler.spooled()).isZero();
+    }
+
+    @Test
+    void shouldHoldReservationUntilAsyncRequestCompletes() throws Exception {
+        MockHttpServletRequest request = multipart(LARGE);
+        request.setAsyncSupported(true);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        filter.doFilter(request, response, (req, res) -> req.startAsync());
+
+        assertThat(spooler.spooled()).isEqualTo(LARGE);
+        ((MockAsyncContext) request.getAsyncContext()).complete();
+        assertThat(spooler.spooled()).isZero();
+    }
+
+    @Test
+    void shouldPassSmallUploadWithoutReservationWhileSpoolIsFull() throws Exception {
+        List<Long> spooled = new ArrayList<>();
+        FilterChain chain = (request, response) -> filter.doFilter(multipart(1024), new MockHttpServletResponse(),
+                (req, res) -> spooled.add(spooler.spooled()));
+
+        filter.doFilter(multipart((int) SPOOL_SIZE.toBytes()), new MockHttpServletResponse(), chain);
+
+        assertThat(spooled).containsExactly(SPOOL_SIZE.toBytes());
+        assertThat(rejected).isEmpty();
+    }
+
+    @Test
+    void shouldReserveMaxRequestSizeWhenLengthIsUnknown() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/v1/api/xml-converter");
+        request.setContentType(MediaType.MULTIPART_FORM_DATA_VALUE + "; boundary=x");
+        List<Long> spooled = new ArrayList<>();
+
+        filter.doFilter(request, new MockHttpServletResponse(), (req, res) -> spooled.add(spooler.spooled()));
+
+        assertThat(spooled).containsExactly(SPOOL_SIZE.toBytes());
+        assertThat(spooler.spooled()).isZero();
+    }
+
+    @Test
+    void shouldNotLimitRawXmlBody() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/v1/api/xml-converter");
+        request.setContentType(MediaType.APPLICATION_XML_VALUE);
+        request.setContent(new byte[LARGE]);
+        List<Long> spooled = new ArrayList<>();
+
+        filter.doFilter(request, new MockHttpServletResponse(), (req, res) -> spooled.add(spooler.spooled()));
+
+        assertThat(spooled).containsExactly(0L);
+    }
+
+    private static MockHttpServletRequest multipart(int length) {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/v1/api/xml-converter");
+        request.setContentType(MediaType.MULTIPART_FORM_DATA_VALUE + "; boundary=x");
+        request.setContent(new byte[length]);
+        return request;
+    }
+
+    private static UploadProperties properties() {
+        UploadProperties properties = new UploadProperties();
+        properties.getSpool().setMaxTotalSize(SPOOL_SIZE);
+        return properties;
+    }
+
+}
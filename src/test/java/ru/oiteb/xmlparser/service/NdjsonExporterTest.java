@@ -0,0 +1,47 @@
+package ru.oiteb.xmlparser.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import ru.oiteb.xmlparser.entity.ProductData;
+import ru.oiteb.xmlparser.metrics.ConversionMetrics;
+import ru.oiteb.xmlparser.service.exporter.NdjsonExporter;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static ru.oiteb.xmlparser.TestHelper.createProductDataBuilder;
+import static ru.oiteb.xmlparser.TestHelper.getDefaultProductData;
+
+class NdjsonExporterTest {
+
+    private final NdjsonExporter exporter = new NdjsonExporter(new ConversionMetrics(new SimpleMeterRegistry()));
+
+    @Test
+    void shouldWriteOneObjectPerLineInColumnOrder() {
+        String ndjson = write(List.of(getDefaultProductData(), createProductDataBuilder().indexNum(2).build()));
+
+        assertThat(ndjson.split("\n")).hasSize(2);
+        assertThat(ndjson).startsWith("{\"indexNum\":1,\"unit\":\"796\",\"okpd2\":\"21.20\",\"nkmi\":\"RU-123\","
+                + "\"manufacturer\":null,\"country\":\"Россия\",\"certNumber\":null,\"fullName\":\"Test\","
+                + "\"tradeMark\":\"OITEB\"}\n{\"indexNum\":2,");
+        assertThat(ndjson).endsWith("}\n");
+    }
+
+    @Test
+    void shouldEscapeQuotesBackslashesAndControlCharacters() {
+        ProductData product = createProductDataBuilder().fullName("\"А\\Б\"\n\tВ\u0001").build();
+
+        String ndjson = write(List.of(product));
+
+        assertThat(ndjson).contains("\"fullName\":\"\\\"А\\\\Б\\\"\\n\\tВ\\u0001\"");
+    }
+
+    private String write(List<ProductData> products) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        exporter.write(products, out);
+        return out.toString(StandardCharsets.UTF_8);
+    }
+
+}
@@ -0,0 +1,128 @@
+package ru.oiteb.xmlparser.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+import ru.oiteb.xmlparser.config.SortProperties;
+import ru.oiteb.xmlparser.entity.ProductData;
+import ru.oiteb.xmlparser.entity.ProductRow;
+import ru.oiteb.xmlparser.service.sorter.ProductSorter;
+import ru.oiteb.xmlparser.service.sorter.SortedProducts;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static ru.oiteb.xmlparser.TestHelper.createProductDataBuilder;
+
+class ProductSorterTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void shouldKeepAlreadyOrderedInput() {
+        List<ProductData> products = products(IntStream.range(0, 100).map(i -> i / 3));
+
+        try (SortedProducts sorted = sorter(DataSize.ofMegabytes(16)).sort(products)) {
+            assertThat(sorted).containsExactlyElementsOf(products);
+        }
+    }
+
+    @Test
+    void shouldSortDenseRangeStably() {
+        List<ProductData> products = products(new Random(1).ints(500, -20, 20));
+
+        try (SortedProducts sorted = sorter(DataSize.ofMegabytes(16)).sort(products)) {
+            assertThat(sorted).containsExactlyElementsOf(expected(products));
+        }
+    }
+
+    @Test
+    void shouldSortSparseRangeStably() {
+        List<ProductData> products = products(new Random(2).ints(500));
+
+        try (SortedProducts sorted = sorter(DataSize.ofMegabytes(16)).sort(products)) {
+            assertThat(sorted).containsExactlyElementsOf(expected(products));
+        }
+    }
+
+    @Test
+    void shouldSpillRunsToDiskAndDeleteThemOnClose() throws IOException {
+        List<ProductData> products = products(new Random(3).ints(1000, 0, 300));
+
+        try (SortedProducts sorted = sorter(DataSize.ofKilobytes(8)).sort(products)) {
+            assertThat(listTempFiles()).isNotEmpty();
+            assertThat(sorted).hasSize(products.size());
+            assertThat(sorted).containsExactlyElementsOf(expected(products));
+        }
+        assertThat(listTempFiles()).isEmpty();
+    }
+
+    @Test
+    void shouldMergeSpilledRunsAsReusedRows() {
+        List<ProductData> products = products(new Random(4).ints(1000, 0, 300));
+
+        try (SortedProducts sorted = sorter(DataSize.ofKilobytes(8)).sort(products)) {
+            assertThat(sorted.rows()).hasSize(products.size());
+            assertThat(sorted.rows()).map(ProductRow::toProductData).containsExactlyElementsOf(expected(products));
+        }
+    }
+
+    @Test
+    void shouldKeepMissingIndexNumAsZero() {
+        ProductData missing = createProductDataBuilder().indexNum(null).fullName("Без номера").build();
+        List<ProductData> products = List.of(createProductDataBuilder().indexNum(5).build(), missing,
+                createProductDataBuilder().indexNum(-1).build());
+
+        try (SortedProducts sorted = sorter(DataSize.ofMegabytes(16)).sort(products)) {
+            assertThat(sorted).extracting(ProductData::getIndexNum).containsExactly(-1, null, 5);
+            assertThat(sorted).contains(missing);
+        }
+    }
+
+    @Test
+    void shouldDeleteRunsWhenSessionIsAbandoned() throws IOException {
+        ProductSorter.Session session = sorter(DataSize.ofKilobytes(1)).openSession();
+        products(IntStream.range(0, 200)).forEach(session);
+        assertThat(listTempFiles()).isNotEmpty();
+
+        session.close();
+
+        assertThat(listTempFiles()).isEmpty();
+    }
+
+    private ProductSorter sorter(DataSize budget) {
+        SortProperties properties = new SortProperties();
+        properties.setMemoryBudget(budget);
+        properties.setTempDir(tempDir);
+        return new ProductSorter(properties);
+    }
+
+    private List<ProductData> products(IntStream indexNums) {
+        int[] keys = indexNums.toArray();
+        return IntStream.range(0, keys.length)
+                .mapToObj(i -> createProductDataBuilder().indexNum(keys[i]).fullName("Test " + i).build())
+                .toList();
+    }
+
+    private List<ProductData> expected(List<ProductData> products) {
+        List<ProductData> expected = new ArrayList<>(products);
+        expected.sort(Comparator.comparingInt(ProductData::getIndexNum));
+        return expected;
+    }
+
+    private List<Path> listTempFiles() throws IOException {
+        try (Stream<Path> files = Files.list(tempDir)) {
+            return files.toList();
+        }
+    }
+
+}
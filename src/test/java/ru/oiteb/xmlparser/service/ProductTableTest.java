@@ -0,0 +1,83 @@
+package ru.oiteb.xmlparser.service;
+
+import org.junit.jupiter.api.Test;
+import ru.oiteb.xmlparser.entity.ProductData;
+import ru.oiteb.xmlparser.entity.ProductField;
+import ru.oiteb.xmlparser.entity.ProductRow;
+import ru.oiteb.xmlparser.service.table.ProductTable;
+
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static ru.oiteb.xmlparser.TestHelper.createProductDataBuilder;
+
+class ProductTableTest {
+
+    @Test
+    void shouldKeepValuesAndMissingFields() {
+        ProductData full = createProductDataBuilder().indexNum(7).build();
+        ProductData empty = new ProductData();
+        ProductTable table = table(List.of(full, empty));
+
+        assertThat(table.size()).isEqualTo(2);
+        assertThat(table.indexNum(0)).isEqualTo(7);
+        assertThat(table.hasIndexNum(1)).isFalse();
+        assertThat(table.indexNum(1)).isZero();
+        assertThat(table.get(0, ProductField.COUNTRY)).isEqualTo("Россия");
+        assertThat(table.get(1, ProductField.COUNTRY)).isNull();
+        assertThat(table.toProductData(0)).isEqualTo(full);
+        assertThat(table.toProductData(1)).isEqualTo(empty);
+    }
+
+    @Test
+    void shouldKeepUniqueValuesAfterLeavingDictionary() {
+        List<ProductData> products = IntStream.range(0, 20_000)
+                .mapToObj(i -> createProductDataBuilder().indexNum(i)
+                        .fullName(i % 10 == 0 ? null : "Товар " + i)
+                        .manufacturer(i % 3 == 0 ? "" : "Завод " + (i % 5))
+                        .build())
+                .toList();
+
+        ProductTable table = table(products);
+
+        assertThat(table.rows()).map(ProductRow::toProductData).containsExactlyElementsOf(products);
+    }
+
+    @Test
+    void shouldStoreRepeatedValuesOnce() {
+        ProductTable table = table(IntStream.range(0, 10_000)
+                .mapToObj(i -> createProductDataBuilder().indexNum(i).build())
+                .toList());
+
+        assertThat(table.estimatedBytes()).isLessThan(10_000L * 40);
+    }
+
+    @Test
+    void shouldIterateRowsInGivenOrder() {
+        List<ProductData> products = IntStream.range(0, 3)
+                .mapToObj(i -> createProductDataBuilder().indexNum(i).fullName("Товар " + i).build())
+                .toList();
+
+        ProductTable table = table(products);
+
+        assertThat(table.rows(new int[]{2, 0, 1})).map(ProductRow::toProductData)
+                .containsExactly(products.get(2), products.get(0), products.get(1));
+    }
+
+    @Test
+    void shouldRejectIndexNumAsTextField() {
+        ProductTable table = table(List.of(createProductDataBuilder().build()));
+
+        assertThatThrownBy(() -> table.get(0, ProductField.INDEX_NUM)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> table.indexNum(1)).isInstanceOf(IndexOutOfBoundsException.class);
+    }
+
+    private ProductTable table(List<ProductData> products) {
+        ProductTable table = new ProductTable();
+        products.forEach(table::add);
+        return table;
+    }
+
+}
@@ -0,0 +1,114 @@
+package ru.oiteb.xmlparser.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.util.unit.DataSize;
+import ru.oiteb.xmlparser.config.UploadProperties;
+import ru.oiteb.xmlparser.exception.UnsupportedContentEncodingException;
+import ru.oiteb.xmlparser.service.upload.ContentCoding;
+import ru.oiteb.xmlparser.service.upload.LimitedInputStream;
+import ru.oiteb.xmlparser.service.upload.UploadDecoder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class UploadDecoderTest {
+
+    private static final byte[] XML = "<products><productInfo><indexNum>1</indexNum></productInfo></products>"
+            .getBytes(StandardCharsets.UTF_8);
+
+    private final UploadProperties properties = new UploadProperties();
+    private final UploadDecoder decoder = new UploadDecoder(properties);
+
+    @Test
+    void shouldDecodeGzip() throws IOException {
+        assertThat(decode(gzip(XML), ContentCoding.GZIP)).isEqualTo(XML);
+    }
+
+    @Test
+    void shouldDecodeZlibAndRawDeflate() throws IOException {
+        assertThat(decode(deflate(XML, false), ContentCoding.DEFLATE)).isEqualTo(XML);
+        assertThat(decode(deflate(XML, true), ContentCoding.DEFLATE)).isEqualTo(XML);
+    }
+
+    @Test
+    void shouldStopDecompressionBombAtLimit() throws IOException {
+        properties.setMaxDecompressedSize(DataSize.ofKilobytes(64));
+        byte[] bomb = gzip(new byte[10 * 1024 * 1024]);
+
+        try (LimitedInputStream in = decoder.decode(new ByteArrayInputStream(bomb), ContentCoding.GZIP)) {
+            assertThatThrownBy(in::readAllBytes).isInstanceOf(IOException.class);
+            assertThat(in.isExceeded()).isTrue();
+        }
+        assertThat(bomb.length).isLessThan(64 * 1024);
+    }
+
+    @Test
+    void shouldRejectCorruptGzipHeader() {
+        assertThatThrownBy(() -> decoder.decode(new ByteArrayInputStream(XML), ContentCoding.GZIP))
+                .isInstanceOf(IOException.class);
+    }
+
+    @Test
+    void shouldEstimateDecompressedSize() {
+        properties.setMaxDecompressedSize(DataSize.ofMegabytes(100));
+        properties.setExpectedCompressionRatio(10);
+
+        assertThat(decoder.expectedSize(1_000, ContentCoding.IDENTITY)).isEqualTo(1_000);
+        assertThat(decoder.expectedSize(1_000, ContentCoding.GZIP)).isEqualTo(10_000);
+        assertThat(decoder.expectedSize(DataSize.ofMegabytes(50).toBytes(), ContentCoding.DEFLATE))
+                .isEqualTo(DataSize.ofMegabytes(100).toBytes());
+    }
+
+    @Test
+    void shouldResolveCodingFromHeaderFileNameAndType() {
+        MockMultipartFile plain = new MockMultipartFile("file", "products.xml", "application/xml", XML);
+        MockMultipartFile gz = new MockMultipartFile("file", "products.xml.gz", "application/octet-stream", XML);
+        MockMultipartFile gzipType = new MockMultipartFile("file", "products", "application/gzip", XML);
+
+        assertThat(ContentCoding.ofUpload(null, plain)).isEqualTo(ContentCoding.IDENTITY);
+        assertThat(ContentCoding.ofUpload(null, gz)).isEqualTo(ContentCoding.GZIP);
+        assertThat(ContentCoding.ofUpload("", gzipType)).isEqualTo(ContentCoding.GZIP);
+        assertThat(ContentCoding.ofUpload("deflate", gz)).isEqualTo(ContentCoding.DEFLATE);
+        assertThat(ContentCoding.fromHeader("identity, X-GZIP")).isEqualTo(ContentCoding.GZIP);
+        assertThatThrownBy(() -> ContentCoding.fromHeader("br"))
+                .isInstanceOf(UnsupportedContentEncodingException.class);
+        assertThatThrownBy(() -> ContentCoding.fromHeader("gzip, gzip"))
+                .isInstanceOf(UnsupportedContentEncodingException.class);
+    }
+
+    private byte[] decode(byte[] data, ContentCoding coding) throws IOException {
+        try (InputStream in = decoder.decode(new ByteArrayInputStream(data), coding)) {
+            return in.readAllBytes();
+        }
+    }
+
+    private static byte[] gzip(byte[] data) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(data);
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] deflate(byte[] data, boolean raw) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, raw);
+        try (DeflaterOutputStream deflating = new DeflaterOutputStream(out, deflater)) {
+            deflating.write(data);
+        } finally {
+            deflater.end();
+        }
+        return out.toByteArray();
+    }
+
+}
@@ -0,0 +1,106 @@
+package ru.oiteb.xmlparser.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.util.unit.DataSize;
+import ru.oiteb.xmlparser.config.AdmissionProperties;
+import ru.oiteb.xmlparser.config.UploadProperties;
+import ru.oiteb.xmlparser.exception.ConversionOverloadedException;
+import ru.oiteb.xmlparser.exception.UploadTooLargeException;
+import ru.oiteb.xmlparser.service.upload.UploadSpooler;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class UploadSpoolerTest {
+
+    private static final byte[] XML = "<products><productInfo><indexNum>1</indexNum></productInfo></products>"
+            .getBytes(StandardCharsets.UTF_8);
+
+    @TempDir
+    private Path dir;
+
+    private final UploadProperties properties = new UploadProperties();
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final UploadSpooler spooler = new UploadSpooler(properties, new AdmissionProperties(), registry);
+
+    @BeforeEach
+    void setUp() {
+        properties.getSpool().setDirectory(dir);
+    }
+
+    @Test
+    void shouldMapSpooledUploadAndDeleteFileOnClose() throws IOException {
+        Path file;
+        try (UploadSpooler.SpooledUpload upload = spooler.spool(upload(XML))) {
+            file = upload.file();
+            assertThat(file.getParent()).isEqualTo(dir);
+            assertThat(upload.isMappable()).isTrue();
+            ByteBuffer buffer = upload.map();
+            byte[] mapped = new byte[buffer.remaining()];
+            buffer.get(mapped);
+            assertThat(mapped).isEqualTo(XML);
+            assertThat(spooler.spooled()).isEqualTo(XML.length);
+            assertThat(registry.get("converter.upload.spooled").gauge().value()).isEqualTo(XML.length);
+        }
+
+        assertThat(file).doesNotExist();
+        assertThat(spooler.spooled()).isZero();
+    }
+
+    @Test
+    void shouldRejectUploadsExceedingSpoolSpace() throws IOException {
+        properties.getSpool().setMaxTotalSize(DataSize.ofBytes(XML.length + 10L));
+
+        try (UploadSpooler.SpooledUpload first = spooler.spool(upload(XML))) {
+            assertThatThrownBy(() -> spooler.spool(upload(XML)))
+                    .isInstanceOf(ConversionOverloadedException.class);
+        }
+        spooler.spool(upload(XML)).close();
+
+        assertThatThrownBy(() -> spooler.spool(upload(new byte[XML.length + 11])))
+                .isInstanceOf(UploadTooLargeException.class);
+        assertThat(spooler.spooled()).isZero();
+        try (var files = Files.list(dir)) {
+            assertThat(files).isEmpty();
+        }
+    }
+
+    @Test
+    void shouldSpoolFromThreshold() {
+        properties.getSpool().setThreshold(DataSize.ofBytes(XML.length));
+
+        assertThat(spooler.shouldSpool(XML.length - 1L)).isFalse();
+        assertThat(spooler.shouldSpool(XML.length)).isTrue();
+    }
+
+    @Test
+    void shouldDeleteFilesLeftByPreviousRunOnStartup() throws IOException {
+        Path stale = Files.write(dir.resolve("upload-1.xml"), XML);
+        Files.setLastModifiedTime(stale, FileTime.from(Instant.now().minus(1, ChronoUnit.DAYS)));
+        Path foreign = Files.write(dir.resolve("other.xml"), XML);
+        Files.setLastModifiedTime(foreign, FileTime.from(Instant.now().minus(1, ChronoUnit.DAYS)));
+
+        spooler.init();
+
+        assertThat(stale).doesNotExist();
+        assertThat(foreign).exists();
+    }
+
+    private static MockMultipartFile upload(byte[] content) {
+        return new MockMultipartFile("file", "products.xml", "application/xml", content);
+    }
+
+}
@@ -0,0 +1,92 @@
+package ru.oiteb.xmlparser.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.util.unit.DataSize;
+import ru.oiteb.xmlparser.config.ParserProperties;
+import ru.oiteb.xmlparser.config.UploadProperties;
+import ru.oiteb.xmlparser.config.XmlFactoryConfig;
+import ru.oiteb.xmlparser.entity.ValidationReport;
+import ru.oiteb.xmlparser.exception.EmptyXmlFileException;
+import ru.oiteb.xmlparser.exception.UploadTooLargeException;
+import ru.oiteb.xmlparser.service.Impl.ValidationServiceImpl;
+import ru.oiteb.xmlparser.service.parser.XmlProductValidator;
+import ru.oiteb.xmlparser.service.upload.ContentCoding;
+import ru.oiteb.xmlparser.service.upload.UploadDecoder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPOutputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static ru.oiteb.xmlparser.constants.ExceptionsDescriptions.EMPTY_NATIONAL_CODE;
+
+public class ValidationServiceImplTest {
+
+    private static final byte[] XML = ("<products><productInfo><indexNum>1</indexNum>"
+            + "<OKEIInfo><nationalCode>796</nationalCode></OKEIInfo></productInfo>"
+            + "<productInfo><indexNum>2</indexNum><OKEIInfo><nationalCode/></OKEIInfo></productInfo></products>")
+            .getBytes(StandardCharsets.UTF_8);
+
+    private final UploadProperties uploadProperties = new UploadProperties();
+    private final ValidationService service = new ValidationServiceImpl(validator(), new UploadDecoder(uploadProperties));
+
+    @Test
+    void shouldValidateUploadedFile() {
+        ValidationReport report = service.validate(new MockMultipartFile("file", "products.xml", "text/xml", XML),
+                ContentCoding.IDENTITY);
+
+        assertThat(report.getProducts()).isEqualTo(2);
+        assertThat(report.getViolations()).singleElement()
+                .satisfies(violation -> assertThat(violation.getMessage()).isEqualTo(EMPTY_NATIONAL_CODE));
+    }
+
+    @Test
+    void shouldValidateGzipBody() throws IOException {
+        byte[] gzip = gzip(XML);
+
+        ValidationReport report = service.validate(new ByteArrayInputStream(gzip), gzip.length, ContentCoding.GZIP);
+
+        assertThat(report.getProducts()).isEqualTo(2);
+        assertThat(report.getViolations()).hasSize(1);
+    }
+
+    @Test
+    void shouldRejectDecompressionBomb() throws IOException {
+        uploadProperties.setMaxDecompressedSize(DataSize.ofKilobytes(64));
+        byte[] padding = " ".repeat(1024 * 1024).getBytes(StandardCharsets.UTF_8);
+        ByteArrayOutputStream xml = new ByteArrayOutputStream();
+        xml.write("<products>".getBytes(StandardCharsets.UTF_8));
+        xml.write(padding);
+        xml.write("</products>".getBytes(StandardCharsets.UTF_8));
+        MockMultipartFile bomb = new MockMultipartFile("file", "bomb.xml.gz", "application/gzip", gzip(xml.toByteArray()));
+
+        assertThatThrownBy(() -> service.validate(bomb, ContentCoding.GZIP))
+                .isInstanceOf(UploadTooLargeException.class);
+    }
+
+    @Test
+    void shouldRejectEmptyFile() {
+        assertThatThrownBy(() -> service.validate(new MockMultipartFile("file", new byte[0]), ContentCoding.IDENTITY))
+                .isInstanceOf(EmptyXmlFileException.class);
+        assertThatThrownBy(() -> service.validate(new ByteArrayInputStream(new byte[0]), 0, ContentCoding.IDENTITY))
+                .isInstanceOf(EmptyXmlFileException.class);
+    }
+
+    private static XmlProductValidator validator() {
+        ParserProperties properties = new ParserProperties();
+        return new XmlProductValidator(new XmlFactoryConfig().secureXmlInputFactory(properties), properties);
+    }
+
+    private static byte[] gzip(byte[] data) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(data);
+        }
+        return out.toByteArray();
+    }
+
+}
@@ -2,29 +2,48 @@ package ru.oiteb.xmlparser.service;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.springframework.util.unit.DataSize;
+import ru.oiteb.xmlparser.config.ParserProperties;
+import ru.oiteb.xmlparser.config.XmlFactoryConfig;
 import ru.oiteb.xmlparser.entity.ProductData;
+import ru.oiteb.xmlparser.entity.ProductRow;
 import ru.oiteb.xmlparser.exception.InvalidXmlFileException;
 import ru.oiteb.xmlparser.service.parser.XmlProductParser;
+import ru.oiteb.xmlparser.service.table.ProductTable;
 
 import javax.xml.stream.XMLInputFactory;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Set;
+import java.util.stream.IntStream;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.catchThrowable;
+import static ru.oiteb.xmlparser.constants.ExceptionsDescriptions.XML_LIMITS_EXCEEDED;
 
 public class XmlProductParserTest {
 
     private XmlProductParser parser;
+    private XmlProductParser parallelParser;
 
     @BeforeEach
     void setUp() {
-        XMLInputFactory factory = XMLInputFactory.newInstance();
-        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
-        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
-        parser = new XmlProductParser(factory);
+        XMLInputFactory factory = new XmlFactoryConfig().secureXmlInputFactory(new ParserProperties());
+        parser = new XmlProductParser(factory, new ParserProperties());
+
+        ParserProperties parallel = new ParserProperties();
+        parallel.getParallel().setThreshold(DataSize.ofBytes(0));
+        parallel.getParallel().setChunkSize(DataSize.ofBytes(200));
+        parallelParser = new XmlProductParser(factory, parallel);
     }
 
     @Test
@@ -43,6 +62,17 @@ public class XmlProductParserTest {
         assertThat(p.getCountry()).isEqualTo("Германия");
     }
 
+    @Test
+    void shouldParseValidXmlFromStream() throws IOException {
+        try (InputStream xml = Files.newInputStream(Path.of("src/test/resources/valid-sample.xml"))) {
+            List<ProductData> products = parser.parseXml(xml);
+
+            assertThat(products).hasSize(1);
+            assertThat(products.get(0).getIndexNum()).isEqualTo(100);
+            assertThat(products.get(0).getCountry()).isEqualTo("Германия");
+        }
+    }
+
     @Test
     void shouldThrowOnInvalidXml() {
         byte[] invalid = "<a></b>".getBytes();
@@ -57,4 +87,190 @@ public class XmlProductParserTest {
                 .isInstanceOf(InvalidXmlFileException.class);
     }
 
+    @Test
+    void shouldJoinAndTrimTextAcrossCdataAndEntities() {
+        byte[] xml = ("<products><productInfo><indexNum> 12 </indexNum>"
+                + "<name>  <![CDATA[Бинт]]> &amp; вата\n</name><countryFullName> Россия </countryFullName>"
+                + "</productInfo></products>").getBytes(StandardCharsets.UTF_8);
+
+        ProductData product = parser.parseXml(xml).get(0);
+
+        assertThat(product.getIndexNum()).isEqualTo(12);
+        assertThat(product.getFullName()).isEqualTo("Бинт & вата");
+        assertThat(product.getCountry()).isEqualTo("Россия");
+    }
+
+    @Test
+    void shouldSkipNestedUnmappedBlocks() {
+        byte[] xml = ("<products><productInfo><indexNum>1</indexNum>"
+                + "<characteristics><characteristic><code>1</code><name>Цвет</name>"
+                + "<countryFullName>Неизвестно</countryFullName></characteristic></characteristics>"
+                + "<attachment><content>JVBERi0xLjQK</content></attachment>"
+                + "<name>Бинт</name><countryFullName>Россия</countryFullName>"
+                + "</productInfo></products>").getBytes(StandardCharsets.UTF_8);
+
+        List<ProductData> products = parser.parseXml(xml);
+
+        assertThat(products).hasSize(1);
+        assertThat(products.get(0).getFullName()).isEqualTo("Бинт");
+        assertThat(products.get(0).getCountry()).isEqualTo("Россия");
+    }
+
+    @Test
+    void shouldParseInParallelInDocumentOrder() {
+        byte[] xml = productsXml(50, -1);
+        List<ProductData> sequential = parser.parseXml(xml);
+        List<ProductData> parallel = new ArrayList<>();
+
+        parallelParser.parseXml(ByteBuffer.wrap(xml), parallel::add);
+
+        assertThat(parallel).hasSize(50);
+        assertThat(parallel).extracting(ProductData::getIndexNum)
+                .containsExactlyElementsOf(sequential.stream().map(ProductData::getIndexNum).toList());
+        assertThat(parallel).extracting(ProductData::getFullName)
+                .containsExactlyElementsOf(sequential.stream().map(ProductData::getFullName).toList());
+    }
+
+    @Test
+    void shouldParseRowsIntoTableWithReusedRow() {
+        byte[] xml = productsXml(50, -1);
+        Set<ProductRow> instances = Collections.newSetFromMap(new IdentityHashMap<>());
+        ProductTable table = new ProductTable();
+
+        parser.parseRows(ByteBuffer.wrap(xml), row -> {
+            instances.add(row);
+            table.add(row);
+        });
+
+        assertThat(instances).hasSize(1);
+        assertThat(table.rows()).map(ProductRow::toProductData).containsExactlyElementsOf(parser.parseXml(xml));
+    }
+
+    @Test
+    void shouldParseRowsInParallelInDocumentOrder() {
+        byte[] xml = productsXml(50, -1);
+        ProductTable table = new ProductTable();
+
+        parallelParser.parseRows(ByteBuffer.wrap(xml), table::add);
+
+        assertThat(table.rows()).map(ProductRow::toProductData).containsExactlyElementsOf(parser.parseXml(xml));
+    }
+
+    @Test
+    void shouldReportSameErrorInParallelMode() {
+        byte[] xml = productsXml(50, 37);
+        Throwable sequential = catchThrowable(() -> parser.parseXml(xml));
+        List<ProductData> delivered = new ArrayList<>();
+
+        assertThatThrownBy(() -> parallelParser.parseXml(ByteBuffer.wrap(xml), delivered::add))
+                .isInstanceOf(sequential.getClass())
+                .hasMessage(sequential.getMessage());
+        assertThat(delivered).extracting(ProductData::getIndexNum)
+                .containsExactlyElementsOf(IntStream.range(0, 37).map(i -> 1000 - i).boxed().toList());
+    }
+
+    @Test
+    void shouldPropagateConsumerFailureInParallelModeWithoutRedelivery() {
+        byte[] xml = productsXml(50, -1);
+        IllegalStateException failure = new IllegalStateException("consumer");
+        List<Integer> delivered = new ArrayList<>();
+
+        assertThatThrownBy(() -> parallelParser.parseRows(ByteBuffer.wrap(xml), row -> {
+            delivered.add(row.indexNum());
+            if (delivered.size() == 20) {
+                throw failure;
+            }
+        })).isSameAs(failure);
+        assertThat(delivered).containsExactlyElementsOf(IntStream.range(0, 20).map(i -> 1000 - i).boxed().toList());
+    }
+
+    @Test
+    void shouldScopeNamespaceDeclarationsInParallelMode() {
+        String product = "<p:productInfo><indexNum>1</indexNum><name>Товар</name></p:productInfo>";
+        byte[] redeclared = ("<export xmlns:p=\"urn:a\"><a xmlns:p=\"urn:b\">" + product.repeat(5) + "</a>"
+                + product.repeat(5) + "</export>").getBytes(StandardCharsets.UTF_8);
+        byte[] outOfScope = ("<export><a xmlns:p=\"urn:a\">" + product.repeat(5) + "</a><b>"
+                + product.repeat(5) + "</b></export>").getBytes(StandardCharsets.UTF_8);
+        List<ProductData> parallel = new ArrayList<>();
+
+        parallelParser.parseXml(ByteBuffer.wrap(redeclared), parallel::add);
+
+        assertThat(parallel).containsExactlyElementsOf(parser.parseXml(redeclared));
+        Throwable sequential = catchThrowable(() -> parser.parseXml(outOfScope));
+        assertThat(sequential).isInstanceOf(InvalidXmlFileException.class);
+        assertThatThrownBy(() -> parallelParser.parseXml(ByteBuffer.wrap(outOfScope), product -> {
+        })).isInstanceOf(sequential.getClass()).hasMessage(sequential.getMessage());
+    }
+
+    @Test
+    void shouldDeduplicateRepeatedFieldValues() {
+        List<ProductData> products = parser.parseXml(productsXml(3, -1));
+
+        assertThat(products.get(1).getUnit()).isEqualTo("796").isSameAs(products.get(0).getUnit());
+        assertThat(products.get(2).getUnit()).isSameAs(products.get(0).getUnit());
+    }
+
+    @Test
+    void shouldNotDeduplicateWhenDisabled() {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        ParserProperties properties = new ParserProperties();
+        properties.getDedup().setEnabled(false);
+
+        List<ProductData> products = new XmlProductParser(factory, properties).parseXml(productsXml(2, -1));
+
+        assertThat(products.get(1).getUnit()).isEqualTo(products.get(0).getUnit())
+                .isNotSameAs(products.get(0).getUnit());
+    }
+
+    @Test
+    void shouldRejectTooDeeplyNestedXml() {
+        ParserProperties properties = new ParserProperties();
+        properties.getLimits().setMaxElementDepth(16);
+        XmlProductParser limited = new XmlProductParser(new XmlFactoryConfig().secureXmlInputFactory(properties), properties);
+        String xml = "<a>".repeat(40) + "</a>".repeat(40);
+
+        assertThatThrownBy(() -> limited.parseXml(xml.getBytes(StandardCharsets.UTF_8)))
+                .isInstanceOf(InvalidXmlFileException.class)
+                .hasMessage(XML_LIMITS_EXCEEDED);
+    }
+
+    @Test
+    void shouldApplyElementCountLimitToWholeDocumentInParallelMode() {
+        ParserProperties properties = new ParserProperties();
+        properties.getLimits().setMaxElementCount(100);
+        properties.getParallel().setThreshold(DataSize.ofBytes(0));
+        properties.getParallel().setChunkSize(DataSize.ofBytes(200));
+        XMLInputFactory factory = new XmlFactoryConfig().secureXmlInputFactory(properties);
+        byte[] xml = productsXml(50, -1);
+        Throwable sequential = catchThrowable(() -> new XmlProductParser(factory, new ParserProperties()).parseXml(xml));
+
+        assertThat(sequential).isInstanceOf(InvalidXmlFileException.class);
+        assertThatThrownBy(() -> new XmlProductParser(factory, properties).parseXml(ByteBuffer.wrap(xml), product -> {
+        })).isInstanceOf(sequential.getClass()).hasMessage(sequential.getMessage());
+    }
+
+    @Test
+    void shouldRejectTooLongElementText() {
+        ParserProperties properties = new ParserProperties();
+        properties.getLimits().setMaxTextLength(1000);
+        XmlProductParser limited = new XmlProductParser(new XmlFactoryConfig().secureXmlInputFactory(properties), properties);
+        String xml = "<productInfo><name>" + "а".repeat(600) + "<![CDATA[" + "б".repeat(600) + "]]></name></productInfo>";
+
+        assertThatThrownBy(() -> limited.parseXml(xml.getBytes(StandardCharsets.UTF_8)))
+                .isInstanceOf(InvalidXmlFileException.class)
+                .hasMessageContaining(XML_LIMITS_EXCEEDED);
+    }
+
+    private byte[] productsXml(int count, int withoutNationalCode) {
+        StringBuilder xml = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\"?>")
+                .append("<ns2:export xmlns:ns2=\"urn:test\"><ns2:body>");
+        for (int i = 0; i < count; i++) {
+            xml.append("<ns2:productInfo><indexNum>").append(1000 - i).append("</indexNum>")
+                    .append("<name>Товар ").append(i).append("</name><OKEIInfo>")
+                    .append(i == withoutNationalCode ? "" : "<nationalCode>796</nationalCode>")
+                    .append("</OKEIInfo></ns2:productInfo>");
+        }
+        return xml.append("</ns2:body></ns2:export>").toString().getBytes(StandardCharsets.UTF_8);
+    }
+
 }
@@ -0,0 +1,174 @@
+package ru.oiteb.xmlparser.service;
+
+import org.junit.jupiter.api.Test;
+import ru.oiteb.xmlparser.config.ParserProperties;
+import ru.oiteb.xmlparser.config.XmlFactoryConfig;
+import ru.oiteb.xmlparser.entity.ValidationReport;
+import ru.oiteb.xmlparser.entity.ValidationViolation;
+import ru.oiteb.xmlparser.service.parser.XmlProductParser;
+import ru.oiteb.xmlparser.service.parser.XmlProductValidator;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import static ru.oiteb.xmlparser.constants.ExceptionsDescriptions.*;
+
+public class XmlProductValidatorTest {
+
+    private final ParserProperties properties = new ParserProperties();
+
+    @Test
+    void shouldAcceptValidXml() throws IOException {
+        try (InputStream xml = Files.newInputStream(Path.of("src/test/resources/valid-sample.xml"))) {
+            ValidationReport report = validator().validate(xml);
+
+            assertThat(report.isValid()).isTrue();
+            assertThat(report.getProducts()).isEqualTo(1);
+            assertThat(report.getViolations()).isEmpty();
+        }
+    }
+
+    @Test
+    void shouldReportEveryViolationWithLocation() {
+        String xml = """
+                <products>
+                    <productInfo>
+                        <indexNum>12a</indexNum>
+                        <OKEIInfo><nationalCode>796</nationalCode></OKEIInfo>
+                    </productInfo>
+                    <productInfo>
+                        <indexNum>2</indexNum>
+                        <OKEIInfo><name>шт</name></OKEIInfo>
+                    </productInfo>
+                    <productInfo>
+                        <OKEIInfo><nationalCode>  </nationalCode></OKEIInfo>
+                    </productInfo>
+                </products>
+                """;
+
+        ValidationReport report = validator().validate(stream(xml));
+
+        assertThat(report.isValid()).isFalse();
+        assertThat(report.getProducts()).isEqualTo(3);
+        assertThat(report.getViolations())
+                .extracting(ValidationViolation::getLine, ValidationViolation::getProduct, ValidationViolation::getMessage)
+                .containsExactly(
+                        tuple(3, 1, INVALID_INDEX_NUM + "12a"),
+                        tuple(8, 2, INVALID_OKEI_INFO),
+                        tuple(11, 3, EMPTY_NATIONAL_CODE));
+        assertThat(report.getViolations()).allSatisfy(violation -> assertThat(violation.getColumn()).isPositive());
+    }
+
+    @Test
+    void shouldStopAtMalformedXmlAndKeepEarlierViolations() {
+        String xml = """
+                <products>
+                    <productInfo><indexNum>x</indexNum>
+                </products>
+                """;
+
+        ValidationReport report = validator().validate(stream(xml));
+
+        assertThat(report.isValid()).isFalse();
+        assertThat(report.getProducts()).isEqualTo(1);
+        assertThat(report.getViolations()).hasSize(2);
+        assertThat(report.getViolations().get(0).getMessage()).isEqualTo(INVALID_INDEX_NUM + "x");
+        ValidationViolation malformed = report.getViolations().get(1);
+        assertThat(malformed.getMessage()).startsWith(MALFORMED_XML);
+        assertThat(malformed.getLine()).isEqualTo(3);
+        assertThat(malformed.getProduct()).isEqualTo(1);
+    }
+
+    @Test
+    void shouldReportMalformedXmlOutsideProducts() {
+        ValidationReport report = validator().validate(stream("<a></b>"));
+
+        assertThat(report.isValid()).isFalse();
+        assertThat(report.getProducts()).isZero();
+        assertThat(report.getViolations()).singleElement()
+                .satisfies(violation -> {
+                    assertThat(violation.getLine()).isEqualTo(1);
+                    assertThat(violation.getProduct()).isNull();
+                });
+    }
+
+    @Test
+    void shouldReportTooLongElementTextAndContinue() {
+        properties.getLimits().setMaxTextLength(1000);
+        String xml = "<products><productInfo><name>" + "а".repeat(600) + "<![CDATA[" + "б".repeat(600) + "]]></name>"
+                + "<OKEIInfo><nationalCode>796</nationalCode></OKEIInfo></productInfo>"
+                + "<productInfo><OKEIInfo/></productInfo></products>";
+
+        ValidationReport report = validator().validate(stream(xml));
+
+        assertThat(report.getProducts()).isEqualTo(2);
+        assertThat(report.getViolations())
+                .extracting(ValidationViolation::getProduct, ValidationViolation::getMessage)
+                .containsExactly(tuple(1, XML_LIMITS_EXCEEDED), tuple(2, INVALID_OKEI_INFO));
+    }
+
+    @Test
+    void shouldReportParserLimitViolationLikeParser() {
+        properties.getLimits().setMaxElementDepth(16);
+        String xml = "<products><productInfo>" + "<a>".repeat(40) + "</a>".repeat(40) + "</productInfo></products>";
+
+        ValidationReport report = validator().validate(stream(xml));
+
+        assertThat(report.isValid()).isFalse();
+        assertThat(report.getViolations()).singleElement()
+                .satisfies(violation -> {
+                    assertThat(violation.getMessage()).isEqualTo(XML_LIMITS_EXCEEDED);
+                    assertThat(violation.getProduct()).isEqualTo(1);
+                });
+    }
+
+    @Test
+    void shouldLimitNumberOfReportedViolations() {
+        properties.getValidation().setMaxViolations(2);
+
+        ValidationReport report = validator().validate(stream(productsXml(5, true)));
+
+        assertThat(report.isValid()).isFalse();
+        assertThat(report.isTruncated()).isTrue();
+        assertThat(report.getProducts()).isEqualTo(5);
+        assertThat(report.getViolations()).hasSize(2);
+    }
+
+    @Test
+    void shouldCountSameProductsAsParser() {
+        String xml = productsXml(250, false);
+        XmlProductParser parser = new XmlProductParser(new XmlFactoryConfig().secureXmlInputFactory(properties), properties);
+
+        ValidationReport report = validator().validate(stream(xml));
+
+        assertThat(report.isValid()).isTrue();
+        assertThat(report.getProducts()).isEqualTo(parser.parseXml(stream(xml)).size());
+    }
+
+    private XmlProductValidator validator() {
+        return new XmlProductValidator(new XmlFactoryConfig().secureXmlInputFactory(properties), properties);
+    }
+
+    private static InputStream stream(String xml) {
+        return new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String productsXml(int count, boolean withoutNationalCode) {
+        StringBuilder xml = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\"?>")
+                .append("<ns2:export xmlns:ns2=\"urn:test\"><ns2:body>");
+        for (int i = 0; i < count; i++) {
+            xml.append("<ns2:productInfo><indexNum>").append(i).append("</indexNum>")
+                    .append("<name>Товар ").append(i).append("</name><extra><name>вложенное</name></extra><OKEIInfo>")
+                    .append(withoutNationalCode ? "" : "<nationalCode>796</nationalCode>")
+                    .append("</OKEIInfo></ns2:productInfo>");
+        }
+        return xml.append("</ns2:body></ns2:export>").toString();
+    }
+
+}